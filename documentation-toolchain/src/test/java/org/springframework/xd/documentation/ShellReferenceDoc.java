@@ -43,10 +43,12 @@ import org.springframework.util.ReflectionUtils;
 import org.springframework.util.ReflectionUtils.MethodCallback;
 import org.springframework.util.ReflectionUtils.MethodFilter;
 import org.springframework.xd.shell.command.AggregateCounterCommands;
+import org.springframework.xd.shell.command.CardinalityCounterCommands;
 import org.springframework.xd.shell.command.ConfigCommands;
 import org.springframework.xd.shell.command.CounterCommands;
 import org.springframework.xd.shell.command.FieldValueCounterCommands;
 import org.springframework.xd.shell.command.GaugeCommands;
+import org.springframework.xd.shell.command.HistogramCommands;
 import org.springframework.xd.shell.command.HttpCommands;
 import org.springframework.xd.shell.command.JobCommands;
 import org.springframework.xd.shell.command.ModuleCommands;
@@ -115,6 +117,8 @@ public class ShellReferenceDoc {
 		titles.put(AggregateCounterCommands.class, "Metrics Commands");
 		titles.put(GaugeCommands.class, "Metrics Commands");
 		titles.put(RichGaugeCommands.class, "Metrics Commands");
+		titles.put(HistogramCommands.class, "Metrics Commands");
+		titles.put(CardinalityCounterCommands.class, "Metrics Commands");
 
 		// ======= Http Post =======
 		titles.put(HttpCommands.class, "Http Commands");
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * The Redis key layout of the in-flight messages of a reliable Redis message bus, shared by the bus and the admin
+ * that requeues the messages of departed containers.
+ * <p>
+ * Each consumer thread keeps the messages it has popped but not yet handled in a list
+ * {@code inflight.<owner>.<uuid>}; the hash {@code inflight.<owner>} maps each such list to its queue, and the set
+ * {@code inflight.owners} holds the owners. While the owning process is alive it refreshes the key
+ * {@code inflight.<owner>.heartbeat}, which expires {@link #HEARTBEAT_TTL} seconds after the last refresh.
+ */
+public final class RedisInFlightKeys {
+
+	/**
+	 * The prefix of the in-flight keys.
+	 */
+	public static final String IN_FLIGHT_PREFIX = "inflight.";
+
+	/**
+	 * The set of the owners of in-flight lists.
+	 */
+	public static final byte[] IN_FLIGHT_OWNERS_KEY = (IN_FLIGHT_PREFIX + "owners").getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * The time (ms) between refreshes of an owner's heartbeat.
+	 */
+	public static final long HEARTBEAT_INTERVAL = 5000;
+
+	/**
+	 * The time (s) after its last refresh that an owner's heartbeat expires.
+	 */
+	public static final long HEARTBEAT_TTL = 30;
+
+	/**
+	 * Acknowledges the ARGV[1] oldest elements of the in-flight list KEYS[2], moves the rest to the tail of the list
+	 * KEYS[1], oldest last, and deletes the in-flight list; returns the number of elements moved.
+	 */
+	public static final byte[] RELEASE_SCRIPT = ("local acked = tonumber(ARGV[1])\n"
+			+ "if acked > 0 then redis.call('LTRIM', KEYS[2], 0, -acked - 1) end\n"
+			+ "local items = redis.call('LRANGE', KEYS[2], 0, -1)\n"
+			+ "for i = 1, #items do redis.call('RPUSH', KEYS[1], items[i]) end\n"
+			+ "redis.call('DEL', KEYS[2])\n"
+			+ "return #items").getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Unless the heartbeat KEYS[1] of the owner ARGV[1] exists, moves the elements of each in-flight list in the
+	 * owner's hash KEYS[2] to the tail of its queue, oldest last, and removes the lists, the hash and the owner from
+	 * the set KEYS[3]; returns the number of elements moved, or -1 if the owner is alive.
+	 */
+	public static final byte[] REAP_SCRIPT = ("if redis.call('EXISTS', KEYS[1]) == 1 then return -1 end\n"
+			+ "local lists = redis.call('HGETALL', KEYS[2])\n"
+			+ "local moved = 0\n"
+			+ "for i = 1, #lists, 2 do\n"
+			+ "  local items = redis.call('LRANGE', lists[i], 0, -1)\n"
+			+ "  for j = 1, #items do redis.call('RPUSH', lists[i + 1], items[j]) end\n"
+			+ "  redis.call('DEL', lists[i])\n"
+			+ "  moved = moved + #items\n"
+			+ "end\n"
+			+ "redis.call('DEL', KEYS[2])\n"
+			+ "redis.call('SREM', KEYS[3], ARGV[1])\n"
+			+ "return moved").getBytes(StandardCharsets.UTF_8);
+
+	private RedisInFlightKeys() {
+	}
+
+	/**
+	 * @param owner the owner.
+	 * @return the key of the hash mapping the owner's in-flight lists to their queues.
+	 */
+	public static byte[] ownerKey(String owner) {
+		return (IN_FLIGHT_PREFIX + owner).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param owner the owner.
+	 * @return the key of the owner's heartbeat.
+	 */
+	public static byte[] heartbeatKey(String owner) {
+		return (IN_FLIGHT_PREFIX + owner + ".heartbeat").getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param owner the owner.
+	 * @return the key of a new in-flight list of the owner.
+	 */
+	public static byte[] newInFlightKey(String owner) {
+		return (IN_FLIGHT_PREFIX + owner + "." + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+	}
+
+}
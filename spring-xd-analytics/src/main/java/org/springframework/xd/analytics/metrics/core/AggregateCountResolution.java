@@ -55,4 +55,27 @@ public enum AggregateCountResolution {
 		}
 		return start;
 	}
+
+	/**
+	 * Rounds the supplied date down to the start of the period of this resolution it falls in.
+	 *
+	 * @param dt the date to round
+	 * @return the start of the minute (hour, day, etc.) containing {@code dt}
+	 */
+	public DateTime floor(DateTime dt) {
+		switch (this) {
+			case minute:
+				return dt.minuteOfDay().roundFloorCopy();
+			case hour:
+				return dt.hourOfDay().roundFloorCopy();
+			case day:
+				return dt.dayOfMonth().roundFloorCopy();
+			case month:
+				return dt.monthOfYear().roundFloorCopy();
+			case year:
+				return dt.year().roundFloorCopy();
+			default:
+				throw new IllegalStateException("Shouldn't happen. Unhandled resolution: " + this);
+		}
+	}
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,10 @@
 
 package org.springframework.xd.analytics.metrics.core;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 
@@ -31,6 +35,18 @@ public interface AggregateCounterRepository extends CounterRepository {
 	 */
 	long increment(String name, long amount, DateTime dateTime);
 
+	/**
+	 * Applies several increments to the named counter at once. Each entry contributes its amount to the minute bucket
+	 * starting at the given instant. Allows callers that pre-aggregate increments locally to have them applied in as
+	 * few store operations as possible. The increments are applied atomically, so that a caller may retry all of them
+	 * when this method fails.
+	 *
+	 * @param name the counter to increment
+	 * @param amountsByMinute the amounts to add, keyed by the start of their minute bucket (in milliseconds)
+	 * @return the new total value of the counter
+	 */
+	long increment(String name, Map<Long, Long> amountsByMinute);
+
 
 	/**
 	 * Query function which returns the last 'n' points for a particular resolution.
@@ -53,6 +69,17 @@ public interface AggregateCounterRepository extends CounterRepository {
 	 */
 	AggregateCount getCounts(String name, Interval interval, AggregateCountResolution resolution);
 
+	/**
+	 * Query function to retrieve the counts of several counters over the same interval at once. Implementations
+	 * backed by a remote store are expected to fetch all the data they need in as few round trips as possible.
+	 *
+	 * @param names the counters to query
+	 * @param interval the time interval to return data for. Includes start and end.
+	 * @param resolution the resolution at which the data should be returned (minute, hour, day, month)
+	 * @return the aggregate counts of each counter, in the order of the given names
+	 */
+	List<AggregateCount> getCounts(Collection<String> names, Interval interval, AggregateCountResolution resolution);
+
 
 	/**
 	 * Queries by requesting a number of points, ending on the given date (inclusive).
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.core;
+
+import org.springframework.util.Assert;
+
+/**
+ * Represents the (estimated) number of distinct values seen for a named metric.
+ */
+public final class CardinalityCounter implements Metric {
+
+	private final String name;
+
+	private final long value;
+
+	public CardinalityCounter(String name, long value) {
+		Assert.notNull(name, "The counter name cannot be null or empty");
+		this.name = name;
+		this.value = value;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the estimated number of distinct values
+	 */
+	public long getValue() {
+		return value;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		return name.equals(((CardinalityCounter) o).name);
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "CardinalityCounter [name=" + name + ", value=" + value + "]";
+	}
+
+}
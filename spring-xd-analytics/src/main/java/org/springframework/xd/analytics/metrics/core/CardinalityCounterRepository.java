@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.core;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+/**
+ * A repository to estimate the number of distinct values seen by named counters, using {@link HyperLogLog}
+ * sketches of constant size rather than storing each value.
+ *
+ * Much like with {@link AggregateCounterRepository}, values are also tracked in per minute, per hour and per day
+ * buckets, so that the number of distinct values seen in a given time interval can be queried. As sketches can be
+ * merged, the distinct count over several buckets is that of the union of their values. Only the most recent buckets
+ * are retained for each resolution, and month and year resolutions are not supported.
+ */
+public interface CardinalityCounterRepository extends MetricRepository<CardinalityCounter> {
+
+	/**
+	 * Record an occurrence of a value, at the current time.
+	 *
+	 * @param name the counter name
+	 * @param value the value seen
+	 */
+	void add(String name, String value);
+
+	/**
+	 * Record an occurrence of a value, at the given time.
+	 *
+	 * @param name the counter name
+	 * @param value the value seen
+	 * @param dateTime the time the value was seen at
+	 */
+	void add(String name, String value, DateTime dateTime);
+
+	/**
+	 * Estimate the number of distinct values seen during the given interval, rounded outwards to the given
+	 * resolution.
+	 */
+	long countDistinct(String name, Interval interval, AggregateCountResolution resolution);
+
+	/**
+	 * Estimate the number of distinct values seen in each bucket of the given resolution over the interval.
+	 */
+	AggregateCount getCounts(String name, Interval interval, AggregateCountResolution resolution);
+
+}
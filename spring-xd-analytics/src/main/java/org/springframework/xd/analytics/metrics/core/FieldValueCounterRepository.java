@@ -1,5 +1,5 @@
 /*
- * Copyright 2013 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.xd.analytics.metrics.core;
 
+import java.util.Map;
+
 /**
  * A repository to save, delete and find FieldValueCounter instances. Uses the Spring Data Repository marker interface
  * and conventions for method names and behavior.
@@ -36,6 +38,17 @@ public interface FieldValueCounterRepository extends MetricRepository<FieldValue
 	 */
 	void increment(String name, String fieldName);
 
+	/**
+	 * Increment the FieldValueCounter for several field names at once, creating missing counters. Allows callers that
+	 * pre-aggregate increments locally to have them applied in as few store operations as possible. The increments
+	 * are applied atomically, so that a caller may retry all of them when this method fails.
+	 * 
+	 * @param name the FieldValueCounter name
+	 * @param increments the amount to add, keyed by field name
+	 * @throws IllegalArgumentException in case the given name is null
+	 */
+	void increment(String name, Map<String, Double> increments);
+
 	/**
 	 * Decrement the FieldValueCounter for a given field name by one, creating missing counters.
 	 * 
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.core;
+
+import org.springframework.util.Assert;
+
+/**
+ * The distribution of the values recorded for a metric over a sliding window of time, which can be queried for
+ * percentiles.
+ * <p>
+ * Values are kept in {@link HistogramBuckets}, so reported values are accurate to within
+ * {@link HistogramBuckets#RELATIVE_ACCURACY}.
+ * </p>
+ */
+public final class Histogram implements Metric {
+
+	private final String name;
+
+	private final int window;
+
+	private final HistogramBuckets buckets;
+
+	/**
+	 * @param name the name of the histogram
+	 * @param window the width of the window the values were recorded in, in minutes
+	 * @param buckets the recorded values
+	 */
+	public Histogram(String name, int window, HistogramBuckets buckets) {
+		Assert.notNull(name, "The histogram name cannot be null or empty");
+		Assert.notNull(buckets, "buckets cannot be null");
+		this.name = name;
+		this.window = window;
+		this.buckets = buckets;
+	}
+
+	public Histogram(String name, int window) {
+		this(name, window, new HistogramBuckets());
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the width of the window the values were recorded in, in minutes
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	public HistogramBuckets getBuckets() {
+		return buckets;
+	}
+
+	/**
+	 * @return the number of values recorded in the window
+	 */
+	public long getCount() {
+		return buckets.getTotalCount();
+	}
+
+	public long getMin() {
+		return buckets.getMin();
+	}
+
+	public long getMax() {
+		return buckets.getMax();
+	}
+
+	/**
+	 * @param percentile a number between 0 and 100
+	 * @return the value below which the given percentage of values fall
+	 */
+	public long getValueAtPercentile(double percentile) {
+		return buckets.getValueAtPercentile(percentile);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		return name.equals(((Histogram) o).name);
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "Histogram [name = " + name + ", window = " + window + ", count = " + getCount() + ", min = "
+				+ getMin() + ", max = " + getMax() + "]";
+	}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * Sparse, log-linear bucket counts in the spirit of <a href="http://hdrhistogram.org/">HdrHistogram</a>.
+ * <p>
+ * Values below {@code 2^SUB_BUCKET_BITS} each get their own bucket. Above that, every power of two range is split into
+ * {@code 2^(SUB_BUCKET_BITS - 1)} linear buckets, so that the value reported for a bucket is always within
+ * {@link #RELATIVE_ACCURACY} of any value recorded into it. The bucket layout is fixed, which means that two instances
+ * can always be merged by adding their counts index by index, and only non-empty buckets are stored.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class HistogramBuckets {
+
+	/**
+	 * The number of bits used to resolve values within a power of two range.
+	 */
+	public static final int SUB_BUCKET_BITS = 7;
+
+	/**
+	 * The worst case relative difference between a recorded value and the value reported for its bucket.
+	 */
+	public static final double RELATIVE_ACCURACY = 1.0D / (1 << (SUB_BUCKET_BITS - 1));
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+	private final SortedMap<Integer, Long> counts = new TreeMap<Integer, Long>();
+
+	private long totalCount;
+
+	public HistogramBuckets() {
+	}
+
+	/**
+	 * Create an instance holding the given (bucket index, count) pairs.
+	 */
+	public HistogramBuckets(Map<Integer, Long> counts) {
+		for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Return the index of the bucket the given (non negative) value falls into.
+	 */
+	public static int indexFor(long value) {
+		Assert.isTrue(value >= 0, "Histograms can only record non negative values");
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int exponent = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return exponent * SUB_BUCKET_HALF_COUNT + (int) (value >>> exponent);
+	}
+
+	/**
+	 * Return the smallest value that maps to the given bucket.
+	 */
+	public static long lowestValueAt(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKET_HALF_COUNT - 1;
+		return ((long) (index - exponent * SUB_BUCKET_HALF_COUNT)) << exponent;
+	}
+
+	/**
+	 * Return the largest value that maps to the given bucket.
+	 */
+	public static long highestValueAt(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int exponent = index / SUB_BUCKET_HALF_COUNT - 1;
+		// Wraps around to Long.MAX_VALUE for the very last bucket
+		return (((long) (index - exponent * SUB_BUCKET_HALF_COUNT) + 1) << exponent) - 1;
+	}
+
+	public void record(long value) {
+		add(indexFor(value), 1L);
+	}
+
+	public void record(long value, long count) {
+		add(indexFor(value), count);
+	}
+
+	/**
+	 * Add {@code count} occurrences to the bucket with the given index.
+	 */
+	public void add(int index, long count) {
+		Assert.isTrue(count >= 0, "count must be positive");
+		if (count == 0) {
+			return;
+		}
+		Long current = counts.get(index);
+		counts.put(index, current == null ? count : current + count);
+		totalCount += count;
+	}
+
+	/**
+	 * Add all the counts of {@code other} to this instance.
+	 */
+	public void merge(HistogramBuckets other) {
+		for (Map.Entry<Integer, Long> entry : other.counts.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Return the non-empty buckets, as a read-only map from bucket index to count, ordered by index.
+	 */
+	public SortedMap<Integer, Long> getCounts() {
+		return Collections.unmodifiableSortedMap(counts);
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public boolean isEmpty() {
+		return totalCount == 0L;
+	}
+
+	/**
+	 * Return the (approximate) smallest recorded value, or zero if nothing has been recorded.
+	 */
+	public long getMin() {
+		return isEmpty() ? 0L : lowestValueAt(counts.firstKey());
+	}
+
+	/**
+	 * Return the (approximate) largest recorded value, or zero if nothing has been recorded.
+	 */
+	public long getMax() {
+		return isEmpty() ? 0L : highestValueAt(counts.lastKey());
+	}
+
+	/**
+	 * Return the value below which the given percentage of recorded values fall, or zero if nothing has been
+	 * recorded.
+	 *
+	 * @param percentile a number between 0 and 100
+	 */
+	public long getValueAtPercentile(double percentile) {
+		Assert.isTrue(percentile >= 0.0D && percentile <= 100.0D, "percentile must be between 0 and 100");
+		if (isEmpty()) {
+			return 0L;
+		}
+		long countAtPercentile = Math.max(1L, (long) Math.ceil(percentile / 100.0D * totalCount));
+		long seen = 0L;
+		for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+			seen += entry.getValue();
+			if (seen >= countAtPercentile) {
+				return highestValueAt(entry.getKey());
+			}
+		}
+		return getMax();
+	}
+
+	@Override
+	public String toString() {
+		return "HistogramBuckets [totalCount=" + totalCount + ", counts=" + counts + "]";
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.core;
+
+import org.joda.time.DateTime;
+
+/**
+ * A service for managing Histogram instances.
+ *
+ * Values are recorded in one minute slices, and only the last {@code maxWindow} minutes are retained. Queries merge
+ * the slices covering the requested window (ending now), so percentiles reflect recent values only.
+ * {@link #findOne(String)} and {@link #findAll()} use a default window.
+ */
+public interface HistogramRepository extends MetricRepository<Histogram> {
+
+	/**
+	 * Record a value, at the current time.
+	 *
+	 * @param name the histogram name
+	 * @param value the (non negative) value to record
+	 * @throws IllegalArgumentException in case the given name is null
+	 */
+	void recordValue(String name, long value);
+
+	/**
+	 * Record a value, at the given time.
+	 *
+	 * @param name the histogram name
+	 * @param value the (non negative) value to record
+	 * @param dateTime the time the value was observed at
+	 */
+	void recordValue(String name, long value, DateTime dateTime);
+
+	/**
+	 * Record a batch of values at the current time, typically aggregated ahead of time.
+	 *
+	 * @param name the histogram name
+	 * @param values the values to merge into the histogram
+	 */
+	void recordValues(String name, HistogramBuckets values);
+
+	/**
+	 * Return the values recorded over the last {@code window} minutes, or {@code null} if the histogram does not
+	 * exist.
+	 *
+	 * @param name the histogram name
+	 * @param window the width of the window, in minutes, which can't exceed the retention of the repository
+	 */
+	Histogram findOne(String name, int window);
+
+	/**
+	 * Return the number of minutes of values retained for each histogram, which is the widest window that can be
+	 * queried.
+	 */
+	int getMaxWindow();
+
+	/**
+	 * Forget about all the values recorded so far.
+	 *
+	 * @param name the histogram name
+	 */
+	void reset(String name);
+
+}
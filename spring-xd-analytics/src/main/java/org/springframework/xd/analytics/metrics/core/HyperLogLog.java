@@ -0,0 +1,243 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.core;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A <a href="http://algo.inria.fr/flajolet/Publications/FlFuGaMe07.pdf">HyperLogLog</a> sketch, which estimates
+ * the number of distinct values offered to it using a fixed amount of memory.
+ * <p>
+ * Uses the same precision as Redis ({@code 2^14} registers, for a standard error of 0.81%). Registers are first
+ * kept in a sorted sparse array, which is only converted to a dense array of {@code 2^14} bytes once it would take
+ * more room, so that sketches for small cardinalities stay small. Two sketches can be merged, yielding a sketch of
+ * the union of the values offered to both.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public class HyperLogLog {
+
+	public static final int PRECISION = 14;
+
+	private static final int REGISTER_COUNT = 1 << PRECISION;
+
+	/**
+	 * Past this many entries, the sparse representation (an int and a byte per entry) takes more room than the
+	 * dense one.
+	 */
+	private static final int SPARSE_LIMIT = REGISTER_COUNT / 5;
+
+	private static final double ALPHA_MM = 0.7213D / (1.0D + 1.079D / REGISTER_COUNT) * REGISTER_COUNT
+			* REGISTER_COUNT;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private int[] sparseIndexes = new int[8];
+
+	private byte[] sparseRanks = new byte[8];
+
+	private int sparseSize;
+
+	private byte[] registers;
+
+	public HyperLogLog() {
+	}
+
+	/**
+	 * Create a copy of the given sketch.
+	 */
+	public HyperLogLog(HyperLogLog other) {
+		if (other.registers != null) {
+			this.registers = other.registers.clone();
+		}
+		else {
+			this.sparseIndexes = Arrays.copyOf(other.sparseIndexes, Math.max(8, other.sparseSize));
+			this.sparseRanks = Arrays.copyOf(other.sparseRanks, Math.max(8, other.sparseSize));
+			this.sparseSize = other.sparseSize;
+		}
+	}
+
+	/**
+	 * Add a value to the sketch.
+	 *
+	 * @return whether the estimated cardinality may have changed
+	 */
+	public boolean offer(String value) {
+		return offerHash(hash64(value.getBytes(UTF_8)));
+	}
+
+	/**
+	 * Add a value to the sketch, given a good quality 64 bit hash of it.
+	 *
+	 * @return whether the estimated cardinality may have changed
+	 */
+	public boolean offerHash(long hash) {
+		int index = (int) (hash >>> (64 - PRECISION));
+		int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+		return update(index, rank);
+	}
+
+	/**
+	 * Fold all the values offered to {@code other} into this sketch.
+	 */
+	public void merge(HyperLogLog other) {
+		if (other.registers != null) {
+			for (int i = 0; i < REGISTER_COUNT; i++) {
+				if (other.registers[i] != 0) {
+					update(i, other.registers[i]);
+				}
+			}
+		}
+		else {
+			for (int i = 0; i < other.sparseSize; i++) {
+				update(other.sparseIndexes[i], other.sparseRanks[i]);
+			}
+		}
+	}
+
+	/**
+	 * Return the estimated number of distinct values offered to this sketch.
+	 */
+	public long cardinality() {
+		double sum = 0.0D;
+		int zeros = 0;
+		if (registers != null) {
+			for (int i = 0; i < REGISTER_COUNT; i++) {
+				if (registers[i] == 0) {
+					zeros++;
+				}
+				sum += 1.0D / (1L << registers[i]);
+			}
+		}
+		else {
+			zeros = REGISTER_COUNT - sparseSize;
+			sum = zeros;
+			for (int i = 0; i < sparseSize; i++) {
+				sum += 1.0D / (1L << sparseRanks[i]);
+			}
+		}
+		double estimate = ALPHA_MM / sum;
+		if (estimate <= 2.5D * REGISTER_COUNT && zeros > 0) {
+			// Small range correction (linear counting)
+			estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Whether registers are still held in the compact, sparse representation.
+	 */
+	public boolean isSparse() {
+		return registers == null;
+	}
+
+	private boolean update(int index, int rank) {
+		if (registers != null) {
+			if (registers[index] < rank) {
+				registers[index] = (byte) rank;
+				return true;
+			}
+			return false;
+		}
+		int pos = Arrays.binarySearch(sparseIndexes, 0, sparseSize, index);
+		if (pos >= 0) {
+			if (sparseRanks[pos] < rank) {
+				sparseRanks[pos] = (byte) rank;
+				return true;
+			}
+			return false;
+		}
+		if (sparseSize == SPARSE_LIMIT) {
+			toDense();
+			return update(index, rank);
+		}
+		int insertion = -pos - 1;
+		if (sparseSize == sparseIndexes.length) {
+			int newLength = Math.min(SPARSE_LIMIT, sparseSize * 2);
+			sparseIndexes = Arrays.copyOf(sparseIndexes, newLength);
+			sparseRanks = Arrays.copyOf(sparseRanks, newLength);
+		}
+		System.arraycopy(sparseIndexes, insertion, sparseIndexes, insertion + 1, sparseSize - insertion);
+		System.arraycopy(sparseRanks, insertion, sparseRanks, insertion + 1, sparseSize - insertion);
+		sparseIndexes[insertion] = index;
+		sparseRanks[insertion] = (byte) rank;
+		sparseSize++;
+		return true;
+	}
+
+	private void toDense() {
+		registers = new byte[REGISTER_COUNT];
+		for (int i = 0; i < sparseSize; i++) {
+			registers[sparseIndexes[i]] = sparseRanks[i];
+		}
+		sparseIndexes = null;
+		sparseRanks = null;
+		sparseSize = 0;
+	}
+
+	/**
+	 * 64 bit MurmurHash2 (MurmurHash64A).
+	 */
+	static long hash64(byte[] data) {
+		final long m = 0xc6a4a7935bd1e995L;
+		final int r = 47;
+		int length = data.length;
+		long h = 0x9747b28cL ^ (length * m);
+
+		int blocks = length >>> 3;
+		for (int i = 0; i < blocks; i++) {
+			int offset = i << 3;
+			long k = (data[offset] & 0xffL) | (data[offset + 1] & 0xffL) << 8 | (data[offset + 2] & 0xffL) << 16
+					| (data[offset + 3] & 0xffL) << 24 | (data[offset + 4] & 0xffL) << 32
+					| (data[offset + 5] & 0xffL) << 40 | (data[offset + 6] & 0xffL) << 48
+					| (data[offset + 7] & 0xffL) << 56;
+			k *= m;
+			k ^= k >>> r;
+			k *= m;
+			h ^= k;
+			h *= m;
+		}
+
+		int tail = blocks << 3;
+		switch (length & 7) {
+			case 7:
+				h ^= (data[tail + 6] & 0xffL) << 48;
+			case 6:
+				h ^= (data[tail + 5] & 0xffL) << 40;
+			case 5:
+				h ^= (data[tail + 4] & 0xffL) << 32;
+			case 4:
+				h ^= (data[tail + 3] & 0xffL) << 24;
+			case 3:
+				h ^= (data[tail + 2] & 0xffL) << 16;
+			case 2:
+				h ^= (data[tail + 1] & 0xffL) << 8;
+			case 1:
+				h ^= data[tail] & 0xffL;
+				h *= m;
+		}
+
+		h ^= h >>> r;
+		h *= m;
+		h ^= h >>> r;
+		return h;
+	}
+
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.integration;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * Base class for buffers that fold metric increments in memory, per metric name and per key, and write them to a
+ * repository in batches. A batch is written as soon as the number of distinct entries held reaches
+ * {@code maxEntries}, whenever {@link #flush()} is called and, once {@link #start started}, at a fixed interval.
+ * Increments that could not be written are kept and written with the next batch, which relies on the repository
+ * applying the increments of one metric atomically.
+ *
+ * @param <K> the type of the key increments are folded by within a metric
+ * @param <V> the type of the increment amounts
+ */
+abstract class AbstractMetricBuffer<K, V> {
+
+	private static final Logger logger = LoggerFactory.getLogger(AbstractMetricBuffer.class);
+
+	private final int maxEntries;
+
+	private final Object monitor = new Object();
+
+	// guarded by monitor
+	private Map<String, Map<K, V>> pending = new HashMap<String, Map<K, V>>();
+
+	// guarded by monitor
+	private int entryCount;
+
+	private final AtomicLong receivedIncrements = new AtomicLong();
+
+	private final AtomicLong writtenIncrements = new AtomicLong();
+
+	private final AtomicLong writtenBatches = new AtomicLong();
+
+	private volatile ScheduledFuture<?> flushTask;
+
+	protected AbstractMetricBuffer(int maxEntries) {
+		Assert.isTrue(maxEntries > 0, "maxEntries must be strictly positive");
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Write the buffer every {@code interval} milliseconds using the given scheduler, until {@link #stop()} is
+	 * called. A failed scheduled write is logged and retried with the next one.
+	 */
+	public void start(TaskScheduler scheduler, long interval) {
+		Assert.notNull(scheduler, "scheduler can not be null");
+		Assert.isTrue(interval > 0, "interval must be strictly positive");
+		this.flushTask = scheduler.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					flush();
+				}
+				catch (RuntimeException e) {
+					logger.warn("Failed to write buffered metrics, will retry on next flush", e);
+				}
+			}
+		}, interval);
+	}
+
+	/**
+	 * Cancel the scheduled writes, if any, and write all the increments held so far.
+	 */
+	public void stop() {
+		ScheduledFuture<?> task = this.flushTask;
+		if (task != null) {
+			task.cancel(false);
+			this.flushTask = null;
+		}
+		flush();
+	}
+
+	/**
+	 * Write all the increments held so far to the repository.
+	 */
+	public void flush() {
+		Map<String, Map<K, V>> toWrite;
+		synchronized (monitor) {
+			toWrite = drain();
+		}
+		write(toWrite);
+	}
+
+	/**
+	 * Return the number of increments recorded since this buffer was created.
+	 */
+	public long getReceivedIncrements() {
+		return receivedIncrements.get();
+	}
+
+	/**
+	 * Return the number of (coalesced) increments written to the repository since this buffer was created.
+	 */
+	public long getWrittenIncrements() {
+		return writtenIncrements.get();
+	}
+
+	/**
+	 * Return the number of non empty batches written to the repository since this buffer was created.
+	 */
+	public long getWrittenBatches() {
+		return writtenBatches.get();
+	}
+
+	/**
+	 * Return the average number of recorded increments folded into each written increment, or zero if nothing has
+	 * been written yet.
+	 */
+	public double getCoalescingRatio() {
+		long written = writtenIncrements.get();
+		return written == 0 ? 0.0D : (double) receivedIncrements.get() / written;
+	}
+
+	/**
+	 * Record an increment of the given metric entry, writing the whole buffer if it is full.
+	 */
+	protected void record(String name, K key, V amount) {
+		receivedIncrements.incrementAndGet();
+		Map<String, Map<K, V>> toWrite = null;
+		synchronized (monitor) {
+			add(name, key, amount);
+			if (entryCount >= maxEntries) {
+				toWrite = drain();
+			}
+		}
+		if (toWrite != null) {
+			write(toWrite);
+		}
+	}
+
+	/**
+	 * Return the sum of two increment amounts.
+	 */
+	protected abstract V sum(V a, V b);
+
+	/**
+	 * Write the folded increments of one metric to the repository.
+	 */
+	protected abstract void write(String name, Map<K, V> increments);
+
+	// must be called while holding monitor
+	private void add(String name, K key, V amount) {
+		Map<K, V> entries = pending.get(name);
+		if (entries == null) {
+			entries = new HashMap<K, V>();
+			pending.put(name, entries);
+		}
+		V current = entries.put(key, amount);
+		if (current == null) {
+			entryCount++;
+		}
+		else {
+			entries.put(key, sum(current, amount));
+		}
+	}
+
+	// must be called while holding monitor
+	private Map<String, Map<K, V>> drain() {
+		Map<String, Map<K, V>> result = pending;
+		pending = new HashMap<String, Map<K, V>>();
+		entryCount = 0;
+		return result;
+	}
+
+	/**
+	 * Write the given increments, one metric at a time. If a write fails, the increments of that metric and of the
+	 * metrics not written yet are put back in the buffer before the exception is rethrown.
+	 */
+	private void write(Map<String, Map<K, V>> increments) {
+		if (increments.isEmpty()) {
+			return;
+		}
+		Iterator<Map.Entry<String, Map<K, V>>> iterator = increments.entrySet().iterator();
+		try {
+			while (iterator.hasNext()) {
+				Map.Entry<String, Map<K, V>> entry = iterator.next();
+				write(entry.getKey(), entry.getValue());
+				writtenIncrements.addAndGet(entry.getValue().size());
+				iterator.remove();
+			}
+		}
+		catch (RuntimeException e) {
+			synchronized (monitor) {
+				for (Map.Entry<String, Map<K, V>> entry : increments.entrySet()) {
+					for (Map.Entry<K, V> increment : entry.getValue().entrySet()) {
+						add(entry.getKey(), increment.getKey(), increment.getValue());
+					}
+				}
+			}
+			throw e;
+		}
+		writtenBatches.incrementAndGet();
+	}
+
+}
@@ -67,6 +67,10 @@ abstract class AbstractMetricHandler implements BeanFactoryAware, InitializingBe
 		this.beanFactory = beanFactory;
 	}
 
+	protected BeanFactory getBeanFactory() {
+		return beanFactory;
+	}
+
 	@Override
 	public void afterPropertiesSet() throws Exception {
 		if (!this.evalationContextSet) {
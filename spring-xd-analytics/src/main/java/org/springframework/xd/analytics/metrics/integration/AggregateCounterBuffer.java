@@ -0,0 +1,59 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.integration;
+
+import java.util.Map;
+
+import org.joda.time.DateTime;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.metrics.core.AggregateCounterRepository;
+
+/**
+ * Folds aggregate counter increments in memory, per counter and per minute bucket, and writes them to an
+ * {@link AggregateCounterRepository} in batches. A batch is written as soon as the number of distinct buckets held
+ * reaches {@code maxBuckets}, or whenever {@link #flush()} is called. Increments that could not be written are kept
+ * and written with the next batch.
+ */
+public class AggregateCounterBuffer extends AbstractMetricBuffer<Long, Long> {
+
+	private final AggregateCounterRepository repository;
+
+	public AggregateCounterBuffer(AggregateCounterRepository repository, int maxBuckets) {
+		super(maxBuckets);
+		Assert.notNull(repository, "Aggregate Counter Repository can not be null");
+		this.repository = repository;
+	}
+
+	/**
+	 * Record an increment of the given counter, writing the whole buffer if it is full.
+	 */
+	public void increment(String name, long amount, DateTime dateTime) {
+		record(name, dateTime.minuteOfDay().roundFloorCopy().getMillis(), amount);
+	}
+
+	@Override
+	protected Long sum(Long a, Long b) {
+		return a + b;
+	}
+
+	@Override
+	protected void write(String name, Map<Long, Long> increments) {
+		repository.increment(name, increments);
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2011-2013 the original author or authors.
+ * Copyright 2011-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,11 +18,14 @@ package org.springframework.xd.analytics.metrics.integration;
 
 import java.text.ParseException;
 
+import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.expression.Expression;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
 import org.springframework.xd.analytics.metrics.core.AggregateCounterRepository;
@@ -31,10 +34,14 @@ import org.springframework.xd.analytics.metrics.core.AggregateCounterRepository;
  * Handles incoming messages for the {@code aggregate-counter} module, resolves SpEL expressions
  * as needed and delegate the heavy lifting to an {@link AggregateCounterRepository}.
  *
+ * <p>When a strictly positive {@code bufferSize} is set, increments are folded in memory by an
+ * {@link AggregateCounterBuffer} and written on size, every {@code bufferTimeout} milliseconds and when
+ * the handler is destroyed.</p>
+ *
  * @author Luke Taylor
  * @author Eric Bottard
  */
-public class AggregateCounterHandler extends AbstractMetricHandler {
+public class AggregateCounterHandler extends AbstractMetricHandler implements DisposableBean {
 
 	private final AggregateCounterRepository aggregateCounterRepository;
 
@@ -42,6 +49,12 @@ public class AggregateCounterHandler extends AbstractMetricHandler {
 
 	private final Expression incrementExpression;
 
+	private int bufferSize;
+
+	private long bufferTimeout = 1000L;
+
+	private volatile AggregateCounterBuffer buffer;
+
 	public AggregateCounterHandler(AggregateCounterRepository aggregateCounterRepository, String nameExpression,
 			String incrementExpression) {
 		super(nameExpression);
@@ -56,6 +69,40 @@ public class AggregateCounterHandler extends AbstractMetricHandler {
 		this.dateFormat = DateTimeFormat.forPattern(pattern);
 	}
 
+	/**
+	 * Set the maximum number of distinct (counter, minute) buckets to hold in memory before writing them to the
+	 * repository. Zero (the default) disables buffering.
+	 */
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize >= 0, "bufferSize must not be negative");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Set the interval (in milliseconds) at which buffered increments are written, regardless of the buffer size.
+	 */
+	public void setBufferTimeout(long bufferTimeout) {
+		Assert.isTrue(bufferTimeout > 0, "bufferTimeout must be strictly positive");
+		this.bufferTimeout = bufferTimeout;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		super.afterPropertiesSet();
+		if (bufferSize > 0) {
+			AggregateCounterBuffer buffer = new AggregateCounterBuffer(aggregateCounterRepository, bufferSize);
+			buffer.start(IntegrationContextUtils.getTaskScheduler(getBeanFactory()), bufferTimeout);
+			this.buffer = buffer;
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (buffer != null) {
+			buffer.stop();
+		}
+	}
+
 	public Message<?> process(Message<?> message, String timeField) throws ParseException {
 		if (message == null) {
 			return null;
@@ -64,12 +111,16 @@ public class AggregateCounterHandler extends AbstractMetricHandler {
 		Double increment = incrementExpression.getValue(evaluationContext, message, Double.class);
 		String counterName = computeMetricName(message);
 
-		if (timeField == null) {
+		DateTime dateTime = timeField == null ? null : dateFormat.parseDateTime(timeField);
+
+		if (this.buffer != null) {
+			this.buffer.increment(counterName, increment.longValue(), dateTime == null ? new DateTime() : dateTime);
+		}
+		else if (dateTime == null) {
 			this.aggregateCounterRepository.increment(counterName, increment.longValue());
 		}
 		else {
-			this.aggregateCounterRepository.increment(counterName, increment.longValue(),
-					dateFormat.parseDateTime(timeField));
+			this.aggregateCounterRepository.increment(counterName, increment.longValue(), dateTime);
 		}
 		return message;
 	}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.integration;
+
+import org.springframework.expression.Expression;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounterRepository;
+
+/**
+ * Counts the distinct values of an expression evaluated against incoming messages (by default, the payload). When
+ * the expression evaluates to a collection or array, each of its elements is counted. {@code null} values are
+ * ignored.
+ */
+public class CardinalityCounterHandler extends AbstractMetricHandler {
+
+	private final CardinalityCounterRepository cardinalityCounterRepository;
+
+	private final Expression valueExpression;
+
+	public CardinalityCounterHandler(CardinalityCounterRepository cardinalityCounterRepository, String nameExpression,
+			String valueExpression) {
+		super(nameExpression);
+		Assert.notNull(cardinalityCounterRepository, "Cardinality Counter Repository can not be null");
+		Assert.hasText(valueExpression, "Value expression can not be empty");
+		this.cardinalityCounterRepository = cardinalityCounterRepository;
+		this.valueExpression = spelExpressionParser.parseExpression(valueExpression);
+	}
+
+	@ServiceActivator
+	public void process(Message<?> message) {
+		if (message == null) {
+			return;
+		}
+		Object value = valueExpression.getValue(evaluationContext, message);
+		if (value == null) {
+			return;
+		}
+		String name = computeMetricName(message);
+		if (value instanceof Iterable) {
+			for (Object element : (Iterable<?>) value) {
+				add(name, element);
+			}
+		}
+		else if (value instanceof Object[]) {
+			for (Object element : (Object[]) value) {
+				add(name, element);
+			}
+		}
+		else {
+			add(name, value);
+		}
+	}
+
+	private void add(String name, Object value) {
+		if (value != null) {
+			this.cardinalityCounterRepository.add(name, value.toString());
+		}
+	}
+
+}
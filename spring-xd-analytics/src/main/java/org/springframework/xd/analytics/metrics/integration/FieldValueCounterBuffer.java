@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.integration;
+
+import java.util.Map;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.metrics.core.FieldValueCounterRepository;
+
+/**
+ * Coalesces field value counter increments in memory, per counter and per field value, and writes them to a
+ * {@link FieldValueCounterRepository} in batches. A batch is written as soon as the number of distinct field values
+ * held reaches {@code maxEntries}, or whenever {@link #flush()} is called. Increments that could not be written are
+ * kept and written with the next batch.
+ * <p>
+ * On skewed distributions (such as hashtags), most increments hit a handful of values, so the number of store
+ * operations is divided by the {@link #getCoalescingRatio() coalescing ratio}.
+ * </p>
+ */
+public class FieldValueCounterBuffer extends AbstractMetricBuffer<String, Double> {
+
+	private final FieldValueCounterRepository repository;
+
+	public FieldValueCounterBuffer(FieldValueCounterRepository repository, int maxEntries) {
+		super(maxEntries);
+		Assert.notNull(repository, "FieldValueCounterRepository can not be null");
+		this.repository = repository;
+	}
+
+	/**
+	 * Record an increment by one of the given field value, writing the whole buffer if it is full.
+	 */
+	public void increment(String counterName, String fieldValue) {
+		record(counterName, fieldValue, 1.0D);
+	}
+
+	@Override
+	protected Double sum(Double a, Double b) {
+		return a + b;
+	}
+
+	@Override
+	protected void write(String name, Map<String, Double> increments) {
+		repository.increment(name, increments);
+	}
+
+}
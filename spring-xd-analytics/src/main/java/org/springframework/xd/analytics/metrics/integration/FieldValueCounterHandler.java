@@ -1,5 +1,5 @@
 /*
- * Copyright 2013 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,38 +16,70 @@
 
 package org.springframework.xd.analytics.metrics.integration;
 
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.BeanWrapper;
 import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.transformer.MessageTransformationException;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.xd.analytics.metrics.core.FieldValueCounterRepository;
 import org.springframework.xd.tuple.Tuple;
-import org.springframework.xd.tuple.integration.JsonToTupleTransformer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Counts the occurrence of values for a set of JavaBean properties or Tuple fields using a FieldValueCounterRepository.
- * Assumes a String payload is JSON and will convert it to a Tuple.
+ * Assumes a String payload is JSON and will extract the field from it as if it had been converted to a Tuple.
+ *
+ * <p>The field path is parsed once, at construction time. JSON payloads are streamed and only the values found at
+ * the field path are materialized, while bean property read methods are cached per payload class.</p>
+ *
+ * <p>When a strictly positive {@code bufferSize} is set, increments are coalesced in memory by a
+ * {@link FieldValueCounterBuffer} and written on size, every {@code bufferTimeout} milliseconds and when the handler
+ * is destroyed.</p>
  *
  * @author Mark Pollack
  * @author David Turanski
  * @author Mark Fisher
  */
-public class FieldValueCounterHandler extends AbstractMetricHandler {
+@ManagedResource
+public class FieldValueCounterHandler extends AbstractMetricHandler implements DisposableBean {
 
 	private final FieldValueCounterRepository fieldValueCounterRepository;
 
 	private final String fieldName;
 
-	private final JsonToTupleTransformer jsonToTupleTransformer;
+	private final String[] path;
+
+	private final PropertyReader[] propertyReaders;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private int bufferSize;
+
+	private long bufferTimeout = 1000L;
+
+	private volatile FieldValueCounterBuffer buffer;
 
 	public FieldValueCounterHandler(FieldValueCounterRepository fieldValueCounterRepository, String nameExpression,
 			String fieldName) {
@@ -56,8 +88,72 @@ public class FieldValueCounterHandler extends AbstractMetricHandler {
 		Assert.hasText(fieldName, "Field name can not be null or empty string");
 		this.fieldValueCounterRepository = fieldValueCounterRepository;
 		this.fieldName = fieldName;
-		this.jsonToTupleTransformer = new JsonToTupleTransformer();
+		this.path = StringUtils.tokenizeToStringArray(fieldName, ".");
+		// Indexed or keyed property paths are left to a BeanWrapper
+		if (fieldName.indexOf('[') == -1) {
+			this.propertyReaders = new PropertyReader[path.length];
+			for (int i = 0; i < path.length; i++) {
+				this.propertyReaders[i] = new PropertyReader(path[i]);
+			}
+		}
+		else {
+			this.propertyReaders = null;
+		}
+		this.mapper.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+	}
+
+	/**
+	 * Set the maximum number of distinct (counter, field value) entries to hold in memory before writing them to the
+	 * repository. Zero (the default) disables buffering.
+	 */
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize >= 0, "bufferSize must not be negative");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Set the interval (in milliseconds) at which buffered increments are written, regardless of the buffer size.
+	 */
+	public void setBufferTimeout(long bufferTimeout) {
+		Assert.isTrue(bufferTimeout > 0, "bufferTimeout must be strictly positive");
+		this.bufferTimeout = bufferTimeout;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		super.afterPropertiesSet();
+		if (bufferSize > 0) {
+			FieldValueCounterBuffer buffer = new FieldValueCounterBuffer(fieldValueCounterRepository, bufferSize);
+			buffer.start(IntegrationContextUtils.getTaskScheduler(getBeanFactory()), bufferTimeout);
+			this.buffer = buffer;
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (buffer != null) {
+			buffer.stop();
+		}
+	}
+
+	@ManagedMetric(description = "Number of field value increments received while buffering")
+	public long getBufferedIncrements() {
+		return buffer == null ? 0L : buffer.getReceivedIncrements();
+	}
+
+	@ManagedMetric(description = "Number of coalesced increments written to the repository")
+	public long getWrittenIncrements() {
+		return buffer == null ? 0L : buffer.getWrittenIncrements();
+	}
+
+	@ManagedMetric(description = "Number of batches written to the repository")
+	public long getFlushedBatches() {
+		return buffer == null ? 0L : buffer.getWrittenBatches();
+	}
 
+	@ManagedMetric(description = "Average number of received increments per written increment")
+	public double getCoalescingRatio() {
+		return buffer == null ? 0.0D : buffer.getCoalescingRatio();
 	}
 
 	@ServiceActivator
@@ -65,14 +161,14 @@ public class FieldValueCounterHandler extends AbstractMetricHandler {
 		Object payload = message.getPayload();
 		if (payload instanceof String) {
 			try {
-				payload = jsonToTupleTransformer.transformPayload(payload.toString());
+				processJson(computeMetricName(message), (String) payload);
 			}
 			catch (Exception e) {
 				throw new MessageTransformationException(message, e.getMessage(), e);
 			}
 		}
-		if (payload instanceof Tuple) {
-			processTuple(computeMetricName(message), (Tuple) payload);
+		else if (payload instanceof Tuple) {
+			processValueForCounter(computeMetricName(message), payload, 0);
 		}
 		else {
 			processPojo(computeMetricName(message), payload);
@@ -81,24 +177,77 @@ public class FieldValueCounterHandler extends AbstractMetricHandler {
 	}
 
 	private void processPojo(String counterName, Object payload) {
-		BeanWrapper beanWrapper = new BeanWrapperImpl(payload);
-		if (beanWrapper.isReadableProperty(fieldName)) {
-			Object value = beanWrapper.getPropertyValue(fieldName);
-			processValue(counterName, value);
+		if (propertyReaders == null) {
+			BeanWrapper beanWrapper = new BeanWrapperImpl(payload);
+			if (beanWrapper.isReadableProperty(fieldName)) {
+				Object value = beanWrapper.getPropertyValue(fieldName);
+				processValue(counterName, value);
+			}
+			return;
+		}
+		Object value = payload;
+		for (PropertyReader reader : propertyReaders) {
+			value = reader.read(value);
+			if (value == null) {
+				return;
+			}
+		}
+		processValue(counterName, value);
+	}
+
+	/**
+	 * Navigates a JSON document towards the field path, skipping over anything that is not on it. Only top level
+	 * objects are considered, and the values found are materialized as they would be by a
+	 * {@link org.springframework.xd.tuple.integration.JsonToTupleTransformer}.
+	 */
+	private void processJson(String counterName, String json) throws IOException {
+		JsonParser parser = mapper.getFactory().createParser(json);
+		try {
+			if (parser.nextToken() == JsonToken.START_OBJECT) {
+				processJsonValue(counterName, parser, 0);
+			}
+		}
+		finally {
+			parser.close();
 		}
 	}
 
-	private void processTuple(String counterName, Tuple tuple) {
-		String[] path = StringUtils.tokenizeToStringArray(fieldName, ".");
-		processValueForCounter(counterName, tuple, path);
+	/**
+	 * Handle the JSON value the parser is positioned on, leaving the parser on the last token of that value.
+	 */
+	private void processJsonValue(String counterName, JsonParser parser, int depth) throws IOException {
+		JsonToken token = parser.getCurrentToken();
+		if (token == JsonToken.START_OBJECT) {
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken valueToken = parser.nextToken();
+				if (!name.equals(path[depth])) {
+					parser.skipChildren();
+				}
+				else if (depth < path.length - 1) {
+					processJsonValue(counterName, parser, depth + 1);
+				}
+				else if (valueToken == JsonToken.START_OBJECT || valueToken == JsonToken.START_ARRAY) {
+					processValue(counterName, mapper.readValue(parser, Object.class));
+				}
+				else if (valueToken != JsonToken.VALUE_NULL) {
+					processValue(counterName, valueToken.isNumeric() ? parser.getNumberValue() : parser.getText());
+				}
+			}
+		}
+		else if (token == JsonToken.START_ARRAY) {
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				processJsonValue(counterName, parser, depth);
+			}
+		}
 	}
 
-	private void processValueForCounter(String counterName, Object value, String[] path) {
-		String key = path[0];
+	private void processValueForCounter(String counterName, Object value, int depth) {
+		String key = path[depth];
 		Object result = null;
 		if (value instanceof List) {
 			for (Object item : (List<?>) value) {
-				processValueForCounter(counterName, item, path);
+				processValueForCounter(counterName, item, depth);
 			}
 		}
 		else if (value instanceof Tuple) {
@@ -111,12 +260,11 @@ public class FieldValueCounterHandler extends AbstractMetricHandler {
 			result = ((Map<?, ?>) value).get(key);
 		}
 		if (result != null) {
-			if (path.length == 1) {
+			if (depth == path.length - 1) {
 				processValue(counterName, result);
 			}
 			else {
-				path = Arrays.copyOfRange(path, 1, path.length);
-				processValueForCounter(counterName, result, path);
+				processValueForCounter(counterName, result, depth + 1);
 			}
 		}
 	}
@@ -127,11 +275,52 @@ public class FieldValueCounterHandler extends AbstractMetricHandler {
 					: Arrays.asList(ObjectUtils.toObjectArray(value));
 			for (Object val : c) {
 				// TODO better conversion to a string
-				fieldValueCounterRepository.increment(counterName, val.toString());
+				increment(counterName, val.toString());
 			}
 		}
 		else {
-			fieldValueCounterRepository.increment(counterName, value.toString());
+			increment(counterName, value.toString());
+		}
+	}
+
+	private void increment(String counterName, String fieldValue) {
+		if (buffer != null) {
+			buffer.increment(counterName, fieldValue);
+		}
+		else {
+			fieldValueCounterRepository.increment(counterName, fieldValue);
+		}
+	}
+
+	/**
+	 * Reads a single JavaBean property, caching the read method to use for each class it is applied to.
+	 */
+	private static class PropertyReader {
+
+		private static final Method NO_READ_METHOD = ReflectionUtils.findMethod(Object.class, "toString");
+
+		private final String propertyName;
+
+		private final ConcurrentMap<Class<?>, Method> readMethods = new ConcurrentHashMap<Class<?>, Method>();
+
+		PropertyReader(String propertyName) {
+			this.propertyName = propertyName;
+		}
+
+		/**
+		 * Return the property value, or {@code null} if the property is not readable.
+		 */
+		Object read(Object target) {
+			Class<?> clazz = target.getClass();
+			Method method = readMethods.get(clazz);
+			if (method == null) {
+				PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(clazz, propertyName);
+				method = descriptor != null && descriptor.getReadMethod() != null ? descriptor.getReadMethod()
+						: NO_READ_METHOD;
+				ReflectionUtils.makeAccessible(method);
+				readMethods.putIfAbsent(clazz, method);
+			}
+			return method == NO_READ_METHOD ? null : ReflectionUtils.invokeMethod(method, target);
 		}
 	}
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.integration;
+
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.metrics.core.HistogramRepository;
+
+/**
+ * Records the payload of incoming messages (e.g. a latency) into a histogram. Decimal values are rounded to the
+ * nearest integer, so the unit of the payload should be chosen accordingly.
+ */
+public class HistogramHandler extends AbstractMetricHandler {
+
+	private final HistogramRepository histogramRepository;
+
+	public HistogramHandler(HistogramRepository histogramRepository, String nameExpression) {
+		super(nameExpression);
+		Assert.notNull(histogramRepository, "Histogram Repository can not be null");
+		this.histogramRepository = histogramRepository;
+	}
+
+	@ServiceActivator
+	public void process(Message<?> message) {
+		if (message != null) {
+			long value = convertToLong(message.getPayload());
+			this.histogramRepository.recordValue(computeMetricName(message), value);
+		}
+	}
+
+	/**
+	 * @param payload
+	 * @return long value
+	 */
+	long convertToLong(Object payload) {
+		if (payload != null) {
+			if (payload instanceof Number) {
+				return Math.round(((Number) payload).doubleValue());
+			}
+			else if (payload instanceof String) {
+				try {
+					return Math.round(Double.parseDouble((String) payload));
+				}
+				catch (Exception e) {
+					throw new MessagingException("cannot convert payload to long", e);
+				}
+			}
+		}
+		throw new MessagingException("cannot convert "
+				+ (payload == null ? "null" : payload.getClass().getName() + " to long"));
+	}
+
+}
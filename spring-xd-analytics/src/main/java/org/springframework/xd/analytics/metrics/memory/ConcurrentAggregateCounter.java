@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.memory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.Days;
+import org.joda.time.Interval;
+import org.joda.time.Months;
+import org.joda.time.Years;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.metrics.core.AggregateCount;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.Counter;
+
+/**
+ * An aggregate counter that can be safely incremented and queried by several threads without locking.
+ * <p>
+ * Counts for each resolution are kept in a fixed size ring of buckets, indexed by the number of minutes (hours, days,
+ * etc.) elapsed since the epoch in the local time of the increment. A bucket is recycled when a more recent time
+ * period maps to the same slot, so memory usage stays flat and only the most recent periods are retained for each
+ * resolution. Increments older than the retained window are ignored.
+ * </p>
+ */
+class ConcurrentAggregateCounter extends Counter {
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final BucketRing minuteCounts;
+
+	private final BucketRing hourCounts;
+
+	private final BucketRing dayCounts;
+
+	private final BucketRing monthCounts;
+
+	private final BucketRing yearCounts;
+
+	public ConcurrentAggregateCounter(String name, int minutesRetained, int hoursRetained, int daysRetained,
+			int monthsRetained, int yearsRetained) {
+		super(name);
+		this.minuteCounts = new BucketRing(minutesRetained);
+		this.hourCounts = new BucketRing(hoursRetained);
+		this.dayCounts = new BucketRing(daysRetained);
+		this.monthCounts = new BucketRing(monthsRetained);
+		this.yearCounts = new BucketRing(yearsRetained);
+	}
+
+	long increment(long amount, DateTime dateTime) {
+		long localMillis = dateTime.getZone().convertUTCToLocal(dateTime.getMillis());
+		int year = dateTime.getYear();
+
+		minuteCounts.add(minuteIndex(localMillis), amount);
+		hourCounts.add(hourIndex(localMillis), amount);
+		dayCounts.add(dayIndex(localMillis), amount);
+		monthCounts.add(monthIndex(year, dateTime.getMonthOfYear()), amount);
+		yearCounts.add(year, amount);
+
+		return increment(amount);
+	}
+
+	@Override
+	public long increment(long amount) {
+		return total.addAndGet(amount);
+	}
+
+	@Override
+	public long decrement(long amount) {
+		return total.addAndGet(-amount);
+	}
+
+	@Override
+	public long getValue() {
+		return total.get();
+	}
+
+	public AggregateCount getCounts(int nCounts, DateTime endDate, AggregateCountResolution resolution) {
+		Assert.notNull(endDate, "endDate must not be null");
+
+		return getCounts(new Interval(resolution.minus(endDate, nCounts - 1), endDate), resolution);
+	}
+
+	/**
+	 * Computes the number of points returned the same way as {@link InMemoryAggregateCounter}, so that both
+	 * implementations answer queries identically.
+	 */
+	public AggregateCount getCounts(Interval interval, AggregateCountResolution resolution) {
+		DateTime start = interval.getStart();
+		DateTime end = interval.getEnd();
+		long startLocalMillis = start.getZone().convertUTCToLocal(start.getMillis());
+
+		long[] counts;
+		if (resolution == AggregateCountResolution.minute) {
+			counts = minuteCounts.read(minuteIndex(startLocalMillis),
+					interval.toPeriod().toStandardMinutes().getMinutes() + 1);
+		}
+		else if (resolution == AggregateCountResolution.hour) {
+			counts = hourCounts.read(hourIndex(startLocalMillis),
+					interval.toPeriod().toStandardHours().getHours() + 1);
+		}
+		else if (resolution == AggregateCountResolution.day) {
+			DateTime startDay = start.withTimeAtStartOfDay();
+			DateTime endDay = end.plusDays(1).withTimeAtStartOfDay();
+			counts = dayCounts.read(dayIndex(startLocalMillis), Days.daysBetween(startDay, endDay).getDays());
+		}
+		else if (resolution == AggregateCountResolution.month) {
+			DateTime startMonth = start.withTimeAtStartOfDay().withDayOfMonth(1);
+			DateTime endMonth = end.plusMonths(1).withTimeAtStartOfDay().withDayOfMonth(1);
+			counts = monthCounts.read(monthIndex(start.getYear(), start.getMonthOfYear()),
+					Months.monthsBetween(startMonth, endMonth).getMonths());
+		}
+		else if (resolution == AggregateCountResolution.year) {
+			DateTime startYear = new DateTime(start.getYear(), 1, 1, 0, 0);
+			DateTime endYear = new DateTime(end.getYear() + 1, 1, 1, 0, 0);
+			counts = yearCounts.read(start.getYear(), Years.yearsBetween(startYear, endYear).getYears());
+		}
+		else {
+			throw new IllegalStateException("Shouldn't happen. Unhandled resolution: " + resolution);
+		}
+		return new AggregateCount(getName(), interval, counts, resolution);
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentAggregateCounter [name=" + getName() + ", value=" + getValue() + "]";
+	}
+
+	private static long minuteIndex(long localMillis) {
+		return floorDiv(localMillis, DateTimeConstants.MILLIS_PER_MINUTE);
+	}
+
+	private static long hourIndex(long localMillis) {
+		return floorDiv(localMillis, DateTimeConstants.MILLIS_PER_HOUR);
+	}
+
+	private static long dayIndex(long localMillis) {
+		return floorDiv(localMillis, DateTimeConstants.MILLIS_PER_DAY);
+	}
+
+	private static long monthIndex(int year, int monthOfYear) {
+		return year * 12L + monthOfYear - 1;
+	}
+
+	private static long floorDiv(long x, long y) {
+		long q = x / y;
+		return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+	}
+
+	/**
+	 * A fixed size ring of counts, where slot {@code index % size} holds the count for the most recent period with
+	 * that index.
+	 */
+	private static class BucketRing {
+
+		private final AtomicReferenceArray<Bucket> buckets;
+
+		private final int size;
+
+		BucketRing(int size) {
+			Assert.isTrue(size > 0, "The number of retained buckets must be strictly positive");
+			this.size = size;
+			this.buckets = new AtomicReferenceArray<Bucket>(size);
+		}
+
+		void add(long index, long amount) {
+			int slot = slot(index);
+			while (true) {
+				Bucket bucket = buckets.get(slot);
+				if (bucket != null && bucket.index == index) {
+					bucket.addAndGet(amount);
+					return;
+				}
+				if (bucket != null && bucket.index > index) {
+					// Older than what we retain
+					return;
+				}
+				Bucket fresh = new Bucket(index, amount);
+				if (buckets.compareAndSet(slot, bucket, fresh)) {
+					return;
+				}
+			}
+		}
+
+		long get(long index) {
+			Bucket bucket = buckets.get(slot(index));
+			return bucket != null && bucket.index == index ? bucket.get() : 0L;
+		}
+
+		long[] read(long fromIndex, int count) {
+			long[] result = new long[count];
+			for (int i = 0; i < count; i++) {
+				result[i] = get(fromIndex + i);
+			}
+			return result;
+		}
+
+		private int slot(long index) {
+			int slot = (int) (index % size);
+			return slot < 0 ? slot + size : slot;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class Bucket extends AtomicLong {
+
+		private final long index;
+
+		Bucket(long index, long initialValue) {
+			super(initialValue);
+			this.index = index;
+		}
+	}
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.memory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.metrics.core.AggregateCount;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.AggregateCounterRepository;
+import org.springframework.xd.analytics.metrics.core.Counter;
+import org.springframework.xd.store.AbstractInMemoryRepository;
+
+/**
+ * In-memory aggregate counter repository that supports concurrent increments without locking, backed by
+ * {@link ConcurrentAggregateCounter}s.
+ * <p/>
+ * Unlike {@link InMemoryAggregateCounterRepository}, only a bounded window of recent history is retained at each
+ * resolution, so memory usage does not grow over time. The default windows are two days of minutes, sixty days of
+ * hours, two years of days, ten years of months and a hundred years.
+ */
+@Qualifier("aggregate")
+public class ConcurrentInMemoryAggregateCounterRepository extends AbstractInMemoryRepository<Counter, String>
+		implements AggregateCounterRepository {
+
+	private final ConcurrentMap<String, ConcurrentAggregateCounter> aggregates = new ConcurrentHashMap<String, ConcurrentAggregateCounter>();
+
+	private int minutesRetained = 2 * 24 * 60;
+
+	private int hoursRetained = 60 * 24;
+
+	private int daysRetained = 2 * 366;
+
+	private int monthsRetained = 10 * 12;
+
+	private int yearsRetained = 100;
+
+	public void setMinutesRetained(int minutesRetained) {
+		Assert.isTrue(minutesRetained > 0, "minutesRetained must be strictly positive");
+		this.minutesRetained = minutesRetained;
+	}
+
+	public void setHoursRetained(int hoursRetained) {
+		Assert.isTrue(hoursRetained > 0, "hoursRetained must be strictly positive");
+		this.hoursRetained = hoursRetained;
+	}
+
+	public void setDaysRetained(int daysRetained) {
+		Assert.isTrue(daysRetained > 0, "daysRetained must be strictly positive");
+		this.daysRetained = daysRetained;
+	}
+
+	public void setMonthsRetained(int monthsRetained) {
+		Assert.isTrue(monthsRetained > 0, "monthsRetained must be strictly positive");
+		this.monthsRetained = monthsRetained;
+	}
+
+	public void setYearsRetained(int yearsRetained) {
+		Assert.isTrue(yearsRetained > 0, "yearsRetained must be strictly positive");
+		this.yearsRetained = yearsRetained;
+	}
+
+	@Override
+	public long increment(String name) {
+		return increment(name, 1L);
+	}
+
+	@Override
+	public long increment(String name, long amount) {
+		return increment(name, amount, DateTime.now());
+	}
+
+	@Override
+	public long decrement(String name) {
+		throw new UnsupportedOperationException("Can't decrement an AggregateCounter");
+	}
+
+	@Override
+	public void reset(String name) {
+		delete(name);
+	}
+
+	@Override
+	public long increment(String name, long amount, DateTime dateTime) {
+		return getOrCreate(name).increment(amount, dateTime);
+	}
+
+	@Override
+	public long increment(String name, Map<Long, Long> amountsByMinute) {
+		ConcurrentAggregateCounter counter = getOrCreate(name);
+		long result = counter.getValue();
+		for (Map.Entry<Long, Long> entry : amountsByMinute.entrySet()) {
+			result = counter.increment(entry.getValue(), new DateTime(entry.getKey()));
+		}
+		return result;
+	}
+
+	@Override
+	public AggregateCount getCounts(String name, int nCounts, AggregateCountResolution resolution) {
+		return getOrCreate(name).getCounts(nCounts, new DateTime(), resolution);
+	}
+
+	@Override
+	public AggregateCount getCounts(String name, Interval interval, AggregateCountResolution resolution) {
+		return getOrCreate(name).getCounts(interval, resolution);
+	}
+
+	@Override
+	public List<AggregateCount> getCounts(Collection<String> names, Interval interval,
+			AggregateCountResolution resolution) {
+		List<AggregateCount> results = new ArrayList<AggregateCount>(names.size());
+		for (String name : names) {
+			results.add(getCounts(name, interval, resolution));
+		}
+		return results;
+	}
+
+	@Override
+	public AggregateCount getCounts(String name, int nCounts, DateTime end, AggregateCountResolution resolution) {
+		return getOrCreate(name).getCounts(nCounts, end, resolution);
+	}
+
+	private ConcurrentAggregateCounter getOrCreate(String name) {
+		ConcurrentAggregateCounter c = aggregates.get(name);
+		if (c == null) {
+			c = new ConcurrentAggregateCounter(name, minutesRetained, hoursRetained, daysRetained, monthsRetained,
+					yearsRetained);
+			ConcurrentAggregateCounter existing = aggregates.putIfAbsent(name, c);
+			if (existing != null) {
+				c = existing;
+			}
+		}
+		return c;
+	}
+
+	@Override
+	public <S extends Counter> S save(S entity) {
+		aggregates.remove(entity.getName());
+		increment(entity.getName(), entity.getValue(), DateTime.now());
+		return entity;
+	}
+
+	@Override
+	protected String keyFor(Counter entity) {
+		return entity.getName();
+	}
+
+	@Override
+	public Counter findOne(String id) {
+		return getOrCreate(id);
+	}
+
+	@Override
+	public Iterable<Counter> findAll() {
+		return new ArrayList<Counter>(aggregates.values());
+	}
+
+	@Override
+	public long count() {
+		return aggregates.size();
+	}
+
+	@Override
+	public void delete(String id) {
+		aggregates.remove(id);
+	}
+
+	@Override
+	public void delete(Counter entity) {
+		delete(entity.getName());
+	}
+
+	@Override
+	public void deleteAll() {
+		aggregates.clear();
+	}
+
+}
@@ -17,7 +17,9 @@
 package org.springframework.xd.analytics.metrics.memory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
@@ -70,6 +72,16 @@ public class InMemoryAggregateCounterRepository extends AbstractInMemoryReposito
 		return counter.increment(amount, dateTime);
 	}
 
+	@Override
+	public long increment(String name, Map<Long, Long> amountsByMinute) {
+		InMemoryAggregateCounter counter = getOrCreate(name);
+		long result = counter.getValue();
+		for (Map.Entry<Long, Long> entry : amountsByMinute.entrySet()) {
+			result = counter.increment(entry.getValue(), new DateTime(entry.getKey()));
+		}
+		return result;
+	}
+
 	@Override
 	public AggregateCount getCounts(String name, int nCounts, AggregateCountResolution resolution) {
 		return getOrCreate(name).getCounts(nCounts, new DateTime(), resolution);
@@ -80,6 +92,16 @@ public class InMemoryAggregateCounterRepository extends AbstractInMemoryReposito
 		return getOrCreate(name).getCounts(interval, resolution);
 	}
 
+	@Override
+	public List<AggregateCount> getCounts(Collection<String> names, Interval interval,
+			AggregateCountResolution resolution) {
+		List<AggregateCount> results = new ArrayList<AggregateCount>(names.size());
+		for (String name : names) {
+			results.add(getCounts(name, interval, resolution));
+		}
+		return results;
+	}
+
 	@Override
 	public AggregateCount getCounts(String name, int nCounts, DateTime end, AggregateCountResolution resolution) {
 		return getOrCreate(name).getCounts(nCounts, end, resolution);
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.HyperLogLog;
+
+/**
+ * Holds the sketches for a cardinality counter: one for all values ever seen, plus one per minute, hour and day
+ * bucket. Only the most recent {@code n} buckets of each resolution are kept.
+ */
+class InMemoryCardinalityCounter {
+
+	private final HyperLogLog total = new HyperLogLog();
+
+	private final TreeMap<Long, HyperLogLog> minutes = new TreeMap<Long, HyperLogLog>();
+
+	private final TreeMap<Long, HyperLogLog> hours = new TreeMap<Long, HyperLogLog>();
+
+	private final TreeMap<Long, HyperLogLog> days = new TreeMap<Long, HyperLogLog>();
+
+	private final int minutesRetained;
+
+	private final int hoursRetained;
+
+	private final int daysRetained;
+
+	InMemoryCardinalityCounter(int minutesRetained, int hoursRetained, int daysRetained) {
+		this.minutesRetained = minutesRetained;
+		this.hoursRetained = hoursRetained;
+		this.daysRetained = daysRetained;
+	}
+
+	synchronized void add(String value, DateTime dateTime) {
+		total.offer(value);
+		add(minutes, minutesRetained, AggregateCountResolution.minute.floor(dateTime), value);
+		add(hours, hoursRetained, AggregateCountResolution.hour.floor(dateTime), value);
+		add(days, daysRetained, AggregateCountResolution.day.floor(dateTime), value);
+	}
+
+	private void add(TreeMap<Long, HyperLogLog> buckets, int retained, DateTime bucket, String value) {
+		HyperLogLog sketch = buckets.get(bucket.getMillis());
+		if (sketch == null) {
+			sketch = new HyperLogLog();
+			buckets.put(bucket.getMillis(), sketch);
+		}
+		sketch.offer(value);
+		while (buckets.size() > retained) {
+			buckets.pollFirstEntry();
+		}
+	}
+
+	synchronized long getValue() {
+		return total.cardinality();
+	}
+
+	synchronized long countDistinct(Interval interval, AggregateCountResolution resolution) {
+		TreeMap<Long, HyperLogLog> buckets = bucketsFor(resolution);
+		HyperLogLog union = new HyperLogLog();
+		DateTime end = interval.getEnd();
+		for (DateTime when = resolution.floor(interval.getStart()); !when.isAfter(end); when = when.plus(resolution.unitPeriod)) {
+			HyperLogLog sketch = buckets.get(when.getMillis());
+			if (sketch != null) {
+				union.merge(sketch);
+			}
+		}
+		return union.cardinality();
+	}
+
+	synchronized long[] getCounts(Interval interval, AggregateCountResolution resolution) {
+		TreeMap<Long, HyperLogLog> buckets = bucketsFor(resolution);
+		List<Long> counts = new ArrayList<Long>();
+		DateTime end = interval.getEnd();
+		for (DateTime when = interval.getStart(); !when.isAfter(end); when = when.plus(resolution.unitPeriod)) {
+			HyperLogLog sketch = buckets.get(resolution.floor(when).getMillis());
+			counts.add(sketch == null ? 0L : sketch.cardinality());
+		}
+		long[] result = new long[counts.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = counts.get(i);
+		}
+		return result;
+	}
+
+	private TreeMap<Long, HyperLogLog> bucketsFor(AggregateCountResolution resolution) {
+		switch (resolution) {
+			case minute:
+				return minutes;
+			case hour:
+				return hours;
+			case day:
+				return days;
+			default:
+				throw new IllegalArgumentException("Distinct counts are not tracked per " + resolution);
+		}
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.metrics.core.AggregateCount;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounter;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounterRepository;
+
+/**
+ * Memory backed implementation of {@link CardinalityCounterRepository}.
+ */
+public class InMemoryCardinalityCounterRepository implements CardinalityCounterRepository {
+
+	private final ConcurrentMap<String, InMemoryCardinalityCounter> map = new ConcurrentHashMap<String, InMemoryCardinalityCounter>();
+
+	private volatile int minutesRetained = 1440;
+
+	private volatile int hoursRetained = 720;
+
+	private volatile int daysRetained = 366;
+
+	/**
+	 * Set the number of per minute buckets retained for each counter. Only affects counters created after the call.
+	 */
+	public void setMinutesRetained(int minutesRetained) {
+		Assert.isTrue(minutesRetained > 0, "minutesRetained must be strictly positive");
+		this.minutesRetained = minutesRetained;
+	}
+
+	/**
+	 * Set the number of per hour buckets retained for each counter. Only affects counters created after the call.
+	 */
+	public void setHoursRetained(int hoursRetained) {
+		Assert.isTrue(hoursRetained > 0, "hoursRetained must be strictly positive");
+		this.hoursRetained = hoursRetained;
+	}
+
+	/**
+	 * Set the number of per day buckets retained for each counter. Only affects counters created after the call.
+	 */
+	public void setDaysRetained(int daysRetained) {
+		Assert.isTrue(daysRetained > 0, "daysRetained must be strictly positive");
+		this.daysRetained = daysRetained;
+	}
+
+	@Override
+	public void add(String name, String value) {
+		add(name, value, new DateTime());
+	}
+
+	@Override
+	public void add(String name, String value, DateTime dateTime) {
+		Assert.notNull(value, "value cannot be null");
+		getOrCreate(name).add(value, dateTime);
+	}
+
+	@Override
+	public long countDistinct(String name, Interval interval, AggregateCountResolution resolution) {
+		InMemoryCardinalityCounter counter = map.get(name);
+		return counter == null ? 0L : counter.countDistinct(interval, resolution);
+	}
+
+	@Override
+	public AggregateCount getCounts(String name, Interval interval, AggregateCountResolution resolution) {
+		InMemoryCardinalityCounter counter = getOrCreate(name);
+		return new AggregateCount(name, interval, counter.getCounts(interval, resolution), resolution);
+	}
+
+	/**
+	 * Creates an empty counter. As values are not retained, the estimate held by the given counter can't be restored.
+	 */
+	@Override
+	public <S extends CardinalityCounter> S save(S counter) {
+		map.put(counter.getName(), new InMemoryCardinalityCounter(minutesRetained, hoursRetained, daysRetained));
+		return counter;
+	}
+
+	@Override
+	public <S extends CardinalityCounter> Iterable<S> save(Iterable<S> counters) {
+		List<S> results = new ArrayList<S>();
+		for (S c : counters) {
+			results.add(save(c));
+		}
+		return results;
+	}
+
+	@Override
+	public void delete(String name) {
+		Assert.notNull(name, "The name of the counter must not be null");
+		map.remove(name);
+	}
+
+	@Override
+	public void delete(CardinalityCounter counter) {
+		Assert.notNull(counter, "The counter must not be null");
+		map.remove(counter.getName());
+	}
+
+	@Override
+	public void delete(Iterable<? extends CardinalityCounter> counters) {
+		for (CardinalityCounter c : counters) {
+			delete(c);
+		}
+	}
+
+	@Override
+	public CardinalityCounter findOne(String name) {
+		Assert.notNull(name, "The name of the counter must not be null");
+		InMemoryCardinalityCounter counter = map.get(name);
+		return counter == null ? null : new CardinalityCounter(name, counter.getValue());
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return map.containsKey(name);
+	}
+
+	@Override
+	public List<CardinalityCounter> findAll() {
+		List<CardinalityCounter> results = new ArrayList<CardinalityCounter>();
+		for (Map.Entry<String, InMemoryCardinalityCounter> entry : map.entrySet()) {
+			results.add(new CardinalityCounter(entry.getKey(), entry.getValue().getValue()));
+		}
+		return results;
+	}
+
+	@Override
+	public List<CardinalityCounter> findAll(Iterable<String> names) {
+		List<CardinalityCounter> results = new ArrayList<CardinalityCounter>();
+		for (String name : names) {
+			CardinalityCounter c = findOne(name);
+			if (c != null) {
+				results.add(c);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public long count() {
+		return map.size();
+	}
+
+	@Override
+	public void deleteAll() {
+		map.clear();
+	}
+
+	private InMemoryCardinalityCounter getOrCreate(String name) {
+		Assert.notNull(name, "The name of the counter must not be null");
+		InMemoryCardinalityCounter counter = map.get(name);
+		if (counter == null) {
+			InMemoryCardinalityCounter fresh = new InMemoryCardinalityCounter(minutesRetained, hoursRetained,
+					daysRetained);
+			counter = map.putIfAbsent(name, fresh);
+			if (counter == null) {
+				counter = fresh;
+			}
+		}
+		return counter;
+	}
+
+}
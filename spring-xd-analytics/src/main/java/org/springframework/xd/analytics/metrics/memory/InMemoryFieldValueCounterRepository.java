@@ -40,6 +40,13 @@ public class InMemoryFieldValueCounterRepository extends InMemoryMetricRepositor
 		modifyFieldValue(name, fieldName, 1);
 	}
 
+	@Override
+	public synchronized void increment(String name, Map<String, Double> increments) {
+		for (Map.Entry<String, Double> entry : increments.entrySet()) {
+			modifyFieldValue(name, entry.getKey(), entry.getValue());
+		}
+	}
+
 	@Override
 	public synchronized void decrement(String name, String fieldName) {
 		modifyFieldValue(name, fieldName, -1);
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.analytics.metrics.core.Histogram;
+import org.springframework.xd.analytics.metrics.core.HistogramBuckets;
+import org.springframework.xd.analytics.metrics.core.HistogramRepository;
+
+/**
+ * Memory backed implementation of {@link HistogramRepository}, that keeps the last {@code maxWindow} minutes of
+ * values for each histogram.
+ */
+public class InMemoryHistogramRepository implements HistogramRepository {
+
+	private final ConcurrentMap<String, SlidingWindowHistogram> map = new ConcurrentHashMap<String, SlidingWindowHistogram>();
+
+	private volatile int maxWindow = 60;
+
+	private volatile int defaultWindow = 5;
+
+	/**
+	 * Set the number of minutes of values retained for each histogram, which is also the widest window that can be
+	 * queried. Only affects histograms created after the call.
+	 */
+	public void setMaxWindow(int maxWindow) {
+		Assert.isTrue(maxWindow > 0, "maxWindow must be strictly positive");
+		this.maxWindow = maxWindow;
+	}
+
+	@Override
+	public int getMaxWindow() {
+		return maxWindow;
+	}
+
+	/**
+	 * Set the width of the window, in minutes, used by {@link #findOne(String)} and {@link #findAll()}.
+	 */
+	public void setDefaultWindow(int defaultWindow) {
+		Assert.isTrue(defaultWindow > 0, "defaultWindow must be strictly positive");
+		this.defaultWindow = defaultWindow;
+	}
+
+	@Override
+	public void recordValue(String name, long value) {
+		recordValue(name, value, new DateTime());
+	}
+
+	@Override
+	public void recordValue(String name, long value, DateTime dateTime) {
+		Assert.isTrue(value >= 0, "Histograms can only record non negative values");
+		getOrCreate(name).record(minuteOf(dateTime.getMillis()), value);
+	}
+
+	@Override
+	public void recordValues(String name, HistogramBuckets values) {
+		getOrCreate(name).record(minuteOf(System.currentTimeMillis()), values);
+	}
+
+	@Override
+	public Histogram findOne(String name, int window) {
+		Assert.notNull(name, "The name of the histogram must not be null");
+		Assert.isTrue(window > 0 && window <= maxWindow, "window must be between 1 and " + maxWindow);
+		SlidingWindowHistogram histogram = map.get(name);
+		if (histogram == null) {
+			return null;
+		}
+		return new Histogram(name, window, histogram.read(minuteOf(System.currentTimeMillis()), window));
+	}
+
+	@Override
+	public Histogram findOne(String name) {
+		return findOne(name, Math.min(defaultWindow, maxWindow));
+	}
+
+	@Override
+	public void reset(String name) {
+		Assert.notNull(name, "The name of the histogram must not be null");
+		map.put(name, new SlidingWindowHistogram(maxWindow));
+	}
+
+	/**
+	 * Replaces any previous values with the ones held by the given histogram, recorded at the current time.
+	 */
+	@Override
+	public <S extends Histogram> S save(S histogram) {
+		SlidingWindowHistogram values = new SlidingWindowHistogram(maxWindow);
+		values.record(minuteOf(System.currentTimeMillis()), histogram.getBuckets());
+		map.put(histogram.getName(), values);
+		return histogram;
+	}
+
+	@Override
+	public <S extends Histogram> Iterable<S> save(Iterable<S> histograms) {
+		List<S> results = new ArrayList<S>();
+		for (S h : histograms) {
+			results.add(save(h));
+		}
+		return results;
+	}
+
+	@Override
+	public void delete(String name) {
+		Assert.notNull(name, "The name of the histogram must not be null");
+		map.remove(name);
+	}
+
+	@Override
+	public void delete(Histogram histogram) {
+		Assert.notNull(histogram, "The histogram must not be null");
+		map.remove(histogram.getName());
+	}
+
+	@Override
+	public void delete(Iterable<? extends Histogram> histograms) {
+		for (Histogram h : histograms) {
+			delete(h);
+		}
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return map.containsKey(name);
+	}
+
+	@Override
+	public List<Histogram> findAll() {
+		List<Histogram> results = new ArrayList<Histogram>();
+		for (Map.Entry<String, SlidingWindowHistogram> entry : map.entrySet()) {
+			results.add(findOne(entry.getKey()));
+		}
+		return results;
+	}
+
+	@Override
+	public List<Histogram> findAll(Iterable<String> names) {
+		List<Histogram> results = new ArrayList<Histogram>();
+		for (String name : names) {
+			Histogram h = findOne(name);
+			if (h != null) {
+				results.add(h);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public long count() {
+		return map.size();
+	}
+
+	@Override
+	public void deleteAll() {
+		map.clear();
+	}
+
+	private SlidingWindowHistogram getOrCreate(String name) {
+		Assert.notNull(name, "The name of the histogram must not be null");
+		SlidingWindowHistogram histogram = map.get(name);
+		if (histogram == null) {
+			SlidingWindowHistogram fresh = new SlidingWindowHistogram(maxWindow);
+			histogram = map.putIfAbsent(name, fresh);
+			if (histogram == null) {
+				histogram = fresh;
+			}
+		}
+		return histogram;
+	}
+
+	private static long minuteOf(long millis) {
+		long minute = millis / DateTimeConstants.MILLIS_PER_MINUTE;
+		return millis < 0 && millis % DateTimeConstants.MILLIS_PER_MINUTE != 0 ? minute - 1 : minute;
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.memory;
+
+import org.springframework.xd.analytics.metrics.core.HistogramBuckets;
+
+/**
+ * Keeps the values recorded for a histogram in a ring of one minute slices. A slice is recycled when a more recent
+ * minute maps to the same slot, so only the last {@code size} minutes are retained.
+ */
+class SlidingWindowHistogram {
+
+	private final HistogramBuckets[] slices;
+
+	private final long[] minutes;
+
+	SlidingWindowHistogram(int size) {
+		this.slices = new HistogramBuckets[size];
+		this.minutes = new long[size];
+	}
+
+	synchronized void record(long minute, long value) {
+		HistogramBuckets slice = sliceFor(minute);
+		if (slice != null) {
+			slice.record(value);
+		}
+	}
+
+	synchronized void record(long minute, HistogramBuckets values) {
+		HistogramBuckets slice = sliceFor(minute);
+		if (slice != null) {
+			slice.merge(values);
+		}
+	}
+
+	/**
+	 * Merge the slices for the {@code window} minutes ending with {@code lastMinute} (inclusive).
+	 */
+	synchronized HistogramBuckets read(long lastMinute, int window) {
+		HistogramBuckets result = new HistogramBuckets();
+		for (long minute = lastMinute - window + 1; minute <= lastMinute; minute++) {
+			int slot = slot(minute);
+			if (slices[slot] != null && minutes[slot] == minute) {
+				result.merge(slices[slot]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the slice for the given minute, recycling the slot if needed, or {@code null} if the minute is older
+	 * than what is retained.
+	 */
+	private HistogramBuckets sliceFor(long minute) {
+		int slot = slot(minute);
+		if (slices[slot] == null || minutes[slot] < minute) {
+			slices[slot] = new HistogramBuckets();
+			minutes[slot] = minute;
+		}
+		else if (minutes[slot] > minute) {
+			return null;
+		}
+		return slices[slot];
+	}
+
+	private int slot(long minute) {
+		int slot = (int) (minute % slices.length);
+		return slot < 0 ? slot + slices.length : slot;
+	}
+
+}
@@ -16,6 +16,8 @@
 
 package org.springframework.xd.analytics.metrics.metadata;
 
+import javax.validation.constraints.Min;
+
 import org.springframework.xd.module.options.mixins.DateFormatMixin;
 import org.springframework.xd.module.options.spi.Mixin;
 import org.springframework.xd.module.options.spi.ModuleOption;
@@ -33,6 +35,10 @@ public class AggregateCounterSinkOptionsMetadata {
 
 	private String incrementExpression = "1";
 
+	private int bufferSize = 0;
+
+	private long bufferTimeout = 1000L;
+
 	public String getTimeField() {
 		return timeField;
 	}
@@ -51,4 +57,24 @@ public class AggregateCounterSinkOptionsMetadata {
 		this.incrementExpression = incrementExpression;
 	}
 
+	@Min(0)
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	@ModuleOption("max number of distinct counter/minute buckets to aggregate in memory before writing them out (0 to disable buffering)")
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	@Min(1)
+	public long getBufferTimeout() {
+		return bufferTimeout;
+	}
+
+	@ModuleOption("how often to write buffered counts out regardless of buffer size, in milliseconds")
+	public void setBufferTimeout(long bufferTimeout) {
+		this.bufferTimeout = bufferTimeout;
+	}
+
 }
@@ -16,6 +16,8 @@
 
 package org.springframework.xd.analytics.metrics.metadata;
 
+import javax.validation.constraints.Min;
+
 import org.hibernate.validator.constraints.NotBlank;
 
 import org.springframework.xd.module.options.spi.Mixin;
@@ -32,6 +34,10 @@ public class FieldValueCounterSinkOptionsMetadata {
 
 	private String fieldName = null;
 
+	private int bufferSize = 0;
+
+	private long bufferTimeout = 1000L;
+
 	@NotBlank
 	public String getFieldName() {
 		return fieldName;
@@ -42,5 +48,25 @@ public class FieldValueCounterSinkOptionsMetadata {
 		this.fieldName = fieldName;
 	}
 
+	@Min(0)
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	@ModuleOption("max number of distinct counter/value pairs to coalesce in memory before writing them out (0 to disable buffering)")
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	@Min(1)
+	public long getBufferTimeout() {
+		return bufferTimeout;
+	}
+
+	@ModuleOption("how often to write buffered counts out regardless of buffer size, in milliseconds")
+	public void setBufferTimeout(long bufferTimeout) {
+		this.bufferTimeout = bufferTimeout;
+	}
+
 
 }
@@ -145,47 +145,49 @@ abstract class AbstractRedisMetricRepository<M extends Metric, V> implements Met
 	@Override
 	public M findOne(String name) {
 		Assert.notNull(name, "The name of the metric must not be null");
-		String gaugeKey = getMetricKey(name);
-		if (redisOperations.hasKey(gaugeKey)) {
-			V value = this.valueOperations.get(gaugeKey);
-			return create(name, value);
-		}
-		else {
-			return null;
-		}
+		V value = this.valueOperations.get(getMetricKey(name));
+		return value == null ? null : create(name, value);
 	}
 
 	@Override
 	public boolean exists(String s) {
-		return findOne(s) != null;
+		return redisOperations.hasKey(getMetricKey(s));
 	}
 
 	@Override
 	public List<M> findAll() {
-		List<M> gauges = new ArrayList<M>();
 		// TODO asking for keys is not recommended. See http://redis.io/commands/keys
 		// Need to keep track of created instances explicitly.
 		Set<String> keys = this.redisOperations.keys(this.metricPrefix + "*");
+		List<String> names = new ArrayList<String>(keys.size());
 		for (String key : keys) {
 			if (!key.matches(metricPrefix + ".+?_\\d{4}\\.\\d{2}\\.\\d{2}-\\d{2}:\\d{2}")) {
-				V value = this.valueOperations.get(key);
-				String name = key.substring(metricPrefix.length());
-				M m = create(name, value);
-				gauges.add(m);
+				names.add(key.substring(metricPrefix.length()));
 			}
 		}
-		return gauges;
-
+		return findAll(names);
 	}
 
+	/**
+	 * Fetches all the metrics using a single {@code MGET}. Metrics that do not exist are omitted from the result.
+	 */
 	@Override
-	public Iterable<M> findAll(Iterable<String> keys) {
-		List<M> results = new ArrayList<M>();
-
-		for (String k : keys) {
-			M value = findOne(k);
+	public List<M> findAll(Iterable<String> names) {
+		List<String> metricNames = new ArrayList<String>();
+		List<String> metricKeys = new ArrayList<String>();
+		for (String name : names) {
+			metricNames.add(name);
+			metricKeys.add(getMetricKey(name));
+		}
+		List<M> results = new ArrayList<M>(metricKeys.size());
+		if (metricKeys.isEmpty()) {
+			return results;
+		}
+		List<V> values = this.valueOperations.multiGet(metricKeys);
+		for (int i = 0; i < metricNames.size(); i++) {
+			V value = values.get(i);
 			if (value != null) {
-				results.add(value);
+				results.add(create(metricNames.get(i), value));
 			}
 		}
 		return results;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,7 +27,11 @@ import org.joda.time.ReadableDateTime;
 import org.joda.time.Years;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.serializer.GenericToStringSerializer;
@@ -40,6 +44,11 @@ import org.springframework.xd.analytics.metrics.core.AggregateCounterRepository;
 import org.springframework.xd.analytics.metrics.core.MetricUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -97,6 +106,63 @@ public class RedisAggregateCounterRepository extends RedisCounterRepository impl
 		return super.increment(name, amount);
 	}
 
+	/**
+	 * Applies all the given increments in a single MULTI/EXEC transaction, so that either all of them or none are
+	 * applied and a caller may safely retry the whole batch when this fails. Amounts are first folded into each of
+	 * the hashes they contribute to, so that a given hash field is only incremented once per call.
+	 */
+	@Override
+	public long increment(String name, Map<Long, Long> amountsByMinute) {
+		Assert.notEmpty(amountsByMinute, "amountsByMinute cannot be empty");
+
+		final Map<String, Map<String, Long>> hashIncrements = new LinkedHashMap<String, Map<String, Long>>();
+		long total = 0L;
+		for (Map.Entry<Long, Long> entry : amountsByMinute.entrySet()) {
+			AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, new DateTime(entry.getKey()));
+			long amount = entry.getValue();
+			accumulate(hashIncrements, akg.getYearsKey(), akg.getYear(), amount);
+			accumulate(hashIncrements, akg.getYearKey(), akg.getMonth(), amount);
+			accumulate(hashIncrements, akg.getMonthKey(), akg.getDay(), amount);
+			accumulate(hashIncrements, akg.getDayKey(), akg.getHour(), amount);
+			accumulate(hashIncrements, akg.getHourKey(), akg.getMinute(), amount);
+			total += amount;
+		}
+
+		final String bookkeepingKey = bookkeepingKeyFor(name);
+		final String counterKey = redisKeyFromId(name);
+		final long totalAmount = total;
+		List<Object> results = redisOperations.execute(new RedisCallback<List<Object>>() {
+
+			@Override
+			public List<Object> doInRedis(RedisConnection connection) throws DataAccessException {
+				StringRedisConnection stringConnection = (StringRedisConnection) connection;
+				stringConnection.multi();
+				for (Map.Entry<String, Map<String, Long>> hash : hashIncrements.entrySet()) {
+					for (Map.Entry<String, Long> field : hash.getValue().entrySet()) {
+						stringConnection.hIncrBy(hash.getKey(), field.getKey(), field.getValue());
+					}
+				}
+				Set<String> hashKeys = hashIncrements.keySet();
+				stringConnection.sAdd(bookkeepingKey, hashKeys.toArray(new String[hashKeys.size()]));
+				// Same as trackMembership(), inlined to stay in the transaction
+				stringConnection.zAdd(getPrefix(), 0.0D, counterKey);
+				stringConnection.incrBy(counterKey, totalAmount);
+				return stringConnection.exec();
+			}
+		});
+		return (Long) results.get(results.size() - 1);
+	}
+
+	private void accumulate(Map<String, Map<String, Long>> hashIncrements, String key, String hashKey, long amount) {
+		Map<String, Long> fields = hashIncrements.get(key);
+		if (fields == null) {
+			fields = new LinkedHashMap<String, Long>();
+			hashIncrements.put(key, fields);
+		}
+		Long current = fields.get(hashKey);
+		fields.put(hashKey, current == null ? amount : current + amount);
+	}
+
 	/**
 	 * Return the key under which are stored the names of the other keys used for the given counter.
 	 */
@@ -130,6 +196,47 @@ public class RedisAggregateCounterRepository extends RedisCounterRepository impl
 		return getCounts(name, new Interval(resolution.minus(endDate, nCounts - 1), endDate), resolution);
 	}
 
+	@Override
+	public AggregateCount getCounts(String name, Interval interval, AggregateCountResolution resolution) {
+		return getCounts(Collections.singletonList(name), interval, resolution).get(0);
+	}
+
+	/**
+	 * Plans the hashes to read for each counter, then reads all of them using a single pipelined round trip.
+	 */
+	@Override
+	public List<AggregateCount> getCounts(Collection<String> names, Interval interval,
+			AggregateCountResolution resolution) {
+		final List<CountsQuery> queries = new ArrayList<CountsQuery>(names.size());
+		for (String name : names) {
+			queries.add(planCounts(name, interval, resolution));
+		}
+		if (queries.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		List<Object> hashes = redisOperations.executePipelined(new RedisCallback<Object>() {
+
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				StringRedisConnection stringConnection = (StringRedisConnection) connection;
+				for (CountsQuery query : queries) {
+					for (String key : query.keys) {
+						stringConnection.hGetAll(key);
+					}
+				}
+				return null;
+			}
+		});
+
+		Iterator<Object> hashesIt = hashes.iterator();
+		List<AggregateCount> results = new ArrayList<AggregateCount>(queries.size());
+		for (CountsQuery query : queries) {
+			results.add(assembleCounts(query, hashesIt));
+		}
+		return results;
+	}
+
 	/**
 	 * For each query, we need to convert the interval into two variations. One is the start and end points rounded to
 	 * the resolution (used to calculate the number of entries to be returned from the query). The second is the start
@@ -140,39 +247,38 @@ public class RedisAggregateCounterRepository extends RedisCounterRepository impl
 	 * start day as the start index into the first array, and writing the total number of entries in sequence from that
 	 * point into the combined result counts array.
 	 */
-	@Override
-	public AggregateCount getCounts(String name, Interval interval, AggregateCountResolution resolution) {
+	private CountsQuery planCounts(String name, Interval interval, AggregateCountResolution resolution) {
 
 		DateTime end = interval.getEnd();
 		Chronology c = interval.getChronology();
 
-		long[] counts;
+		CountsQuery query = new CountsQuery(name, interval, resolution);
 
 		if (resolution == AggregateCountResolution.minute) {
 			// Iterate through each hour in the interval and load the minutes for it
 			MutableDateTime dt = new MutableDateTime(interval.getStart());
 			dt.setRounding(c.hourOfDay());
 			Duration step = Duration.standardHours(1);
-			List<long[]> hours = new ArrayList<long[]>();
 			while (dt.isBefore(end) || dt.isEqual(end)) {
-				hours.add(getMinCountsForHour(name, dt));
+				query.addBucket(getMinCountsKeyForHour(name, dt), 60);
 				dt.add(step);
 			}
-			counts = MetricUtils.concatArrays(hours, interval.getStart().getMinuteOfHour(),
-					interval.toPeriod().toStandardMinutes().getMinutes() + 1);
+			query.unitOffset = false;
+			query.start = interval.getStart().getMinuteOfHour();
+			query.length = interval.toPeriod().toStandardMinutes().getMinutes() + 1;
 
 		}
 		else if (resolution == AggregateCountResolution.hour) {
 			DateTime cursor = new DateTime(c.dayOfMonth().roundFloor(interval.getStart().getMillis()));
-			List<long[]> days = new ArrayList<long[]>();
 			Duration step = Duration.standardHours(24);
 			while (cursor.isBefore(end)) {
-				days.add(getHourCountsForDay(name, cursor));
+				AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, cursor.withTimeAtStartOfDay());
+				query.addBucket(akg.getDayKey(), 24);
 				cursor = cursor.plus(step);
 			}
-
-			counts = MetricUtils.concatArrays(days, interval.getStart().getHourOfDay(),
-					interval.toPeriod().toStandardHours().getHours() + 1);
+			query.unitOffset = false;
+			query.start = interval.getStart().getHourOfDay();
+			query.length = interval.toPeriod().toStandardHours().getHours() + 1;
 
 		}
 		else if (resolution == AggregateCountResolution.day) {
@@ -180,84 +286,86 @@ public class RedisAggregateCounterRepository extends RedisCounterRepository impl
 			DateTime endDay = new DateTime(c.dayOfYear().roundFloor(end.plusDays(1).getMillis()));
 			int nDays = Days.daysBetween(startDay, endDay).getDays();
 			DateTime cursor = new DateTime(c.monthOfYear().roundFloor(interval.getStart().getMillis()));
-			List<long[]> months = new ArrayList<long[]>();
 			DateTime endMonth = new DateTime(c.monthOfYear().roundCeiling(interval.getEnd().plusMonths(1).getMillis()));
 			while (cursor.isBefore(endMonth)) {
-				months.add(getDayCountsForMonth(name, cursor));
+				AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, cursor.withTimeAtStartOfDay());
+				// Days in this month
+				query.addBucket(akg.getMonthKey(), cursor.dayOfMonth().getMaximumValue());
 				cursor = cursor.plusMonths(1);
 			}
-
-			counts = MetricUtils.concatArrays(months, interval.getStart().getDayOfMonth() - 1, nDays);
+			query.unitOffset = true;
+			query.start = interval.getStart().getDayOfMonth() - 1;
+			query.length = nDays;
 		}
 		else if (resolution == AggregateCountResolution.month) {
 			DateTime startMonth = new DateTime(c.monthOfYear().roundFloor(interval.getStartMillis()));
 			DateTime endMonth = new DateTime(c.monthOfYear().roundFloor(end.plusMonths(1).getMillis()));
 			int nMonths = Months.monthsBetween(startMonth, endMonth).getMonths();
 			DateTime cursor = new DateTime(c.year().roundFloor(interval.getStartMillis()));
-			List<long[]> years = new ArrayList<long[]>();
 			DateTime endYear = new DateTime(c.year().roundCeiling(interval.getEnd().plusYears(1).getMillis()));
 			while (cursor.isBefore(endYear)) {
-				years.add(getMonthCountsForYear(name, cursor));
+				AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, cursor);
+				// Months in this year
+				query.addBucket(akg.getYearKey(), cursor.monthOfYear().getMaximumValue());
 				cursor = cursor.plusYears(1);
 			}
-
-			counts = MetricUtils.concatArrays(years, interval.getStart().getMonthOfYear() - 1, nMonths);
+			query.unitOffset = true;
+			query.start = interval.getStart().getMonthOfYear() - 1;
+			query.length = nMonths;
 		}
 		else if (resolution == AggregateCountResolution.year) {
 			DateTime startYear = new DateTime(interval.getStart().getYear(), 1, 1, 0, 0);
 			DateTime endYear = new DateTime(end.getYear() + 1, 1, 1, 0, 0);
-			int nYears = Years.yearsBetween(startYear, endYear).getYears();
-			Map<String, Long> yearCounts = getYearCounts(name);
-			counts = new long[nYears];
-
-			for (int i = 0; i < nYears; i++) {
-				int year = startYear.plusYears(i).getYear();
-				Long count = yearCounts.get(Integer.toString(year));
-				if (count == null) {
-					count = 0L;
-				}
-				counts[i] = count;
-			}
+			AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, new DateTime());
+			query.addBucket(akg.getYearsKey(), 0);
+			query.start = startYear.getYear();
+			query.length = Years.yearsBetween(startYear, endYear).getYears();
 		}
 		else {
 			throw new IllegalStateException("Shouldn't happen. Unhandled resolution: " + resolution);
 		}
-		return new AggregateCount(name, interval, counts, resolution);
+		return query;
 	}
 
-	private Map<String, Long> getYearCounts(String name) {
-		AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, new DateTime());
-		return getEntries(akg.getYearsKey());
-	}
-
-	private long[] getMonthCountsForYear(String name, DateTime year) {
-		AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, year);
-		return convertToArray(getEntries(akg.getYearKey()), year.monthOfYear().getMaximumValue(), true); // Months in this year
-	}
-
-	private long[] getDayCountsForMonth(String name, DateTime month) {
-		AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, month.withTimeAtStartOfDay());
-		return convertToArray(getEntries(akg.getMonthKey()), month.dayOfMonth().getMaximumValue(), true); // Days in this month
-	}
-
-	private long[] getHourCountsForDay(String name, DateTime day) {
-		AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, day.withTimeAtStartOfDay());
-		return convertToArray(getEntries(akg.getDayKey()), 24, false);
-	}
-
-	private long[] getMinCountsForHour(String name, ReadableDateTime dateTime) {
-		return getMinCountsForHour(name, dateTime.getYear(), dateTime.getMonthOfYear(), dateTime.getDayOfMonth(),
-				dateTime.getHourOfDay());
+	/**
+	 * Turns the hashes read for the given query (consumed from {@code hashes}) into an {@link AggregateCount}.
+	 */
+	private AggregateCount assembleCounts(CountsQuery query, Iterator<Object> hashes) {
+		long[] counts;
+		if (query.resolution == AggregateCountResolution.year) {
+			Map<String, Long> yearCounts = toCounts(hashes.next());
+			counts = new long[query.length];
+			for (int i = 0; i < query.length; i++) {
+				Long count = yearCounts.get(Integer.toString(query.start + i));
+				counts[i] = count == null ? 0L : count;
+			}
+		}
+		else {
+			List<long[]> buckets = new ArrayList<long[]>(query.sizes.size());
+			for (int size : query.sizes) {
+				buckets.add(convertToArray(toCounts(hashes.next()), size, query.unitOffset));
+			}
+			counts = MetricUtils.concatArrays(buckets, query.start, query.length);
+		}
+		return new AggregateCount(query.name, query.interval, counts, query.resolution);
 	}
 
-	private long[] getMinCountsForHour(String name, int year, int month, int day, int hour) {
-		DateTime dt = new DateTime().withYear(year).withMonthOfYear(month).withDayOfMonth(day).withHourOfDay(hour);
+	private String getMinCountsKeyForHour(String name, ReadableDateTime dateTime) {
+		DateTime dt = new DateTime().withYear(dateTime.getYear()).withMonthOfYear(dateTime.getMonthOfYear())
+				.withDayOfMonth(dateTime.getDayOfMonth()).withHourOfDay(dateTime.getHourOfDay());
 		AggregateKeyGenerator akg = new AggregateKeyGenerator(getPrefix(), name, dt);
-		return convertToArray(getEntries(akg.getHourKey()), 60, false);
+		return akg.getHourKey();
 	}
 
-	private Map<String, Long> getEntries(String key) {
-		return hashOperations.entries(key);
+	/**
+	 * Parse a hash as returned by a pipelined {@code HGETALL}.
+	 */
+	private Map<String, Long> toCounts(Object hash) {
+		Map<String, Long> counts = new HashMap<String, Long>();
+		for (Map.Entry<?, ?> entry : ((Map<?, ?>) hash).entrySet()) {
+			counts.put(entry.getKey().toString(), Long.valueOf(entry.getValue().toString()));
+		}
+		return counts;
 	}
 
 	/**
@@ -283,4 +391,38 @@ public class RedisAggregateCounterRepository extends RedisCounterRepository impl
 		otherKeys.add(metricMetaKey);
 		redisOperations.delete(otherKeys);
 	}
+
+	/**
+	 * The hashes to read to answer a {@code getCounts()} query, and how to stitch them together.
+	 */
+	private static final class CountsQuery {
+
+		private final String name;
+
+		private final Interval interval;
+
+		private final AggregateCountResolution resolution;
+
+		private final List<String> keys = new ArrayList<String>();
+
+		private final List<Integer> sizes = new ArrayList<Integer>();
+
+		private boolean unitOffset;
+
+		private int start;
+
+		private int length;
+
+		private CountsQuery(String name, Interval interval, AggregateCountResolution resolution) {
+			this.name = name;
+			this.interval = interval;
+			this.resolution = resolution;
+		}
+
+		private void addBucket(String key, int size) {
+			keys.add(key);
+			sizes.add(size);
+		}
+
+	}
 }
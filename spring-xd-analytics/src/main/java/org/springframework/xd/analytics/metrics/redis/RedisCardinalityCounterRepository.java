@@ -0,0 +1,324 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.retry.RetryOperations;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.xd.analytics.metrics.core.AggregateCount;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounter;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounterRepository;
+
+/**
+ * Redis implementation of {@link CardinalityCounterRepository}, relying on the native HyperLogLog support of Redis
+ * ({@code PFADD} and {@code PFCOUNT}, available since Redis 2.8.9).
+ *
+ * <p>Each counter is made of a key holding all values ever seen, plus one key per minute, hour and day bucket which
+ * expires once it falls out of retention. Adding a value takes a single pipelined round trip. Distinct counts over
+ * an interval are computed server side by {@code PFCOUNT}ing the keys of all the buckets it covers.</p>
+ *
+ * <p>Bucket keys are separated from the counter name by {@value #KEY_SEPARATOR}, which counter names can't contain,
+ * so that the buckets of different counters never collide. The bucket keys of each counter are tracked in a sorted
+ * set, scored by expiry time, so that deleting a counter does not need to scan the key space.</p>
+ */
+public class RedisCardinalityCounterRepository implements CardinalityCounterRepository {
+
+	/**
+	 * Separates the counter name from the rest of its bucket and index keys. Not allowed in counter names.
+	 */
+	static final char KEY_SEPARATOR = '|';
+
+	private static final AggregateCountResolution[] RESOLUTIONS = { AggregateCountResolution.minute,
+		AggregateCountResolution.hour, AggregateCountResolution.day };
+
+	private final String metricPrefix;
+
+	private final String namesKey;
+
+	private final StringRedisRetryTemplate redisTemplate;
+
+	private volatile int minutesRetained = 1440;
+
+	private volatile int hoursRetained = 720;
+
+	private volatile int daysRetained = 366;
+
+	public RedisCardinalityCounterRepository(RedisConnectionFactory connectionFactory,
+			RetryOperations retryOperations) {
+		this(connectionFactory, "cardinalitycounters.", retryOperations);
+	}
+
+	public RedisCardinalityCounterRepository(RedisConnectionFactory connectionFactory, String metricPrefix,
+			RetryOperations retryOperations) {
+		Assert.notNull(connectionFactory);
+		Assert.hasText(metricPrefix, "metric prefix cannot be empty");
+		this.metricPrefix = metricPrefix;
+		this.namesKey = "metric_meta." + StringUtils.trimTrailingCharacter(metricPrefix, '.');
+		redisTemplate = new StringRedisRetryTemplate(connectionFactory, retryOperations);
+		// avoids proxy
+		redisTemplate.setExposeConnection(true);
+		redisTemplate.afterPropertiesSet();
+	}
+
+	/**
+	 * Set the number of per minute buckets retained for each counter.
+	 */
+	public void setMinutesRetained(int minutesRetained) {
+		Assert.isTrue(minutesRetained > 0, "minutesRetained must be strictly positive");
+		this.minutesRetained = minutesRetained;
+	}
+
+	/**
+	 * Set the number of per hour buckets retained for each counter.
+	 */
+	public void setHoursRetained(int hoursRetained) {
+		Assert.isTrue(hoursRetained > 0, "hoursRetained must be strictly positive");
+		this.hoursRetained = hoursRetained;
+	}
+
+	/**
+	 * Set the number of per day buckets retained for each counter.
+	 */
+	public void setDaysRetained(int daysRetained) {
+		Assert.isTrue(daysRetained > 0, "daysRetained must be strictly positive");
+		this.daysRetained = daysRetained;
+	}
+
+	@Override
+	public void add(String name, String value) {
+		add(name, value, new DateTime());
+	}
+
+	@Override
+	public void add(final String name, final String value, DateTime dateTime) {
+		assertValidName(name);
+		Assert.notNull(value, "value cannot be null");
+		final long nowSeconds = System.currentTimeMillis() / 1000L;
+		final DateTime[] buckets = new DateTime[RESOLUTIONS.length];
+		for (int i = 0; i < RESOLUTIONS.length; i++) {
+			buckets[i] = RESOLUTIONS[i].floor(dateTime);
+		}
+		redisTemplate.executePipelined(new RedisCallback<Object>() {
+
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				StringRedisConnection stringConnection = (StringRedisConnection) connection;
+				stringConnection.pfAdd(getTotalKey(name), value);
+				String indexKey = getIndexKey(name);
+				long maxTtl = 0L;
+				for (int i = 0; i < RESOLUTIONS.length; i++) {
+					// Keep the bucket until it falls out of retention
+					DateTime expiry = buckets[i].withPeriodAdded(RESOLUTIONS[i].unitPeriod, retained(RESOLUTIONS[i]));
+					long ttl = expiry.getMillis() / 1000L - nowSeconds;
+					if (ttl > 0L) {
+						String bucketKey = getBucketKey(name, RESOLUTIONS[i], buckets[i]);
+						stringConnection.pfAdd(bucketKey, value);
+						stringConnection.expire(bucketKey, ttl);
+						stringConnection.zAdd(indexKey, nowSeconds + ttl, bucketKey);
+						maxTtl = Math.max(maxTtl, ttl);
+					}
+				}
+				if (maxTtl > 0L) {
+					// Forget about the buckets that have expired, and expire the index with the last of them
+					stringConnection.zRemRangeByScore(indexKey, 0, nowSeconds);
+					stringConnection.expire(indexKey, maxTtl);
+				}
+				stringConnection.sAdd(namesKey, name);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public long countDistinct(String name, Interval interval, AggregateCountResolution resolution) {
+		retained(resolution);
+		List<String> keys = new ArrayList<String>();
+		DateTime end = interval.getEnd();
+		for (DateTime when = resolution.floor(interval.getStart()); !when.isAfter(end); when = when.plus(resolution.unitPeriod)) {
+			keys.add(getBucketKey(name, resolution, when));
+		}
+		Long count = redisTemplate.opsForHyperLogLog().size(keys.toArray(new String[keys.size()]));
+		return count == null ? 0L : count;
+	}
+
+	@Override
+	public AggregateCount getCounts(final String name, Interval interval, final AggregateCountResolution resolution) {
+		retained(resolution);
+		final List<String> keys = new ArrayList<String>();
+		DateTime end = interval.getEnd();
+		for (DateTime when = interval.getStart(); !when.isAfter(end); when = when.plus(resolution.unitPeriod)) {
+			keys.add(getBucketKey(name, resolution, resolution.floor(when)));
+		}
+		List<Object> results = redisTemplate.executePipelined(new RedisCallback<Object>() {
+
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				StringRedisConnection stringConnection = (StringRedisConnection) connection;
+				for (String key : keys) {
+					stringConnection.pfCount(key);
+				}
+				return null;
+			}
+		});
+		long[] counts = new long[results.size()];
+		for (int i = 0; i < counts.length; i++) {
+			Object result = results.get(i);
+			counts[i] = result == null ? 0L : ((Number) result).longValue();
+		}
+		return new AggregateCount(name, interval, counts, resolution);
+	}
+
+	/**
+	 * Creates an empty counter. As values are not retained, the estimate held by the given counter can't be restored.
+	 */
+	@Override
+	public <S extends CardinalityCounter> S save(S counter) {
+		assertValidName(counter.getName());
+		delete(counter.getName());
+		redisTemplate.opsForSet().add(namesKey, counter.getName());
+		return counter;
+	}
+
+	@Override
+	public <S extends CardinalityCounter> Iterable<S> save(Iterable<S> counters) {
+		List<S> results = new ArrayList<S>();
+		for (S c : counters) {
+			results.add(save(c));
+		}
+		return results;
+	}
+
+	@Override
+	public void delete(String name) {
+		Assert.notNull(name, "The name of the counter must not be null");
+		String indexKey = getIndexKey(name);
+		List<String> keys = new ArrayList<String>();
+		Set<String> bucketKeys = redisTemplate.opsForZSet().range(indexKey, 0, -1);
+		if (bucketKeys != null) {
+			keys.addAll(bucketKeys);
+		}
+		keys.add(indexKey);
+		keys.add(getTotalKey(name));
+		redisTemplate.delete(keys);
+		redisTemplate.opsForSet().remove(namesKey, name);
+	}
+
+	@Override
+	public void delete(CardinalityCounter counter) {
+		Assert.notNull(counter, "The counter must not be null");
+		delete(counter.getName());
+	}
+
+	@Override
+	public void delete(Iterable<? extends CardinalityCounter> counters) {
+		for (CardinalityCounter c : counters) {
+			delete(c);
+		}
+	}
+
+	@Override
+	public CardinalityCounter findOne(String name) {
+		Assert.notNull(name, "The name of the counter must not be null");
+		if (!exists(name)) {
+			return null;
+		}
+		return new CardinalityCounter(name, redisTemplate.opsForHyperLogLog().size(getTotalKey(name)));
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return redisTemplate.opsForSet().isMember(namesKey, name);
+	}
+
+	@Override
+	public List<CardinalityCounter> findAll() {
+		return findAll(redisTemplate.opsForSet().members(namesKey));
+	}
+
+	@Override
+	public List<CardinalityCounter> findAll(Iterable<String> names) {
+		List<CardinalityCounter> results = new ArrayList<CardinalityCounter>();
+		for (String name : names) {
+			CardinalityCounter c = findOne(name);
+			if (c != null) {
+				results.add(c);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public long count() {
+		return redisTemplate.opsForSet().size(namesKey);
+	}
+
+	@Override
+	public void deleteAll() {
+		Set<String> names = redisTemplate.opsForSet().members(namesKey);
+		if (names != null) {
+			for (String name : names) {
+				delete(name);
+			}
+		}
+		redisTemplate.delete(namesKey);
+	}
+
+	private int retained(AggregateCountResolution resolution) {
+		switch (resolution) {
+			case minute:
+				return minutesRetained;
+			case hour:
+				return hoursRetained;
+			case day:
+				return daysRetained;
+			default:
+				throw new IllegalArgumentException("Distinct counts are not tracked per " + resolution);
+		}
+	}
+
+	private String getTotalKey(String name) {
+		return metricPrefix + name;
+	}
+
+	private String getBucketKey(String name, AggregateCountResolution resolution, DateTime bucket) {
+		return metricPrefix + name + KEY_SEPARATOR + resolution + "." + bucket.getMillis();
+	}
+
+	private String getIndexKey(String name) {
+		return metricPrefix + name + KEY_SEPARATOR + "buckets";
+	}
+
+	private void assertValidName(String name) {
+		Assert.notNull(name, "The name of the counter must not be null");
+		Assert.isTrue(name.indexOf(KEY_SEPARATOR) == -1, "The name of the counter must not contain '"
+				+ KEY_SEPARATOR + "'");
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,8 +16,12 @@
 
 package org.springframework.xd.analytics.metrics.redis;
 
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 import org.springframework.retry.RetryOperations;
 import org.springframework.util.Assert;
@@ -174,6 +178,27 @@ public class RedisFieldValueCounterRepository implements FieldValueCounterReposi
 		redisTemplate.boundZSetOps(getMetricKey(counterName)).incrementScore(fieldName, score);
 	}
 
+	/**
+	 * Applies all the given increments in a single MULTI/EXEC transaction, so that either all of them or none are
+	 * applied and a caller may safely retry the whole batch when this fails.
+	 */
+	@Override
+	public void increment(String counterName, final Map<String, Double> increments) {
+		final String metricKey = getMetricKey(counterName);
+		redisTemplate.execute(new RedisCallback<Object>() {
+
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				StringRedisConnection stringConnection = (StringRedisConnection) connection;
+				stringConnection.multi();
+				for (Map.Entry<String, Double> entry : increments.entrySet()) {
+					stringConnection.zIncrBy(metricKey, entry.getValue(), entry.getKey());
+				}
+				return stringConnection.exec();
+			}
+		});
+	}
+
 	@Override
 	public void decrement(String counterName, String fieldName) {
 		redisTemplate.boundZSetOps(getMetricKey(counterName)).incrementScore(fieldName, -1.0);
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.redis;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.retry.RetryOperations;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.xd.analytics.metrics.core.Histogram;
+import org.springframework.xd.analytics.metrics.core.HistogramBuckets;
+import org.springframework.xd.analytics.metrics.core.HistogramRepository;
+
+/**
+ * Redis implementation of {@link HistogramRepository}.
+ *
+ * <p>Each minute of values is stored in its own hash, mapping {@link HistogramBuckets} indexes to counts, which
+ * expires once it falls out of the widest window that can be queried. Recording a value and reading a window each
+ * take a single pipelined round trip. The names of existing histograms are tracked in a separate set.</p>
+ */
+public class RedisHistogramRepository implements HistogramRepository {
+
+	private final String metricPrefix;
+
+	private final String namesKey;
+
+	private final StringRedisRetryTemplate redisTemplate;
+
+	private volatile int maxWindow = 60;
+
+	private volatile int defaultWindow = 5;
+
+	public RedisHistogramRepository(RedisConnectionFactory connectionFactory, RetryOperations retryOperations) {
+		this(connectionFactory, "histograms.", retryOperations);
+	}
+
+	public RedisHistogramRepository(RedisConnectionFactory connectionFactory, String metricPrefix,
+			RetryOperations retryOperations) {
+		Assert.notNull(connectionFactory);
+		Assert.hasText(metricPrefix, "metric prefix cannot be empty");
+		this.metricPrefix = metricPrefix;
+		this.namesKey = "metric_meta." + StringUtils.trimTrailingCharacter(metricPrefix, '.');
+		redisTemplate = new StringRedisRetryTemplate(connectionFactory, retryOperations);
+		// avoids proxy
+		redisTemplate.setExposeConnection(true);
+		redisTemplate.afterPropertiesSet();
+	}
+
+	/**
+	 * Set the number of minutes of values retained for each histogram, which is also the widest window that can be
+	 * queried.
+	 */
+	public void setMaxWindow(int maxWindow) {
+		Assert.isTrue(maxWindow > 0, "maxWindow must be strictly positive");
+		this.maxWindow = maxWindow;
+	}
+
+	@Override
+	public int getMaxWindow() {
+		return maxWindow;
+	}
+
+	/**
+	 * Set the width of the window, in minutes, used by {@link #findOne(String)} and {@link #findAll()}.
+	 */
+	public void setDefaultWindow(int defaultWindow) {
+		Assert.isTrue(defaultWindow > 0, "defaultWindow must be strictly positive");
+		this.defaultWindow = defaultWindow;
+	}
+
+	@Override
+	public void recordValue(String name, long value) {
+		recordValue(name, value, new DateTime());
+	}
+
+	@Override
+	public void recordValue(String name, long value, DateTime dateTime) {
+		HistogramBuckets values = new HistogramBuckets();
+		values.record(value);
+		record(name, values, minuteOf(dateTime.getMillis()));
+	}
+
+	@Override
+	public void recordValues(String name, HistogramBuckets values) {
+		record(name, values, minuteOf(System.currentTimeMillis()));
+	}
+
+	private void record(final String name, final HistogramBuckets values, long minute) {
+		Assert.notNull(name, "The name of the histogram must not be null");
+		final String sliceKey = getSliceKey(name, minute);
+		// Keep the slice until it can't be part of any window anymore
+		final long ttl = (minute + maxWindow + 1) * DateTimeConstants.SECONDS_PER_MINUTE
+				- System.currentTimeMillis() / 1000L;
+		if (ttl <= 0L || values.isEmpty()) {
+			return;
+		}
+		redisTemplate.executePipelined(new RedisCallback<Object>() {
+
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				StringRedisConnection stringConnection = (StringRedisConnection) connection;
+				for (Map.Entry<Integer, Long> entry : values.getCounts().entrySet()) {
+					stringConnection.hIncrBy(sliceKey, entry.getKey().toString(), entry.getValue());
+				}
+				stringConnection.expire(sliceKey, ttl);
+				stringConnection.sAdd(namesKey, name);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public Histogram findOne(String name, int window) {
+		Assert.notNull(name, "The name of the histogram must not be null");
+		Assert.isTrue(window > 0 && window <= maxWindow, "window must be between 1 and " + maxWindow);
+		if (!exists(name)) {
+			return null;
+		}
+		final List<String> sliceKeys = getSliceKeys(name, minuteOf(System.currentTimeMillis()), window);
+		List<Object> slices = redisTemplate.executePipelined(new RedisCallback<Object>() {
+
+			@Override
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				StringRedisConnection stringConnection = (StringRedisConnection) connection;
+				for (String sliceKey : sliceKeys) {
+					stringConnection.hGetAll(sliceKey);
+				}
+				return null;
+			}
+		});
+
+		HistogramBuckets buckets = new HistogramBuckets();
+		for (Object slice : slices) {
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) slice).entrySet()) {
+				buckets.add(Integer.parseInt(entry.getKey().toString()), Long.parseLong(entry.getValue().toString()));
+			}
+		}
+		return new Histogram(name, window, buckets);
+	}
+
+	@Override
+	public Histogram findOne(String name) {
+		return findOne(name, Math.min(defaultWindow, maxWindow));
+	}
+
+	@Override
+	public void reset(String name) {
+		Assert.notNull(name, "The name of the histogram must not be null");
+		redisTemplate.delete(getSliceKeys(name, minuteOf(System.currentTimeMillis()), maxWindow + 1));
+	}
+
+	/**
+	 * Replaces any previous values with the ones held by the given histogram, recorded at the current time.
+	 */
+	@Override
+	public <S extends Histogram> S save(S histogram) {
+		reset(histogram.getName());
+		redisTemplate.opsForSet().add(namesKey, histogram.getName());
+		recordValues(histogram.getName(), histogram.getBuckets());
+		return histogram;
+	}
+
+	@Override
+	public <S extends Histogram> Iterable<S> save(Iterable<S> histograms) {
+		List<S> results = new ArrayList<S>();
+		for (S h : histograms) {
+			results.add(save(h));
+		}
+		return results;
+	}
+
+	@Override
+	public void delete(String name) {
+		reset(name);
+		redisTemplate.opsForSet().remove(namesKey, name);
+	}
+
+	@Override
+	public void delete(Histogram histogram) {
+		Assert.notNull(histogram, "The histogram must not be null");
+		delete(histogram.getName());
+	}
+
+	@Override
+	public void delete(Iterable<? extends Histogram> histograms) {
+		for (Histogram h : histograms) {
+			delete(h);
+		}
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return redisTemplate.opsForSet().isMember(namesKey, name);
+	}
+
+	@Override
+	public List<Histogram> findAll() {
+		List<Histogram> results = new ArrayList<Histogram>();
+		for (String name : redisTemplate.opsForSet().members(namesKey)) {
+			Histogram h = findOne(name);
+			if (h != null) {
+				results.add(h);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public Iterable<Histogram> findAll(Iterable<String> names) {
+		List<Histogram> results = new ArrayList<Histogram>();
+		for (String name : names) {
+			Histogram h = findOne(name);
+			if (h != null) {
+				results.add(h);
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public long count() {
+		return redisTemplate.opsForSet().size(namesKey);
+	}
+
+	@Override
+	public void deleteAll() {
+		// TODO asking for keys is not recommended. See http://redis.io/commands/keys
+		Set<String> keys = new HashSet<String>(redisTemplate.keys(metricPrefix + "*"));
+		keys.add(namesKey);
+		redisTemplate.delete(keys);
+	}
+
+	private String getSliceKey(String name, long minute) {
+		return metricPrefix + name + "." + minute;
+	}
+
+	private List<String> getSliceKeys(String name, long lastMinute, int window) {
+		List<String> keys = new ArrayList<String>(window);
+		for (long minute = lastMinute - window + 1; minute <= lastMinute; minute++) {
+			keys.add(getSliceKey(name, minute));
+		}
+		return keys;
+	}
+
+	private static long minuteOf(long millis) {
+		long minute = millis / DateTimeConstants.MILLIS_PER_MINUTE;
+		return millis < 0 && millis % DateTimeConstants.MILLIS_PER_MINUTE != 0 ? minute - 1 : minute;
+	}
+
+}
@@ -16,17 +16,22 @@
 
 package org.springframework.xd.analytics.metrics.redis;
 
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.retry.RetryCallback;
 import org.springframework.retry.RetryContext;
 import org.springframework.retry.RetryOperations;
 import org.springframework.retry.backoff.ExponentialBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.xd.analytics.metrics.core.MetricUtils;
 import org.springframework.xd.analytics.metrics.core.RichGauge;
@@ -38,6 +43,10 @@ import java.util.List;
 /**
  * Repository for rich-gauges backed by Redis.
  *
+ * <p>By default, values are recorded by a Lua script that updates the gauge atomically on the server, in a single
+ * round trip. Setting {@code useScript} to {@code false} falls back to an optimistic WATCH/MULTI/EXEC transaction
+ * (retried on conflicts), for Redis servers that do not support scripting.</p>
+ *
  * @author Luke Taylor
  * @author Eric Bottard
  */
@@ -46,8 +55,12 @@ public class RedisRichGaugeRepository extends
 
 	private static final String ZERO = serialize(new RichGauge("ZERO"));
 
+	private static final RedisScript<Long> RECORD_VALUE_SCRIPT = createRecordValueScript();
+
 	private RetryTemplate retryTemplate;
 
+	private volatile boolean useScript = true;
+
 	public RedisRichGaugeRepository(RedisConnectionFactory connectionFactory, RetryOperations retryOperations) {
 		super(connectionFactory, "richgauges.", String.class, retryOperations);
 
@@ -62,6 +75,14 @@ public class RedisRichGaugeRepository extends
 
 	}
 
+	private static RedisScript<Long> createRecordValueScript() {
+		DefaultRedisScript<Long> script = new DefaultRedisScript<Long>();
+		script.setScriptSource(new ResourceScriptSource(new ClassPathResource("record-rich-gauge-value.lua",
+				RedisRichGaugeRepository.class)));
+		script.setResultType(Long.class);
+		return script;
+	}
+
 	private static String serialize(RichGauge g) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(Double.toString(g.getValue())).append(" ");
@@ -94,8 +115,16 @@ public class RedisRichGaugeRepository extends
 
 	@Override
 	public void recordValue(final String name, final double value, final double alpha) {
+		Assert.isTrue(alpha == -1 || (alpha > 0.0 && alpha < 1.0),
+				"Smoothing constant must be between 0 and 1, or -1 to use arithmetic mean");
 		final String key = getMetricKey(name);
 
+		if (useScript) {
+			getRedisOperations().execute(RECORD_VALUE_SCRIPT, Collections.singletonList(key),
+					Double.toString(value), Double.toString(alpha));
+			return;
+		}
+
 		retryTemplate.execute(new RetryCallback<Void, RuntimeException>() {
 
 			@Override
@@ -129,6 +158,13 @@ public class RedisRichGaugeRepository extends
 		this.retryTemplate = retryTemplate;
 	}
 
+	/**
+	 * Whether to record values using a server side script (the default), or an optimistic transaction.
+	 */
+	public void setUseScript(boolean useScript) {
+		this.useScript = useScript;
+	}
+
 	@Override
 	public void reset(String name) {
 		getValueOperations().set(getMetricKey(name), ZERO);
@@ -117,6 +117,9 @@ public abstract class AbstractRedisRepository<T, ID extends Serializable & Compa
 		return result;
 	}
 
+	/**
+	 * Fetches all the entities using a single {@code MGET}. Ids that do not match an entity are ignored.
+	 */
 	@Override
 	public Iterable<T> findAll(Iterable<ID> ids) {
 		List<String> redisKeys = new ArrayList<String>();
@@ -126,9 +129,15 @@ public abstract class AbstractRedisRepository<T, ID extends Serializable & Compa
 		Iterator<String> keysIt = redisKeys.iterator();
 
 		List<T> result = new ArrayList<T>(redisKeys.size());
+		if (redisKeys.isEmpty()) {
+			return result;
+		}
 		List<String> values = redisOperations.opsForValue().multiGet(redisKeys);
 		for (String v : values) {
-			result.add(deserialize(idFromRedisKey(keysIt.next()), v));
+			String redisKey = keysIt.next();
+			if (v != null) {
+				result.add(deserialize(idFromRedisKey(redisKey), v));
+			}
 		}
 		return result;
 	}
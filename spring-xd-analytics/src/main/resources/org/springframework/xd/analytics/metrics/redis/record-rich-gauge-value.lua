@@ -0,0 +1,39 @@
+-- Atomically records a value into a rich gauge, mirroring RichGauge.set().
+-- The gauge is stored as "value alpha average max min count".
+--
+-- KEYS[1] the rich gauge key
+-- ARGV[1] the value to record
+-- ARGV[2] the smoothing constant, or -1 to use the arithmetic mean
+-- Returns the new count.
+
+local value = tonumber(ARGV[1])
+local alpha = tonumber(ARGV[2])
+
+local previous, average, max, min, count = 0.0, 0.0, 0.0, 0.0, 0
+local current = redis.call('GET', KEYS[1])
+if current then
+	local parts = {}
+	for token in string.gmatch(current, '%S+') do
+		parts[#parts + 1] = tonumber(token)
+	end
+	previous, average, max, min, count = parts[1], parts[3], parts[4], parts[5], parts[6]
+end
+
+if count == 0 then
+	max = value
+	min = value
+elseif value > max then
+	max = value
+elseif value < min then
+	min = value
+end
+
+if alpha > 0 and count > 0 then
+	average = alpha * previous + (1 - alpha) * average
+else
+	average = (average * count + value) / (count + 1)
+end
+count = count + 1
+
+redis.call('SET', KEYS[1], string.format('%.17g %.17g %.17g %.17g %.17g %d', value, alpha, average, max, min, count))
+return count
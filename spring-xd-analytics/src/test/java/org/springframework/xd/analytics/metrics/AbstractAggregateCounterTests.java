@@ -16,8 +16,14 @@
 
 package org.springframework.xd.analytics.metrics;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
 import org.joda.time.Interval;
@@ -60,6 +66,42 @@ public abstract class AbstractAggregateCounterTests {
 		assertEquals(67, counts[66]);
 	}
 
+	@Test
+	public void testBatchIncrement() throws Exception {
+		final DateTime start = new DateTime(2013, 6, 28, 23, 58, 0, 0);
+		Map<Long, Long> amounts = new LinkedHashMap<Long, Long>();
+		amounts.put(start.getMillis(), 1L);
+		amounts.put(start.plusMinutes(1).getMillis(), 2L);
+		amounts.put(start.plusMinutes(2).getMillis(), 3L);
+		amounts.put(start.plusMinutes(3).getMillis(), 4L);
+
+		assertEquals(10L, aggregateCounterRepository.increment(counterName, amounts));
+		aggregateCounterRepository.increment(counterName, 5L, start.plusMinutes(3));
+
+		long[] counts = aggregateCounterRepository.getCounts(counterName, new Interval(start, start.plusMinutes(3)),
+				AggregateCountResolution.minute).getCounts();
+		assertArrayEquals(new long[] { 1, 2, 3, 9 }, counts);
+		counts = aggregateCounterRepository.getCounts(counterName, 2, start.plusMinutes(3),
+				AggregateCountResolution.day).getCounts();
+		assertArrayEquals(new long[] { 3, 12 }, counts);
+	}
+
+	@Test
+	public void testCountsOfSeveralCounters() throws Exception {
+		final DateTime start = new DateTime(2013, 6, 28, 23, 58, 0, 0);
+		aggregateCounterRepository.increment(counterName, 1L, start);
+		aggregateCounterRepository.increment(counterName, 2L, start.plusMinutes(3));
+		aggregateCounterRepository.increment("other", 5L, start.plusMinutes(1));
+
+		List<AggregateCount> counts = aggregateCounterRepository.getCounts(Arrays.asList(counterName, "other"),
+				new Interval(start, start.plusMinutes(3)), AggregateCountResolution.minute);
+		assertEquals(2, counts.size());
+		assertEquals(counterName, counts.get(0).getName());
+		assertArrayEquals(new long[] { 1, 0, 0, 2 }, counts.get(0).getCounts());
+		assertEquals("other", counts.get(1).getName());
+		assertArrayEquals(new long[] { 0, 5, 0, 0 }, counts.get(1).getCounts());
+	}
+
 	@Test
 	public void testDayCounts() throws Exception {
 		final DateTime start = new DateTime(2013, 11, 28, 23, 0);
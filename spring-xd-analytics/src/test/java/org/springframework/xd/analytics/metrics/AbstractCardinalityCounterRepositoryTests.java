@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.metrics;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.junit.Test;
+
+import org.springframework.xd.analytics.metrics.core.AggregateCount;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounterRepository;
+
+public abstract class AbstractCardinalityCounterRepositoryTests {
+
+	protected abstract CardinalityCounterRepository createService();
+
+	@Test
+	public void distinctValuesAreCounted() {
+		CardinalityCounterRepository repo = createService();
+		repo.add("test", "a");
+		repo.add("test", "b");
+		repo.add("test", "a");
+
+		assertEquals("test", repo.findOne("test").getName());
+		assertEquals(2L, repo.findOne("test").getValue());
+	}
+
+	@Test
+	public void unknownCounterIsNull() {
+		assertNull(createService().findOne("unknown"));
+	}
+
+	@Test
+	public void countDistinctMergesBuckets() {
+		CardinalityCounterRepository repo = createService();
+		DateTime now = new DateTime();
+		DateTime earlier = now.minusMinutes(30);
+		repo.add("test", "a", earlier);
+		repo.add("test", "b", earlier);
+		repo.add("test", "b", now);
+		repo.add("test", "c", now);
+
+		Interval both = new Interval(earlier, now);
+		assertEquals(3L, repo.countDistinct("test", both, AggregateCountResolution.minute));
+		Interval recent = new Interval(now.minusMinutes(5), now);
+		assertEquals(2L, repo.countDistinct("test", recent, AggregateCountResolution.minute));
+		assertEquals(0L, repo.countDistinct("unknown", recent, AggregateCountResolution.minute));
+	}
+
+	@Test
+	public void countsArePerBucket() {
+		CardinalityCounterRepository repo = createService();
+		DateTime start = AggregateCountResolution.hour.floor(new DateTime()).minusHours(2);
+		repo.add("test", "a", start);
+		repo.add("test", "b", start.plusMinutes(10));
+		repo.add("test", "a", start.plusHours(2));
+
+		AggregateCount counts = repo.getCounts("test", new Interval(start, start.plusHours(2)),
+				AggregateCountResolution.hour);
+		assertArrayEquals(new long[] { 2L, 0L, 1L }, counts.getCounts());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void monthResolutionIsNotSupported() {
+		CardinalityCounterRepository repo = createService();
+		repo.add("test", "a");
+		DateTime now = new DateTime();
+		repo.countDistinct("test", new Interval(now.minusMonths(2), now), AggregateCountResolution.month);
+	}
+
+	@Test
+	public void deleteRemovesCounter() {
+		CardinalityCounterRepository repo = createService();
+		repo.add("test", "a");
+		repo.add("other", "a");
+		assertEquals(2L, repo.count());
+
+		repo.delete("test");
+		assertFalse(repo.exists("test"));
+		assertNull(repo.findOne("test"));
+		assertEquals(1L, repo.count());
+		assertEquals("other", repo.findAll().iterator().next().getName());
+	}
+
+}
@@ -24,6 +24,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -97,6 +98,23 @@ public abstract class AbstractCounterRepositoryTests {
 		assertEquals(0, repo.count());
 	}
 
+	@Test
+	public void findAllByNamesSkipsUnknownCounters() {
+		counterRepository.increment("c1", 3L);
+		counterRepository.increment("c2", 5L);
+
+		Iterable<Counter> counters = counterRepository.findAll(Arrays.asList("c2", "unknown", "c1"));
+		List<Counter> list = new ArrayList<Counter>();
+		for (Counter c : counters) {
+			list.add(c);
+		}
+		assertEquals(2, list.size());
+		assertEquals("c2", list.get(0).getName());
+		assertEquals(5L, list.get(0).getValue());
+		assertEquals("c1", list.get(1).getName());
+		assertEquals(3L, list.get(1).getValue());
+	}
+
 	@Test
 	public void findNonExistentRaisesException() throws Exception {
 		counterRepository.findOne("idontexist");
@@ -47,6 +47,19 @@ public abstract class AbstractFieldValueCounterRepositoryTests {
 
 	private final String mentionsFieldValueCounterName = "mentionsFieldValueCounter";
 
+	@Test
+	public void testBatchIncrement() {
+		Map<String, Double> increments = new HashMap<String, Double>();
+		increments.put("VMW", 3.0D);
+		increments.put("ORCL", 1.0D);
+		fieldValueCounterRepository.increment(tickersFieldValueCounterName, increments);
+		fieldValueCounterRepository.increment(tickersFieldValueCounterName, "VMW");
+
+		Map<String, Double> counts = fieldValueCounterRepository.findOne(tickersFieldValueCounterName).getFieldValueCount();
+		assertThat(counts.get("VMW"), equalTo(4.0));
+		assertThat(counts.get("ORCL"), equalTo(1.0));
+	}
+
 	@Test
 	public void testCrud() {
 		FieldValueCounter counter = new FieldValueCounter(tickersFieldValueCounterName);
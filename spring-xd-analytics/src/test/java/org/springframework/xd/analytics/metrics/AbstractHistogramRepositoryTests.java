@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import org.springframework.xd.analytics.metrics.core.Histogram;
+import org.springframework.xd.analytics.metrics.core.HistogramBuckets;
+import org.springframework.xd.analytics.metrics.core.HistogramRepository;
+
+public abstract class AbstractHistogramRepositoryTests {
+
+	protected abstract HistogramRepository createService();
+
+	@Test
+	public void recordedValuesArePercentiled() {
+		HistogramRepository repo = createService();
+		for (long value = 1; value <= 100; value++) {
+			repo.recordValue("test", value);
+		}
+
+		Histogram h = repo.findOne("test");
+		assertEquals("test", h.getName());
+		assertEquals(100L, h.getCount());
+		assertEquals(1L, h.getMin());
+		assertEquals(100L, h.getMax());
+		assertEquals(50L, h.getValueAtPercentile(50.0D));
+		assertEquals(99L, h.getValueAtPercentile(99.0D));
+	}
+
+	@Test
+	public void unknownHistogramIsNull() {
+		assertNull(createService().findOne("unknown"));
+	}
+
+	@Test
+	public void windowExcludesOlderValues() {
+		HistogramRepository repo = createService();
+		repo.recordValue("test", 1000L, new DateTime().minusMinutes(10));
+		repo.recordValue("test", 5L);
+
+		Histogram recent = repo.findOne("test", 5);
+		assertEquals(5, recent.getWindow());
+		assertEquals(1L, recent.getCount());
+		assertEquals(5L, recent.getMax());
+
+		Histogram wider = repo.findOne("test", 15);
+		assertEquals(2L, wider.getCount());
+		assertEquals(1000L, wider.getValueAtPercentile(100.0D), 1000L * HistogramBuckets.RELATIVE_ACCURACY);
+	}
+
+	@Test
+	public void valuesOlderThanRetentionAreIgnored() {
+		HistogramRepository repo = createService();
+		repo.recordValue("test", 1000L, new DateTime().minusHours(3));
+		repo.recordValue("test", 5L);
+
+		assertEquals(1L, repo.findOne("test", 60).getCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void windowCannotExceedRetention() {
+		HistogramRepository repo = createService();
+		repo.recordValue("test", 5L);
+		repo.findOne("test", 61);
+	}
+
+	@Test
+	public void preAggregatedValuesAreMerged() {
+		HistogramRepository repo = createService();
+		HistogramBuckets values = new HistogramBuckets();
+		values.record(10L, 5L);
+		values.record(20L, 5L);
+		repo.recordValue("test", 30L);
+		repo.recordValues("test", values);
+
+		Histogram h = repo.findOne("test");
+		assertEquals(11L, h.getCount());
+		assertEquals(10L, h.getValueAtPercentile(40.0D));
+		assertEquals(30L, h.getMax());
+	}
+
+	@Test
+	public void resetClearsValues() {
+		HistogramRepository repo = createService();
+		repo.recordValue("test", 5L);
+		repo.reset("test");
+
+		assertTrue(repo.exists("test"));
+		assertEquals(0L, repo.findOne("test").getCount());
+	}
+
+	@Test
+	public void deleteRemovesHistogram() {
+		HistogramRepository repo = createService();
+		repo.recordValue("test", 5L);
+		repo.recordValue("other", 5L);
+		assertEquals(2L, repo.count());
+
+		repo.delete("test");
+		assertFalse(repo.exists("test"));
+		assertNull(repo.findOne("test"));
+		assertEquals(1L, repo.count());
+		assertEquals("other", repo.findAll().iterator().next().getName());
+	}
+
+}
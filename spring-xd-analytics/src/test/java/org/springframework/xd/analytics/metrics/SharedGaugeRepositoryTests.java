@@ -24,6 +24,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
@@ -108,4 +109,21 @@ public abstract class SharedGaugeRepositoryTests {
 		assertEquals(0, repo.count());
 	}
 
+	@Test
+	public void findAllByNamesSkipsUnknownGauges() {
+		gaugeRepository.recordValue("g1", 3L);
+		gaugeRepository.recordValue("g2", 5L);
+
+		List<Gauge> gauges = new ArrayList<Gauge>();
+		for (Gauge g : gaugeRepository.findAll(Arrays.asList("g2", "unknown", "g1"))) {
+			gauges.add(g);
+		}
+		assertEquals(2, gauges.size());
+		assertEquals("g2", gauges.get(0).getName());
+		assertEquals(5L, gauges.get(0).getValue());
+		assertEquals("g1", gauges.get(1).getName());
+		assertEquals(3L, gauges.get(1).getValue());
+		assertTrue(gaugeRepository.exists("g1"));
+	}
+
 }
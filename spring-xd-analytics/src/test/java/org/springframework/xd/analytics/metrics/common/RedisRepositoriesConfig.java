@@ -33,9 +33,11 @@ import org.springframework.retry.backoff.ExponentialBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.xd.analytics.metrics.redis.RedisAggregateCounterRepository;
+import org.springframework.xd.analytics.metrics.redis.RedisCardinalityCounterRepository;
 import org.springframework.xd.analytics.metrics.redis.RedisCounterRepository;
 import org.springframework.xd.analytics.metrics.redis.RedisFieldValueCounterRepository;
 import org.springframework.xd.analytics.metrics.redis.RedisGaugeRepository;
+import org.springframework.xd.analytics.metrics.redis.RedisHistogramRepository;
 import org.springframework.xd.analytics.metrics.redis.RedisRichGaugeRepository;
 
 import java.util.Collections;
@@ -61,6 +63,16 @@ public class RedisRepositoriesConfig {
 		return new RedisRichGaugeRepository(redisConnectionFactory(), retryOperations());
 	}
 
+	@Bean
+	public RedisHistogramRepository redisHistogramRepository() {
+		return new RedisHistogramRepository(redisConnectionFactory(), retryOperations());
+	}
+
+	@Bean
+	public RedisCardinalityCounterRepository redisCardinalityCounterRepository() {
+		return new RedisCardinalityCounterRepository(redisConnectionFactory(), retryOperations());
+	}
+
 	@Bean
 	public RedisGaugeRepository redisGaugeRepository() {
 		return new RedisGaugeRepository(redisConnectionFactory(), retryOperations());
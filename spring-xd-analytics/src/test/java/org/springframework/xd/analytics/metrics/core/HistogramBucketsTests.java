@@ -0,0 +1,105 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.core;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HistogramBucketsTests {
+
+	@Test
+	public void smallValuesAreExact() {
+		for (long value = 0; value < 128; value++) {
+			int index = HistogramBuckets.indexFor(value);
+			assertThat(HistogramBuckets.lowestValueAt(index), equalTo(value));
+			assertThat(HistogramBuckets.highestValueAt(index), equalTo(value));
+		}
+	}
+
+	@Test
+	public void bucketsAreContiguous() {
+		int last = HistogramBuckets.indexFor(Long.MAX_VALUE);
+		for (int index = 0; index < last; index++) {
+			assertThat(HistogramBuckets.lowestValueAt(index + 1), equalTo(HistogramBuckets.highestValueAt(index) + 1));
+		}
+		assertThat(HistogramBuckets.highestValueAt(last), equalTo(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void valuesAreWithinRelativeAccuracy() {
+		Random random = new Random(42L);
+		for (int i = 0; i < 100000; i++) {
+			long value = (long) (random.nextDouble() * 1.0E12);
+			int index = HistogramBuckets.indexFor(value);
+			long lowest = HistogramBuckets.lowestValueAt(index);
+			long highest = HistogramBuckets.highestValueAt(index);
+			assertThat(lowest, lessThanOrEqualTo(value));
+			assertThat(highest, greaterThanOrEqualTo(value));
+			assertTrue(highest - lowest <= value * HistogramBuckets.RELATIVE_ACCURACY);
+		}
+	}
+
+	@Test
+	public void percentiles() {
+		HistogramBuckets buckets = new HistogramBuckets();
+		for (long value = 1; value <= 100; value++) {
+			buckets.record(value);
+		}
+		assertThat(buckets.getTotalCount(), equalTo(100L));
+		assertThat(buckets.getMin(), equalTo(1L));
+		assertThat(buckets.getMax(), equalTo(100L));
+		assertThat(buckets.getValueAtPercentile(50.0D), equalTo(50L));
+		assertThat(buckets.getValueAtPercentile(90.0D), equalTo(90L));
+		assertThat(buckets.getValueAtPercentile(99.0D), equalTo(99L));
+		assertThat(buckets.getValueAtPercentile(99.9D), equalTo(100L));
+		assertThat(buckets.getValueAtPercentile(0.0D), equalTo(1L));
+	}
+
+	@Test
+	public void emptyBucketsReportZero() {
+		HistogramBuckets buckets = new HistogramBuckets();
+		assertTrue(buckets.isEmpty());
+		assertThat(buckets.getValueAtPercentile(99.0D), equalTo(0L));
+		assertThat(buckets.getMax(), equalTo(0L));
+	}
+
+	@Test
+	public void mergeAddsCounts() {
+		HistogramBuckets a = new HistogramBuckets();
+		HistogramBuckets b = new HistogramBuckets();
+		a.record(10L, 3L);
+		b.record(10L);
+		b.record(5000L);
+		a.merge(b);
+		assertThat(a.getTotalCount(), equalTo(5L));
+		assertThat(a.getCounts().get(HistogramBuckets.indexFor(10L)), equalTo(4L));
+		assertThat(new HistogramBuckets(a.getCounts()).getTotalCount(), equalTo(5L));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeValuesAreRejected() {
+		new HistogramBuckets().record(-1L);
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.metrics.core;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HyperLogLogTests {
+
+	@Test
+	public void emptySketchCountsZero() {
+		assertThat(new HyperLogLog().cardinality(), equalTo(0L));
+	}
+
+	@Test
+	public void duplicatesAreIgnored() {
+		HyperLogLog hll = new HyperLogLog();
+		for (int i = 0; i < 10; i++) {
+			hll.offer("a");
+			hll.offer("b");
+			hll.offer("c");
+		}
+		assertThat(hll.cardinality(), equalTo(3L));
+	}
+
+	@Test
+	public void smallCardinalitiesStaySparse() {
+		HyperLogLog hll = new HyperLogLog();
+		for (int i = 0; i < 1000; i++) {
+			hll.offer("value" + i);
+		}
+		assertTrue(hll.isSparse());
+		assertThat((double) hll.cardinality(), closeTo(1000.0D, 10.0D));
+	}
+
+	@Test
+	public void largeCardinalitiesAreWithinError() {
+		HyperLogLog hll = new HyperLogLog();
+		for (int i = 0; i < 100000; i++) {
+			hll.offer("value" + i);
+		}
+		assertFalse(hll.isSparse());
+		// 3 standard errors
+		assertThat((double) hll.cardinality(), closeTo(100000.0D, 100000.0D * 0.0243D));
+	}
+
+	@Test
+	public void mergeEstimatesUnion() {
+		HyperLogLog first = new HyperLogLog();
+		HyperLogLog second = new HyperLogLog();
+		for (int i = 0; i < 50000; i++) {
+			first.offer("value" + i);
+		}
+		for (int i = 25000; i < 75000; i++) {
+			second.offer("value" + i);
+		}
+		HyperLogLog union = new HyperLogLog(first);
+		union.merge(second);
+		assertThat((double) union.cardinality(), closeTo(75000.0D, 75000.0D * 0.0243D));
+		// the copy is independent from the original
+		assertThat((double) first.cardinality(), closeTo(50000.0D, 50000.0D * 0.0243D));
+	}
+
+	@Test
+	public void mergeOfSparseSketchesIsExactForFewValues() {
+		HyperLogLog first = new HyperLogLog();
+		HyperLogLog second = new HyperLogLog();
+		first.offer("a");
+		first.offer("b");
+		second.offer("b");
+		second.offer("c");
+		first.merge(second);
+		assertTrue(first.isSparse());
+		assertThat(first.cardinality(), equalTo(3L));
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.integration;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.memory.InMemoryAggregateCounterRepository;
+
+/**
+ * Tests for {@link AggregateCounterBuffer}.
+ */
+public class AggregateCounterBufferTests {
+
+	private final FailingRepository repo = new FailingRepository();
+
+	@Test
+	public void countsAreKeptWhenWriteFails() {
+		AggregateCounterBuffer buffer = new AggregateCounterBuffer(repo, 100);
+		DateTime now = new DateTime();
+		buffer.increment("foo", 3, now);
+		buffer.increment("foo", 4, now);
+
+		repo.failures = 1;
+		try {
+			buffer.flush();
+			fail("Expected the write to fail");
+		}
+		catch (IllegalStateException expected) {
+		}
+		assertThat(repo.getCounts("foo", 1, AggregateCountResolution.hour).getCounts(), equalTo(new long[] { 0 }));
+
+		buffer.increment("foo", 1, now);
+		buffer.flush();
+		assertThat(repo.getCounts("foo", 1, AggregateCountResolution.hour).getCounts(), equalTo(new long[] { 8 }));
+	}
+
+	private static class FailingRepository extends InMemoryAggregateCounterRepository {
+
+		private int failures;
+
+		@Override
+		public long increment(String name, Map<Long, Long> amountsByMinute) {
+			if (failures > 0) {
+				failures--;
+				throw new IllegalStateException("Store unavailable");
+			}
+			return super.increment(name, amountsByMinute);
+		}
+	}
+
+}
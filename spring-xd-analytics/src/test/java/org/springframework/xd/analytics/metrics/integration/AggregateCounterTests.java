@@ -27,6 +27,7 @@ import org.junit.Test;
 
 import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -92,6 +93,23 @@ public class AggregateCounterTests {
 		assertThat(counts.getCounts(), equalTo(new long[] { 0, 0, 0, 0, 43 }));
 	}
 
+	@Test
+	public void testBufferedCountsAreWrittenOnClose() {
+		ConfigurableApplicationContext context = new AnnotationConfigApplicationContext(
+				BufferedAggregateCounterTestsConfig.class);
+		applicationContext = context;
+		AggregateCounterRepository repository = repository();
+
+		input().send(new GenericMessage<Object>("3"));
+		input().send(new GenericMessage<Object>("4"));
+		assertThat(repository.getCounts("foo", 5, AggregateCountResolution.hour).getCounts(),
+				equalTo(new long[] { 0, 0, 0, 0, 0 }));
+
+		context.close();
+		assertThat(repository.getCounts("foo", 5, AggregateCountResolution.hour).getCounts(),
+				equalTo(new long[] { 0, 0, 0, 0, 7 }));
+	}
+
 	@Configuration
 	@ImportResource("file:../modules/sink/aggregate-counter/config/aggregate-counter.xml")
 	public static class NullTimefieldAggregateCounterTestsConfig {
@@ -104,6 +122,33 @@ public class AggregateCounterTests {
 			props.put("dateFormat", "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
 			props.put("computedNameExpression", "'foo'");
 			props.put("incrementExpression", "1");
+			props.put("bufferSize", "0");
+			props.put("bufferTimeout", "1000");
+			propertyPlaceholderConfigurer.setProperties(props);
+			return propertyPlaceholderConfigurer;
+		}
+
+
+		@Bean
+		public AggregateCounterRepository aggregateCounterRepository() {
+			return new InMemoryAggregateCounterRepository();
+		}
+	}
+
+	@Configuration
+	@ImportResource("file:../modules/sink/aggregate-counter/config/aggregate-counter.xml")
+	public static class BufferedAggregateCounterTestsConfig {
+
+		@Bean
+		public PropertyPlaceholderConfigurer ppc() {
+			PropertyPlaceholderConfigurer propertyPlaceholderConfigurer = new PropertyPlaceholderConfigurer();
+			Properties props = new Properties();
+			props.put("timeField", "null");
+			props.put("dateFormat", "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+			props.put("computedNameExpression", "'foo'");
+			props.put("incrementExpression", "payload");
+			props.put("bufferSize", "100");
+			props.put("bufferTimeout", "60000");
 			propertyPlaceholderConfigurer.setProperties(props);
 			return propertyPlaceholderConfigurer;
 		}
@@ -127,6 +172,8 @@ public class AggregateCounterTests {
 			props.put("dateFormat", "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
 			props.put("computedNameExpression", "'foo'");
 			props.put("incrementExpression", "payload");
+			props.put("bufferSize", "0");
+			props.put("bufferTimeout", "1000");
 			propertyPlaceholderConfigurer.setProperties(props);
 			return propertyPlaceholderConfigurer;
 		}
@@ -150,6 +197,8 @@ public class AggregateCounterTests {
 			props.put("dateFormat", "dd/MM/yyyy");
 			props.put("computedNameExpression", "'foo'");
 			props.put("incrementExpression", "1");
+			props.put("bufferSize", "0");
+			props.put("bufferTimeout", "1000");
 			propertyPlaceholderConfigurer.setProperties(props);
 			return propertyPlaceholderConfigurer;
 		}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.analytics.metrics.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.xd.analytics.metrics.memory.InMemoryCardinalityCounterRepository;
+
+public class CardinalityCounterHandlerTests {
+
+	private final InMemoryCardinalityCounterRepository repository = new InMemoryCardinalityCounterRepository();
+
+	@Test
+	public void testPayloadIsCounted() {
+		CardinalityCounterHandler handler = createHandler("payload");
+		handler.process(new GenericMessage<Object>("alice"));
+		handler.process(new GenericMessage<Object>("bob"));
+		handler.process(new GenericMessage<Object>("alice"));
+		handler.process(new GenericMessage<Object>(42));
+
+		assertEquals(3L, repository.findOne("visitors").getValue());
+	}
+
+	@Test
+	public void testCollectionElementsAreCounted() {
+		CardinalityCounterHandler handler = createHandler("payload");
+		handler.process(new GenericMessage<Object>(Arrays.asList("alice", "bob")));
+		handler.process(new GenericMessage<Object>(new String[] { "bob", "carol", null }));
+
+		assertEquals(3L, repository.findOne("visitors").getValue());
+	}
+
+	@Test
+	public void testNullValuesAreIgnored() {
+		CardinalityCounterHandler handler = createHandler("headers['user']");
+		handler.process(new GenericMessage<Object>("foo"));
+
+		assertNull(repository.findOne("visitors"));
+	}
+
+	private CardinalityCounterHandler createHandler(String valueExpression) {
+		CardinalityCounterHandler handler = new CardinalityCounterHandler(repository, "'visitors'", valueExpression);
+		handler.setIntegrationEvaluationContext(new StandardEvaluationContext());
+		return handler;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.integration;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.xd.analytics.metrics.core.FieldValueCounterRepository;
+import org.springframework.xd.analytics.metrics.memory.InMemoryFieldValueCounterRepository;
+
+/**
+ * Tests for {@link FieldValueCounterBuffer}.
+ */
+public class FieldValueCounterBufferTests {
+
+	private final FieldValueCounterRepository repo = new InMemoryFieldValueCounterRepository();
+
+	@Test
+	public void coalescesUntilFull() {
+		FieldValueCounterBuffer buffer = new FieldValueCounterBuffer(repo, 2);
+		buffer.increment("tags", "spring");
+		buffer.increment("tags", "spring");
+		buffer.increment("tags", "spring");
+		assertThat(repo.findOne("tags"), nullValue());
+
+		buffer.increment("tags", "xd");
+		assertThat(repo.findOne("tags").getFieldValueCount().get("spring"), equalTo(3.0));
+		assertThat(repo.findOne("tags").getFieldValueCount().get("xd"), equalTo(1.0));
+		assertThat(buffer.getWrittenBatches(), equalTo(1L));
+		assertThat(buffer.getWrittenIncrements(), equalTo(2L));
+		assertThat(buffer.getCoalescingRatio(), equalTo(2.0));
+	}
+
+	@Test
+	public void flushWritesPendingIncrements() {
+		FieldValueCounterBuffer buffer = new FieldValueCounterBuffer(repo, 100);
+		buffer.increment("tags", "spring");
+		buffer.increment("mentions", "markp");
+		buffer.flush();
+		assertThat(repo.findOne("tags").getFieldValueCount().get("spring"), equalTo(1.0));
+		assertThat(repo.findOne("mentions").getFieldValueCount().get("markp"), equalTo(1.0));
+
+		// Nothing left to write
+		buffer.flush();
+		assertThat(buffer.getWrittenBatches(), equalTo(1L));
+	}
+
+	@Test
+	public void incrementsAreKeptWhenWriteFails() {
+		final int[] failures = { 1 };
+		FieldValueCounterRepository failingRepo = new InMemoryFieldValueCounterRepository() {
+
+			@Override
+			public synchronized void increment(String counterName, Map<String, Double> increments) {
+				if (failures[0]-- > 0) {
+					throw new IllegalStateException("Store unavailable");
+				}
+				super.increment(counterName, increments);
+			}
+		};
+		FieldValueCounterBuffer buffer = new FieldValueCounterBuffer(failingRepo, 100);
+		buffer.increment("tags", "spring");
+		try {
+			buffer.flush();
+			fail("Expected the write to fail");
+		}
+		catch (IllegalStateException expected) {
+		}
+		assertThat(failingRepo.findOne("tags"), nullValue());
+
+		buffer.increment("tags", "spring");
+		buffer.flush();
+		assertThat(failingRepo.findOne("tags").getFieldValueCount().get("spring"), equalTo(2.0));
+		assertThat(buffer.getWrittenBatches(), equalTo(1L));
+	}
+
+}
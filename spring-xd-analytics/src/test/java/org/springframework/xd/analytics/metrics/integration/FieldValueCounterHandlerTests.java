@@ -17,6 +17,7 @@
 package org.springframework.xd.analytics.metrics.integration;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.util.Arrays;
@@ -106,4 +107,42 @@ public class FieldValueCounterHandlerTests {
 		Map<String, Double> counts = repo.findOne("hashtags").getFieldValueCount();
 		assertThat(counts.get("hello"), equalTo(1.0));
 	}
+
+	@Test
+	public void skipsUnrelatedJsonAndHandlesScalars() throws Exception {
+		String json = "{'user':{'name':'joe','langs':['en','fr']},'id':42,'retweeted':false,"
+				+ "'entities':[{'user':{'id':1}}],'user2':null}";
+		FieldValueCounterHandler handler = new FieldValueCounterHandler(repo, "'ids'", "user.langs");
+		handler.process(new GenericMessage<String>(json));
+		handler.process(new GenericMessage<String>(json));
+		Map<String, Double> counts = repo.findOne("ids").getFieldValueCount();
+		assertThat(counts.get("en"), equalTo(2.0));
+		assertThat(counts.get("fr"), equalTo(2.0));
+
+		handler = new FieldValueCounterHandler(repo, "'numbers'", "id");
+		handler.process(new GenericMessage<String>(json));
+		assertThat(repo.findOne("numbers").getFieldValueCount().get("42"), equalTo(1.0));
+
+		handler = new FieldValueCounterHandler(repo, "'flags'", "retweeted");
+		handler.process(new GenericMessage<String>(json));
+		assertThat(repo.findOne("flags").getFieldValueCount().get("false"), equalTo(1.0));
+
+		handler = new FieldValueCounterHandler(repo, "'objects'", "user");
+		handler.process(new GenericMessage<String>(json));
+		assertThat(repo.findOne("objects").getFieldValueCount().get("{name=joe, langs=[en, fr]}"), equalTo(1.0));
+	}
+
+	@Test
+	public void handlesNestedBeanProperties() {
+		FieldValueCounterHandler handler = new FieldValueCounterHandler(repo, "'lengths'", "text.length");
+		handler.process(new GenericMessage<SimpleTweet>(new SimpleTweet("joe", "hello")));
+		handler.process(new GenericMessage<SimpleTweet>(new SimpleTweet("jane", "there")));
+		assertThat(repo.findOne("lengths"), nullValue());
+
+		handler = new FieldValueCounterHandler(repo, "'bytes'", "text.bytes");
+		handler.process(new GenericMessage<SimpleTweet>(new SimpleTweet("joe", "hi")));
+		Map<String, Double> counts = repo.findOne("bytes").getFieldValueCount();
+		assertThat(counts.get("104"), equalTo(1.0));
+		assertThat(counts.get("105"), equalTo(1.0));
+	}
 }
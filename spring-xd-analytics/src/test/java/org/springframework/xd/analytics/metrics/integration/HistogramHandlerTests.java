@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.integration;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.xd.analytics.metrics.core.Histogram;
+import org.springframework.xd.analytics.metrics.memory.InMemoryHistogramRepository;
+
+public class HistogramHandlerTests {
+
+	private final InMemoryHistogramRepository repository = new InMemoryHistogramRepository();
+
+	private final HistogramHandler handler = new HistogramHandler(repository, "'latency'");
+
+	{
+		handler.setIntegrationEvaluationContext(new StandardEvaluationContext());
+	}
+
+	@Test
+	public void testConvertToLong() {
+		assertEquals(4L, handler.convertToLong(4));
+		assertEquals(4L, handler.convertToLong(4.4D));
+		assertEquals(5L, handler.convertToLong(4.6F));
+		assertEquals(12L, handler.convertToLong("12"));
+		assertEquals(13L, handler.convertToLong("12.5"));
+	}
+
+	@Test(expected = MessagingException.class)
+	public void testInvalidPayload() {
+		handler.convertToLong("not a number");
+	}
+
+	@Test
+	public void testHandler() {
+		handler.process(new GenericMessage<Object>(10));
+		handler.process(new GenericMessage<Object>("20"));
+		handler.process(new GenericMessage<Object>(30.2D));
+
+		Histogram histogram = repository.findOne("latency");
+		assertEquals(3L, histogram.getCount());
+		assertEquals(10L, histogram.getMin());
+		assertEquals(20L, histogram.getValueAtPercentile(50.0D));
+		assertEquals(30L, histogram.getMax());
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.memory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.xd.analytics.metrics.AbstractAggregateCounterTests;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+
+/**
+ * Runs the common aggregate counter tests against {@link ConcurrentInMemoryAggregateCounterRepository}, plus tests
+ * specific to its bounded retention and concurrent behavior.
+ */
+public class ConcurrentInMemoryAggregateCounterTests extends AbstractAggregateCounterTests {
+
+	@Before
+	public void createService() {
+		aggregateCounterRepository = new ConcurrentInMemoryAggregateCounterRepository();
+	}
+
+	@Test
+	public void testOnlyRecentMinutesAreRetained() {
+		ConcurrentInMemoryAggregateCounterRepository repository = new ConcurrentInMemoryAggregateCounterRepository();
+		repository.setMinutesRetained(10);
+		DateTime start = new DateTime(2013, 6, 28, 23, 0);
+		for (int i = 0; i < 15; i++) {
+			repository.increment(counterName, 1, start.plusMinutes(i));
+		}
+		// Too old to be retained
+		repository.increment(counterName, 1, start);
+
+		long[] counts = repository.getCounts(counterName, new Interval(start, start.plusMinutes(14)),
+				AggregateCountResolution.minute).getCounts();
+		assertArrayEquals(new long[] { 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1 }, counts);
+		// Coarser resolutions are not affected
+		assertArrayEquals(new long[] { 16 }, repository.getCounts(counterName, 1, start,
+				AggregateCountResolution.hour).getCounts());
+		assertEquals(16L, repository.findOne(counterName).getValue());
+	}
+
+	@Test
+	public void testConcurrentIncrements() throws Exception {
+		final DateTime now = new DateTime(2013, 6, 28, 23, 0);
+		final int threads = 8;
+		final int iterations = 10000;
+		final CountDownLatch latch = new CountDownLatch(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int i = 0; i < iterations; i++) {
+						aggregateCounterRepository.increment(counterName, 1, now.plusMinutes(i % 3));
+					}
+					latch.countDown();
+				}
+			});
+		}
+		latch.await(30, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		assertEquals(threads * iterations, aggregateCounterRepository.findOne(counterName).getValue());
+		long[] counts = aggregateCounterRepository.getCounts(counterName, new Interval(now, now.plusMinutes(2)),
+				AggregateCountResolution.minute).getCounts();
+		assertEquals(threads * iterations, counts[0] + counts[1] + counts[2]);
+	}
+}
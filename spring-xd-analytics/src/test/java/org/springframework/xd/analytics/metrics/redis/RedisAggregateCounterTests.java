@@ -44,6 +44,7 @@ public class RedisAggregateCounterTests extends AbstractAggregateCounterTests {
 	@After
 	public void beforeAndAfter() {
 		aggregateCounterRepository.delete(counterName);
+		aggregateCounterRepository.delete("other");
 	}
 
 }
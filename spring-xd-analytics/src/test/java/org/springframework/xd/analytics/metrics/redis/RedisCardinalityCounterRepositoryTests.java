@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.redis;
+
+import static org.junit.Assert.assertEquals;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.springframework.xd.analytics.metrics.AbstractCardinalityCounterRepositoryTests;
+import org.springframework.xd.analytics.metrics.common.RedisRepositoriesConfig;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounterRepository;
+import org.springframework.xd.test.redis.RedisTestSupport;
+
+/**
+ * Tests for the Redis implementation of CardinalityCounterRepository.
+ */
+@ContextConfiguration(classes = RedisRepositoriesConfig.class, loader = AnnotationConfigContextLoader.class)
+@RunWith(SpringJUnit4ClassRunner.class)
+public class RedisCardinalityCounterRepositoryTests extends AbstractCardinalityCounterRepositoryTests {
+
+	@Rule
+	public RedisTestSupport redisAvailableRule = new RedisTestSupport();
+
+	@Autowired
+	private RedisCardinalityCounterRepository repo;
+
+	@After
+	@Before
+	public void beforeAndAfter() {
+		repo.deleteAll();
+	}
+
+	@Override
+	protected CardinalityCounterRepository createService() {
+		return repo;
+	}
+
+	@Test
+	public void dottedNamesDoNotCollide() {
+		DateTime now = new DateTime();
+		long minute = AggregateCountResolution.minute.floor(now).getMillis();
+		repo.add("test", "a", now);
+		repo.add("test.minute." + minute, "b", now);
+		repo.add("test.minute." + minute, "c", now);
+
+		Interval interval = new Interval(now.minusMinutes(1), now);
+		assertEquals(1L, repo.countDistinct("test", interval, AggregateCountResolution.minute));
+		assertEquals(1L, repo.findOne("test").getValue());
+
+		repo.delete("test");
+		assertEquals(2L, repo.findOne("test.minute." + minute).getValue());
+		assertEquals(2L, repo.countDistinct("test.minute." + minute, interval, AggregateCountResolution.minute));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void namesCannotContainKeySeparator() {
+		repo.add("a" + RedisCardinalityCounterRepository.KEY_SEPARATOR + "b", "a");
+	}
+
+}
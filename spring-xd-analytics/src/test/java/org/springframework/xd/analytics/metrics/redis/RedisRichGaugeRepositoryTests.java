@@ -81,6 +81,7 @@ public class RedisRichGaugeRepositoryTests extends AbstractRichGaugeRepositoryTe
 			}
 
 		};
+		modified.setUseScript(false);
 
 		Thread concurrent = new Thread() {
 			@Override
@@ -106,6 +107,25 @@ public class RedisRichGaugeRepositoryTests extends AbstractRichGaugeRepositoryTe
 	}
 
 
+	@Test
+	public void testTransactionalAndScriptedUpdatesAgree() {
+		RedisRichGaugeRepository transactional = new RedisRichGaugeRepository(connectionFactory, null);
+		transactional.setUseScript(false);
+		double[] values = { 1.5D, 0.1D, 42.0D, -3.25D, 7.0D };
+		for (double value : values) {
+			transactional.recordValue("transactional", value, 0.3D);
+			repo.recordValue("scripted", value, 0.3D);
+		}
+		RichGauge expected = transactional.findOne("transactional");
+		RichGauge actual = repo.findOne("scripted");
+		assertThat(actual.getValue(), equalTo(expected.getValue()));
+		assertThat(actual.getAlpha(), equalTo(expected.getAlpha()));
+		assertThat(actual.getAverage(), equalTo(expected.getAverage()));
+		assertThat(actual.getMax(), equalTo(expected.getMax()));
+		assertThat(actual.getMin(), equalTo(expected.getMin()));
+		assertThat(actual.getCount(), equalTo(expected.getCount()));
+	}
+
 	@Override
 	protected RichGaugeRepository createService() {
 		return repo;
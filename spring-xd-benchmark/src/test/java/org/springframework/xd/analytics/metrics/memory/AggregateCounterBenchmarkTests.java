@@ -0,0 +1,97 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import org.springframework.util.StopWatch;
+import org.springframework.xd.analytics.metrics.core.AggregateCounterRepository;
+
+/**
+ * Compares increment throughput of {@link InMemoryAggregateCounterRepository} and
+ * {@link ConcurrentInMemoryAggregateCounterRepository} with several threads contributing to the same counter, as
+ * happens with an {@code aggregate-counter} sink deployed with {@code concurrency > 1}.
+ */
+public class AggregateCounterBenchmarkTests {
+
+	private static final int ITERATIONS = 1000000;
+
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	@Test
+	public void runBenchmarks() throws Exception {
+		StopWatch stopWatch = new StopWatch("Aggregate counter increments - Iterations per thread:" + ITERATIONS);
+
+		//warm up
+		long endTime = System.currentTimeMillis() + 5000;
+		int i = 0;
+		do {
+			runBenchmark(stopWatch, "warmup synchronized " + i, new InMemoryAggregateCounterRepository(), 2);
+			runBenchmark(stopWatch, "warmup concurrent " + i, new ConcurrentInMemoryAggregateCounterRepository(), 2);
+			i++;
+		} while (System.currentTimeMillis() < endTime);
+
+		for (int threads : THREADS) {
+			runBenchmark(stopWatch, "synchronized x" + threads, new InMemoryAggregateCounterRepository(), threads);
+			runBenchmark(stopWatch, "concurrent x" + threads, new ConcurrentInMemoryAggregateCounterRepository(),
+					threads);
+		}
+		System.out.println(stopWatch.prettyPrint());
+		for (StopWatch.TaskInfo taskInfo : stopWatch.getTaskInfo()) {
+			if (!taskInfo.getTaskName().startsWith("warmup")) {
+				double nanosecs = taskInfo.getTimeMillis() * 1000000.0;
+				int threads = Integer.parseInt(taskInfo.getTaskName().substring(taskInfo.getTaskName().indexOf('x') + 1));
+				double averagens = nanosecs / (ITERATIONS * threads);
+				System.out.println(taskInfo.getTaskName() + ": avg time per increment (ns) " + averagens);
+			}
+		}
+	}
+
+	private void runBenchmark(StopWatch stopWatch, String taskName, final AggregateCounterRepository repository,
+			int threads) throws InterruptedException {
+		final DateTime start = new DateTime();
+		final CountDownLatch latch = new CountDownLatch(threads);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		stopWatch.start(taskName);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int i = 0; i < ITERATIONS; i++) {
+						// Spread increments over the next hour, as a stream of timestamped events would
+						repository.increment("benchmark", 1, start.plusSeconds(i % 3600));
+					}
+					latch.countDown();
+				}
+			});
+		}
+		latch.await(5, TimeUnit.MINUTES);
+		stopWatch.stop();
+		executor.shutdown();
+		assertEquals((long) ITERATIONS * threads, repository.findOne("benchmark").getValue());
+	}
+
+}
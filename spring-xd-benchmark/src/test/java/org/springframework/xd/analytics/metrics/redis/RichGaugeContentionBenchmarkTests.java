@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.analytics.metrics.redis;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.xd.test.redis.RedisTestSupport;
+
+/**
+ * Compares the latency of {@link RedisRichGaugeRepository#recordValue} when several threads update the same gauge, as
+ * partitioned consumers of a {@code rich-gauge} sink would, using either the server side script or the optimistic
+ * WATCH/MULTI/EXEC transaction.
+ */
+public class RichGaugeContentionBenchmarkTests {
+
+	private static final int ITERATIONS = 2000;
+
+	private static final int THREADS = 8;
+
+	@Rule
+	public RedisTestSupport redisAvailableRule = new RedisTestSupport();
+
+	@Test
+	public void runBenchmarks() throws Exception {
+		RedisRichGaugeRepository scripted = new RedisRichGaugeRepository(redisAvailableRule.getResource(), null);
+		RedisRichGaugeRepository transactional = new RedisRichGaugeRepository(redisAvailableRule.getResource(), null);
+		transactional.setUseScript(false);
+		// Retry until success, so that both variants record the same number of values
+		RetryTemplate retryTemplate = new RetryTemplate();
+		retryTemplate.setRetryPolicy(new SimpleRetryPolicy(Integer.MAX_VALUE, Collections
+				.<Class<? extends Throwable>, Boolean> singletonMap(OptimisticLockingFailureException.class, true)));
+		ExponentialBackOffPolicy backOffPolicy = new ExponentialBackOffPolicy();
+		backOffPolicy.setInitialInterval(1L);
+		backOffPolicy.setMaxInterval(50L);
+		retryTemplate.setBackOffPolicy(backOffPolicy);
+		transactional.setRetryTemplate(retryTemplate);
+
+		try {
+			// warm up
+			runBenchmark("warmup scripted", scripted, 1);
+			runBenchmark("warmup transactional", transactional, 1);
+
+			for (int threads = 1; threads <= THREADS; threads *= 2) {
+				runBenchmark("scripted x" + threads, scripted, threads);
+				runBenchmark("transactional x" + threads, transactional, threads);
+			}
+		}
+		finally {
+			scripted.deleteAll();
+		}
+	}
+
+	private void runBenchmark(String taskName, final RedisRichGaugeRepository repository, int threads)
+			throws Exception {
+		repository.deleteAll();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Future<?>[] latencies = new Future<?>[threads];
+		long start = System.nanoTime();
+		for (int t = 0; t < threads; t++) {
+			latencies[t] = executor.submit(new Callable<long[]>() {
+
+				@Override
+				public long[] call() throws Exception {
+					long[] result = new long[ITERATIONS];
+					for (int i = 0; i < ITERATIONS; i++) {
+						long before = System.nanoTime();
+						repository.recordValue("contended", i, 0.5D);
+						result[i] = System.nanoTime() - before;
+					}
+					return result;
+				}
+			});
+		}
+		long[] all = new long[ITERATIONS * threads];
+		for (int t = 0; t < threads; t++) {
+			System.arraycopy(latencies[t].get(), 0, all, t * ITERATIONS, ITERATIONS);
+		}
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		assertEquals((long) ITERATIONS * threads, repository.findOne("contended").getCount());
+
+		Arrays.sort(all);
+		System.out.println(String.format("%s: %.0f updates/s, p50 %d us, p99 %d us, max %d us", taskName,
+				all.length * 1e9 / elapsed, all[all.length / 2] / 1000, all[(int) (all.length * 0.99)] / 1000,
+				all[all.length - 1] / 1000));
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
@@ -15,13 +15,20 @@
 
 package org.springframework.xd.dirt.integration.bus;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.Properties;
+import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.codec.kryo.PojoCodec;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.support.GenericMessage;
@@ -77,6 +84,113 @@ ms     %     Task name
 		System.out.println(watch.prettyPrint());
 	}
 
+	@Test
+	public void embeddedHeaders() throws Exception {
+		Message<byte[]> message = MessageBuilder.withPayload(StringUtils.leftPad("hello", 1000, "*").getBytes())
+				.setHeader(IntegrationMessageHeaderAccessor.CORRELATION_ID, UUID.randomUUID())
+				.setHeader(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER, 1)
+				.setHeader(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, 10)
+				.build();
+		MessageValues messageValues = messageBusSupport.serializePayloadIfNecessary(message);
+		messageValues.put(XdHeaders.XD_ORIGINAL_CONTENT_TYPE, "text/plain");
+		EmbeddedHeadersMessageConverter jsonConverter = new EmbeddedHeadersMessageConverter();
+		EmbeddedHeadersMessageConverter binaryConverter = new EmbeddedHeadersMessageConverter();
+		binaryConverter.setBinaryEncoding(true);
+
+		StopWatch watch = new StopWatch("EmbeddedHeadersMessageConverter");
+		watch.start("json headers");
+		runEmbeddedHeadersBenchmark(jsonConverter, messageValues);
+		watch.stop();
+		watch.start("binary headers");
+		runEmbeddedHeadersBenchmark(binaryConverter, messageValues);
+		watch.stop();
+		System.out.println(watch.prettyPrint());
+	}
+
+	@Test
+	public void producerPathAllocation() throws Exception {
+		EmbeddedHeadersMessageConverter converter = new EmbeddedHeadersMessageConverter();
+		Object[] payloads = new Object[] {TupleBuilder.tuple().of("foo", "bar", "val", 1234),
+				StringUtils.leftPad("hello", 1000, "*")};
+		StopWatch watch = new StopWatch("producer path");
+		for (Object payload : payloads) {
+			Message<?> message = MessageBuilder.withPayload(payload)
+					.setHeader(IntegrationMessageHeaderAccessor.CORRELATION_ID, UUID.randomUUID())
+					.setHeader(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER, 1)
+					.setHeader(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE, 10)
+					.build();
+			String type = payload.getClass().getSimpleName();
+			runProducerPathBenchmark(watch, type + " copying", message, converter, false);
+			runProducerPathBenchmark(watch, type + " single buffer", message, converter, true);
+		}
+		System.out.println(watch.prettyPrint());
+	}
+
+	@Test
+	public void partitionRouting() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		context.refresh();
+		messageBusSupport.setApplicationContext(context);
+		messageBusSupport.setIntegrationEvaluationContext(new StandardEvaluationContext());
+		Message<?> message = MessageBuilder.withPayload(new Order("customer" + 42))
+				.setHeader("customerId", "customer" + 42)
+				.build();
+		StopWatch watch = new StopWatch("partition routing");
+		runPartitionBenchmark(watch, message, "partitionKeyExpression", "payload.customerId");
+		runPartitionBenchmark(watch, message, "partitionKeyExpression", "headers['customerId']");
+		runPartitionBenchmark(watch, message, "partitionKeyExtractorClass", OrderKeyExtractor.class.getName());
+		System.out.println(watch.prettyPrint());
+		context.close();
+	}
+
+	private void runPartitionBenchmark(StopWatch watch, Message<?> message, String property, String value) {
+		Properties properties = new Properties();
+		properties.setProperty(property, value);
+		MessageBusSupport.PartitioningMetadata meta = new MessageBusSupport.PartitioningMetadata(
+				new AbstractBusPropertiesAccessor(properties) {
+				}, 16);
+		int ITERATIONS = 1000000;
+		int total = 0;
+		watch.start(property + "=" + value);
+		for (int i = 0; i < ITERATIONS; i++) {
+			total += messageBusSupport.determinePartition(message, meta);
+		}
+		watch.stop();
+		System.out.println(value + ": partition " + total / ITERATIONS);
+	}
+
+	private void runProducerPathBenchmark(StopWatch watch, String taskName, Message<?> message,
+			EmbeddedHeadersMessageConverter converter, boolean singleBuffer) throws Exception {
+		int ITERATIONS = 1000000;
+		long allocatedBefore = allocatedBytes();
+		watch.start(taskName);
+		for (int i = 0; i < ITERATIONS; i++) {
+			if (singleBuffer) {
+				messageBusSupport.serializeAndEmbedHeaders(converter, message, null, XdHeaders.STANDARD_HEADERS);
+			}
+			else {
+				MessageValues transformed = messageBusSupport.serializePayloadIfNecessary(message);
+				converter.embedHeaders(transformed, XdHeaders.STANDARD_HEADERS);
+			}
+		}
+		watch.stop();
+		if (allocatedBefore >= 0) {
+			long allocated = allocatedBytes() - allocatedBefore;
+			System.out.println(taskName + ": allocated bytes per message " + allocated / ITERATIONS);
+		}
+	}
+
+	/*
+	 * Bytes allocated by the current thread, or -1 if the JVM does not report it.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(
+					Thread.currentThread().getId());
+		}
+		return -1;
+	}
 
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	private void runBenchmark(Object payload) {
@@ -92,6 +206,41 @@ ms     %     Task name
 		}
 	}
 
+	private void runEmbeddedHeadersBenchmark(EmbeddedHeadersMessageConverter converter, MessageValues messageValues)
+			throws Exception {
+		int ITERATIONS = 1000000;
+		for (int i = 0; i < ITERATIONS; i++) {
+			byte[] embedded = converter.embedHeaders(messageValues, XdHeaders.STANDARD_HEADERS);
+			converter.extractHeaders(new GenericMessage<byte[]>(embedded), false);
+			if (i > 0 && i % 100000 == 0) {
+				System.out.println("completed " + i + " iterations.");
+			}
+		}
+	}
+
+
+	public static class Order {
+
+		private final String customerId;
+
+		public Order(String customerId) {
+			this.customerId = customerId;
+		}
+
+		public String getCustomerId() {
+			return customerId;
+		}
+
+	}
+
+	public static class OrderKeyExtractor implements PartitionKeyExtractorStrategy {
+
+		@Override
+		public Object extractKey(Message<?> message) {
+			return ((Order) message.getPayload()).getCustomerId();
+		}
+
+	}
 
 	public static class TestMessageBus extends MessageBusSupport {
 
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus.local;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.scheduling.PollerMetadata;
+import org.springframework.integration.support.DefaultMessageBuilderFactory;
+import org.springframework.integration.support.utils.IntegrationUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.PeriodicTrigger;
+
+/**
+ * Compares throughput and round trip latency of a {@code queue:} named channel on the {@link LocalMessageBus} when it
+ * is backed by a polled {@code QueueChannel} (with the default 1s fixed rate poller) and by a
+ * {@link RingBufferChannel} with each wait strategy.
+ */
+public class RingBufferChannelBenchmarkTests {
+
+	private static final int MESSAGES = 1000000;
+
+	private static final int ROUND_TRIPS = 10000;
+
+	private static final int POLLED_ROUND_TRIPS = 20;
+
+	@Test
+	public void runBenchmarks() throws Exception {
+		runBenchmark("queue channel", false, null, POLLED_ROUND_TRIPS);
+		for (RingBufferChannel.WaitStrategy waitStrategy : RingBufferChannel.WaitStrategy.values()) {
+			runBenchmark("ring buffer " + waitStrategy, true, waitStrategy, ROUND_TRIPS);
+		}
+	}
+
+	private void runBenchmark(String taskName, boolean ringBufferEnabled, RingBufferChannel.WaitStrategy waitStrategy,
+			int roundTrips) throws Exception {
+		GenericApplicationContext applicationContext = new GenericApplicationContext();
+		applicationContext.getBeanFactory().registerSingleton(
+				IntegrationUtils.INTEGRATION_MESSAGE_BUILDER_FACTORY_BEAN_NAME,
+				new DefaultMessageBuilderFactory());
+		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.initialize();
+		applicationContext.getBeanFactory().registerSingleton("taskScheduler", taskScheduler);
+		applicationContext.refresh();
+		LocalMessageBus bus = createBus(applicationContext, ringBufferEnabled, waitStrategy);
+		DirectChannel moduleOutputChannel = new DirectChannel();
+		final AtomicReference<CountDownLatch> latch = new AtomicReference<CountDownLatch>();
+		DirectChannel moduleInputChannel = new DirectChannel();
+		moduleInputChannel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				latch.get().countDown();
+			}
+		});
+		bus.bindProducer("queue:benchmark", moduleOutputChannel, null);
+		bus.bindConsumer("queue:benchmark", moduleInputChannel, null);
+		Message<String> message = new GenericMessage<String>("hello");
+		try {
+			// warm up
+			latch.set(new CountDownLatch(MESSAGES / 10));
+			for (int i = 0; i < MESSAGES / 10; i++) {
+				moduleOutputChannel.send(message);
+			}
+			assertTrue(latch.get().await(60, TimeUnit.SECONDS));
+
+			latch.set(new CountDownLatch(MESSAGES));
+			long start = System.nanoTime();
+			for (int i = 0; i < MESSAGES; i++) {
+				moduleOutputChannel.send(message);
+			}
+			assertTrue(latch.get().await(60, TimeUnit.SECONDS));
+			long elapsed = System.nanoTime() - start;
+
+			long[] latencies = new long[roundTrips];
+			for (int i = 0; i < roundTrips; i++) {
+				latch.set(new CountDownLatch(1));
+				long before = System.nanoTime();
+				moduleOutputChannel.send(message);
+				assertTrue(latch.get().await(10, TimeUnit.SECONDS));
+				latencies[i] = System.nanoTime() - before;
+			}
+			Arrays.sort(latencies);
+			System.out.println(String.format("%s: %.0f msgs/s, round trip p50 %d us, p99 %d us, max %d us",
+					taskName, MESSAGES * 1e9 / elapsed, latencies[roundTrips / 2] / 1000,
+					latencies[(int) (roundTrips * 0.99)] / 1000, latencies[roundTrips - 1] / 1000));
+		}
+		finally {
+			bus.unbindProducers("queue:benchmark");
+			bus.unbindConsumers("queue:benchmark");
+			applicationContext.close();
+			taskScheduler.shutdown();
+		}
+	}
+
+	private LocalMessageBus createBus(GenericApplicationContext applicationContext, boolean ringBufferEnabled,
+			RingBufferChannel.WaitStrategy waitStrategy) throws Exception {
+		LocalMessageBus bus = new LocalMessageBus();
+		bus.setApplicationContext(applicationContext);
+		PeriodicTrigger trigger = new PeriodicTrigger(1000);
+		trigger.setFixedRate(true);
+		PollerMetadata poller = new PollerMetadata();
+		poller.setTrigger(trigger);
+		bus.setPoller(poller);
+		bus.setRingBufferEnabled(ringBufferEnabled);
+		if (waitStrategy != null) {
+			bus.setRingBufferWaitStrategy(waitStrategy);
+		}
+		bus.afterPropertiesSet();
+		return bus;
+	}
+
+}
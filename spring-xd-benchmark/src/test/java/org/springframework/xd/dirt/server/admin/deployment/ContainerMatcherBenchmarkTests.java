@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.server.admin.deployment;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.context.expression.MapAccessor;
+import org.springframework.expression.EvaluationException;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.StopWatch;
+import org.springframework.util.StringUtils;
+import org.springframework.xd.dirt.cluster.Container;
+import org.springframework.xd.module.ModuleDeploymentProperties;
+import org.springframework.xd.module.ModuleDescriptor;
+import org.springframework.xd.module.ModuleType;
+import org.springframework.xd.module.TestModuleDefinitions;
+
+/**
+ * Benchmark for {@link ContainerMatcher} during a redeployment storm, where every module of a set of streams is
+ * matched against all containers, for example after an admin failover. The baseline parses the criteria for every
+ * (container, module) pair, as {@code ContainerMatcher} did before caching parsed criteria.
+ */
+public class ContainerMatcherBenchmarkTests {
+
+	private static final int CONTAINERS = 50;
+
+	private static final int MODULES = 200;
+
+	private static final int STORMS = 100;
+
+	private final List<Container> containers = new ArrayList<Container>();
+
+	private final List<ModuleDescriptor> descriptors = new ArrayList<ModuleDescriptor>();
+
+	private final List<ModuleDeploymentProperties> properties = new ArrayList<ModuleDeploymentProperties>();
+
+	@Before
+	public void setUp() {
+		for (int i = 0; i < CONTAINERS; i++) {
+			Map<String, String> attributes = new HashMap<String, String>();
+			attributes.put("groups", "group" + (i % 5) + ",all");
+			attributes.put("color", (i % 2 == 0) ? "green" : "blue");
+			containers.add(new Container("container" + i, attributes));
+		}
+		for (int i = 0; i < MODULES; i++) {
+			descriptors.add(new ModuleDescriptor.Builder()
+					.setModuleDefinition(TestModuleDefinitions.dummy("module" + i, ModuleType.processor))
+					.setGroup("stream" + (i / 4))
+					.setModuleLabel("module" + i)
+					.setIndex(i % 4)
+					.build());
+			ModuleDeploymentProperties deploymentProperties = new ModuleDeploymentProperties();
+			deploymentProperties.setCount(2);
+			// mostly group criteria, with some general expressions and unconstrained modules
+			switch (i % 4) {
+				case 0:
+				case 1:
+					deploymentProperties.setCriteria("groups.contains('group" + (i % 5) + "')");
+					break;
+				case 2:
+					deploymentProperties.setCriteria("color == 'green' and groups.contains('all')");
+					break;
+				default:
+					break;
+			}
+			properties.add(deploymentProperties);
+		}
+	}
+
+	@Test
+	public void redeploymentStorm() {
+		ContainerMatcher matcher = new ContainerMatcher();
+		BaselineMatcher baseline = new BaselineMatcher();
+		assertEquals(baseline.matchAll(), countMatches(matcher));
+
+		StopWatch watch = new StopWatch("ContainerMatcher redeployment storm");
+		watch.start("parse per container");
+		long baselineCount = 0;
+		for (int i = 0; i < STORMS; i++) {
+			baselineCount += baseline.matchAll();
+		}
+		watch.stop();
+		watch.start("cached criteria");
+		long count = 0;
+		for (int i = 0; i < STORMS; i++) {
+			count += countMatches(matcher);
+		}
+		watch.stop();
+		assertEquals(baselineCount, count);
+		System.out.println(watch.prettyPrint());
+	}
+
+	private int countMatches(ContainerMatcher matcher) {
+		int count = 0;
+		for (int i = 0; i < MODULES; i++) {
+			count += matcher.match(descriptors.get(i), properties.get(i), containers).size();
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the candidates of every module by parsing its criteria for each container.
+	 */
+	private class BaselineMatcher {
+
+		private final SpelExpressionParser parser = new SpelExpressionParser();
+
+		private final StandardEvaluationContext context = new StandardEvaluationContext();
+
+		BaselineMatcher() {
+			context.addPropertyAccessor(new MapAccessor());
+		}
+
+		int matchAll() {
+			int count = 0;
+			for (ModuleDeploymentProperties deploymentProperties : properties) {
+				String criteria = deploymentProperties.getCriteria();
+				int candidates = 0;
+				for (Container container : containers) {
+					if (!StringUtils.hasText(criteria) || isCandidate(container, criteria)) {
+						candidates++;
+					}
+				}
+				count += Math.min(candidates, deploymentProperties.getCount());
+			}
+			return count;
+		}
+
+		private boolean isCandidate(Container container, String criteria) {
+			try {
+				return parser.parseExpression(criteria).getValue(context, container.getAttributes(), Boolean.class);
+			}
+			catch (EvaluationException e) {
+				return false;
+			}
+		}
+
+	}
+
+}
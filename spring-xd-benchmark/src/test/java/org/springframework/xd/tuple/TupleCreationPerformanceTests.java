@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,7 +15,9 @@
  */
 package org.springframework.xd.tuple;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 import org.junit.Test;
@@ -35,7 +37,10 @@ import org.springframework.util.StopWatch;
  * instance of Tuple.  The recommended approach is to either use the default instance or
  * configure a customized version that is created as a singleton within the context of
  * the module it's used.
- * 
+ * <p>
+ * Also measures field access by name on wide tuples, which relies on the shared
+ * {@link TupleSchema} index rather than a scan of the field names.
+ *
  * @author Michael Minella
  * @author Gunnar Hillert
  */
@@ -52,6 +57,8 @@ public class TupleCreationPerformanceTests {
 		}
 	}
 
+	private static final int WIDE_TUPLE_SIZE = 60;
+
 	@Autowired
 	private FormattingConversionService conversionService;
 
@@ -104,4 +111,50 @@ public class TupleCreationPerformanceTests {
 		watch.stop();
 		System.out.println(watch.prettyPrint());
 	}
+
+	@Test
+	@Repeat(4)
+	public void testCreationOfWideTuples() {
+		List<String> names = wideTupleNames();
+		StopWatch watch = new StopWatch("wideCreation");
+		watch.start();
+		for (int i = 0; i < 100000; i++) {
+			List<Object> values = new ArrayList<Object>(names.size());
+			for (int j = 0; j < names.size(); j++) {
+				values.add(i + j);
+			}
+			TupleBuilder.tuple().ofNamesAndValues(names, values);
+		}
+		watch.stop();
+		System.out.println(watch.prettyPrint());
+	}
+
+	@Test
+	@Repeat(4)
+	public void testAccessOfWideTupleFieldsByName() {
+		List<String> names = wideTupleNames();
+		List<Object> values = new ArrayList<Object>(names.size());
+		for (int j = 0; j < names.size(); j++) {
+			values.add(j);
+		}
+		Tuple tuple = TupleBuilder.tuple().ofNamesAndValues(names, values);
+		long sum = 0;
+		StopWatch watch = new StopWatch("wideAccess");
+		watch.start();
+		for (int i = 0; i < 100000; i++) {
+			for (int j = names.size() - 1; j >= 0; j -= 7) {
+				sum += tuple.getInt(names.get(j));
+			}
+		}
+		watch.stop();
+		System.out.println(watch.prettyPrint() + " (checksum " + sum + ")");
+	}
+
+	private static List<String> wideTupleNames() {
+		List<String> names = new ArrayList<String>(WIDE_TUPLE_SIZE);
+		for (int i = 0; i < WIDE_TUPLE_SIZE; i++) {
+			names.add("column" + i);
+		}
+		return names;
+	}
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
@@ -21,6 +21,8 @@ import static org.junit.Assert.assertNotNull;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 import org.junit.Before;
@@ -33,6 +35,10 @@ import org.springframework.xd.tuple.Tuple;
 import org.springframework.xd.tuple.TupleBuilder;
 
 /**
+ * Compares the default tuple serializer, which writes the field names with every tuple,
+ * with the {@link SchemaTupleSerializer}, which writes a schema id, for throughput and
+ * serialized size.
+ *
  * @author David Turanski
  * @author Gary Russell
  */
@@ -45,6 +51,10 @@ public class TupleCodecBenchmarkTests {
 
 	private PojoCodec deserializer;
 
+	private PojoCodec schemaSerializer;
+
+	private PojoCodec schemaDeserializer;
+
 	private Random random = new Random(System.currentTimeMillis());
 
 
@@ -60,6 +70,9 @@ public class TupleCodecBenchmarkTests {
 	public void setUp() {
 		serializer = new PojoCodec(new TupleKryoRegistrar());
 		deserializer = new PojoCodec(new TupleKryoRegistrar());
+		TupleSchemaRegistry schemaRegistry = new InMemoryTupleSchemaRegistry();
+		schemaSerializer = new PojoCodec(new TupleKryoRegistrar(schemaRegistry));
+		schemaDeserializer = new PojoCodec(new TupleKryoRegistrar(schemaRegistry));
 	}
 
 	@Test
@@ -75,36 +88,45 @@ public class TupleCodecBenchmarkTests {
 		int i = 0;
 		do {
 			runBenchmark(stopWatch, "warmup  " + i, primitiveTuples, serializer, deserializer);
+			runBenchmark(stopWatch, "warmup schema " + i, primitiveTuples, schemaSerializer, schemaDeserializer);
 			i++;
 		} while (System.currentTimeMillis() < endTime);
 
-
-		runBenchmark(stopWatch, "primitives", primitiveTuples, serializer, deserializer);
-		runBenchmark(stopWatch, "nested", nestedTuples, serializer, deserializer);
+		Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+		sizes.put("primitives", runBenchmark(stopWatch, "primitives", primitiveTuples, serializer, deserializer));
+		sizes.put("nested", runBenchmark(stopWatch, "nested", nestedTuples, serializer, deserializer));
+		sizes.put("schema primitives", runBenchmark(stopWatch, "schema primitives", primitiveTuples,
+				schemaSerializer, schemaDeserializer));
+		sizes.put("schema nested", runBenchmark(stopWatch, "schema nested", nestedTuples, schemaSerializer,
+				schemaDeserializer));
 		System.out.println(stopWatch.prettyPrint());
 		for (StopWatch.TaskInfo taskInfo : stopWatch.getTaskInfo()) {
-			if (taskInfo.getTaskName().equals("primitives") || taskInfo.getTaskName().equals("nested")) {
+			if (sizes.containsKey(taskInfo.getTaskName())) {
 				double nanosecs = taskInfo.getTimeMillis() * 1000000.0;
 				double averagens = nanosecs / ITERATIONS;
-				System.out.println(taskInfo.getTaskName() + ": avg time (ns) " + averagens);
+				System.out.println(taskInfo.getTaskName() + ": avg time (ns) " + averagens + ", avg size (bytes) "
+						+ (double) sizes.get(taskInfo.getTaskName()) / ITERATIONS);
 			}
 		}
 
 	}
 
-	private void runBenchmark(StopWatch stopWatch, String taskName, Tuple[] tuples, PojoCodec serializer,
+	private long runBenchmark(StopWatch stopWatch, String taskName, Tuple[] tuples, PojoCodec serializer,
 			PojoCodec deserializer) throws IOException {
+		long totalBytes = 0;
 		stopWatch.start(taskName);
 		for (int i = 0; i < ITERATIONS; i++) {
 			ByteArrayOutputStream bos = new ByteArrayOutputStream();
 			serializer.encode(tuples[i], bos);
 			byte[] bytes = bos.toByteArray();
+			totalBytes += bytes.length;
 			Tuple result = deserializer.decode(bytes, DefaultTuple.class);
 			assertEquals(tuples[i].getFieldNames(), result.getFieldNames());
 			assertEquals(tuples[i].getValues(), result.getValues());
 			assertNotNull(((DefaultTuple) tuples[i]).getConversionService());
 		}
 		stopWatch.stop();
+		return totalBytes;
 	}
 
 
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.container.store;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextStoppedEvent;
+import org.springframework.util.Assert;
+import org.springframework.xd.dirt.zookeeper.Paths;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperConnection;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperUtils;
+
+/**
+ * ZooKeeper backed repository for the module message rates published by
+ * containers under the {@link Paths#MESSAGE_RATES} node. This implementation
+ * uses a {@link PathChildrenCache} so that reads are served from memory.
+ * A publication is considered stale, and is not returned, once the admin
+ * has not received an update for it within the configured maximum staleness;
+ * this guards against reporting the last rates of a container that stopped
+ * publishing without losing its ZooKeeper session.
+ *
+ * @see org.springframework.xd.dirt.server.container.ModuleMessageRatePublisher
+ */
+public class ZooKeeperModuleMessageRateRepository implements ModuleMessageRateRepository,
+		ApplicationListener<ApplicationEvent> {
+
+	/**
+	 * Logger.
+	 */
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	/**
+	 * ZooKeeper connection.
+	 */
+	private final ZooKeeperConnection zkConnection;
+
+	/**
+	 * Maximum age in milliseconds of a publication before it is ignored.
+	 */
+	private final long maxStaleness;
+
+	/**
+	 * Local time at which the cache last received each message rates node,
+	 * keyed by node path.
+	 */
+	private final ConcurrentMap<String, Long> receivedTimes = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * Local time at which the current cache was started; used as the receipt
+	 * time of the nodes loaded when the cache is built.
+	 */
+	private volatile long cacheStartTime;
+
+	/**
+	 * Atomic reference to the {@link PathChildrenCache} for message rates
+	 * under the {@link Paths#MESSAGE_RATES} node. This reference should
+	 * <em>not</em> be used directly; instead use {@link #ensureCache}
+	 * to ensure the cache is initialized.
+	 *
+	 * @see #ensureCache
+	 */
+	private final AtomicReference<PathChildrenCache> cacheRef = new AtomicReference<PathChildrenCache>();
+
+	/**
+	 * Construct a {@code ZooKeeperModuleMessageRateRepository}.
+	 *
+	 * @param zkConnection the ZooKeeper connection
+	 * @param maxStaleness maximum age in milliseconds of a publication before it is ignored
+	 */
+	public ZooKeeperModuleMessageRateRepository(ZooKeeperConnection zkConnection, long maxStaleness) {
+		Assert.notNull(zkConnection, "zkConnection cannot be null");
+		Assert.isTrue(maxStaleness > 0, "maxStaleness must be greater than 0");
+		this.zkConnection = zkConnection;
+		this.maxStaleness = maxStaleness;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		if (event instanceof ContextStoppedEvent || event instanceof ContextClosedEvent) {
+			closeCache();
+		}
+	}
+
+	/**
+	 * Close the {@link PathChildrenCache message rates cache} and null out
+	 * the {@link #cacheRef atomic reference}.
+	 */
+	private void closeCache() {
+		PathChildrenCache cache = cacheRef.get();
+		if (cache != null) {
+			try {
+				cache.close();
+			}
+			catch (Exception e) {
+				// ignore exception on close
+			}
+			finally {
+				cacheRef.compareAndSet(cache, null);
+			}
+		}
+	}
+
+	/**
+	 * Return a {@link PathChildrenCache} for message rates, creating and
+	 * initializing a new instance if necessary.
+	 *
+	 * @return a {@code PathChildrenCache} for message rates
+	 * @throws java.lang.IllegalStateException if the cache could not be initialized
+	 *        (likely due to a ZooKeeper connection error)
+	 */
+	private PathChildrenCache ensureCache() {
+		if (cacheRef.get() == null) {
+			synchronized (cacheRef) {
+				if (cacheRef.get() == null) {
+					CuratorFramework client = zkConnection.getClient();
+					PathChildrenCache cache = new PathChildrenCache(client, Paths.MESSAGE_RATES,
+							true, ThreadUtils.newThreadFactory("MessageRateCache"));
+					cache.getListenable().addListener(new PathChildrenCacheListener() {
+
+						@Override
+						public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) {
+							ZooKeeperUtils.logCacheEvent(logger, event);
+							switch (event.getType()) {
+								case CHILD_ADDED:
+								case CHILD_UPDATED:
+									receivedTimes.put(event.getData().getPath(), System.currentTimeMillis());
+									break;
+								case CHILD_REMOVED:
+									receivedTimes.remove(event.getData().getPath());
+									break;
+								case CONNECTION_SUSPENDED:
+								case CONNECTION_LOST:
+									// shut down the cache if ZooKeeper connection goes away
+									closeCache();
+									break;
+								default:
+									break;
+							}
+						}
+					});
+					try {
+						Paths.ensurePath(client, Paths.MESSAGE_RATES);
+						receivedTimes.clear();
+						cacheStartTime = System.currentTimeMillis();
+						cacheRef.set(cache);
+						cache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
+					}
+					catch (Exception e) {
+						try {
+							cache.close();
+						}
+						catch (Exception ce) {
+							// ignore exception on close
+						}
+						finally {
+							cacheRef.compareAndSet(cache, null);
+						}
+						throw ZooKeeperUtils.wrapThrowable(e);
+					}
+				}
+			}
+		}
+
+		PathChildrenCache cache = cacheRef.get();
+		Assert.state(cache != null, "Message rate cache not initialized " +
+				"(likely as a result of a ZooKeeper connection error)");
+		return cache;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, HashMap<String, Double>> findByContainerId(String containerId) {
+		Map<String, HashMap<String, Double>> messageRates = new HashMap<String, HashMap<String, Double>>();
+		String path = Paths.build(Paths.MESSAGE_RATES, containerId);
+		ChildData childData = ensureCache().getCurrentData(path);
+		if (childData == null || childData.getData() == null || isStale(path)) {
+			return messageRates;
+		}
+		for (Map.Entry<String, String> entry : ZooKeeperUtils.bytesToMap(childData.getData()).entrySet()) {
+			// keys are <group>.<type>.<label>.<sequence>.<metric>
+			String key = entry.getKey();
+			int index = key.lastIndexOf('.');
+			if (index < 1) {
+				continue;
+			}
+			String module = key.substring(0, index);
+			HashMap<String, Double> rates = messageRates.get(module);
+			if (rates == null) {
+				rates = new HashMap<String, Double>();
+				messageRates.put(module, rates);
+			}
+			try {
+				rates.put(key.substring(index + 1), Double.valueOf(entry.getValue()));
+			}
+			catch (NumberFormatException e) {
+				logger.debug("Ignoring invalid message rate {}={} for container {}",
+						key, entry.getValue(), containerId);
+			}
+		}
+		return messageRates;
+	}
+
+	/**
+	 * Return {@code true} if the message rates node at the given path has not
+	 * been received within the maximum staleness.
+	 *
+	 * @param path the message rates node path
+	 * @return true if the node is stale
+	 */
+	private boolean isStale(String path) {
+		Long receivedTime = receivedTimes.get(path);
+		long lastReceived = (receivedTime == null) ? cacheStartTime : receivedTime;
+		return System.currentTimeMillis() - lastReceived > maxStaleness;
+	}
+
+}
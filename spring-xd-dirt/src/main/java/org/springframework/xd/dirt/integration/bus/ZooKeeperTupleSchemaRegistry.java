@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus;
+
+import java.util.List;
+
+import org.apache.zookeeper.KeeperException;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.dirt.zookeeper.Paths;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperConnection;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperUtils;
+import org.springframework.xd.tuple.serializer.kryo.AbstractTupleSchemaRegistry;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A {@link org.springframework.xd.tuple.serializer.kryo.TupleSchemaRegistry} that shares
+ * schemas across the cluster. Each schema is written once, as a JSON array of its field
+ * names, to {@code /xd/tupleschemas/[id]}; schemas are never removed since serialized
+ * tuples referring to them may still be in flight, but a process registers at most
+ * {@link org.springframework.xd.tuple.TupleSchema#MAX_INTERNED_SCHEMAS} of them.
+ */
+public class ZooKeeperTupleSchemaRegistry extends AbstractTupleSchemaRegistry {
+
+	private static final TypeReference<List<String>> NAMES_TYPE = new TypeReference<List<String>>() {
+	};
+
+	private final ZooKeeperConnection zooKeeperConnection;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	public ZooKeeperTupleSchemaRegistry(ZooKeeperConnection zooKeeperConnection) {
+		Assert.notNull(zooKeeperConnection, "zooKeeperConnection must not be null");
+		this.zooKeeperConnection = zooKeeperConnection;
+	}
+
+	@Override
+	protected List<String> doRegister(long id, List<String> names) {
+		String path = path(id);
+		try {
+			this.zooKeeperConnection.getClient().create().creatingParentsIfNeeded()
+					.forPath(path, this.objectMapper.writeValueAsBytes(names));
+			return null;
+		}
+		catch (KeeperException.NodeExistsException e) {
+			return doLookup(id);
+		}
+		catch (Exception e) {
+			throw ZooKeeperUtils.wrapThrowable(e, "failed to register tuple schema " + names);
+		}
+	}
+
+	@Override
+	protected List<String> doLookup(long id) {
+		try {
+			byte[] data = this.zooKeeperConnection.getClient().getData().forPath(path(id));
+			return this.objectMapper.readValue(data, NAMES_TYPE);
+		}
+		catch (KeeperException.NoNodeException e) {
+			return null;
+		}
+		catch (Exception e) {
+			throw ZooKeeperUtils.wrapThrowable(e, "failed to read tuple schema " + id);
+		}
+	}
+
+	private static String path(long id) {
+		return Paths.build(Paths.TUPLE_SCHEMAS, Long.toHexString(id));
+	}
+
+}
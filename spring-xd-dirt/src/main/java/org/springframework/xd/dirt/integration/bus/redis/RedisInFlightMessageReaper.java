@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisConnectionUtils;
+import org.springframework.util.Assert;
+import org.springframework.xd.dirt.server.admin.deployment.zk.SupervisorElectedEvent;
+import org.springframework.xd.dirt.server.admin.deployment.zk.SupervisorElectionListener;
+import org.springframework.xd.dirt.zookeeper.Paths;
+import org.springframework.xd.redis.RedisInFlightKeys;
+
+/**
+ * Returns the in-flight messages of consumers of a reliable {@code RedisMessageBus} to their queues when the
+ * container that owns them leaves the cluster. Runs on the admin leader: it watches the container registry, and
+ * on election also sweeps the in-flight lists of every owner that is no longer registered.
+ * <p>
+ * A container that is missing from the registry may still be running, e.g. while its ZooKeeper session expires
+ * and it registers again, so its messages are only requeued once its heartbeat has also expired; until then the
+ * owner is checked again every {@link RedisInFlightKeys#HEARTBEAT_TTL} seconds. The key layout is described by
+ * {@link RedisInFlightKeys}.
+ */
+public class RedisInFlightMessageReaper implements SupervisorElectionListener, PathChildrenCacheListener,
+		DisposableBean {
+
+	private static final Logger logger = LoggerFactory.getLogger(RedisInFlightMessageReaper.class);
+
+	private final RedisConnectionFactory connectionFactory;
+
+	private final ScheduledExecutorService executorService =
+			Executors.newSingleThreadScheduledExecutor(ThreadUtils.newThreadFactory("RedisInFlightMessageReaper"));
+
+	public RedisInFlightMessageReaper(RedisConnectionFactory connectionFactory) {
+		Assert.notNull(connectionFactory, "connectionFactory must not be null");
+		this.connectionFactory = connectionFactory;
+	}
+
+	@Override
+	public void onSupervisorElected(SupervisorElectedEvent supervisorElectedEvent) {
+		supervisorElectedEvent.getContainers().getListenable().addListener(this);
+	}
+
+	@Override
+	public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+		switch (event.getType()) {
+			case INITIALIZED:
+				reapUnregistered(client);
+				break;
+			case CHILD_REMOVED:
+				reapIfDeparted(client, Paths.stripPath(event.getData().getPath()));
+				break;
+			default:
+				break;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.executorService.shutdownNow();
+	}
+
+	/**
+	 * Requeue the in-flight messages of every owner that is not in the container registry. The owners are read
+	 * before the registry, and a container registers before it starts consuming, so a live container is never
+	 * mistaken for a dead one.
+	 * @param client the ZooKeeper client.
+	 * @throws Exception if the registry cannot be read.
+	 */
+	void reapUnregistered(CuratorFramework client) throws Exception {
+		Set<byte[]> owners;
+		RedisConnection connection = RedisConnectionUtils.getConnection(this.connectionFactory);
+		try {
+			owners = connection.sMembers(RedisInFlightKeys.IN_FLIGHT_OWNERS_KEY);
+		}
+		finally {
+			RedisConnectionUtils.releaseConnection(connection, this.connectionFactory);
+		}
+		if (owners == null) {
+			return;
+		}
+		for (byte[] owner : owners) {
+			reapIfDeparted(client, new String(owner, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Requeue the in-flight messages of a container if it is not registered and its heartbeat has expired, or
+	 * check again later if it is not registered but still alive.
+	 * @param client the ZooKeeper client.
+	 * @param containerId the container id.
+	 * @throws Exception if the registry cannot be read.
+	 */
+	void reapIfDeparted(final CuratorFramework client, final String containerId) throws Exception {
+		if (client.checkExists().forPath(Paths.build(Paths.CONTAINERS, containerId)) != null) {
+			return;
+		}
+		if (reap(containerId) < 0) {
+			logger.info("Container {} is not registered but its heartbeat has not expired; checking again in {}s",
+					containerId, RedisInFlightKeys.HEARTBEAT_TTL);
+			this.executorService.schedule(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						reapIfDeparted(client, containerId);
+					}
+					catch (Exception e) {
+						logger.error("Failed to check whether container " + containerId + " has departed", e);
+					}
+				}
+
+			}, RedisInFlightKeys.HEARTBEAT_TTL, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Requeue the in-flight messages of a container, unless its heartbeat shows that it is still alive.
+	 * @param containerId the container id.
+	 * @return the number of messages requeued, or -1 if the container is alive.
+	 */
+	long reap(String containerId) {
+		long requeued = 0;
+		RedisConnection connection = RedisConnectionUtils.getConnection(this.connectionFactory);
+		try {
+			Long count = connection.eval(RedisInFlightKeys.REAP_SCRIPT, ReturnType.INTEGER, 3,
+					RedisInFlightKeys.heartbeatKey(containerId), RedisInFlightKeys.ownerKey(containerId),
+					RedisInFlightKeys.IN_FLIGHT_OWNERS_KEY, containerId.getBytes(StandardCharsets.UTF_8));
+			requeued = count == null ? 0 : count;
+		}
+		catch (Exception e) {
+			logger.error("Failed to requeue in-flight messages of container " + containerId, e);
+		}
+		finally {
+			RedisConnectionUtils.releaseConnection(connection, this.connectionFactory);
+		}
+		if (requeued > 0) {
+			logger.info("Requeued {} in-flight messages of departed container {}", requeued, containerId);
+		}
+		return requeued;
+	}
+
+}
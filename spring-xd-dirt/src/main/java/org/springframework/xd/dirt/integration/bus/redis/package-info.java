@@ -0,0 +1,5 @@
+/**
+ * Package for classes related to the RedisMessageBus.
+ */
+
+package org.springframework.xd.dirt.integration.bus.redis;
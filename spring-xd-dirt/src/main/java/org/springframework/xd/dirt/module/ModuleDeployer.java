@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2014 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.concurrent.GuardedBy;
 
@@ -46,6 +48,10 @@ import org.springframework.xd.module.core.Plugin;
  * Appropriate {@link Plugin} logic is applied throughout the deployment/
  * un-deployment lifecycle.
  * <p>
+ * Modules of different deployment units (streams or jobs) may be deployed
+ * and undeployed concurrently; operations on the modules of the same
+ * deployment unit are serialized.
+ * <p>
  * In order to initialize modules with the correct application context,
  * this class maintains a reference to the global application context.
  * See <a href="http://docs.spring.io/autorepo/docs/spring-xd/current/reference/html/#XD-Spring-Application-Contexts">
@@ -83,10 +89,17 @@ public class ModuleDeployer implements ApplicationContextAware, InitializingBean
 	private final Map<String, Map<Integer, Module>> deployedModules = new HashMap<String, Map<Integer, Module>>();
 
 	/**
-	 * List of registered plugins.
+	 * Map of deployment unit names to the locks that serialize the deployment
+	 * and undeployment of the modules of each deployment unit. A lock is removed
+	 * once no deployment or undeployment of its deployment unit holds or waits for it.
 	 */
-	@GuardedBy("this")
-	private final List<Plugin> plugins = new ArrayList<Plugin>();
+	private final ConcurrentMap<String, GroupLock> groupLocks = new ConcurrentHashMap<String, GroupLock>();
+
+	/**
+	 * List of registered plugins. The list is replaced rather than modified
+	 * so that it can be read by concurrent deployments without locking.
+	 */
+	private volatile List<Plugin> plugins = Collections.emptyList();
 
 	/**
 	 * Module factory for creating new {@link Module} instances.
@@ -146,11 +159,9 @@ public class ModuleDeployer implements ApplicationContextAware, InitializingBean
 
 	@Override
 	public synchronized void afterPropertiesSet() {
-		if (!plugins.isEmpty()) {
-			plugins.clear();
-		}
-		plugins.addAll(this.context.getParent().getBeansOfType(Plugin.class).values());
-		OrderComparator.sort(this.plugins);
+		List<Plugin> plugins = new ArrayList<Plugin>(this.context.getParent().getBeansOfType(Plugin.class).values());
+		OrderComparator.sort(plugins);
+		this.plugins = plugins;
 	}
 
 	/**
@@ -193,18 +204,72 @@ public class ModuleDeployer implements ApplicationContextAware, InitializingBean
 	 * @param module the module to deploy
 	 * @param descriptor descriptor for the module instance
 	 */
-	public synchronized void deploy(Module module, ModuleDescriptor descriptor) {
+	public void deploy(Module module, ModuleDescriptor descriptor) {
 		String group = descriptor.getGroup();
 
-		module.setParentContext(this.globalContext);
-		doDeploy(module);
-		logger.info("Deployed {}", module);
-		Map<Integer, Module> modules = this.deployedModules.get(group);
-		if (modules == null) {
-			modules = new HashMap<Integer, Module>();
-			this.deployedModules.put(group, modules);
+		GroupLock lock = acquireGroupLock(group);
+		try {
+			synchronized (lock) {
+				module.setParentContext(this.globalContext);
+				doDeploy(module);
+				logger.info("Deployed {}", module);
+				synchronized (this) {
+					Map<Integer, Module> modules = this.deployedModules.get(group);
+					if (modules == null) {
+						modules = new HashMap<Integer, Module>();
+						this.deployedModules.put(group, modules);
+					}
+					modules.put(descriptor.getIndex(), module);
+				}
+			}
+		}
+		finally {
+			releaseGroupLock(group, lock);
+		}
+	}
+
+	/**
+	 * Return the lock for the modules of the given deployment unit and register
+	 * the caller as a user of it. Each call must be followed by a call to
+	 * {@link #releaseGroupLock}.
+	 *
+	 * @param group the group/deployment unit name
+	 * @return the lock for the deployment unit
+	 */
+	private GroupLock acquireGroupLock(String group) {
+		while (true) {
+			GroupLock lock = this.groupLocks.get(group);
+			if (lock == null) {
+				GroupLock newLock = new GroupLock();
+				lock = this.groupLocks.putIfAbsent(group, newLock);
+				if (lock == null) {
+					lock = newLock;
+				}
+			}
+			synchronized (lock) {
+				// a lock that was released by its last user has been removed from the map
+				if (!lock.removed) {
+					lock.users++;
+					return lock;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Unregister the caller as a user of the lock for the given deployment unit,
+	 * and remove the lock if it has no other users.
+	 *
+	 * @param group the group/deployment unit name
+	 * @param lock the lock returned by {@link #acquireGroupLock}
+	 */
+	private void releaseGroupLock(String group, GroupLock lock) {
+		synchronized (lock) {
+			if (--lock.users == 0) {
+				lock.removed = true;
+				this.groupLocks.remove(group, lock);
+			}
 		}
-		modules.put(descriptor.getIndex(), module);
 	}
 
 	/**
@@ -246,25 +311,38 @@ public class ModuleDeployer implements ApplicationContextAware, InitializingBean
 	 *
 	 * @param moduleDescriptor descriptor for module to be undeployed
 	 */
-	public synchronized void undeploy(ModuleDescriptor moduleDescriptor) {
+	public void undeploy(ModuleDescriptor moduleDescriptor) {
 		Introspector.flushCaches(); // This is to prevent classloader leakage
 		String group = moduleDescriptor.getGroup();
 		int index = moduleDescriptor.getIndex();
-		Map<Integer, Module> modules = deployedModules.get(group);
-		if (modules != null) {
-			Module module = modules.remove(index);
-			if (modules.isEmpty()) {
-				deployedModules.remove(group);
-			}
-			if (module != null) {
-				destroyModule(module);
-			}
-			else {
-				logger.debug("Ignoring undeploy - module with index {} from group {} is not deployed", index, group);
+		GroupLock lock = acquireGroupLock(group);
+		try {
+			synchronized (lock) {
+				Module module = null;
+				boolean groupDeployed;
+				synchronized (this) {
+					Map<Integer, Module> modules = deployedModules.get(group);
+					groupDeployed = (modules != null);
+					if (modules != null) {
+						module = modules.remove(index);
+						if (modules.isEmpty()) {
+							deployedModules.remove(group);
+						}
+					}
+				}
+				if (module != null) {
+					destroyModule(module);
+				}
+				else if (groupDeployed) {
+					logger.debug("Ignoring undeploy - module with index {} from group {} is not deployed", index, group);
+				}
+				else {
+					logger.trace("Ignoring undeploy - group not deployed here: {}", group);
+				}
 			}
 		}
-		else {
-			logger.trace("Ignoring undeploy - group not deployed here: {}", group);
+		finally {
+			releaseGroupLock(group, lock);
 		}
 	}
 
@@ -337,4 +415,18 @@ public class ModuleDeployer implements ApplicationContextAware, InitializingBean
 		}
 	}
 
+	/**
+	 * Lock for the modules of a deployment unit, with the number of callers
+	 * holding or waiting for it.
+	 */
+	private static class GroupLock {
+
+		@GuardedBy("this")
+		private int users;
+
+		@GuardedBy("this")
+		private boolean removed;
+
+	}
+
 }
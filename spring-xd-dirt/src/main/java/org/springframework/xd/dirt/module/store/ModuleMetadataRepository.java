@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2014 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,8 @@
 
 package org.springframework.xd.dirt.module.store;
 
+import java.util.List;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.xd.store.DomainRepository;
@@ -45,6 +47,15 @@ public interface ModuleMetadataRepository extends DomainRepository<ModuleMetadat
 	 */
 	Iterable<ModuleMetadata> findAllByContainerId(String containerId);
 
+	/**
+	 * Find the ids of all the modules that are deployed into the given container,
+	 * without reading their metadata.
+	 *
+	 * @param containerId the containerId
+	 * @return the ids of the modules deployed into this container.
+	 */
+	List<ModuleMetadata.Id> findAllIdsByContainerId(String containerId);
+
 	/**
 	 * Find paged {@link ModuleMetadata} for the modules of given moduleId.
 	 *
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -224,7 +224,7 @@ public class ZooKeeperModuleMetadataRepository implements ModuleMetadataReposito
 		List<ModuleMetadata> results = new ArrayList<ModuleMetadata>();
 		try {
 			for (String containerId : getAvailableContainerIds()) {
-				List<ModuleMetadata.Id> modules = getDeployedModules(containerId);
+				List<ModuleMetadata.Id> modules = findAllIdsByContainerId(containerId);
 				for (ModuleMetadata.Id moduleId : modules) {
 					ModuleMetadata metadata = findOne(moduleId);
 					if (metadata != null) {
@@ -262,7 +262,7 @@ public class ZooKeeperModuleMetadataRepository implements ModuleMetadataReposito
 	public List<ModuleMetadata> findAllByContainerId(String containerId) {
 		Assert.hasText(containerId, "containerId is required");
 
-		List<ModuleMetadata.Id> deployedModules = getDeployedModules(containerId);
+		List<ModuleMetadata.Id> deployedModules = findAllIdsByContainerId(containerId);
 		logger.debug("deployedModules: {}", deployedModules);
 
 		List<ModuleMetadata> results = new ArrayList<ModuleMetadata>(deployedModules.size());
@@ -277,12 +277,15 @@ public class ZooKeeperModuleMetadataRepository implements ModuleMetadataReposito
 	}
 
 	/**
-	 * Get all the deployed modules by the given containerId.
+	 * Find the ids of all the modules that are deployed into this container.
+	 * Unlike {@link #findAllByContainerId(String)}, this does not read the
+	 * metadata of each module.
 	 *
 	 * @param containerId the containerId to filter
 	 * @return the list of moduleIds of the deployed modules.
 	 */
-	private List<ModuleMetadata.Id> getDeployedModules(String containerId) {
+	@Override
+	public List<ModuleMetadata.Id> findAllIdsByContainerId(String containerId) {
 		List<ModuleMetadata.Id> ids = new ArrayList<ModuleMetadata.Id>();
 		try {
 			CuratorFramework client = zkConnection.getClient();
@@ -40,8 +40,10 @@ import org.springframework.xd.rest.domain.XDRuntime;
 import org.springframework.xd.rest.domain.meta.VersionResource;
 import org.springframework.xd.rest.domain.metrics.AggregateCountsResource;
 import org.springframework.xd.rest.domain.metrics.CounterResource;
+import org.springframework.xd.rest.domain.metrics.CardinalityCounterResource;
 import org.springframework.xd.rest.domain.metrics.FieldValueCounterResource;
 import org.springframework.xd.rest.domain.metrics.GaugeResource;
+import org.springframework.xd.rest.domain.metrics.HistogramResource;
 import org.springframework.xd.rest.domain.metrics.RichGaugeResource;
 import org.springframework.xd.rest.domain.security.SecurityInfoResource;
 
@@ -98,6 +100,8 @@ public class AdminController {
 		xdRuntime.add(entityLinks.linkFor(AggregateCountsResource.class).withRel("aggregate-counters"));
 		xdRuntime.add(entityLinks.linkFor(GaugeResource.class).withRel("gauges"));
 		xdRuntime.add(entityLinks.linkFor(RichGaugeResource.class).withRel("rich-gauges"));
+		xdRuntime.add(entityLinks.linkFor(HistogramResource.class).withRel("histograms"));
+		xdRuntime.add(entityLinks.linkFor(CardinalityCounterResource.class).withRel("cardinality-counters"));
 		return xdRuntime;
 	}
 }
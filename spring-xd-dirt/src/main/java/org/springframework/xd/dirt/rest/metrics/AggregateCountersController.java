@@ -16,6 +16,7 @@
 
 package org.springframework.xd.dirt.rest.metrics;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -78,9 +79,13 @@ public class AggregateCountersController extends AbstractMetricsController<Aggre
 			from = providedOrDefaultFromValue(from, to, resolution);
 			Interval interval = new Interval(from, to);
 
-			List<AggregateCountsResource> aggregateCounts = new LinkedList<>();
+			List<String> names = new ArrayList<>();
 			for (MetricResource metricResource : resources) {
-				AggregateCount aggregateCount = repository.getCounts(metricResource.getName(), interval, resolution);
+				names.add(metricResource.getName());
+			}
+			// Fetch the counts of the whole page at once, rather than one counter at a time
+			List<AggregateCountsResource> aggregateCounts = new LinkedList<>();
+			for (AggregateCount aggregateCount : repository.getCounts(names, interval, resolution)) {
 				aggregateCounts.add(aggregateCountResourceAssembler.toResource(aggregateCount));
 			}
 			return new PagedResources<>(aggregateCounts, resources.getMetadata());
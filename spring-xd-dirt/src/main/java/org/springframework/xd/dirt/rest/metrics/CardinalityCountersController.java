@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.dirt.rest.metrics;
+
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PagedResourcesAssembler;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.hateoas.ExposesResourceFor;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounter;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounterRepository;
+import org.springframework.xd.dirt.analytics.NoSuchMetricException;
+import org.springframework.xd.rest.domain.metrics.CardinalityCounterResource;
+import org.springframework.xd.rest.domain.metrics.MetricResource;
+
+/**
+ * Exposes representations of {@link CardinalityCounter}s.
+ */
+@Controller
+@RequestMapping("/metrics/cardinality-counters")
+@ExposesResourceFor(CardinalityCounterResource.class)
+public class CardinalityCountersController extends
+		AbstractMetricsController<CardinalityCounterRepository, CardinalityCounter> {
+
+	private final DeepCardinalityCounterResourceAssembler cardinalityCounterResourceAssembler = new DeepCardinalityCounterResourceAssembler();
+
+	@Autowired
+	public CardinalityCountersController(CardinalityCounterRepository repository) {
+		super(repository);
+	}
+
+	@ResponseBody
+	@RequestMapping(value = "", method = RequestMethod.GET)
+	public PagedResources<? extends MetricResource> list(Pageable pageable,
+			PagedResourcesAssembler<CardinalityCounter> pagedAssembler,
+			@RequestParam(value = "detailed", defaultValue = "false") boolean detailed) {
+		return list(pageable, pagedAssembler, detailed ? cardinalityCounterResourceAssembler
+				: shallowResourceAssembler);
+	}
+
+	/**
+	 * Retrieve the estimated number of distinct values seen by the named counter. When neither {@code from} nor
+	 * {@code to} is given, this covers all values ever seen. Otherwise, only the values seen during the interval
+	 * (rounded outwards to the given resolution) are considered.
+	 *
+	 * @param name the name of the counter
+	 * @param from the start-time for the interval, default depends on the resolution (e.g. go back 1 day for hourly
+	 *        buckets)
+	 * @param to the end-time for the interval, default "now"
+	 * @param resolution the size of buckets to query, one of minute, hour or day (default "hour")
+	 */
+	@ResponseBody
+	@RequestMapping(value = "/{name}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+	public CardinalityCounterResource display(@PathVariable("name") String name, //
+			@RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) DateTime from, //
+			@RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) DateTime to, //
+			@RequestParam(value = "resolution", defaultValue = "hour") AggregateCountResolution resolution) {
+		CardinalityCounter c = repository.findOne(name);
+		if (c == null) {
+			throw new NoSuchMetricException(name, "There is no cardinality counter named '%s'");
+		}
+		if (from != null || to != null) {
+			if (to == null) {
+				to = new DateTime();
+			}
+			if (from == null) {
+				from = defaultFromValue(to, resolution);
+			}
+			c = new CardinalityCounter(name, repository.countDistinct(name, new Interval(from, to), resolution));
+		}
+		return cardinalityCounterResourceAssembler.toResource(c);
+	}
+
+	/**
+	 * Return a default value for the interval start if none has been provided.
+	 */
+	private DateTime defaultFromValue(DateTime to, AggregateCountResolution resolution) {
+		switch (resolution) {
+			case minute:
+				return to.minusMinutes(59);
+			case hour:
+				return to.minusHours(23);
+			case day:
+				return to.minusDays(6);
+			default:
+				throw new IllegalArgumentException("Distinct counts are not tracked per " + resolution);
+		}
+	}
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.rest.metrics;
+
+import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
+import org.springframework.xd.analytics.metrics.core.Histogram;
+import org.springframework.xd.rest.domain.metrics.HistogramResource;
+
+/**
+ * Knows how to assemble {@link HistogramResource}s out of {@link Histogram}s.
+ */
+class DeepHistogramResourceAssembler extends ResourceAssemblerSupport<Histogram, HistogramResource> {
+
+	public DeepHistogramResourceAssembler() {
+		super(HistogramsController.class, HistogramResource.class);
+	}
+
+	@Override
+	public HistogramResource toResource(Histogram entity) {
+		return createResourceWithId(entity.getName(), entity);
+	}
+
+	@Override
+	protected HistogramResource instantiateResource(Histogram entity) {
+		return new HistogramResource(entity.getName(), entity.getWindow(), entity.getCount(), entity.getMin(),
+				entity.getMax(), entity.getValueAtPercentile(50.0D), entity.getValueAtPercentile(90.0D),
+				entity.getValueAtPercentile(99.0D), entity.getValueAtPercentile(99.9D));
+	}
+
+}
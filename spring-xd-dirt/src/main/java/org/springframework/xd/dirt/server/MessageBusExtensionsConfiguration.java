@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
@@ -29,7 +29,10 @@ import org.springframework.integration.codec.Codec;
 import org.springframework.integration.codec.kryo.FileKryoRegistrar;
 import org.springframework.integration.codec.kryo.KryoRegistrar;
 import org.springframework.integration.codec.kryo.PojoCodec;
+import org.springframework.util.Assert;
+import org.springframework.xd.dirt.integration.bus.ZooKeeperTupleSchemaRegistry;
 import org.springframework.xd.dirt.util.ConfigLocations;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperConnection;
 import org.springframework.xd.tuple.serializer.kryo.TupleKryoRegistrar;
 
 /**
@@ -44,9 +47,15 @@ public class MessageBusExtensionsConfiguration {
 	@Autowired
 	ApplicationContext applicationContext;
 
+	@Autowired(required = false)
+	ZooKeeperConnection zooKeeperConnection;
+
 	@Value("${xd.codec.kryo.references}")
 	private boolean useReferences;
 
+	@Value("${xd.codec.kryo.tupleSchemas:false}")
+	private boolean useTupleSchemas;
+
 	@Bean
 	@ConditionalOnMissingBean(name = "codec")
 	public Codec codec() {
@@ -62,6 +71,12 @@ public class MessageBusExtensionsConfiguration {
 
 	@Bean
 	public KryoRegistrar tupleRegistrar() {
+		if (useTupleSchemas) {
+			// falling back to field names would make this node unable to read tuples from the others
+			Assert.state(zooKeeperConnection != null,
+					"xd.codec.kryo.tupleSchemas requires a ZooKeeper connection to share the tuple schemas");
+			return new TupleKryoRegistrar(new ZooKeeperTupleSchemaRegistry(zooKeeperConnection));
+		}
 		return new TupleKryoRegistrar();
 	}
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,12 +21,17 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.context.expression.MapAccessor;
 import org.springframework.expression.EvaluationException;
+import org.springframework.expression.Expression;
 import org.springframework.expression.spel.SpelEvaluationException;
 import org.springframework.expression.spel.SpelMessage;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
@@ -34,6 +39,7 @@ import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.xd.dirt.cluster.Container;
+import org.springframework.xd.dirt.cluster.ContainerAttributes;
 import org.springframework.xd.dirt.cluster.ContainerFilter;
 import org.springframework.xd.module.ModuleDeploymentProperties;
 import org.springframework.xd.module.ModuleDescriptor;
@@ -52,8 +58,13 @@ import org.springframework.xd.module.ModuleDescriptor;
  * count of 0 indicates that all containers for which the criteria evaluates to {@code true} should deploy the module.
  * If no criteria expression is specified, all containers will deploy the module.
  * <p/>
- * In cases where all containers are not deploying a module, an attempt at container round robin distribution for module
+ * In cases where all containers are not deploying a module, the containers are chosen by a
+ * {@link ContainerPlacementStrategy}. By default an attempt at container round robin distribution for module
  * deployments will be made (but not guaranteed).
+ * <p/>
+ * Parsed criteria are cached, since the same criteria are evaluated against every container for every module when
+ * a set of streams is redeployed. Criteria of the common form {@code groups.contains('name')} are resolved by a
+ * lookup in the group set of each container instead of being evaluated as SpEL.
  *
  * @author Patrick Peralta
  * @author Mark Fisher
@@ -67,11 +78,6 @@ public class ContainerMatcher {
 	 */
 	private static final Logger logger = LoggerFactory.getLogger(ContainerMatcher.class);
 
-	/**
-	 * Current index for iterating over containers.
-	 */
-	private int index;
-
 	/**
 	 * Parser for criteria expressions.
 	 */
@@ -82,11 +88,32 @@ public class ContainerMatcher {
 	 */
 	private final StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
 
+	/**
+	 * Maximum number of parsed criteria to cache.
+	 */
+	private static final int CRITERIA_CACHE_LIMIT = 256;
+
+	/**
+	 * Pattern for criteria that only test for membership of a container group.
+	 */
+	private static final Pattern GROUP_CRITERIA_PATTERN =
+			Pattern.compile("\\s*groups\\s*\\.\\s*contains\\s*\\(\\s*'([^']*)'\\s*\\)\\s*");
+
+	/**
+	 * Parsed criteria, keyed by criteria expression.
+	 */
+	private final ConcurrentMap<String, Criteria> criteriaCache;
+
 	/**
 	 * Collection of {@link ContainerFilter}s to apply to the candidate Containers.
 	 */
 	private final Collection<ContainerFilter> containerFilters;
 
+	/**
+	 * Strategy used to select containers when fewer instances are requested than there are candidates.
+	 */
+	private final ContainerPlacementStrategy placementStrategy;
+
 
 	/**
 	 * Creates a container matcher instance and prepares the SpEL evaluation context to support Map properties directly.
@@ -100,12 +127,45 @@ public class ContainerMatcher {
 	 * and prepares the SpEL evaluation context to support Map properties directly.
 	 */
 	public ContainerMatcher(ContainerFilter... containerFilters) {
+		this(new RoundRobinPlacementStrategy(), containerFilters);
+	}
+
+	/**
+	 * Creates a container matcher instance with the provided {@link ContainerPlacementStrategy} and
+	 * {@link ContainerFilter}s and prepares the SpEL evaluation context to support Map properties directly.
+	 */
+	public ContainerMatcher(ContainerPlacementStrategy placementStrategy, ContainerFilter... containerFilters) {
+		Assert.notNull(placementStrategy, "'placementStrategy' cannot be null.");
+		this.placementStrategy = placementStrategy;
 		this.containerFilters = (containerFilters != null)
 				? Collections.unmodifiableList(Arrays.asList(containerFilters))
 				: Collections.<ContainerFilter>emptyList();
+		this.criteriaCache = new ConcurrentHashMap<String, Criteria>();
 		evaluationContext.addPropertyAccessor(new MapAccessor());
 	}
 
+	/**
+	 * Creates a container matcher that shares the filters and parsed criteria of the given matcher
+	 * and uses the provided {@link ContainerPlacementStrategy}.
+	 */
+	private ContainerMatcher(ContainerMatcher matcher, ContainerPlacementStrategy placementStrategy) {
+		this.placementStrategy = placementStrategy;
+		this.containerFilters = matcher.containerFilters;
+		this.criteriaCache = matcher.criteriaCache;
+		evaluationContext.addPropertyAccessor(new MapAccessor());
+	}
+
+	/**
+	 * Return a container matcher for the modules of one deployment, which uses the placement strategy
+	 * returned by {@link ContainerPlacementStrategy#forDeployment()}.
+	 *
+	 * @return the container matcher for one deployment; may be this matcher
+	 */
+	public ContainerMatcher forDeployment() {
+		ContainerPlacementStrategy deploymentStrategy = placementStrategy.forDeployment();
+		return (deploymentStrategy == placementStrategy) ? this : new ContainerMatcher(this, deploymentStrategy);
+	}
+
 
 	/**
 	 * Matches the provided module against one of the candidate containers.
@@ -132,7 +192,7 @@ public class ContainerMatcher {
 			logger.warn("No currently available containers match deployment criteria '{}' for module '{}'.", criteria,
 					moduleDescriptor.getModuleName());
 		}
-		return distributeForRequestedCount(results, deploymentProperties.getCount());
+		return distributeForRequestedCount(moduleDescriptor, results, deploymentProperties.getCount());
 	}
 
 	/**
@@ -150,36 +210,27 @@ public class ContainerMatcher {
 	}
 
 	/**
-	 * Select a subset of containers to satisfy the requested number of module instances using a round robin
-	 * distribution for successive calls. A count of 0 means all members that matched the criteria expression. count >=
-	 * candidates means each of the candidates should host a module.
+	 * Select a subset of containers to satisfy the requested number of module instances using the
+	 * {@link ContainerPlacementStrategy}. A count of 0 means all members that matched the criteria expression.
+	 * count >= candidates means each of the candidates should host a module.
 	 *
+	 * @param moduleDescriptor the module descriptor for the module
 	 * @param candidates the list of available containers that match the selection criteria
 	 * @param count the requested number of module instances to deploy
 	 * @return a subset of candidates <= count
 	 */
-	private Collection<Container> distributeForRequestedCount(List<Container> candidates, int count) {
+	private Collection<Container> distributeForRequestedCount(ModuleDescriptor moduleDescriptor,
+			List<Container> candidates, int count) {
 		int candidateCount = candidates.size();
 		if (candidateCount == 0) {
 			return candidates;
 		}
 
 		if (count <= 0 || count >= candidateCount) {
-
+			placementStrategy.placed(moduleDescriptor, candidates);
 			return candidates;
 		}
-		else if (count == 1) {
-			return Collections.singleton(candidates.get(getAndRotateIndex(candidateCount)));
-		}
-		else {
-			// create a new list with the specific number of targeted containers;
-			List<Container> targets = new ArrayList<Container>();
-			while (targets.size() < count) {
-				targets.add(candidates.get(getAndRotateIndex(candidateCount)));
-
-			}
-			return targets;
-		}
+		return placementStrategy.select(moduleDescriptor, candidates, count);
 	}
 
 	/**
@@ -216,35 +267,99 @@ public class ContainerMatcher {
 	 * @return whether the container is a candidate
 	 */
 	private boolean isCandidate(Container container, String criteria) {
-		try {
-			return expressionParser.parseExpression(criteria).getValue(evaluationContext, container.getAttributes(),
-					Boolean.class);
-		}
-		catch (SpelEvaluationException e) {
-			if (e.getMessageCode().equals(SpelMessage.PROPERTY_OR_FIELD_NOT_READABLE)) {
-				logger.debug("candidate does not contain an attribute referenced in the criteria {}", criteria);
+		return getCriteria(criteria).matches(container);
+	}
+
+	/**
+	 * Return the parsed {@link Criteria} for a criteria expression, parsing and caching it if necessary.
+	 *
+	 * @param criteria the criteria expression
+	 * @return the parsed criteria
+	 */
+	private Criteria getCriteria(String criteria) {
+		Criteria parsed = criteriaCache.get(criteria);
+		if (parsed == null) {
+			Matcher matcher = GROUP_CRITERIA_PATTERN.matcher(criteria);
+			parsed = matcher.matches()
+					? new GroupCriteria(matcher.group(1))
+					: new ExpressionCriteria(criteria, expressionParser.parseExpression(criteria));
+			if (criteriaCache.size() < CRITERIA_CACHE_LIMIT) {
+				criteriaCache.putIfAbsent(criteria, parsed);
 			}
-			return false;
 		}
-		catch (EvaluationException e) {
-			logger.debug("candidate not a match due to evaluation exception", e);
-			return false;
+		return parsed;
+	}
+
+	/**
+	 * Parsed deployment criteria.
+	 */
+	private interface Criteria {
+
+		/**
+		 * Return whether the container matches the criteria.
+		 *
+		 * @param container the container to test
+		 * @return whether the container is a candidate
+		 */
+		boolean matches(Container container);
+
+	}
+
+	/**
+	 * Criteria evaluated as a SpEL expression against the container attributes.
+	 */
+	private class ExpressionCriteria implements Criteria {
+
+		private final String criteria;
+
+		private final Expression expression;
+
+		private ExpressionCriteria(String criteria, Expression expression) {
+			this.criteria = criteria;
+			this.expression = expression;
+		}
+
+		@Override
+		public boolean matches(Container container) {
+			try {
+				return expression.getValue(evaluationContext, container.getAttributes(), Boolean.class);
+			}
+			catch (SpelEvaluationException e) {
+				if (e.getMessageCode().equals(SpelMessage.PROPERTY_OR_FIELD_NOT_READABLE)) {
+					logger.debug("candidate does not contain an attribute referenced in the criteria {}", criteria);
+				}
+				return false;
+			}
+			catch (EvaluationException e) {
+				logger.debug("candidate not a match due to evaluation exception", e);
+				return false;
+			}
 		}
+
 	}
 
 	/**
-	 * Rotate the cached index over the number of available containers.
-	 *
-	 * @param availableContainerCount the number of available containers
-	 * @return the current count before rotating
+	 * Criteria of the form {@code groups.contains('name')}, resolved against the group set of the container.
 	 */
-	private synchronized int getAndRotateIndex(int availableContainerCount) {
-		if (availableContainerCount <= 0) {
-			return 0;
+	private static class GroupCriteria implements Criteria {
+
+		private final String group;
+
+		private GroupCriteria(String group) {
+			this.group = group;
 		}
-		int i = index % availableContainerCount;
-		index = i + 1;
-		return i;
+
+		@Override
+		public boolean matches(Container container) {
+			if (container.getGroups().contains(group)) {
+				return true;
+			}
+			// SpEL resolves 'groups' to the comma delimited attribute value, so contains()
+			// also matches part of a group name; keep that behavior
+			String groups = container.getAttributes().get(ContainerAttributes.GROUPS_KEY);
+			return groups != null && groups.contains(group);
+		}
+
 	}
 
 }
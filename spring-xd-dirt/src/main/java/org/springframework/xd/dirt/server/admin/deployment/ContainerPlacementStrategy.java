@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.server.admin.deployment;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.xd.dirt.cluster.Container;
+import org.springframework.xd.module.ModuleDescriptor;
+
+/**
+ * Strategy used by {@link ContainerMatcher} to choose which of the containers
+ * matching the deployment criteria of a module should deploy it, when fewer
+ * instances are requested than there are matching containers.
+ *
+ * @see RoundRobinPlacementStrategy
+ * @see LeastLoadedPlacementStrategy
+ */
+public interface ContainerPlacementStrategy {
+
+	/**
+	 * Select the containers to deploy instances of a module to.
+	 *
+	 * @param moduleDescriptor the module to deploy
+	 * @param candidates       the containers that match the deployment criteria
+	 *                         and filters for the module; never empty
+	 * @param count            the number of containers to select; greater than 0
+	 *                         and less than the number of candidates
+	 * @return the selected containers
+	 */
+	Collection<Container> select(ModuleDescriptor moduleDescriptor, List<Container> candidates, int count);
+
+	/**
+	 * Return the strategy to place the modules of one deployment, such as the
+	 * modules of a stream or job. A strategy that reads the state of the
+	 * containers may read it once for the deployment instead of once per module.
+	 *
+	 * @return the strategy for one deployment; may be this strategy
+	 */
+	ContainerPlacementStrategy forDeployment();
+
+	/**
+	 * Record that instances of a module are deployed to the given containers
+	 * without a call to {@link #select}, because all of the candidates were
+	 * requested. A strategy for one deployment counts these instances, as well
+	 * as the ones it selected, in the load of the containers.
+	 *
+	 * @param moduleDescriptor the module to deploy
+	 * @param containers       the containers the module is deployed to
+	 */
+	void placed(ModuleDescriptor moduleDescriptor, Collection<Container> containers);
+
+}
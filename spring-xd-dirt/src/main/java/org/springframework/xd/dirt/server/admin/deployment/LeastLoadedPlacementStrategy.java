@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.server.admin.deployment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.dirt.cluster.Container;
+import org.springframework.xd.dirt.container.store.ModuleMessageRateRepository;
+import org.springframework.xd.dirt.module.store.ModuleMetadata;
+import org.springframework.xd.dirt.module.store.ModuleMetadataRepository;
+import org.springframework.xd.dirt.server.container.ModuleMessageRatePublisher;
+import org.springframework.xd.module.ModuleDescriptor;
+
+/**
+ * {@link ContainerPlacementStrategy} that prefers the least loaded candidate
+ * containers. Candidates are ranked by:
+ * <ol>
+ *     <li>the number of instances of the same module (other partitions) they
+ *         already host, so that instances of a module are spread over
+ *         containers (anti-affinity)</li>
+ *     <li>their load: the number of modules they host, plus their message
+ *         throughput divided by the {@link #setMessageRatePerModule message
+ *         rate that counts as one module}</li>
+ * </ol>
+ * Candidates with the same rank are taken in round robin order across
+ * successive calls. Message rates are only taken into account if a
+ * {@link ModuleMessageRateRepository} is provided; see
+ * {@code xd.messageRateMonitoring.enabled}.
+ * <p/>
+ * The load of a container is read once per deployment: the strategy returned
+ * by {@link #forDeployment()} reads it the first time the container is a
+ * candidate and reuses it for the remaining modules of the deployment, and
+ * {@link #select} reads it on every call. Since the modules of a deployment
+ * may not be deployed (or their deployment not written) until all of them
+ * are placed, that strategy adds the instances it has placed to the load it
+ * read.
+ * <p/>
+ * If the load of the candidates cannot be read, this strategy falls back to
+ * round robin placement.
+ */
+public class LeastLoadedPlacementStrategy implements ContainerPlacementStrategy {
+
+	/**
+	 * Default message rate (messages per second) that counts as much as one deployed module.
+	 */
+	public static final double DEFAULT_MESSAGE_RATE_PER_MODULE = 1000;
+
+	/**
+	 * Logger.
+	 */
+	private static final Logger logger = LoggerFactory.getLogger(LeastLoadedPlacementStrategy.class);
+
+	/**
+	 * Repository used to find the modules deployed to each container.
+	 */
+	private final ModuleMetadataRepository moduleMetadataRepository;
+
+	/**
+	 * Repository used to find the message rates of each container; may be {@code null}.
+	 */
+	private final ModuleMessageRateRepository messageRateRepository;
+
+	/**
+	 * Strategy used if the load of the candidates cannot be read.
+	 */
+	private final RoundRobinPlacementStrategy fallbackStrategy = new RoundRobinPlacementStrategy();
+
+	/**
+	 * Offset of the first candidate, rotated on each call to break ties in round robin order.
+	 */
+	private final AtomicInteger offset = new AtomicInteger();
+
+	/**
+	 * Message rate that counts as much as one deployed module.
+	 */
+	private volatile double messageRatePerModule = DEFAULT_MESSAGE_RATE_PER_MODULE;
+
+	/**
+	 * Construct a {@code LeastLoadedPlacementStrategy}.
+	 *
+	 * @param moduleMetadataRepository repository used to find the modules deployed to each container
+	 * @param messageRateRepository    repository used to find the message rates of each container;
+	 *                                 may be {@code null} to only consider deployed modules
+	 */
+	public LeastLoadedPlacementStrategy(ModuleMetadataRepository moduleMetadataRepository,
+			ModuleMessageRateRepository messageRateRepository) {
+		Assert.notNull(moduleMetadataRepository, "moduleMetadataRepository cannot be null");
+		this.moduleMetadataRepository = moduleMetadataRepository;
+		this.messageRateRepository = messageRateRepository;
+	}
+
+	/**
+	 * Set the message rate, in messages per second, that counts as much as one
+	 * deployed module when comparing the load of containers.
+	 *
+	 * @param messageRatePerModule the message rate; must be greater than 0
+	 */
+	public void setMessageRatePerModule(double messageRatePerModule) {
+		Assert.isTrue(messageRatePerModule > 0, "messageRatePerModule must be greater than 0");
+		this.messageRatePerModule = messageRatePerModule;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * Reads the load of each candidate.
+	 */
+	@Override
+	public Collection<Container> select(ModuleDescriptor moduleDescriptor, List<Container> candidates, int count) {
+		return forDeployment().select(moduleDescriptor, candidates, count);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * The returned strategy reads the load of each container once. It is not
+	 * thread safe.
+	 */
+	@Override
+	public ContainerPlacementStrategy forDeployment() {
+		return new DeploymentPlacementStrategy();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * The load of each container is read on every call to {@link #select}, so
+	 * there is nothing to record.
+	 */
+	@Override
+	public void placed(ModuleDescriptor moduleDescriptor, Collection<Container> containers) {
+	}
+
+	/**
+	 * Read the load of a container.
+	 *
+	 * @param container the container
+	 * @return the load of the container
+	 */
+	private ContainerLoad readLoad(Container container) {
+		List<ModuleMetadata.Id> deployedModules = moduleMetadataRepository.findAllIdsByContainerId(
+				container.getName());
+		double messageRate = (messageRateRepository != null) ? getMessageRate(container) : 0;
+		return new ContainerLoad(deployedModules, messageRate);
+	}
+
+	/**
+	 * Return the message throughput of a container: the sum over its modules of
+	 * the greater of the input and output rates.
+	 *
+	 * @param container the container
+	 * @return the message throughput in messages per second
+	 */
+	private double getMessageRate(Container container) {
+		double rate = 0;
+		for (Map<String, Double> moduleRates : messageRateRepository.findByContainerId(
+				container.getName()).values()) {
+			Double input = moduleRates.get(ModuleMessageRatePublisher.INPUT_CHANNEL_NAME);
+			Double output = moduleRates.get(ModuleMessageRatePublisher.OUTPUT_CHANNEL_NAME);
+			rate += Math.max(input != null ? input : 0, output != null ? output : 0);
+		}
+		return rate;
+	}
+
+	/**
+	 * Strategy for the modules of one deployment, which reads the load of each
+	 * container the first time it is a candidate and adds the module instances
+	 * placed for the deployment.
+	 */
+	private class DeploymentPlacementStrategy implements ContainerPlacementStrategy {
+
+		/**
+		 * Load of the containers that have been candidates, keyed by container name.
+		 */
+		private final Map<String, ContainerLoad> loads = new HashMap<String, ContainerLoad>();
+
+		/**
+		 * Module instances placed for this deployment, keyed by container name.
+		 */
+		private final Map<String, List<ModuleDescriptor>> placements = new HashMap<String, List<ModuleDescriptor>>();
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Collection<Container> select(ModuleDescriptor moduleDescriptor, List<Container> candidates,
+				int count) {
+			int candidateCount = candidates.size();
+			int start = (offset.getAndIncrement() & Integer.MAX_VALUE) % candidateCount;
+			List<RankedContainer> ranked = new ArrayList<RankedContainer>(candidateCount);
+			try {
+				for (int i = 0; i < candidateCount; i++) {
+					Container container = candidates.get((start + i) % candidateCount);
+					ContainerLoad load = getLoad(container);
+					List<ModuleDescriptor> placed = getPlacements(container);
+					ranked.add(new RankedContainer(container,
+							load.getInstances(moduleDescriptor) + countInstances(placed, moduleDescriptor),
+							load.getLoad(messageRatePerModule) + placed.size()));
+				}
+			}
+			catch (RuntimeException e) {
+				logger.warn("Could not read the load of the candidate containers for module '{}'; " +
+						"falling back to round robin placement", moduleDescriptor.getModuleLabel(), e);
+				return fallbackStrategy.select(moduleDescriptor, candidates, count);
+			}
+
+			// stable sort, so candidates with the same rank remain in rotated order
+			Collections.sort(ranked);
+			List<Container> targets = new ArrayList<Container>(count);
+			for (int i = 0; i < count; i++) {
+				RankedContainer target = ranked.get(i);
+				logger.debug("Selected container {} for module '{}' (instances: {}, load: {})",
+						target.container.getName(), moduleDescriptor.getModuleLabel(), target.instances,
+						target.load);
+				targets.add(target.container);
+			}
+			placed(moduleDescriptor, targets);
+			return targets;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public ContainerPlacementStrategy forDeployment() {
+			return this;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void placed(ModuleDescriptor moduleDescriptor, Collection<Container> containers) {
+			for (Container container : containers) {
+				getPlacements(container).add(moduleDescriptor);
+			}
+		}
+
+		private ContainerLoad getLoad(Container container) {
+			ContainerLoad load = loads.get(container.getName());
+			if (load == null) {
+				load = readLoad(container);
+				loads.put(container.getName(), load);
+			}
+			return load;
+		}
+
+		private List<ModuleDescriptor> getPlacements(Container container) {
+			List<ModuleDescriptor> placed = placements.get(container.getName());
+			if (placed == null) {
+				placed = new ArrayList<ModuleDescriptor>();
+				placements.put(container.getName(), placed);
+			}
+			return placed;
+		}
+
+		private int countInstances(List<ModuleDescriptor> placed, ModuleDescriptor moduleDescriptor) {
+			int instances = 0;
+			for (ModuleDescriptor descriptor : placed) {
+				if (descriptor.getGroup().equals(moduleDescriptor.getGroup())
+						&& descriptor.getType() == moduleDescriptor.getType()
+						&& descriptor.getModuleLabel().equals(moduleDescriptor.getModuleLabel())) {
+					instances++;
+				}
+			}
+			return instances;
+		}
+
+	}
+
+	/**
+	 * Modules deployed to a container and its message throughput.
+	 */
+	private static class ContainerLoad {
+
+		private final List<ModuleMetadata.Id> deployedModules;
+
+		private final double messageRate;
+
+		private ContainerLoad(List<ModuleMetadata.Id> deployedModules, double messageRate) {
+			this.deployedModules = deployedModules;
+			this.messageRate = messageRate;
+		}
+
+		/**
+		 * Return the number of instances of the given module deployed to the container.
+		 *
+		 * @param moduleDescriptor the module
+		 * @return the number of instances
+		 */
+		private int getInstances(ModuleDescriptor moduleDescriptor) {
+			int instances = 0;
+			for (ModuleMetadata.Id id : deployedModules) {
+				if (id.getUnitName().equals(moduleDescriptor.getGroup())
+						&& id.getModuleType() == moduleDescriptor.getType()
+						&& id.getModuleLabel().equals(moduleDescriptor.getModuleLabel())) {
+					instances++;
+				}
+			}
+			return instances;
+		}
+
+		/**
+		 * Return the load of the container: the number of modules it hosts plus its
+		 * message throughput divided by the message rate that counts as one module.
+		 *
+		 * @param messageRatePerModule the message rate that counts as one module
+		 * @return the load
+		 */
+		private double getLoad(double messageRatePerModule) {
+			return deployedModules.size() + messageRate / messageRatePerModule;
+		}
+
+	}
+
+	/**
+	 * Candidate container with its rank for a module deployment.
+	 */
+	private static class RankedContainer implements Comparable<RankedContainer> {
+
+		private final Container container;
+
+		private final int instances;
+
+		private final double load;
+
+		private RankedContainer(Container container, int instances, double load) {
+			this.container = container;
+			this.instances = instances;
+			this.load = load;
+		}
+
+		@Override
+		public int compareTo(RankedContainer other) {
+			int c = (instances < other.instances) ? -1 : ((instances == other.instances) ? 0 : 1);
+			return (c != 0) ? c : Double.compare(load, other.load);
+		}
+
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.server.admin.deployment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.xd.dirt.cluster.Container;
+import org.springframework.xd.module.ModuleDescriptor;
+
+/**
+ * {@link ContainerPlacementStrategy} that distributes module instances over
+ * the candidate containers in round robin order across successive calls.
+ * This is the default strategy.
+ */
+public class RoundRobinPlacementStrategy implements ContainerPlacementStrategy {
+
+	/**
+	 * Current index for iterating over containers.
+	 */
+	private int index;
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Collection<Container> select(ModuleDescriptor moduleDescriptor, List<Container> candidates, int count) {
+		int candidateCount = candidates.size();
+		if (count == 1) {
+			return Collections.singleton(candidates.get(getAndRotateIndex(candidateCount)));
+		}
+		// create a new list with the specific number of targeted containers;
+		List<Container> targets = new ArrayList<Container>();
+		while (targets.size() < count) {
+			targets.add(candidates.get(getAndRotateIndex(candidateCount)));
+		}
+		return targets;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ContainerPlacementStrategy forDeployment() {
+		return this;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void placed(ModuleDescriptor moduleDescriptor, Collection<Container> containers) {
+	}
+
+	/**
+	 * Rotate the cached index over the number of available containers.
+	 *
+	 * @param availableContainerCount the number of available containers
+	 * @return the current count before rotating
+	 */
+	private synchronized int getAndRotateIndex(int availableContainerCount) {
+		if (availableContainerCount <= 0) {
+			return 0;
+		}
+		int i = index % availableContainerCount;
+		index = i + 1;
+		return i;
+	}
+
+}
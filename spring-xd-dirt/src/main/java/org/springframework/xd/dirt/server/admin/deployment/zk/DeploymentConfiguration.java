@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,23 +16,32 @@
 package org.springframework.xd.dirt.server.admin.deployment.zk;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.autoconfigure.AuditAutoConfiguration;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.batch.BatchAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.jmx.JmxAutoConfiguration;
 import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
 import org.springframework.boot.autoconfigure.mongo.MongoDataAutoConfiguration;
 import org.springframework.boot.autoconfigure.solr.SolrAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.xd.dirt.cluster.AdminAttributes;
 import org.springframework.xd.dirt.container.store.AdminRepository;
+import org.springframework.xd.dirt.container.store.ModuleMessageRateRepository;
 import org.springframework.xd.dirt.container.store.ZooKeeperAdminRepository;
 import org.springframework.xd.dirt.integration.bus.MessageBus;
+import org.springframework.xd.dirt.integration.bus.redis.RedisInFlightMessageReaper;
 import org.springframework.xd.dirt.job.JobFactory;
 import org.springframework.xd.dirt.module.ModuleRegistry;
+import org.springframework.xd.dirt.module.store.ModuleMetadataRepository;
+import org.springframework.xd.dirt.server.admin.deployment.ContainerPlacementStrategy;
 import org.springframework.xd.dirt.server.admin.deployment.DefaultDeploymentUnitStateCalculator;
 import org.springframework.xd.dirt.server.admin.deployment.DeploymentUnitStateCalculator;
+import org.springframework.xd.dirt.server.admin.deployment.LeastLoadedPlacementStrategy;
+import org.springframework.xd.dirt.server.admin.deployment.RoundRobinPlacementStrategy;
 import org.springframework.xd.dirt.stream.JobDefinitionRepository;
 import org.springframework.xd.dirt.stream.JobDeployer;
 import org.springframework.xd.dirt.stream.JobRepository;
@@ -100,6 +109,25 @@ public class DeploymentConfiguration {
 		return new DefaultDeploymentUnitStateCalculator();
 	}
 
+	@Bean(name = "containerPlacementStrategy")
+	@ConditionalOnExpression("'${xd.admin.placement.strategy:roundRobin}' != 'leastLoaded'")
+	public ContainerPlacementStrategy roundRobinPlacementStrategy() {
+		return new RoundRobinPlacementStrategy();
+	}
+
+	@Bean(name = "containerPlacementStrategy")
+	@ConditionalOnExpression("'${xd.admin.placement.strategy:roundRobin}' == 'leastLoaded'")
+	public ContainerPlacementStrategy leastLoadedPlacementStrategy(
+			ModuleMetadataRepository moduleMetadataRepository,
+			ModuleMessageRateRepository messageRateRepository,
+			@Value("${xd.messageRateMonitoring.enabled:false}") boolean messageRateMonitoring,
+			@Value("${xd.admin.placement.messageRatePerModule:1000}") double messageRatePerModule) {
+		LeastLoadedPlacementStrategy strategy = new LeastLoadedPlacementStrategy(moduleMetadataRepository,
+				messageRateMonitoring ? messageRateRepository : null);
+		strategy.setMessageRatePerModule(messageRatePerModule);
+		return strategy;
+	}
+
 	@Bean
 	public ZKStreamDeploymentHandler streamDeploymentHandler() {
 		return new ZKStreamDeploymentHandler();
@@ -145,6 +173,12 @@ public class DeploymentConfiguration {
 		return new DefaultDeploymentStateRecalculator();
 	}
 
+	@Bean
+	@ConditionalOnExpression("'${XD_TRANSPORT}' == 'redis' and ${xd.messagebus.redis.reliable:false}")
+	public RedisInFlightMessageReaper redisInFlightMessageReaper(RedisConnectionFactory redisConnectionFactory) {
+		return new RedisInFlightMessageReaper(redisConnectionFactory);
+	}
+
 	@Bean
 	public DeploymentQueue deploymentQueue() {
 		return new DeploymentQueue(zkConnection);
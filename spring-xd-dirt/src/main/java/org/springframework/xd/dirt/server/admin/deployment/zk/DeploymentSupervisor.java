@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -460,8 +460,10 @@ public class DeploymentSupervisor implements ApplicationListener<ApplicationEven
 				jobDeployments = instantiatePathChildrenCache(client, Paths.JOB_DEPLOYMENTS);
 				jobDeployments.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
 
+				containers = instantiatePathChildrenCache(client, Paths.CONTAINERS);
+
 				SupervisorElectedEvent supervisorElectedEvent = new SupervisorElectedEvent(moduleDeploymentRequests,
-						streamDeployments, jobDeployments);
+						streamDeployments, jobDeployments, containers);
 
 				Map<String, SupervisorElectionListener> listenersMap =
 						applicationContext.getBeansOfType(SupervisorElectionListener.class);
@@ -482,7 +484,6 @@ public class DeploymentSupervisor implements ApplicationListener<ApplicationEven
 						executorService,
 						quietPeriod);
 
-				containers = instantiatePathChildrenCache(client, Paths.CONTAINERS);
 				containers.getListenable().addListener(containerListener);
 				containers.start(PathChildrenCache.StartMode.POST_INITIALIZED_EVENT);
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,14 +16,21 @@
 
 package org.springframework.xd.dirt.server.admin.deployment.zk;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.api.transaction.CuratorTransaction;
+import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher;
@@ -59,6 +66,9 @@ import org.springframework.xd.module.RuntimeModuleDeploymentProperties;
  * </ul>
  * The results may be examined to obtain detailed information about each deployment
  * attempt and its result.
+ * <p/>
+ * {@code writeDeployments} writes the requests for several modules at once
+ * and blocks until the containers have responded to all of them.
  *
  * @author Patrick Peralta
  * @author Ilayaperumal Gopinathan
@@ -72,6 +82,13 @@ public class ModuleDeploymentWriter {
 	 */
 	private static final Logger logger = LoggerFactory.getLogger(ModuleDeploymentWriter.class);
 
+	/**
+	 * Maximum number of module deployment requests written in a single
+	 * ZooKeeper transaction. Each request creates two nodes; this keeps
+	 * the transaction well below the ZooKeeper packet size limit.
+	 */
+	private static final int MAX_REQUESTS_PER_TRANSACTION = 100;
+
 	@Autowired
 	private ZooKeeperConnection zkConnection;
 
@@ -151,34 +168,140 @@ public class ModuleDeploymentWriter {
 			RuntimeModuleDeploymentProperties runtimeProperties,
 			Container container, ResultCollector collector)
 			throws InterruptedException, NoContainerException {
-		int moduleSequence = runtimeProperties.getSequence();
-		String containerName = container.getName();
-		String deploymentPath = new ModuleDeploymentsPath()
-				.setContainer(containerName)
-				.setDeploymentUnitName(moduleDescriptor.getGroup())
-				.setModuleType(moduleDescriptor.getType().toString())
-				.setModuleLabel(moduleDescriptor.getModuleLabel())
-				.setModuleSequence(String.valueOf(moduleSequence)).build();
-		String statusPath = Paths.build(deploymentPath, Paths.STATUS);
-		collector.addPending(containerName, moduleSequence, moduleDescriptor.createKey());
+		DeploymentRequest request = new DeploymentRequest(moduleDescriptor, runtimeProperties, container);
+		collector.addPending(request.container.getName(), request.moduleSequence, moduleDescriptor.createKey());
 		try {
-			ensureModuleDeploymentPath(deploymentPath, statusPath, moduleDescriptor,
+			ensureModuleDeploymentPath(request.deploymentPath, request.statusPath, moduleDescriptor,
 					runtimeProperties, container);
 
 			// set the collector as a watch; it is possible that
 			// a. that the container has already updated this node (unlikely)
 			// b. the deployment was previously written; in this case read
 			//    the status written by the container
-			byte[] data = zkConnection.getClient().getData().usingWatcher(collector).forPath(statusPath);
+			byte[] data = zkConnection.getClient().getData().usingWatcher(collector).forPath(request.statusPath);
 			if (data != null && data.length > 0) {
-				collector.addResult(createResult(deploymentPath, data));
+				collector.addResult(createResult(request.deploymentPath, data));
 			}
 		}
 		catch (InterruptedException e) {
 			throw e;
 		}
 		catch (Exception e) {
-			collector.addResult(createResult(deploymentPath, e));
+			collector.addResult(createResult(request.deploymentPath, e));
+		}
+	}
+
+	/**
+	 * Write module deployment requests for the provided module descriptors
+	 * to their matched containers. Unlike {@code writeDeployment}, the requests
+	 * for all modules are created in a single ZooKeeper transaction, the status
+	 * watches are set asynchronously and the calling thread waits only once
+	 * for the results of all modules. The containers therefore deploy these
+	 * modules concurrently; modules that must be deployed after others have
+	 * to be written in a subsequent invocation.
+	 *
+	 * @param deployments  the matched containers for each module descriptor
+	 * @param provider     runtime deployment properties provider for the modules
+	 * @return results of the requests; empty if no containers were provided
+	 * @throws InterruptedException if the executing thread is interrupted
+	 */
+	protected Collection<ModuleDeploymentStatus> writeDeployments(
+			Map<ModuleDescriptor, Collection<Container>> deployments,
+			ModuleDeploymentPropertiesProvider<RuntimeModuleDeploymentProperties> provider)
+			throws InterruptedException {
+		List<DeploymentRequest> requests = new ArrayList<DeploymentRequest>();
+		for (Map.Entry<ModuleDescriptor, Collection<Container>> entry : deployments.entrySet()) {
+			for (Container container : entry.getValue()) {
+				requests.add(new DeploymentRequest(entry.getKey(),
+						provider.propertiesForDescriptor(entry.getKey()), container));
+			}
+		}
+
+		ResultCollector collector = new ResultCollector();
+		for (int i = 0; i < requests.size(); i += MAX_REQUESTS_PER_TRANSACTION) {
+			writeDeployments(requests.subList(i, Math.min(i + MAX_REQUESTS_PER_TRANSACTION, requests.size())),
+					collector);
+		}
+		return processResults(collector);
+	}
+
+	/**
+	 * Write the given module deployment requests in a single transaction
+	 * and set the collector as a watch on their status paths. If the
+	 * transaction fails (for instance because one of the modules was
+	 * previously deployed), the requests are written individually.
+	 *
+	 * @param requests   the module deployment requests
+	 * @param collector  the result collector
+	 * @throws InterruptedException if the executing thread is interrupted
+	 */
+	private void writeDeployments(List<DeploymentRequest> requests, final ResultCollector collector)
+			throws InterruptedException {
+		CuratorFramework client = zkConnection.getClient();
+		for (DeploymentRequest request : requests) {
+			collector.addPending(request.container.getName(), request.moduleSequence,
+					request.moduleDescriptor.createKey());
+		}
+
+		List<DeploymentRequest> written = new ArrayList<DeploymentRequest>(requests.size());
+		try {
+			CuratorTransaction transaction = client.inTransaction();
+			for (DeploymentRequest request : requests) {
+				transaction = transaction
+						.create().forPath(request.deploymentPath, ZooKeeperUtils.mapToBytes(request.properties)).and()
+						.create().forPath(request.statusPath).and();
+			}
+			((CuratorTransactionFinal) transaction).commit();
+			written.addAll(requests);
+		}
+		catch (InterruptedException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			logger.debug("Transaction for {} module deployment requests failed; writing them individually",
+					requests.size(), e);
+			for (DeploymentRequest request : requests) {
+				try {
+					ensureModuleDeploymentPath(request.deploymentPath, request.statusPath,
+							request.moduleDescriptor, request.properties, request.container);
+					written.add(request);
+				}
+				catch (InterruptedException ie) {
+					throw ie;
+				}
+				catch (Exception ex) {
+					collector.addResult(createResult(request.deploymentPath, ex));
+				}
+			}
+		}
+
+		for (final DeploymentRequest request : written) {
+			try {
+				// the status may already have been written if the module was
+				// previously deployed; the callback records it in that case
+				client.getData().usingWatcher(collector).inBackground(new BackgroundCallback() {
+
+					@Override
+					public void processResult(CuratorFramework client, CuratorEvent event) {
+						if (event.getResultCode() == KeeperException.Code.OK.intValue()) {
+							byte[] data = event.getData();
+							if (data != null && data.length > 0) {
+								collector.addResult(createResult(request.deploymentPath, data));
+							}
+						}
+						else {
+							collector.addResult(createResult(request.deploymentPath, KeeperException.create(
+									KeeperException.Code.get(event.getResultCode()), event.getPath())));
+						}
+					}
+				}).forPath(request.statusPath);
+			}
+			catch (InterruptedException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				collector.addResult(createResult(request.deploymentPath, e));
+			}
 		}
 	}
 
@@ -301,6 +424,64 @@ public class ModuleDeploymentWriter {
 	}
 
 
+	/**
+	 * A module deployment request for a single container.
+	 */
+	private static class DeploymentRequest {
+
+		/**
+		 * Descriptor for the module to deploy.
+		 */
+		private final ModuleDescriptor moduleDescriptor;
+
+		/**
+		 * Runtime deployment properties for the module.
+		 */
+		private final RuntimeModuleDeploymentProperties properties;
+
+		/**
+		 * Target container for the deployment.
+		 */
+		private final Container container;
+
+		/**
+		 * Module sequence number.
+		 */
+		private final int moduleSequence;
+
+		/**
+		 * ZooKeeper path for the module deployment request.
+		 */
+		private final String deploymentPath;
+
+		/**
+		 * ZooKeeper path for the module deployment status.
+		 */
+		private final String statusPath;
+
+		/**
+		 * Construct a {@code DeploymentRequest}.
+		 *
+		 * @param moduleDescriptor  descriptor for the module to deploy
+		 * @param properties        runtime deployment properties for the module
+		 * @param container         target container for the deployment
+		 */
+		private DeploymentRequest(ModuleDescriptor moduleDescriptor, RuntimeModuleDeploymentProperties properties,
+				Container container) {
+			this.moduleDescriptor = moduleDescriptor;
+			this.properties = properties;
+			this.container = container;
+			this.moduleSequence = properties.getSequence();
+			this.deploymentPath = new ModuleDeploymentsPath()
+					.setContainer(container.getName())
+					.setDeploymentUnitName(moduleDescriptor.getGroup())
+					.setModuleType(moduleDescriptor.getType().toString())
+					.setModuleLabel(moduleDescriptor.getModuleLabel())
+					.setModuleSequence(String.valueOf(moduleSequence)).build();
+			this.statusPath = Paths.build(deploymentPath, Paths.STATUS);
+		}
+	}
+
 	/**
 	 * Key used to track results of module deployments to a container.
 	 */
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -39,6 +39,12 @@ public class SupervisorElectedEvent {
 	 */
 	private final PathChildrenCache jobDeployments;
 
+	/**
+	 * {@link org.apache.curator.framework.recipes.cache.PathChildrenCache} for containers path; not started
+	 * until the listeners have been invoked, so they may add their own cache listeners
+	 */
+	private final PathChildrenCache containers;
+
 	/**
 	 * Construct LeaderElected event.
 	 *
@@ -48,9 +54,23 @@ public class SupervisorElectedEvent {
 	 */
 	public SupervisorElectedEvent(PathChildrenCache moduleDeploymentRequests, PathChildrenCache streamDeployments,
 			PathChildrenCache jobDeployments) {
+		this(moduleDeploymentRequests, streamDeployments, jobDeployments, null);
+	}
+
+	/**
+	 * Construct LeaderElected event.
+	 *
+	 * @param moduleDeploymentRequests module deployment requests path cache
+	 * @param streamDeployments        stream deployment requests path cache
+	 * @param jobDeployments           job deployment requests path cache
+	 * @param containers               containers path cache
+	 */
+	public SupervisorElectedEvent(PathChildrenCache moduleDeploymentRequests, PathChildrenCache streamDeployments,
+			PathChildrenCache jobDeployments, PathChildrenCache containers) {
 		this.moduleDeploymentRequests = moduleDeploymentRequests;
 		this.streamDeployments = streamDeployments;
 		this.jobDeployments = jobDeployments;
+		this.containers = containers;
 	}
 
 	public PathChildrenCache getModuleDeploymentRequests() {
@@ -64,4 +84,8 @@ public class SupervisorElectedEvent {
 	public PathChildrenCache getJobDeployments() {
 		return jobDeployments;
 	}
+
+	public PathChildrenCache getContainers() {
+		return containers;
+	}
 }
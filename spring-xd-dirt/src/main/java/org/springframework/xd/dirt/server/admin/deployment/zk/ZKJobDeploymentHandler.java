@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -145,10 +145,11 @@ public class ZKJobDeploymentHandler extends ZKDeploymentHandler {
 
 			try {
 				Collection<ModuleDeploymentStatus> deploymentStatuses = new ArrayList<ModuleDeploymentStatus>();
+				ContainerMatcher deploymentMatcher = containerMatcher.forDeployment();
 				for (ModuleDescriptor descriptor : job.getModuleDescriptors()) {
 					RuntimeModuleDeploymentProperties deploymentProperties = new RuntimeModuleDeploymentProperties();
 					deploymentProperties.putAll(provider.propertiesForDescriptor(descriptor));
-					Deque<Container> matchedContainers = new ArrayDeque<Container>(containerMatcher.match(descriptor,
+					Deque<Container> matchedContainers = new ArrayDeque<Container>(deploymentMatcher.match(descriptor,
 							deploymentProperties,
 							containerRepository.findAll()));
 					// Modules count == 0
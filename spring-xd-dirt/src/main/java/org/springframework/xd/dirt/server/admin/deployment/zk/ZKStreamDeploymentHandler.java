@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,8 @@ package org.springframework.xd.dirt.server.admin.deployment.zk;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.zookeeper.KeeperException;
@@ -25,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.util.Assert;
 import org.springframework.xd.dirt.cluster.Container;
 import org.springframework.xd.dirt.cluster.NoContainerException;
@@ -85,6 +88,12 @@ public class ZKStreamDeploymentHandler extends ZKDeploymentHandler {
 	@Autowired
 	private DeploymentUnitStateCalculator stateCalculator;
 
+	/**
+	 * Whether the deployment requests for the modules of a stream are written
+	 * in batches instead of one module at a time
+	 */
+	@Value("${xd.admin.batchDeploymentWrites:false}")
+	private boolean batchDeploymentWrites;
 
 	/**
 	 * Deploy the stream with the given name.
@@ -136,6 +145,15 @@ public class ZKStreamDeploymentHandler extends ZKDeploymentHandler {
 			Collection<ModuleDeploymentStatus> deploymentStatuses = new ArrayList<ModuleDeploymentStatus>();
 			DefaultModuleDeploymentPropertiesProvider deploymentPropertiesProvider =
 					new DefaultModuleDeploymentPropertiesProvider(stream);
+
+			// used for batched deployment writes; this provider generates
+			// the module sequence ids for all modules of the stream
+			StreamRuntimePropertiesProvider batchRuntimeProvider =
+					new StreamRuntimePropertiesProvider(stream, deploymentPropertiesProvider);
+			Map<ModuleDescriptor, Collection<Container>> batch = new LinkedHashMap<ModuleDescriptor, Collection<Container>>();
+			// the placement strategy may read the load of the containers once for all modules of the stream
+			ContainerMatcher deploymentMatcher = containerMatcher.forDeployment();
+
 			for (Iterator<ModuleDescriptor> descriptors = stream.getDeploymentOrderIterator(); descriptors.hasNext(); ) {
 				ModuleDescriptor descriptor = descriptors.next();
 				ModuleDeploymentProperties deploymentProperties = deploymentPropertiesProvider.propertiesForDescriptor(descriptor);
@@ -157,25 +175,45 @@ public class ZKStreamDeploymentHandler extends ZKDeploymentHandler {
 					}
 				}
 
+				// modules are deployed in reverse order so that the first module, which
+				// produces the data for the stream, is started after the modules consuming
+				// it; in batch mode the remaining modules are deployed concurrently
+				// before the first module
+				if (batchDeploymentWrites && descriptor.getIndex() == 0 && !batch.isEmpty()) {
+					deploymentStatuses.addAll(moduleDeploymentWriter.writeDeployments(batch, batchRuntimeProvider));
+					batch.clear();
+				}
+
 				try {
 					// find the containers that can deploy these modules
-					Collection<Container> containers = containerMatcher.match(descriptor, deploymentProperties,
+					Collection<Container> containers = deploymentMatcher.match(descriptor, deploymentProperties,
 							containerRepository.findAll());
 
-					// write out the deployment requests targeted to the containers obtained above;
-					// a new instance of StreamPartitionPropertiesProvider is created since this
-					// object is responsible for generating unique sequence ids for modules
-					StreamRuntimePropertiesProvider deploymentRuntimeProvider =
-							new StreamRuntimePropertiesProvider(stream, deploymentPropertiesProvider);
-
-					deploymentStatuses.addAll(moduleDeploymentWriter.writeDeployment(
-							descriptor, deploymentRuntimeProvider, containers));
+					if (batchDeploymentWrites) {
+						if (containers.isEmpty()) {
+							throw new NoContainerException();
+						}
+						batch.put(descriptor, containers);
+					}
+					else {
+						// write out the deployment requests targeted to the containers obtained above;
+						// a new instance of StreamPartitionPropertiesProvider is created since this
+						// object is responsible for generating unique sequence ids for modules
+						StreamRuntimePropertiesProvider deploymentRuntimeProvider =
+								new StreamRuntimePropertiesProvider(stream, deploymentPropertiesProvider);
+
+						deploymentStatuses.addAll(moduleDeploymentWriter.writeDeployment(
+								descriptor, deploymentRuntimeProvider, containers));
+					}
 				}
 				catch (NoContainerException e) {
 					logger.warn("No containers available for deployment of module '{}' for stream '{}'",
 							descriptor.getModuleLabel(), stream.getName());
 				}
 			}
+			if (!batch.isEmpty()) {
+				deploymentStatuses.addAll(moduleDeploymentWriter.writeDeployments(batch, batchRuntimeProvider));
+			}
 
 			DeploymentUnitStatus status = stateCalculator.calculate(stream, deploymentPropertiesProvider,
 					deploymentStatuses);
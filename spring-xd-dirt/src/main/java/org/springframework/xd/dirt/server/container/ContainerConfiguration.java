@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,9 +17,11 @@
 package org.springframework.xd.dirt.server.container;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.autoconfigure.AuditAutoConfiguration;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.batch.BatchAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.jmx.JmxAutoConfiguration;
 import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
 import org.springframework.boot.autoconfigure.mongo.MongoDataAutoConfiguration;
@@ -88,6 +90,9 @@ public class ContainerConfiguration {
 	@Autowired
 	private ZooKeeperConnection zooKeeperConnection;
 
+	@Value("${xd.moduleDeployment.concurrency:1}")
+	private int moduleDeploymentConcurrency;
+
 	@Bean
 	public ApplicationListener<?> xdInitializer(ApplicationContext context) {
 		XdConfigLoggingInitializer delegate = new XdConfigLoggingInitializer(true);
@@ -123,7 +128,15 @@ public class ContainerConfiguration {
 		JobFactory jobFactory = new JobFactory(jobDefinitionRepository, moduleRegistry,
 				moduleOptionsMetadataResolver);
 		return new DeploymentListener(zooKeeperConnection, moduleDeployer, containerAttributes, jobFactory,
-				streamFactory);
+				streamFactory, moduleDeploymentConcurrency);
+	}
+
+	@Bean
+	@ConditionalOnExpression("${xd.messageRateMonitoring.enabled:false}")
+	public ModuleMessageRatePublisher moduleMessageRatePublisher(
+			@Value("${xd.messageRateMonitoring.publishInterval:5000}") long publishInterval) {
+		return new ModuleMessageRatePublisher(zooKeeperConnection, moduleDeployer, containerAttributes.getId(),
+				publishInterval);
 	}
 
 	private void initializeZooKeeperConnection() {
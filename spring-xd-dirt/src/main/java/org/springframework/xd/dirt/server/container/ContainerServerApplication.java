@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2014 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.xd.dirt.server.container;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,6 +75,8 @@ public class ContainerServerApplication implements EnvironmentAware {
 
 	public static final String CONTAINER_ATTRIBUTES_PREFIX = "xd.container.";
 
+	public static final String CONTAINER_ID_PROPERTY = CONTAINER_ATTRIBUTES_PREFIX + ContainerAttributes.CONTAINER_ID_KEY;
+
 	private ConfigurableApplicationContext containerContext;
 
 	private ConfigurableEnvironment environment;
@@ -98,6 +101,8 @@ public class ContainerServerApplication implements EnvironmentAware {
 
 			this.containerContext = new SpringApplicationBuilder(ContainerOptions.class, ParentConfiguration.class)
 					.logStartupInfo(false)
+					// choose the container id up front, so the message bus in the shared context knows it too
+					.properties(CONTAINER_ID_PROPERTY + "=" + UUID.randomUUID())
 					.profiles(XdProfiles.CONTAINER_PROFILE)
 					.listeners(bootstrapContext.commandLineListener())
 					.listeners(classLoaderFactory)
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.api.CuratorWatcher;
@@ -28,6 +31,7 @@ import org.apache.curator.framework.imps.CuratorFrameworkState;
 import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
 import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ThreadUtils;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.WatchedEvent;
@@ -35,6 +39,8 @@ import org.apache.zookeeper.Watcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 import org.springframework.xd.dirt.cluster.ContainerAttributes;
 import org.springframework.xd.dirt.core.Job;
@@ -62,7 +68,7 @@ import org.springframework.xd.module.core.Module;
  * @author Ilayaperumal Gopinathan Listener for deployment requests for a container instance under {@link
  *         org.springframework.xd.dirt.zookeeper.Paths#DEPLOYMENTS}.
  */
-class DeploymentListener implements PathChildrenCacheListener {
+class DeploymentListener implements PathChildrenCacheListener, DisposableBean {
 
 	private static final Logger logger = LoggerFactory.getLogger(DeploymentListener.class);
 
@@ -106,12 +112,26 @@ class DeploymentListener implements PathChildrenCacheListener {
 	 */
 	private static final String TAP_CHANNEL_PREFIX = "tap:";
 
+	/**
+	 * Time in milliseconds to wait for the deployment executors to complete
+	 * the requests they have accepted on shutdown.
+	 */
+	private static final long DEPLOYMENT_EXECUTOR_SHUTDOWN_TIMEOUT = 30000;
+
 	/**
 	 * Map of deployed modules.
 	 */
 	private final Map<ModuleDescriptor.Key, ModuleDescriptor> mapDeployedModules =
 			new ConcurrentHashMap<ModuleDescriptor.Key, ModuleDescriptor>();
 
+	/**
+	 * Single threaded executors that process deployment requests when more than one
+	 * module may be deployed at a time. All requests for a deployment unit are
+	 * processed by the same executor, in the order they were received. This is
+	 * {@code null} if requests are processed by the deployments cache thread.
+	 */
+	private final ExecutorService[] deploymentExecutors;
+
 	/**
 	 * Create an instance that will register the provided {@link ContainerAttributes} whenever the underlying {@link
 	 * ZooKeeperConnection} is established. If that connection is already established at the time this instance receives
@@ -127,6 +147,35 @@ class DeploymentListener implements PathChildrenCacheListener {
 	 */
 	public DeploymentListener(ZooKeeperConnection zkConnection, ModuleDeployer moduleDeployer,
 			ContainerAttributes containerAttributes, JobFactory jobFactory, StreamFactory streamFactory) {
+		this(zkConnection, moduleDeployer, containerAttributes, jobFactory, streamFactory, 1);
+	}
+
+	/**
+	 * Create an instance that deploys the modules of up to {@code deploymentConcurrency}
+	 * deployment units concurrently. The modules of a single deployment unit are
+	 * always deployed and undeployed in the order the requests were received.
+	 *
+	 * @param containerAttributes runtime and configured attributes for the container
+	 * @param streamFactory factory to construct {@link Stream}
+	 * @param jobFactory factory to construct {@link Job}
+	 * @param moduleDeployer module deployer
+	 * @param zkConnection ZooKeeper connection
+	 * @param deploymentConcurrency maximum number of modules deployed concurrently
+	 */
+	public DeploymentListener(ZooKeeperConnection zkConnection, ModuleDeployer moduleDeployer,
+			ContainerAttributes containerAttributes, JobFactory jobFactory, StreamFactory streamFactory,
+			int deploymentConcurrency) {
+		Assert.isTrue(deploymentConcurrency > 0, "deploymentConcurrency must be greater than 0");
+		if (deploymentConcurrency > 1) {
+			this.deploymentExecutors = new ExecutorService[deploymentConcurrency];
+			for (int i = 0; i < deploymentConcurrency; i++) {
+				this.deploymentExecutors[i] = Executors.newSingleThreadExecutor(
+						ThreadUtils.newThreadFactory("ModuleDeployment-" + i));
+			}
+		}
+		else {
+			this.deploymentExecutors = null;
+		}
 		this.zkConnection = zkConnection;
 		this.jobModuleWatcher = new JobModuleWatcher();
 		this.streamModuleWatcher = new StreamModuleWatcher();
@@ -146,16 +195,59 @@ class DeploymentListener implements PathChildrenCacheListener {
 			case INITIALIZED:
 				break;
 			case CHILD_ADDED:
-				onChildAdded(client, event.getData());
-				break;
 			case CHILD_REMOVED:
-				onChildRemoved(client, event.getData());
+				if (deploymentExecutors == null) {
+					onChildEvent(client, event);
+				}
+				else {
+					dispatchChildEvent(client, event);
+				}
 				break;
 			default:
 				break;
 		}
 	}
 
+	/**
+	 * Handle a deployment or undeployment request.
+	 *
+	 * @param client curator client
+	 * @param event the {@link PathChildrenCacheEvent} for the request
+	 * @throws Exception
+	 */
+	private void onChildEvent(CuratorFramework client, PathChildrenCacheEvent event) throws Exception {
+		if (event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED) {
+			onChildAdded(client, event.getData());
+		}
+		else {
+			onChildRemoved(client, event.getData());
+		}
+	}
+
+	/**
+	 * Hand off a deployment or undeployment request to the executor
+	 * for its deployment unit.
+	 *
+	 * @param client curator client
+	 * @param event the {@link PathChildrenCacheEvent} for the request
+	 */
+	private void dispatchChildEvent(final CuratorFramework client, final PathChildrenCacheEvent event) {
+		String unitName = new ModuleDeploymentsPath(event.getData().getPath()).getDeploymentUnitName();
+		int lane = (unitName.hashCode() & Integer.MAX_VALUE) % deploymentExecutors.length;
+		deploymentExecutors[lane].execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					onChildEvent(client, event);
+				}
+				catch (Exception e) {
+					logger.error("Exception processing deployment event " + event, e);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Event handler for new module deployments.
 	 *
@@ -464,6 +556,41 @@ class DeploymentListener implements PathChildrenCacheListener {
 				sourceChannelName.substring(TAP_CHANNEL_PREFIX.length()) : null;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Shuts down the deployment executors, if any. Requests that have been
+	 * accepted are completed unless they take longer than
+	 * {@value #DEPLOYMENT_EXECUTOR_SHUTDOWN_TIMEOUT} milliseconds, after which
+	 * the executors are interrupted.
+	 */
+	@Override
+	public void destroy() {
+		if (deploymentExecutors == null) {
+			return;
+		}
+		for (ExecutorService executor : deploymentExecutors) {
+			executor.shutdown();
+		}
+		long deadline = System.currentTimeMillis() + DEPLOYMENT_EXECUTOR_SHUTDOWN_TIMEOUT;
+		try {
+			for (ExecutorService executor : deploymentExecutors) {
+				long timeout = deadline - System.currentTimeMillis();
+				if (timeout <= 0 || !executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+					logger.warn("Deployment requests did not complete within {} ms of shutdown; interrupting them",
+							DEPLOYMENT_EXECUTOR_SHUTDOWN_TIMEOUT);
+					break;
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (ExecutorService executor : deploymentExecutors) {
+			executor.shutdownNow();
+		}
+	}
+
 	void undeployAllModules() {
 		for (Iterator<ModuleDescriptor.Key> iterator = mapDeployedModules.keySet().iterator(); iterator.hasNext(); ) {
 			ModuleDescriptor.Key key = iterator.next();
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.server.container;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.utils.ThreadUtils;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.channel.QueueChannelOperations;
+import org.springframework.integration.support.management.MessageChannelMetrics;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.util.Assert;
+import org.springframework.xd.dirt.module.ModuleDeployer;
+import org.springframework.xd.dirt.zookeeper.Paths;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperConnection;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperUtils;
+import org.springframework.xd.module.RuntimeModuleDeploymentProperties;
+import org.springframework.xd.module.core.Module;
+
+/**
+ * Periodically publishes the message rates of the modules deployed to this
+ * container to an ephemeral node under {@link Paths#MESSAGE_RATES}. The node
+ * data is a flat map keyed by {@code <group>.<type>.<label>.<sequence>.<metric>}
+ * where the metric is the name of the module channel ({@code input} or
+ * {@code output}) for its mean send rate, or the channel name followed by
+ * {@link #QUEUE_SIZE_SUFFIX} for the depth of a queue channel.
+ * <p>
+ * This lets the admin serve message rates from a cache instead of querying
+ * each container's management endpoint on every request.
+ *
+ * @see org.springframework.xd.dirt.container.store.ZooKeeperModuleMessageRateRepository
+ */
+public class ModuleMessageRatePublisher implements SmartLifecycle {
+
+	/**
+	 * Name of the module input channel.
+	 */
+	public static final String INPUT_CHANNEL_NAME = "input";
+
+	/**
+	 * Name of the module output channel.
+	 */
+	public static final String OUTPUT_CHANNEL_NAME = "output";
+
+	/**
+	 * Suffix appended to a channel metric key for the channel's queue size.
+	 */
+	public static final String QUEUE_SIZE_SUFFIX = "QueueSize";
+
+	/**
+	 * Logger.
+	 */
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	/**
+	 * ZooKeeper connection.
+	 */
+	private final ZooKeeperConnection zkConnection;
+
+	/**
+	 * Module deployer providing the modules deployed to this container.
+	 */
+	private final ModuleDeployer moduleDeployer;
+
+	/**
+	 * Id of this container; used as the name of the message rates node.
+	 */
+	private final String containerId;
+
+	/**
+	 * Interval in milliseconds between publications.
+	 */
+	private final long publishInterval;
+
+	/**
+	 * Executor used to publish the message rates; created on {@link #start}.
+	 */
+	private volatile ScheduledExecutorService executorService;
+
+	/**
+	 * Construct a {@code ModuleMessageRatePublisher}.
+	 *
+	 * @param zkConnection ZooKeeper connection
+	 * @param moduleDeployer module deployer for this container
+	 * @param containerId id of this container
+	 * @param publishInterval interval in milliseconds between publications
+	 */
+	public ModuleMessageRatePublisher(ZooKeeperConnection zkConnection, ModuleDeployer moduleDeployer,
+			String containerId, long publishInterval) {
+		Assert.notNull(zkConnection, "zkConnection cannot be null");
+		Assert.notNull(moduleDeployer, "moduleDeployer cannot be null");
+		Assert.hasText(containerId, "containerId cannot be empty");
+		Assert.isTrue(publishInterval > 0, "publishInterval must be greater than 0");
+		this.zkConnection = zkConnection;
+		this.moduleDeployer = moduleDeployer;
+		this.containerId = containerId;
+		this.publishInterval = publishInterval;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void start() {
+		if (this.executorService == null) {
+			this.executorService = Executors.newSingleThreadScheduledExecutor(
+					ThreadUtils.newThreadFactory("ModuleMessageRatePublisher"));
+			this.executorService.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						publish();
+					}
+					catch (Exception e) {
+						logger.warn("Exception publishing module message rates", e);
+					}
+				}
+			}, publishInterval, publishInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void stop() {
+		if (this.executorService != null) {
+			this.executorService.shutdownNow();
+			this.executorService = null;
+			if (zkConnection.isConnected()) {
+				try {
+					zkConnection.getClient().delete().forPath(path());
+				}
+				catch (Exception e) {
+					// the node is ephemeral; ignore and let it expire with the session
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isRunning() {
+		return this.executorService != null;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getPhase() {
+		return 0;
+	}
+
+	/**
+	 * Write the current message rates of the deployed modules to ZooKeeper.
+	 * Publication is skipped if ZooKeeper is not connected.
+	 *
+	 * @throws Exception if the message rates could not be written
+	 */
+	protected void publish() throws Exception {
+		if (!zkConnection.isConnected()) {
+			return;
+		}
+		byte[] data = ZooKeeperUtils.mapToBytes(collectMessageRates());
+		CuratorFramework client = zkConnection.getClient();
+		String path = path();
+		try {
+			client.setData().forPath(path, data);
+		}
+		catch (KeeperException.NoNodeException e) {
+			// first publication, or the ephemeral node was removed with an expired session
+			client.create().creatingParentsIfNeeded().withMode(CreateMode.EPHEMERAL).forPath(path, data);
+		}
+	}
+
+	/**
+	 * Collect the message rates and queue sizes of the input and output channels
+	 * of all deployed modules.
+	 *
+	 * @return map of metric keys to values
+	 */
+	protected Map<String, String> collectMessageRates() {
+		Map<String, String> rates = new HashMap<String, String>();
+		for (Map<Integer, Module> modules : moduleDeployer.getDeployedModules().values()) {
+			for (Module module : modules.values()) {
+				String moduleKey = moduleKey(module);
+				try {
+					collectChannelMetrics(rates, moduleKey, module, INPUT_CHANNEL_NAME);
+					collectChannelMetrics(rates, moduleKey, module, OUTPUT_CHANNEL_NAME);
+				}
+				catch (RuntimeException e) {
+					// the module may be undeploying
+					logger.debug("Could not collect message rates for module {}: {}", moduleKey, e.getMessage());
+				}
+			}
+		}
+		return rates;
+	}
+
+	private void collectChannelMetrics(Map<String, String> rates, String moduleKey, Module module,
+			String channelName) {
+		MessageChannel channel = module.getComponent(channelName, MessageChannel.class);
+		if (channel instanceof MessageChannelMetrics) {
+			MessageChannelMetrics metrics = (MessageChannelMetrics) channel;
+			if (!metrics.isStatsEnabled()) {
+				// rates are reported from the next publication on
+				metrics.setStatsEnabled(true);
+			}
+			rates.put(moduleKey + "." + channelName, String.valueOf(metrics.getMeanSendRate()));
+		}
+		if (channel instanceof QueueChannelOperations) {
+			rates.put(moduleKey + "." + channelName + QUEUE_SIZE_SUFFIX,
+					String.valueOf(((QueueChannelOperations) channel).getQueueSize()));
+		}
+	}
+
+	/**
+	 * Return the key of a module, in the same format as the {@code module}
+	 * property of the module's MBean object names.
+	 *
+	 * @param module the module
+	 * @return the module key
+	 * @see org.springframework.xd.dirt.module.jmx.ModuleObjectNamingStrategy
+	 */
+	private String moduleKey(Module module) {
+		return String.format("%s.%s.%s.%s", module.getDescriptor().getGroup(), module.getType().name(),
+				module.getDescriptor().getModuleLabel(),
+				module.getDeploymentProperties().get(RuntimeModuleDeploymentProperties.SEQUENCE_KEY));
+	}
+
+	private String path() {
+		return Paths.build(Paths.MESSAGE_RATES, containerId);
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -13,6 +13,8 @@
 
 package org.springframework.xd.dirt.server.singlenode;
 
+import java.util.UUID;
+
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextInitializer;
@@ -65,6 +67,8 @@ public class SingleNodeApplication {
 		SpringApplicationBuilder admin = new SpringApplicationBuilder(SingleNodeOptions.class,
 				ParentConfiguration.class)
 				.logStartupInfo(false)
+				// choose the container id up front, so the message bus in the shared context knows it too
+				.properties(ContainerServerApplication.CONTAINER_ID_PROPERTY + "=" + UUID.randomUUID())
 				.listeners(bootstrapContext.commandLineListener())
 				.listeners(classLoaderFactory)
 				.listeners(decryptorContext.propertiesDecryptor())
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.stream.zookeeper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.util.Assert;
+
+/**
+ * {@link PublicMetrics} for the stream and job definition caches, exposed
+ * through the management {@code metrics} endpoint as
+ * {@code xd.definitionCache.<streams|jobs>.<hits|misses|hitRate|staleness>}.
+ *
+ * @see ZooKeeperDefinitionCache
+ */
+public class DefinitionCacheMetrics implements PublicMetrics {
+
+	private static final String PREFIX = "xd.definitionCache.";
+
+	private final ZooKeeperStreamDefinitionRepository streamDefinitionRepository;
+
+	private final ZooKeeperJobDefinitionRepository jobDefinitionRepository;
+
+	/**
+	 * Construct a {@code DefinitionCacheMetrics}.
+	 *
+	 * @param streamDefinitionRepository the stream definition repository
+	 * @param jobDefinitionRepository the job definition repository
+	 */
+	public DefinitionCacheMetrics(ZooKeeperStreamDefinitionRepository streamDefinitionRepository,
+			ZooKeeperJobDefinitionRepository jobDefinitionRepository) {
+		Assert.notNull(streamDefinitionRepository, "streamDefinitionRepository cannot be null");
+		Assert.notNull(jobDefinitionRepository, "jobDefinitionRepository cannot be null");
+		this.streamDefinitionRepository = streamDefinitionRepository;
+		this.jobDefinitionRepository = jobDefinitionRepository;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		addMetrics(metrics, "streams", streamDefinitionRepository.getDefinitionCache());
+		addMetrics(metrics, "jobs", jobDefinitionRepository.getDefinitionCache());
+		return metrics;
+	}
+
+	private void addMetrics(List<Metric<?>> metrics, String name, ZooKeeperDefinitionCache cache) {
+		metrics.add(new Metric<Long>(PREFIX + name + ".hits", cache.getHits()));
+		metrics.add(new Metric<Long>(PREFIX + name + ".misses", cache.getMisses()));
+		metrics.add(new Metric<Double>(PREFIX + name + ".hitRate", cache.getHitRate()));
+		metrics.add(new Metric<Long>(PREFIX + name + ".staleness", cache.getStaleness()));
+	}
+
+}
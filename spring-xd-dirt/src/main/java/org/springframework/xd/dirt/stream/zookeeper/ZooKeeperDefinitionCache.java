@@ -0,0 +1,322 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.stream.zookeeper;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.dirt.zookeeper.Paths;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperConnection;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperUtils;
+
+/**
+ * Watched in-memory cache of the definition nodes under a ZooKeeper path,
+ * used by the definition repositories to list all definitions without a
+ * ZooKeeper read per definition. The underlying {@link PathChildrenCache}
+ * is created on first use and is closed if the ZooKeeper connection is
+ * suspended or lost; it is rebuilt on the next read. While it is not
+ * available, callers are expected to read from ZooKeeper directly.
+ * <p>
+ * The cache is kept up to date by ZooKeeper watches. Writes made through
+ * the owning repository should be followed by a call to {@link #refresh}
+ * so that they are visible to subsequent reads in this process.
+ *
+ * @see ZooKeeperStreamDefinitionRepository
+ * @see ZooKeeperJobDefinitionRepository
+ */
+public class ZooKeeperDefinitionCache {
+
+	/**
+	 * Logger.
+	 */
+	private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+	/**
+	 * ZooKeeper connection.
+	 */
+	private final ZooKeeperConnection zkConnection;
+
+	/**
+	 * Path of the node whose children are cached.
+	 */
+	private final String path;
+
+	/**
+	 * Name prefix for the cache threads.
+	 */
+	private final String threadName;
+
+	/**
+	 * Number of reads served by an initialized cache while it was connected
+	 * to ZooKeeper, and therefore kept up to date by watches.
+	 */
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * Number of reads that required the cache to be built, that could not
+	 * be served by the cache, or that were served while the cache was
+	 * disconnected from ZooKeeper.
+	 */
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Whether the cache is initialized and connected to ZooKeeper.
+	 */
+	private volatile boolean connected;
+
+	/**
+	 * Local time in milliseconds at which the cache was last known to be in
+	 * sync with ZooKeeper: when it last disconnected, or {@code 0} if it has
+	 * never been built.
+	 */
+	private volatile long lastSyncTime;
+
+	/**
+	 * Atomic reference to the {@link PathChildrenCache} for the cached path.
+	 * This reference should <em>not</em> be used directly; instead use
+	 * {@link #ensureCache} to ensure the cache is initialized.
+	 *
+	 * @see #ensureCache
+	 */
+	private final AtomicReference<PathChildrenCache> cacheRef = new AtomicReference<PathChildrenCache>();
+
+	/**
+	 * Construct a {@code ZooKeeperDefinitionCache}.
+	 *
+	 * @param zkConnection the ZooKeeper connection
+	 * @param path the path of the node whose children are cached
+	 * @param threadName name prefix for the cache threads
+	 */
+	public ZooKeeperDefinitionCache(ZooKeeperConnection zkConnection, String path, String threadName) {
+		Assert.notNull(zkConnection, "zkConnection cannot be null");
+		Assert.hasText(path, "path cannot be empty");
+		this.zkConnection = zkConnection;
+		// the cache compares node paths with this path, which must have a leading slash
+		this.path = Paths.build(path);
+		this.threadName = threadName;
+	}
+
+	/**
+	 * Return the data of all cached definitions keyed by definition name and
+	 * sorted by name, or {@code null} if the cache could not be initialized
+	 * (likely due to a ZooKeeper connection error).
+	 *
+	 * @return map of definition name to definition data, or {@code null}
+	 */
+	public Map<String, byte[]> getDefinitions() {
+		boolean initialized = cacheRef.get() != null && connected;
+		PathChildrenCache cache;
+		try {
+			cache = ensureCache();
+		}
+		catch (RuntimeException e) {
+			misses.incrementAndGet();
+			logger.debug("Definition cache for {} not available", path, e);
+			return null;
+		}
+		(initialized ? hits : misses).incrementAndGet();
+
+		Map<String, byte[]> definitions = new LinkedHashMap<String, byte[]>();
+		for (ChildData childData : cache.getCurrentData()) {
+			if (childData.getData() != null) {
+				definitions.put(Paths.stripPath(childData.getPath()), childData.getData());
+			}
+		}
+		return definitions;
+	}
+
+	/**
+	 * Re-read the given definition from ZooKeeper into the cache, if the
+	 * cache is initialized. This makes a definition written or deleted by
+	 * this process visible to subsequent reads without waiting for the
+	 * watch to fire.
+	 *
+	 * @param id the definition name
+	 */
+	public void refresh(String id) {
+		PathChildrenCache cache = cacheRef.get();
+		if (cache != null) {
+			try {
+				cache.rebuildNode(Paths.build(path, id));
+			}
+			catch (Exception e) {
+				// the cache can no longer be trusted; it is rebuilt on the next read
+				logger.debug("Could not refresh definition {} in cache for {}", id, path, e);
+				closeCache();
+			}
+		}
+	}
+
+	/**
+	 * Close the cache. It is rebuilt if it is used again.
+	 */
+	public void close() {
+		closeCache();
+	}
+
+	/**
+	 * Return the number of reads served by an initialized cache while it was
+	 * connected to ZooKeeper.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Return the number of reads that required the cache to be built, that
+	 * could not be served by the cache, or that were served while the cache
+	 * was disconnected from ZooKeeper.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Return the ratio of hits to reads, or {@code 0} if there were no reads.
+	 *
+	 * @return the cache hit rate
+	 */
+	public double getHitRate() {
+		long hits = this.hits.get();
+		long reads = hits + misses.get();
+		return reads == 0 ? 0 : (double) hits / reads;
+	}
+
+	/**
+	 * Return the time in milliseconds, measured on the local clock, since
+	 * the cache was last in sync with ZooKeeper. This is {@code 0} while the
+	 * cache is initialized and connected, the time since the cache
+	 * disconnected while it is disconnected or being rebuilt, and {@code -1}
+	 * if the cache has never been built.
+	 *
+	 * @return the staleness of the cache
+	 */
+	public long getStaleness() {
+		if (connected && cacheRef.get() != null) {
+			return 0;
+		}
+		long lastSyncTime = this.lastSyncTime;
+		return (lastSyncTime == 0) ? -1 : Math.max(0, System.currentTimeMillis() - lastSyncTime);
+	}
+
+	/**
+	 * Record that the cache is no longer kept in sync with ZooKeeper.
+	 */
+	private void disconnected() {
+		if (connected) {
+			connected = false;
+			lastSyncTime = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Close the {@link PathChildrenCache} and null out the
+	 * {@link #cacheRef atomic reference}.
+	 */
+	private void closeCache() {
+		PathChildrenCache cache = cacheRef.get();
+		if (cache != null) {
+			disconnected();
+			try {
+				cache.close();
+			}
+			catch (Exception e) {
+				// ignore exception on close
+			}
+			finally {
+				cacheRef.compareAndSet(cache, null);
+			}
+		}
+	}
+
+	/**
+	 * Return a {@link PathChildrenCache} for the cached path, creating and
+	 * initializing a new instance if necessary.
+	 *
+	 * @return a {@code PathChildrenCache} for the cached path
+	 * @throws java.lang.IllegalStateException if the cache could not be initialized
+	 *        (likely due to a ZooKeeper connection error)
+	 */
+	private PathChildrenCache ensureCache() {
+		if (cacheRef.get() == null) {
+			synchronized (cacheRef) {
+				if (cacheRef.get() == null) {
+					CuratorFramework client = zkConnection.getClient();
+					PathChildrenCache cache = new PathChildrenCache(client, path, true,
+							ThreadUtils.newThreadFactory(threadName));
+					cache.getListenable().addListener(new PathChildrenCacheListener() {
+
+						@Override
+						public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) {
+							ZooKeeperUtils.logCacheEvent(logger, event);
+							switch (event.getType()) {
+								case CONNECTION_SUSPENDED:
+								case CONNECTION_LOST:
+									// shut down the cache if ZooKeeper connection goes away
+									disconnected();
+									closeCache();
+									break;
+								default:
+									break;
+							}
+						}
+					});
+					try {
+						Paths.ensurePath(client, path);
+						cacheRef.set(cache);
+						cache.start(PathChildrenCache.StartMode.BUILD_INITIAL_CACHE);
+						connected = true;
+					}
+					catch (Exception e) {
+						try {
+							cache.close();
+						}
+						catch (Exception ce) {
+							// ignore exception on close
+						}
+						finally {
+							cacheRef.compareAndSet(cache, null);
+						}
+						throw ZooKeeperUtils.wrapThrowable(e);
+					}
+				}
+			}
+		}
+
+		PathChildrenCache cache = cacheRef.get();
+		Assert.state(cache != null, "Definition cache for " + path + " not initialized " +
+				"(likely as a result of a ZooKeeper connection error)");
+		return cache;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -31,6 +31,7 @@ import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -45,13 +46,16 @@ import org.springframework.xd.dirt.zookeeper.ZooKeeperUtils;
 
 /**
  * A Zookeeper backed repository for persisting {@link JobDefinition}s.
+ * Listing all definitions is served from a {@link ZooKeeperDefinitionCache}
+ * while it is available; single definitions are always read from ZooKeeper.
  * 
  * @author Mark Fisher
  * @author David Turanski
  */
 // todo: the JobDefinitionRepository abstraction can be removed once we are fully zk-enabled since we do not need to
 // support multiple impls at that point
-public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository, InitializingBean {
+public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository, InitializingBean,
+		DisposableBean {
 
 	private final Logger logger = LoggerFactory.getLogger(ZooKeeperJobDefinitionRepository.class);
 
@@ -61,9 +65,12 @@ public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository
 
 	private final RepositoryConnectionListener connectionListener = new RepositoryConnectionListener();
 
+	private final ZooKeeperDefinitionCache definitionCache;
+
 	@Autowired
 	public ZooKeeperJobDefinitionRepository(ZooKeeperConnection zkConnection) {
 		this.zkConnection = zkConnection;
+		this.definitionCache = new ZooKeeperDefinitionCache(zkConnection, Paths.JOBS, "JobDefinitionCache");
 	}
 
 	@Override
@@ -75,6 +82,20 @@ public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository
 		}
 	}
 
+	@Override
+	public void destroy() {
+		definitionCache.close();
+	}
+
+	/**
+	 * Return the cache used to list job definitions.
+	 *
+	 * @return the job definition cache
+	 */
+	ZooKeeperDefinitionCache getDefinitionCache() {
+		return definitionCache;
+	}
+
 	@Override
 	public Iterable<JobDefinition> findAll(Sort sort) {
 		// todo: this ignores the Sort
@@ -111,6 +132,7 @@ public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository
 					? client.create() : client.setData();
 
 			op.forPath(path, binary);
+			definitionCache.refresh(entity.getName());
 
 			logger.info("Saved job {} with properties {}", path, map);
 		}
@@ -127,11 +149,7 @@ public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository
 	public JobDefinition findOne(String id) {
 		try {
 			byte[] bytes = zkConnection.getClient().getData().forPath(Paths.build(Paths.JOBS, id));
-			if (bytes == null) {
-				return null;
-			}
-			Map<String, String> map = ZooKeeperUtils.bytesToMap(bytes);
-			return new JobDefinition(id, map.get("definition"));
+			return bytes == null ? null : toJobDefinition(id, bytes);
 		}
 		catch (Exception e) {
 			ZooKeeperUtils.wrapAndThrowIgnoring(e, NoNodeException.class);
@@ -151,6 +169,23 @@ public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository
 
 	@Override
 	public List<JobDefinition> findAll() {
+		Map<String, byte[]> definitions = definitionCache.getDefinitions();
+		if (definitions == null) {
+			return loadAll();
+		}
+		List<JobDefinition> results = new ArrayList<JobDefinition>(definitions.size());
+		for (Map.Entry<String, byte[]> entry : definitions.entrySet()) {
+			results.add(toJobDefinition(entry.getKey(), entry.getValue()));
+		}
+		return results;
+	}
+
+	/**
+	 * Read all job definitions directly from ZooKeeper, bypassing the cache.
+	 *
+	 * @return all job definitions
+	 */
+	private List<JobDefinition> loadAll() {
 		try {
 			return this.findAll(zkConnection.getClient().getChildren().forPath(Paths.JOBS));
 		}
@@ -159,6 +194,18 @@ public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository
 		}
 	}
 
+	/**
+	 * Create a job definition from its serialized properties.
+	 *
+	 * @param id the job name
+	 * @param bytes the serialized properties
+	 * @return the job definition
+	 */
+	private JobDefinition toJobDefinition(String id, byte[] bytes) {
+		Map<String, String> map = ZooKeeperUtils.bytesToMap(bytes);
+		return new JobDefinition(id, map.get("definition"));
+	}
+
 	@Override
 	public List<JobDefinition> findAll(Iterable<String> ids) {
 		List<JobDefinition> results = new ArrayList<JobDefinition>();
@@ -188,6 +235,7 @@ public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository
 			//NoNodeException - nothing to delete
 			ZooKeeperUtils.wrapAndThrowIgnoring(e, NoNodeException.class);
 		}
+		definitionCache.refresh(id);
 	}
 
 	@Override
@@ -205,7 +253,7 @@ public class ZooKeeperJobDefinitionRepository implements JobDefinitionRepository
 	@Override
 	public void deleteAll() {
 		try {
-			delete(findAll());
+			delete(loadAll());
 		}
 		catch (Exception e) {
 			//NoNodeException - no top level node, ignore
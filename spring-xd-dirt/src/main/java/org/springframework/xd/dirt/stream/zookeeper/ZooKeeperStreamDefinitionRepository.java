@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.xd.dirt.stream.zookeeper;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -29,6 +30,7 @@ import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -50,11 +52,16 @@ import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
+ * A ZooKeeper backed repository for persisting {@link StreamDefinition}s.
+ * Listing all definitions is served from a {@link ZooKeeperDefinitionCache}
+ * while it is available; single definitions are always read from ZooKeeper.
+ *
  * @author Mark Fisher
  */
 // todo: the StreamDefinitionRepository abstraction can be removed once we are fully zk-enabled since we do not need to
 // support multiple impls at that point
-public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepository, InitializingBean {
+public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepository, InitializingBean,
+		DisposableBean {
 
 	/**
 	 * The key used in serialized properties to hold the raw definition of a stream.
@@ -82,11 +89,14 @@ public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepo
 
 	private final ObjectReader objectReader = new ObjectMapper().reader(MODULE_DEFINITIONS_LIST);
 
+	private final ZooKeeperDefinitionCache definitionCache;
+
 	@Autowired
 	public ZooKeeperStreamDefinitionRepository(ZooKeeperConnection zkConnection,
 			ModuleDependencyRepository moduleDependencyRepository) {
 		this.zkConnection = zkConnection;
 		this.moduleDependencyRepository = moduleDependencyRepository;
+		this.definitionCache = new ZooKeeperDefinitionCache(zkConnection, Paths.STREAMS, "StreamDefinitionCache");
 	}
 
 	@Override
@@ -98,6 +108,20 @@ public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepo
 		}
 	}
 
+	@Override
+	public void destroy() {
+		definitionCache.close();
+	}
+
+	/**
+	 * Return the cache used to list stream definitions.
+	 *
+	 * @return the stream definition cache
+	 */
+	ZooKeeperDefinitionCache getDefinitionCache() {
+		return definitionCache;
+	}
+
 	@Override
 	public Iterable<StreamDefinition> findAll(Sort sort) {
 		throw new UnsupportedOperationException("Auto-generated method stub");
@@ -133,6 +157,7 @@ public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepo
 					? client.create() : client.setData();
 
 			op.forPath(path, binary);
+			definitionCache.refresh(entity.getName());
 
 			logger.trace("Saved stream {} with properties {}", path, map);
 
@@ -150,16 +175,7 @@ public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepo
 	public StreamDefinition findOne(String id) {
 		try {
 			byte[] bytes = zkConnection.getClient().getData().forPath(Paths.build(Paths.STREAMS, id));
-			if (bytes == null) {
-				return null;
-			}
-			Map<String, String> map = ZooKeeperUtils.bytesToMap(bytes);
-			StreamDefinition streamDefinition = new StreamDefinition(id, map.get(DEFINITION_KEY));
-			if (map.get(MODULE_DEFINITIONS_KEY) != null) {
-				List<ModuleDefinition> moduleDefinitions = objectReader.readValue(map.get(MODULE_DEFINITIONS_KEY));
-				streamDefinition.setModuleDefinitions(moduleDefinitions);
-			}
-			return streamDefinition;
+			return bytes == null ? null : toStreamDefinition(id, bytes);
 		}
 		catch (Exception e) {
 			//NoNodeException - the definition does not exist
@@ -180,6 +196,28 @@ public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepo
 
 	@Override
 	public List<StreamDefinition> findAll() {
+		Map<String, byte[]> definitions = definitionCache.getDefinitions();
+		if (definitions == null) {
+			return loadAll();
+		}
+		try {
+			List<StreamDefinition> results = new ArrayList<StreamDefinition>(definitions.size());
+			for (Map.Entry<String, byte[]> entry : definitions.entrySet()) {
+				results.add(toStreamDefinition(entry.getKey(), entry.getValue()));
+			}
+			return results;
+		}
+		catch (Exception e) {
+			throw ZooKeeperUtils.wrapThrowable(e);
+		}
+	}
+
+	/**
+	 * Read all stream definitions directly from ZooKeeper, bypassing the cache.
+	 *
+	 * @return all stream definitions
+	 */
+	private List<StreamDefinition> loadAll() {
 		try {
 			return this.findAll(zkConnection.getClient().getChildren().forPath(Paths.STREAMS));
 		}
@@ -188,6 +226,24 @@ public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepo
 		}
 	}
 
+	/**
+	 * Create a stream definition from its serialized properties.
+	 *
+	 * @param id the stream name
+	 * @param bytes the serialized properties
+	 * @return the stream definition
+	 * @throws IOException if the module definitions cannot be read
+	 */
+	private StreamDefinition toStreamDefinition(String id, byte[] bytes) throws IOException {
+		Map<String, String> map = ZooKeeperUtils.bytesToMap(bytes);
+		StreamDefinition streamDefinition = new StreamDefinition(id, map.get(DEFINITION_KEY));
+		if (map.get(MODULE_DEFINITIONS_KEY) != null) {
+			List<ModuleDefinition> moduleDefinitions = objectReader.readValue(map.get(MODULE_DEFINITIONS_KEY));
+			streamDefinition.setModuleDefinitions(moduleDefinitions);
+		}
+		return streamDefinition;
+	}
+
 	@Override
 	public List<StreamDefinition> findAll(Iterable<String> ids) {
 		List<StreamDefinition> results = new ArrayList<StreamDefinition>();
@@ -222,6 +278,7 @@ public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepo
 			//NoNodeException - nothing to delete
 			ZooKeeperUtils.wrapAndThrowIgnoring(e, NoNodeException.class);
 		}
+		definitionCache.refresh(id);
 	}
 
 	@Override
@@ -240,7 +297,7 @@ public class ZooKeeperStreamDefinitionRepository implements StreamDefinitionRepo
 	@Override
 	public void deleteAll() {
 		try {
-			delete(findAll());
+			delete(loadAll());
 		}
 		catch (Exception e) {
 			//NoNodeException - nothing to delete
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,12 +22,17 @@ import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.codec.kryo.PojoCodec;
+import org.springframework.integration.test.util.TestUtils;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -37,6 +42,7 @@ import org.springframework.messaging.support.GenericMessage;
 import org.springframework.util.MimeType;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.xd.dirt.integration.bus.MessageBusSupport.JavaClassMimeTypeConversion;
+import org.springframework.xd.dirt.integration.bus.MessageBusSupport.PartitioningMetadata;
 import org.springframework.xd.tuple.DefaultTuple;
 import org.springframework.xd.tuple.Tuple;
 import org.springframework.xd.tuple.TupleBuilder;
@@ -127,6 +133,26 @@ public class MessageBusSupportTests {
 		assertEquals(MimeTypeUtils.APPLICATION_JSON, reconstructed.get(MessageHeaders.CONTENT_TYPE));
 	}
 
+	@Test
+	public void testSerializeAndEmbedHeadersReturnsHeadersWithoutModifyingAdditionalHeaders() throws Exception {
+		Message<String> inbound = MessageBuilder.withPayload("foo")
+				.setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON_VALUE)
+				.build();
+		Map<String, Object> additionalHeaders = new HashMap<String, Object>();
+		additionalHeaders.put("bar", "baz");
+		EmbeddedHeadersMessageConverter converter = new EmbeddedHeadersMessageConverter();
+		MessageValues serialized = messageBus.serializeAndEmbedHeaders(converter, inbound, additionalHeaders,
+				XdHeaders.STANDARD_HEADERS);
+		assertEquals(Collections.singletonMap("bar", "baz"), additionalHeaders);
+		assertEquals("baz", serialized.get("bar"));
+		assertEquals(MimeTypeUtils.TEXT_PLAIN_VALUE, serialized.get(MessageHeaders.CONTENT_TYPE));
+		assertEquals(MimeTypeUtils.APPLICATION_JSON_VALUE, serialized.get(XdHeaders.XD_ORIGINAL_CONTENT_TYPE));
+		MessageValues extracted = converter.extractHeaders(
+				MessageBuilder.withPayload((byte[]) serialized.getPayload()).build(), false);
+		assertEquals("foo", new String((byte[]) extracted.getPayload(), "UTF-8"));
+		assertEquals(MimeTypeUtils.TEXT_PLAIN_VALUE, extracted.get(MessageHeaders.CONTENT_TYPE));
+	}
+
 	@Test
 	public void testPojoSerialization() {
 		MessageValues convertedValues = messageBus.serializePayloadIfNecessary(
@@ -226,6 +252,47 @@ public class MessageBusSupportTests {
 		assertEquals(int[][][].class, Class.forName(className));
 	}
 
+	@Test
+	public void testPartitionKeyExpressions() {
+		messageBus.setIntegrationEvaluationContext(new StandardEvaluationContext());
+		Message<?> message = MessageBuilder.withPayload(Collections.singletonMap("customer", 7))
+				.setHeader("region", 5)
+				.build();
+		assertEquals(1, partition(message, "partitionKeyExpression", "headers['region']"));
+		assertEquals(3, partition(message, "partitionKeyExpression", "payload['customer']"));
+		assertEquals(3, partition(message, "partitionKeyExpression", "payload.get('customer')"));
+		assertEquals(2, partition(new GenericMessage<Integer>(10), "partitionKeyExpression", "payload"));
+		assertEquals(2, partition(new GenericMessage<Foo>(new Foo("10")), "partitionKeyExpression",
+				"new Integer(payload.bar)"));
+	}
+
+	@Test
+	public void testPartitionStrategiesResolvedOnce() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		context.refresh();
+		messageBus.setApplicationContext(context);
+		Properties properties = new Properties();
+		properties.setProperty("partitionKeyExtractorClass", PartitionTestSupport.class.getName());
+		properties.setProperty("partitionSelectorClass", PartitionTestSupport.class.getName());
+		PartitioningMetadata meta = new PartitioningMetadata(new AbstractBusPropertiesAccessor(properties) {
+		}, 4);
+		assertEquals(1, messageBus.determinePartition(new GenericMessage<Integer>(5), meta));
+		Object strategy = context.getBean(PartitionTestSupport.class.getName());
+		context.getBeanFactory().destroySingletons();
+		assertEquals(2, messageBus.determinePartition(new GenericMessage<Integer>(6), meta));
+		assertEquals(0, context.getBeansOfType(PartitionTestSupport.class).size());
+		assertSame(strategy, TestUtils.getPropertyValue(meta, "partitionKeyExtractor"));
+		context.close();
+	}
+
+	private int partition(Message<?> message, String property, String value) {
+		Properties properties = new Properties();
+		properties.setProperty(property, value);
+		PartitioningMetadata meta = new PartitioningMetadata(new AbstractBusPropertiesAccessor(properties) {
+		}, 4);
+		return messageBus.determinePartition(message, meta);
+	}
+
 	public static class Foo {
 
 		private String bar;
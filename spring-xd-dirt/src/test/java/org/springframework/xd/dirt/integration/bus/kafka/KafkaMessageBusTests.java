@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,6 +33,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -464,6 +465,48 @@ public class KafkaMessageBusTests extends PartitionCapableBusTests {
 		messageBus.unbindProducers("foo" + uniqueBindingId);
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBatchingConsumer() throws Exception {
+		MessageBus messageBus = getMessageBus();
+		DirectChannel moduleOutputChannel = new DirectChannel();
+		QueueChannel moduleInputChannel = new QueueChannel();
+		long uniqueBindingId = System.currentTimeMillis();
+		Properties consumerProperties = new Properties();
+		consumerProperties.put(BusProperties.BATCHING_ENABLED, "true");
+		consumerProperties.put(BusProperties.BATCH_SIZE, "10");
+		consumerProperties.put(BusProperties.BATCH_TIMEOUT, "100");
+		messageBus.bindProducer("batch" + uniqueBindingId + ".0", moduleOutputChannel, null);
+		messageBus.bindConsumer("batch" + uniqueBindingId + ".0", moduleInputChannel, consumerProperties);
+		// Let the consumer actually bind to the producer before sending a msg
+		busBindUnbindLatency();
+		for (int i = 0; i < 25; i++) {
+			moduleOutputChannel.send(new GenericMessage<String>("foo" + i));
+		}
+		List<Object> received = new ArrayList<Object>();
+		while (received.size() < 25) {
+			Message<?> inbound = moduleInputChannel.receive(5000);
+			assertNotNull(inbound);
+			assertThat(inbound.getPayload(), instanceOf(List.class));
+			List<Object> batch = (List<Object>) inbound.getPayload();
+			assertTrue(batch.size() >= 1 && batch.size() <= 10);
+			assertNull(inbound.getHeaders().get(KafkaHeaders.ACKNOWLEDGMENT));
+			List<Map<String, Object>> batchHeaders = (List<Map<String, Object>>) inbound.getHeaders().get(
+					XdHeaders.XD_BATCH_HEADERS);
+			assertEquals(batch.size(), batchHeaders.size());
+			for (Map<String, Object> headers : batchHeaders) {
+				assertNotNull(headers.get(KafkaHeaders.OFFSET));
+				assertNull(headers.get(KafkaHeaders.ACKNOWLEDGMENT));
+			}
+			received.addAll(batch);
+		}
+		for (int i = 0; i < 25; i++) {
+			assertEquals("foo" + i, received.get(i));
+		}
+		messageBus.unbindProducers("batch" + uniqueBindingId + ".0");
+		messageBus.unbindConsumers("batch" + uniqueBindingId + ".0");
+	}
+
 	@Test
 	public void testMoreHeaders() throws Exception {
 		KafkaTestMessageBus bus =
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,22 +17,43 @@
 package org.springframework.xd.dirt.integration.bus.local;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
 import org.springframework.amqp.utils.test.TestUtils;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
 import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.channel.interceptor.WireTap;
 import org.springframework.integration.support.DefaultMessageBuilderFactory;
 import org.springframework.integration.support.MessageBuilder;
@@ -55,6 +76,10 @@ public class LocalMessageBusTests extends AbstractMessageBusTests {
 
 	@Override
 	protected MessageBus getMessageBus() throws Exception {
+		return createBus(LocalMessageBus.ExecutorStrategy.POOLED);
+	}
+
+	private LocalMessageBus createBus(LocalMessageBus.ExecutorStrategy executorStrategy) throws Exception {
 		LocalMessageBus bus = new LocalMessageBus();
 		GenericApplicationContext applicationContext = new GenericApplicationContext();
 		applicationContext.getBeanFactory().registerSingleton(
@@ -66,6 +91,7 @@ public class LocalMessageBusTests extends AbstractMessageBusTests {
 		bus.setExecutorMaxPoolSize(10);
 		bus.setExecutorKeepAliveSeconds(59);
 		bus.setExecutorQueueSize(Integer.MAX_VALUE - 1);
+		bus.setExecutorStrategy(executorStrategy);
 		bus.afterPropertiesSet();
 		return bus;
 	}
@@ -133,6 +159,289 @@ public class LocalMessageBusTests extends AbstractMessageBusTests {
 		assertNotSame(Thread.currentThread(), tapThread.get());
 	}
 
+	@Test
+	public void testRingBufferNamedChannel() throws Exception {
+		LocalMessageBus bus = (LocalMessageBus) getMessageBus();
+		bus.setRingBufferEnabled(true);
+		bus.setRingBufferSize(100);
+		bus.setRingBufferBatchSize(8);
+		DirectChannel moduleOutputChannel = new DirectChannel();
+		QueueChannel moduleInputChannel = new QueueChannel();
+		bus.bindProducer("queue:ring", moduleOutputChannel, null);
+		bus.bindConsumer("queue:ring", moduleInputChannel, null);
+		RingBufferChannel ring = bus.getBean("queue:ring", RingBufferChannel.class);
+		assertEquals(128, ring.getCapacity());
+		for (int i = 0; i < 1000; i++) {
+			moduleOutputChannel.send(new GenericMessage<Integer>(i));
+		}
+		for (int i = 0; i < 1000; i++) {
+			Message<?> received = moduleInputChannel.receive(10000);
+			assertNotNull(received);
+			assertEquals(i, received.getPayload());
+		}
+		bus.unbindProducers("queue:ring");
+		bus.unbindConsumers("queue:ring");
+	}
+
+	@Test
+	public void testRingBufferBackpressureAndResubscribe() throws Exception {
+		RingBufferChannel channel = new RingBufferChannel(4, 2, RingBufferChannel.WaitStrategy.PARK);
+		channel.setBeanName("ring");
+		for (int i = 0; i < 4; i++) {
+			assertTrue(channel.send(new GenericMessage<Integer>(i), 0));
+		}
+		assertFalse(channel.send(new GenericMessage<Integer>(4), 0));
+		assertFalse(channel.send(new GenericMessage<Integer>(4), 50));
+		assertEquals(4, channel.getQueueSize());
+
+		final List<Object> received = new ArrayList<Object>();
+		final CountDownLatch firstTwo = new CountDownLatch(2);
+		MessageHandler handler = new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				received.add(message.getPayload());
+				firstTwo.countDown();
+				if (received.size() == 2) {
+					throw new RuntimeException("handler errors are logged, not propagated");
+				}
+			}
+		};
+		channel.subscribe(handler);
+		assertTrue(firstTwo.await(10, TimeUnit.SECONDS));
+		channel.unsubscribe(handler);
+		int dispatched = received.size();
+		for (int i = 4; i < 4 + dispatched; i++) {
+			assertTrue(channel.send(new GenericMessage<Integer>(i), 1000));
+		}
+
+		final CountDownLatch rest = new CountDownLatch(4);
+		channel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				received.add(message.getPayload());
+				rest.countDown();
+			}
+		});
+		assertTrue(rest.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.<Object> asList(0, 1, 2, 3, 4, 5, 6, 7).subList(0, received.size()), received);
+	}
+
+	@Test
+	public void testExecutorStrategies() throws Exception {
+		for (LocalMessageBus.ExecutorStrategy executorStrategy : LocalMessageBus.ExecutorStrategy.values()) {
+			LocalMessageBus bus = createBus(executorStrategy);
+			DirectChannel moduleOutputChannel = new DirectChannel();
+			bus.bindPubSubProducer("topic:strategy", moduleOutputChannel, null);
+			final CountDownLatch latch = new CountDownLatch(10);
+			final AtomicReference<Thread> deliveryThread = new AtomicReference<Thread>();
+			bus.bindPubSubConsumer("topic:strategy", new DirectChannel() {
+
+				@Override
+				protected boolean doSend(Message<?> message, long timeout) {
+					deliveryThread.set(Thread.currentThread());
+					latch.countDown();
+					return true;
+				}
+			}, null);
+			for (int i = 0; i < 10; i++) {
+				moduleOutputChannel.send(new GenericMessage<Integer>(i));
+			}
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			assertNotSame(Thread.currentThread(), deliveryThread.get());
+			BindingTaskExecutor executor = bus.getBindingExecutors().get("topic:strategy");
+			if (executorStrategy == LocalMessageBus.ExecutorStrategy.POOLED) {
+				assertNull(executor);
+			}
+			else {
+				assertNotNull(executor);
+				for (int i = 0; i < 100 && executor.getCompletedCount() < 10; i++) {
+					Thread.sleep(10);
+				}
+				assertEquals(executorStrategy.name(), 10, executor.getCompletedCount());
+				assertEquals(0, executor.getQueueDepth());
+				assertTrue(executor.getMaxLatency() >= executor.getMeanLatency());
+			}
+			bus.unbindProducers("topic:strategy");
+			assertEquals(executor != null, bus.getBindingExecutors().containsKey("topic:strategy"));
+			bus.unbindConsumers("topic:strategy");
+			assertFalse(bus.getBindingExecutors().containsKey("topic:strategy"));
+			bus.destroy();
+		}
+	}
+
+	@Test
+	public void testBindingExecutorConcurrency() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		BindingTaskExecutor executor = new BindingTaskExecutor("limited", pool, 2);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(20);
+		for (int i = 0; i < 20; i++) {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					int now = running.incrementAndGet();
+					int max = maxRunning.get();
+					while (now > max && !maxRunning.compareAndSet(max, now)) {
+						max = maxRunning.get();
+					}
+					try {
+						release.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+					done.countDown();
+				}
+			});
+		}
+		for (int i = 0; i < 100 && running.get() < 2; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, running.get());
+		assertEquals(2, executor.getActiveCount());
+		assertEquals(18, executor.getQueueDepth());
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(2, maxRunning.get());
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBindingExecutorKeepsTasksTheDelegateRejects() throws Exception {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>());
+		BindingTaskExecutor executor = new BindingTaskExecutor("rejected", pool, 2, 3);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(4);
+		final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				order.add(0);
+				done.countDown();
+			}
+		});
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+		for (int i = 1; i < 4; i++) {
+			final int task = i;
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					order.add(task);
+					done.countDown();
+				}
+			});
+		}
+		assertEquals(3, executor.getQueueDepth());
+		try {
+			executor.execute(new Runnable() {
+
+				@Override
+				public void run() {
+				}
+			});
+			fail("Expected the binding queue to be full");
+		}
+		catch (TaskRejectedException e) {
+			assertEquals(3, executor.getQueueDepth());
+			assertEquals(1, executor.getRejectedCount());
+		}
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(0, 1, 2, 3), order);
+		assertEquals(0, executor.getQueueDepth());
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBindingExecutorMetrics() throws Exception {
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("xd.messagebus.local.polling", "1000");
+		properties.put("xd.messagebus.local.executor.strategy", "ELASTIC");
+		properties.put("xd.messagebus.local.executor.corePoolSize", "0");
+		properties.put("xd.messagebus.local.executor.maxPoolSize", "10");
+		properties.put("xd.messagebus.local.executor.keepAliveSeconds", "60");
+		GenericXmlApplicationContext context = new GenericXmlApplicationContext();
+		context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+		PropertySourcesPlaceholderConfigurer placeholderConfigurer = new PropertySourcesPlaceholderConfigurer();
+		placeholderConfigurer.setEnvironment(context.getEnvironment());
+		context.addBeanFactoryPostProcessor(placeholderConfigurer);
+		context.load("classpath:/META-INF/spring-xd/bus/local-bus.xml");
+		context.refresh();
+		LocalMessageBus bus = context.getBean(LocalMessageBus.class);
+		DirectChannel moduleOutputChannel = new DirectChannel();
+		bus.bindPubSubProducer("topic:metrics", moduleOutputChannel, null);
+		final CountDownLatch latch = new CountDownLatch(5);
+		bus.bindPubSubConsumer("topic:metrics", new DirectChannel() {
+
+			@Override
+			protected boolean doSend(Message<?> message, long timeout) {
+				latch.countDown();
+				return true;
+			}
+		}, null);
+		for (int i = 0; i < 5; i++) {
+			moduleOutputChannel.send(new GenericMessage<Integer>(i));
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		BindingTaskExecutor executor = bus.getBindingExecutors().get("topic:metrics");
+		for (int i = 0; i < 100 && executor.getCompletedCount() < 5; i++) {
+			Thread.sleep(10);
+		}
+		Map<String, Number> metrics = new HashMap<String, Number>();
+		for (PublicMetrics publicMetrics : context.getBeansOfType(PublicMetrics.class).values()) {
+			for (Metric<?> metric : publicMetrics.metrics()) {
+				metrics.put(metric.getName(), metric.getValue());
+			}
+		}
+		assertEquals(0, metrics.get("xd.messagebus.local.topic:metrics.queueDepth"));
+		assertEquals(5L, metrics.get("xd.messagebus.local.topic:metrics.completed"));
+		assertEquals(0L, metrics.get("xd.messagebus.local.topic:metrics.rejected"));
+		bus.unbindProducers("topic:metrics");
+		bus.unbindConsumers("topic:metrics");
+		context.close();
+	}
+
+	@Test
+	public void testRingBufferHandlerErrorsAreSentToErrorChannel() throws Exception {
+		GenericApplicationContext applicationContext = new GenericApplicationContext();
+		QueueChannel errorChannel = new QueueChannel();
+		applicationContext.getBeanFactory().registerSingleton("errorChannel", errorChannel);
+		applicationContext.refresh();
+		RingBufferChannel channel = new RingBufferChannel(4, 2, RingBufferChannel.WaitStrategy.PARK);
+		channel.setBeanName("ring");
+		channel.setBeanFactory(applicationContext);
+		channel.afterPropertiesSet();
+		channel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				throw new MessagingException(message, "handler failed");
+			}
+		});
+		channel.send(new GenericMessage<String>("foo"));
+		Message<?> error = errorChannel.receive(10000);
+		assertNotNull(error);
+		assertEquals("foo", ((MessagingException) error.getPayload()).getFailedMessage().getPayload());
+		applicationContext.close();
+	}
+
 	private void verifyPayloadConversion(final Object expectedValue, final LocalMessageBus bus) {
 		DirectChannel myChannel = new DirectChannel();
 		bus.bindConsumer("in", myChannel, null);
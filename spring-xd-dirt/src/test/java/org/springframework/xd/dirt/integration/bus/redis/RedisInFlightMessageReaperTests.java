@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus.redis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.xd.dirt.zookeeper.Paths;
+import org.springframework.xd.test.redis.RedisTestSupport;
+
+/**
+ * Tests for {@link RedisInFlightMessageReaper}.
+ */
+public class RedisInFlightMessageReaperTests {
+
+	@Rule
+	public RedisTestSupport redisAvailableRule = new RedisTestSupport();
+
+	private StringRedisTemplate template;
+
+	private RedisInFlightMessageReaper reaper;
+
+	@Before
+	public void setup() {
+		this.template = new StringRedisTemplate(this.redisAvailableRule.getResource());
+		this.reaper = new RedisInFlightMessageReaper(this.redisAvailableRule.getResource());
+		cleanup();
+	}
+
+	@After
+	public void tearDown() {
+		this.reaper.destroy();
+		cleanup();
+	}
+
+	private void cleanup() {
+		this.template.delete("queue.reaper.0");
+		for (String owner : new String[] { "dead", "alive" }) {
+			this.template.delete("inflight." + owner);
+			this.template.delete("inflight." + owner + ".0");
+			this.template.delete("inflight." + owner + ".heartbeat");
+			this.template.opsForSet().remove("inflight.owners", owner);
+		}
+	}
+
+	@Test
+	public void testReapRequeuesInOrderAheadOfQueue() {
+		this.template.opsForList().leftPushAll("queue.reaper.0", "q3", "q4");
+		registerInFlight("dead", "f0", "f1", "f2");
+		assertEquals(3, this.reaper.reap("dead"));
+		assertFalse(this.template.hasKey("inflight.dead.0"));
+		assertFalse(this.template.hasKey("inflight.dead"));
+		assertFalse(this.template.opsForSet().isMember("inflight.owners", "dead"));
+		for (String expected : new String[] { "f0", "f1", "f2", "q3", "q4" }) {
+			assertEquals(expected, this.template.opsForList().rightPop("queue.reaper.0"));
+		}
+		assertEquals(0, this.reaper.reap("dead"));
+	}
+
+	@Test
+	public void testReapSparesContainerWithLiveHeartbeat() {
+		registerInFlight("alive", "a0");
+		this.template.opsForValue().set("inflight.alive.heartbeat", "1", 30, TimeUnit.SECONDS);
+		assertEquals(-1, this.reaper.reap("alive"));
+		assertEquals(Long.valueOf(0), this.template.opsForList().size("queue.reaper.0"));
+		assertTrue(this.template.hasKey("inflight.alive.0"));
+		assertTrue(this.template.hasKey("inflight.alive"));
+		assertTrue(this.template.opsForSet().isMember("inflight.owners", "alive"));
+		this.template.delete("inflight.alive.heartbeat");
+		assertEquals(1, this.reaper.reap("alive"));
+	}
+
+	@Test
+	public void testReapUnregisteredSparesRegisteredContainers() throws Exception {
+		registerInFlight("dead", "d0");
+		registerInFlight("alive", "a0");
+		CuratorFramework client = mock(CuratorFramework.class, RETURNS_DEEP_STUBS);
+		when(client.checkExists().forPath(Paths.build(Paths.CONTAINERS, "dead"))).thenReturn(null);
+		when(client.checkExists().forPath(Paths.build(Paths.CONTAINERS, "alive"))).thenReturn(new Stat());
+		this.reaper.reapUnregistered(client);
+		assertEquals("d0", this.template.opsForList().rightPop("queue.reaper.0"));
+		assertEquals(Long.valueOf(0), this.template.opsForList().size("queue.reaper.0"));
+		assertTrue(this.template.hasKey("inflight.alive.0"));
+		assertTrue(this.template.opsForSet().isMember("inflight.owners", "alive"));
+	}
+
+	/**
+	 * Lay out an in-flight list the way the bus does: newest message at the head.
+	 */
+	private void registerInFlight(String owner, String... oldestFirst) {
+		this.template.opsForList().leftPushAll("inflight." + owner + ".0", oldestFirst);
+		this.template.opsForHash().put("inflight." + owner, "inflight." + owner + ".0", "queue.reaper.0");
+		this.template.opsForSet().add("inflight.owners", owner);
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,19 +32,25 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.expression.Expression;
 import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.endpoint.AbstractEndpoint;
 import org.springframework.integration.redis.inbound.RedisQueueMessageDrivenEndpoint;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.GenericMessage;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.xd.dirt.integration.bus.Binding;
@@ -204,6 +210,141 @@ public class RedisMessageBusTests extends PartitionCapableBusTests {
 		assertEquals(0, bindings.size());
 	}
 
+	@Test
+	public void testBatchingProducer() throws Exception {
+		MessageBus bus = getMessageBus();
+		Properties properties = new Properties();
+		properties.put(BusProperties.BATCHING_ENABLED, "true");
+		properties.put(BusProperties.BATCH_SIZE, "10");
+		properties.put(BusProperties.BATCH_TIMEOUT, "50");
+		DirectChannel moduleOutputChannel = new DirectChannel();
+		QueueChannel moduleInputChannel = new QueueChannel();
+		bus.bindProducer("batching.0", moduleOutputChannel, properties);
+		bus.bindConsumer("batching.0", moduleInputChannel, null);
+		@SuppressWarnings("unchecked")
+		List<Binding> bindings = TestUtils.getPropertyValue(bus, "messageBus.bindings", List.class);
+		AbstractEndpoint endpoint = bindings.get(0).getEndpoint();
+		assertEquals(
+				"queue.batching.0",
+				TestUtils.getPropertyValue(endpoint, "handler.delegate.queueNameExpression", Expression.class).getExpressionString());
+		for (int i = 0; i < 100; i++) {
+			moduleOutputChannel.send(new GenericMessage<String>("foo" + i));
+		}
+		for (int i = 0; i < 100; i++) {
+			Message<?> received = moduleInputChannel.receive(5000);
+			assertNotNull(received);
+			assertEquals("foo" + i, received.getPayload());
+		}
+		bus.unbindProducers("batching.0");
+		bus.unbindConsumers("batching.0");
+	}
+
+	@Test
+	public void testBatchingConsumer() throws Exception {
+		MessageBus bus = getMessageBus();
+		Properties producerProperties = new Properties();
+		producerProperties.put(BusProperties.BATCHING_ENABLED, "true");
+		producerProperties.put(BusProperties.BATCH_SIZE, "10");
+		Properties consumerProperties = new Properties();
+		consumerProperties.put(BusProperties.BATCHING_ENABLED, "true");
+		consumerProperties.put(BusProperties.BATCH_SIZE, "7");
+		DirectChannel moduleOutputChannel = new DirectChannel();
+		QueueChannel moduleInputChannel = new QueueChannel();
+		bus.bindProducer("batching.1", moduleOutputChannel, producerProperties);
+		bus.bindConsumer("batching.1", moduleInputChannel, consumerProperties);
+		@SuppressWarnings("unchecked")
+		List<Binding> bindings = TestUtils.getPropertyValue(bus, "messageBus.bindings", List.class);
+		AbstractEndpoint endpoint = bindings.get(1).getEndpoint();
+		assertEquals("BatchingRedisQueueMessageDrivenEndpoint", endpoint.getClass().getSimpleName());
+		for (int i = 0; i < 100; i++) {
+			moduleOutputChannel.send(new GenericMessage<String>("foo" + i));
+		}
+		for (int i = 0; i < 100; i++) {
+			Message<?> received = moduleInputChannel.receive(5000);
+			assertNotNull(received);
+			assertEquals("foo" + i, received.getPayload());
+		}
+		bus.unbindProducers("batching.1");
+		bus.unbindConsumers("batching.1");
+	}
+
+	@Test
+	public void testReliableConsumer() throws Exception {
+		RedisTestMessageBus bus = (RedisTestMessageBus) getMessageBus();
+		bus.getCoreMessageBus().setReliable(true);
+		bus.getCoreMessageBus().setInFlightOwner("reliableTest");
+		DirectChannel moduleOutputChannel = new DirectChannel();
+		QueueChannel moduleInputChannel = new QueueChannel();
+		bus.bindProducer("reliable.0", moduleOutputChannel, null);
+		bus.bindConsumer("reliable.0", moduleInputChannel, null);
+		@SuppressWarnings("unchecked")
+		List<Binding> bindings = TestUtils.getPropertyValue(bus, "messageBus.bindings", List.class);
+		AbstractEndpoint endpoint = bindings.get(1).getEndpoint();
+		assertEquals("BatchingRedisQueueMessageDrivenEndpoint", endpoint.getClass().getSimpleName());
+		for (int i = 0; i < 20; i++) {
+			moduleOutputChannel.send(new GenericMessage<String>("foo" + i));
+		}
+		for (int i = 0; i < 20; i++) {
+			Message<?> received = moduleInputChannel.receive(5000);
+			assertNotNull(received);
+			assertEquals("foo" + i, received.getPayload());
+		}
+		RedisTemplate<String, Object> template = createTemplate();
+		assertTrue(template.opsForSet().isMember("inflight.owners", "reliableTest".getBytes()));
+		assertTrue(template.hasKey("inflight.reliableTest.heartbeat"));
+		bus.unbindConsumers("reliable.0");
+		bus.unbindProducers("reliable.0");
+		// the consumer thread releases its in-flight list once it notices the stop
+		int n = 0;
+		while (n++ < 50 && template.opsForHash().size("inflight.reliableTest") > 0) {
+			Thread.sleep(100);
+		}
+		assertEquals(Long.valueOf(0), template.opsForHash().size("inflight.reliableTest"));
+		assertEquals(Long.valueOf(0), template.opsForList().size("queue.reliable.0"));
+		template.opsForSet().remove("inflight.owners", "reliableTest".getBytes());
+		template.delete("inflight.reliableTest.heartbeat");
+	}
+
+	@Test
+	public void testReliableConsumerRedeliversFailedMessage() throws Exception {
+		RedisTestMessageBus bus = (RedisTestMessageBus) getMessageBus();
+		bus.getCoreMessageBus().setReliable(true);
+		bus.getCoreMessageBus().setInFlightOwner("reliableFailureTest");
+		QueueChannel errorChannel = new QueueChannel();
+		TestUtils.getPropertyValue(bus, "messageBus.applicationContext", GenericApplicationContext.class)
+				.getBeanFactory().registerSingleton("errorChannel", errorChannel);
+		DirectChannel moduleOutputChannel = new DirectChannel();
+		DirectChannel moduleInputChannel = new DirectChannel();
+		final QueueChannel received = new QueueChannel();
+		final AtomicBoolean failed = new AtomicBoolean();
+		moduleInputChannel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				if (failed.compareAndSet(false, true)) {
+					throw new MessagingException(message, "first delivery fails");
+				}
+				received.send(message);
+			}
+
+		});
+		Properties properties = new Properties();
+		properties.put(BusProperties.MAX_ATTEMPTS, "1");
+		bus.bindProducer("reliable.1", moduleOutputChannel, null);
+		bus.bindConsumer("reliable.1", moduleInputChannel, properties);
+		moduleOutputChannel.send(new GenericMessage<String>("foo"));
+		Message<?> error = errorChannel.receive(5000);
+		assertNotNull(error);
+		Message<?> redelivered = received.receive(10000);
+		assertNotNull(redelivered);
+		assertEquals("foo", redelivered.getPayload());
+		bus.unbindConsumers("reliable.1");
+		bus.unbindProducers("reliable.1");
+		RedisTemplate<String, Object> template = createTemplate();
+		template.opsForSet().remove("inflight.owners", "reliableFailureTest".getBytes());
+		template.delete("inflight.reliableFailureTest.heartbeat");
+	}
+
 	@Test
 	public void testRequestReplyRequestorProperties() throws Exception {
 		MessageBus bus = getMessageBus();
@@ -56,6 +56,7 @@ public class RedisTestMessageBus extends AbstractTestMessageBus<RedisMessageBus>
 		context.getBeanFactory().registerSingleton(
 				IntegrationContextUtils.INTEGRATION_HEADER_CHANNEL_REGISTRY_BEAN_NAME,
 				channelRegistry);
+		context.getBeanFactory().registerSingleton(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, taskScheduler);
 		context.refresh();
 		messageBus.setApplicationContext(context);
 		setMessageBus(messageBus);
@@ -34,9 +34,11 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.xd.analytics.metrics.core.AggregateCounterRepository;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounterRepository;
 import org.springframework.xd.analytics.metrics.core.CounterRepository;
 import org.springframework.xd.analytics.metrics.core.FieldValueCounterRepository;
 import org.springframework.xd.analytics.metrics.core.GaugeRepository;
+import org.springframework.xd.analytics.metrics.core.HistogramRepository;
 import org.springframework.xd.analytics.metrics.core.RichGaugeRepository;
 import org.springframework.xd.dirt.container.store.ContainerRepository;
 import org.springframework.xd.dirt.module.store.ModuleMetadataRepository;
@@ -119,6 +121,12 @@ public class AbstractControllerIntegrationTest {
 	@Autowired
 	protected RichGaugeRepository richGaugeRepository;
 
+	@Autowired
+	protected HistogramRepository histogramRepository;
+
+	@Autowired
+	protected CardinalityCounterRepository cardinalityCounterRepository;
+
 	@Autowired
 	protected AggregateCounterRepository aggregateCounterRepository;
 
@@ -141,6 +149,8 @@ public class AbstractControllerIntegrationTest {
 		resetOrDelete(fieldValueCounterRepository);
 		resetOrDelete(gaugeRepository);
 		resetOrDelete(richGaugeRepository);
+		resetOrDelete(histogramRepository);
+		resetOrDelete(cardinalityCounterRepository);
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,11 +35,14 @@ import org.springframework.integration.config.EnableIntegration;
 import org.springframework.integration.scheduling.PollerMetadata;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.xd.analytics.metrics.core.AggregateCounterRepository;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounterRepository;
 import org.springframework.xd.analytics.metrics.core.CounterRepository;
 import org.springframework.xd.analytics.metrics.core.FieldValueCounterRepository;
 import org.springframework.xd.analytics.metrics.core.GaugeRepository;
+import org.springframework.xd.analytics.metrics.core.HistogramRepository;
 import org.springframework.xd.analytics.metrics.core.RichGaugeRepository;
 import org.springframework.xd.dirt.container.store.ContainerRepository;
+import org.springframework.xd.dirt.container.store.ModuleMessageRateRepository;
 import org.springframework.xd.dirt.integration.bus.MessageBus;
 import org.springframework.xd.dirt.integration.bus.local.LocalMessageBus;
 import org.springframework.xd.dirt.job.dao.XdJdbcSearchableJobExecutionDao;
@@ -119,6 +122,16 @@ public class Dependencies {
 		return mock(RichGaugeRepository.class);
 	}
 
+	@Bean
+	public HistogramRepository histogramRepository() {
+		return mock(HistogramRepository.class);
+	}
+
+	@Bean
+	public CardinalityCounterRepository cardinalityCounterRepository() {
+		return mock(CardinalityCounterRepository.class);
+	}
+
 	@Bean
 	public FieldValueCounterRepository fieldValueCounterRepository() {
 		return mock(FieldValueCounterRepository.class);
@@ -203,6 +216,11 @@ public class Dependencies {
 		return mock(ContainerRepository.class);
 	}
 
+	@Bean
+	public ModuleMessageRateRepository moduleMessageRateRepository() {
+		return mock(ModuleMessageRateRepository.class);
+	}
+
 	@Bean
 	public ModuleMetadataRepository modulesRepository() {
 		return mock(ModuleMetadataRepository.class);
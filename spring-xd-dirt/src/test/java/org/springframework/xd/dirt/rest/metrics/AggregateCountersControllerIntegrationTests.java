@@ -63,6 +63,9 @@ public class AggregateCountersControllerIntegrationTests extends AbstractControl
 					org.mockito.Matchers.any(Interval.class), org.mockito.Matchers.eq(resolution))).thenReturn(
 							aggCounters[i]);
 		}
+		when(aggregateCounterRepository.getCounts(org.mockito.Matchers.anyCollectionOf(String.class),
+				org.mockito.Matchers.any(Interval.class), org.mockito.Matchers.eq(resolution))).thenReturn(
+						Arrays.asList(aggCounters));
 		when(aggregateCounterRepository.findAll()).thenReturn(Arrays.asList(counters));
 	}
 
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.dirt.rest.metrics;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+
+import org.hamcrest.Matchers;
+import org.joda.time.Interval;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.xd.analytics.metrics.core.AggregateCountResolution;
+import org.springframework.xd.analytics.metrics.core.CardinalityCounter;
+import org.springframework.xd.dirt.rest.AbstractControllerIntegrationTest;
+import org.springframework.xd.dirt.rest.Dependencies;
+import org.springframework.xd.dirt.rest.RestConfiguration;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration(classes = { RestConfiguration.class, Dependencies.class })
+public class CardinalityCounterControllerIntegrationTests extends AbstractControllerIntegrationTest {
+
+	@Test
+	public void counterRetrievalSucceedsWithCorrectValue() throws Exception {
+		when(cardinalityCounterRepository.findOne("visitors")).thenReturn(new CardinalityCounter("visitors", 42L));
+
+		mockMvc.perform(get("/metrics/cardinality-counters/visitors").accept(MediaType.APPLICATION_JSON)).andExpect(
+				status().isOk()).andExpect(jsonPath("$.name").value("visitors")).andExpect(
+				jsonPath("$.value").value(42));
+	}
+
+	@Test
+	public void counterRetrievalOverAnIntervalCountsDistinctValues() throws Exception {
+		when(cardinalityCounterRepository.findOne("visitors")).thenReturn(new CardinalityCounter("visitors", 42L));
+		when(cardinalityCounterRepository.countDistinct(eq("visitors"), any(Interval.class),
+				eq(AggregateCountResolution.minute))).thenReturn(7L);
+
+		mockMvc.perform(
+				get("/metrics/cardinality-counters/visitors?from=2016-01-01T10:00:00.000Z&resolution=minute").accept(
+						MediaType.APPLICATION_JSON)).andExpect(status().isOk()).andExpect(
+				jsonPath("$.value").value(7));
+	}
+
+	@Test
+	public void testUnknownCounter() throws Exception {
+		mockMvc.perform(get("/metrics/cardinality-counters/unknown").accept(MediaType.APPLICATION_JSON)).andExpect(
+				status().isNotFound());
+	}
+
+	@Test
+	public void testDeleteCounter() throws Exception {
+		when(cardinalityCounterRepository.exists("deleteme")).thenReturn(true);
+		mockMvc.perform(delete("/metrics/cardinality-counters/{name}", "deleteme")).andExpect(status().isOk());
+		verify(cardinalityCounterRepository).delete("deleteme");
+	}
+
+	@Test
+	public void testDetailedCountersListing() throws Exception {
+		CardinalityCounter[] counters = new CardinalityCounter[10];
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = new CardinalityCounter("c" + i, i);
+		}
+		when(cardinalityCounterRepository.findAll()).thenReturn(Arrays.asList(counters));
+
+		ResultActions resActions = mockMvc.perform(get("/metrics/cardinality-counters?detailed=true")).andExpect(
+				status().isOk()).andExpect(jsonPath("$.content", Matchers.hasSize(10)));
+
+		for (int i = 0; i < 10; i++) {
+			resActions.andExpect(jsonPath("$.content[" + i + "].name").value("c" + i));
+			resActions.andExpect(jsonPath("$.content[" + i + "].value").value(i));
+		}
+	}
+
+}
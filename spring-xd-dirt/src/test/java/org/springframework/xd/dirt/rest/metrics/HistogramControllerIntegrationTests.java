@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.rest.metrics;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.xd.analytics.metrics.core.Histogram;
+import org.springframework.xd.analytics.metrics.core.HistogramBuckets;
+import org.springframework.xd.dirt.rest.AbstractControllerIntegrationTest;
+import org.springframework.xd.dirt.rest.Dependencies;
+import org.springframework.xd.dirt.rest.RestConfiguration;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration(classes = { RestConfiguration.class, Dependencies.class })
+public class HistogramControllerIntegrationTests extends AbstractControllerIntegrationTest {
+
+	private Histogram histogram(String name, int window) {
+		HistogramBuckets buckets = new HistogramBuckets();
+		for (int i = 1; i <= 1000; i++) {
+			buckets.record(i % 100);
+		}
+		return new Histogram(name, window, buckets);
+	}
+
+	@Test
+	public void histogramRetrievalSucceedsWithCorrectValues() throws Exception {
+		when(histogramRepository.findOne("latency")).thenReturn(histogram("latency", 5));
+
+		mockMvc.perform(get("/metrics/histograms/latency").accept(MediaType.APPLICATION_JSON)).andExpect(
+				status().isOk()).andExpect(jsonPath("$.name").value("latency")).andExpect(
+				jsonPath("$.window").value(5)).andExpect(jsonPath("$.count").value(1000)).andExpect(
+				jsonPath("$.min").value(0)).andExpect(jsonPath("$.max").value(99)).andExpect(
+				jsonPath("$.p50").value(49)).andExpect(jsonPath("$.p90").value(89)).andExpect(
+				jsonPath("$.p99").value(98)).andExpect(jsonPath("$.p999").value(99));
+	}
+
+	@Test
+	public void histogramRetrievalHonorsWindow() throws Exception {
+		when(histogramRepository.getMaxWindow()).thenReturn(60);
+		when(histogramRepository.findOne("latency", 15)).thenReturn(histogram("latency", 15));
+
+		mockMvc.perform(get("/metrics/histograms/latency?window=15").accept(MediaType.APPLICATION_JSON)).andExpect(
+				status().isOk()).andExpect(jsonPath("$.window").value(15));
+	}
+
+	@Test
+	public void invalidWindowIsRejected() throws Exception {
+		when(histogramRepository.getMaxWindow()).thenReturn(60);
+
+		mockMvc.perform(get("/metrics/histograms/latency?window=0").accept(MediaType.APPLICATION_JSON)).andExpect(
+				status().isBadRequest());
+		mockMvc.perform(get("/metrics/histograms/latency?window=61").accept(MediaType.APPLICATION_JSON)).andExpect(
+				status().isBadRequest());
+	}
+
+	@Test
+	public void testUnknownHistogram() throws Exception {
+		mockMvc.perform(get("/metrics/histograms/unknown").accept(MediaType.APPLICATION_JSON)).andExpect(
+				status().isNotFound());
+	}
+
+	@Test
+	public void testDeleteHistogram() throws Exception {
+		when(histogramRepository.exists("deleteme")).thenReturn(true);
+		mockMvc.perform(delete("/metrics/histograms/{name}", "deleteme")).andExpect(status().isOk());
+		verify(histogramRepository).delete("deleteme");
+	}
+
+	@Test
+	public void testDetailedHistogramsListing() throws Exception {
+		Histogram[] histograms = new Histogram[10];
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = histogram("h" + i, 5);
+		}
+		when(histogramRepository.findAll()).thenReturn(Arrays.asList(histograms));
+
+		ResultActions resActions = mockMvc.perform(get("/metrics/histograms?detailed=true")).andExpect(
+				status().isOk()).andExpect(jsonPath("$.content", Matchers.hasSize(10)));
+
+		for (int i = 0; i < 10; i++) {
+			resActions.andExpect(jsonPath("$.content[" + i + "].name").value("h" + i));
+			resActions.andExpect(jsonPath("$.content[" + i + "].p99").value(98));
+		}
+	}
+
+}
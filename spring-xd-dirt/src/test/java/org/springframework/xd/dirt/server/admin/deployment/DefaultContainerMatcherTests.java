@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertSame;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -250,4 +251,37 @@ public class DefaultContainerMatcherTests {
 				containers);
 		assertEquals(0, matched.size());
 	}
+
+	@Test
+	public void matchWithGroupCriteria() {
+		List<Container> groupContainers = new ArrayList<Container>();
+		String[] groups = {"group1", "group2", "group2, group1", "group10"};
+		for (int i = 0; i < groups.length; i++) {
+			Map<String, String> attributes = new HashMap<String, String>();
+			attributes.put("groups", groups[i]);
+			attributes.put("color", (i < 2) ? "green" : "blue");
+			groupContainers.add(new Container("container" + i, attributes));
+		}
+		groupContainers.add(new Container("nogroups", Collections.singletonMap("color", "green")));
+
+		deploymentProperties.setCount(0);
+		deploymentProperties.setCriteria("groups.contains('group1')");
+		// repeat to use the cached criteria
+		for (int i = 0; i < 2; i++) {
+			Collection<Container> matched = containerMatcher.match(moduleDescriptor, deploymentProperties,
+					groupContainers);
+			// as with SpEL, contains() matches part of a group name
+			assertEquals(3, matched.size());
+			Iterator<Container> matchedIterator = matched.iterator();
+			assertSame(groupContainers.get(0), matchedIterator.next());
+			assertSame(groupContainers.get(2), matchedIterator.next());
+			assertSame(groupContainers.get(3), matchedIterator.next());
+		}
+
+		deploymentProperties.setCriteria("groups.contains('group2') and color=='green'");
+		Collection<Container> matched = containerMatcher.match(moduleDescriptor, deploymentProperties,
+				groupContainers);
+		assertEquals(1, matched.size());
+		assertSame(groupContainers.get(1), matched.iterator().next());
+	}
 }
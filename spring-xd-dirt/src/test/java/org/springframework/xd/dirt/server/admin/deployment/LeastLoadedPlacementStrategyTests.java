@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.server.admin.deployment;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import org.springframework.xd.dirt.cluster.Container;
+import org.springframework.xd.dirt.container.store.ModuleMessageRateRepository;
+import org.springframework.xd.dirt.module.store.ModuleMetadata;
+import org.springframework.xd.dirt.module.store.ModuleMetadataRepository;
+import org.springframework.xd.module.ModuleDescriptor;
+import org.springframework.xd.module.ModuleType;
+import org.springframework.xd.module.TestModuleDefinitions;
+
+/**
+ * Tests for {@link LeastLoadedPlacementStrategy}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class LeastLoadedPlacementStrategyTests {
+
+	@Mock
+	private ModuleMetadataRepository moduleMetadataRepository;
+
+	@Mock
+	private ModuleMessageRateRepository messageRateRepository;
+
+	private final List<Container> containers = new ArrayList<Container>();
+
+	private ModuleDescriptor moduleDescriptor;
+
+	@Before
+	public void setUp() {
+		moduleDescriptor = descriptor("transform", ModuleType.processor, 1);
+		for (int i = 0; i < 3; i++) {
+			containers.add(new Container("container" + i, Collections.<String, String>emptyMap()));
+			deployModules("container" + i);
+		}
+		when(messageRateRepository.findByContainerId(anyString()))
+				.thenReturn(new HashMap<String, HashMap<String, Double>>());
+	}
+
+	@Test
+	public void selectContainersWithFewestModules() {
+		deployModules("container0", "stream2.sink.log.0", "stream3.sink.log.0");
+		deployModules("container1", "stream2.source.http.0");
+		LeastLoadedPlacementStrategy strategy = new LeastLoadedPlacementStrategy(moduleMetadataRepository, null);
+
+		assertEquals(names("container2"), names(strategy.select(moduleDescriptor, containers, 1)));
+		assertEquals(names("container1", "container2"), names(strategy.select(moduleDescriptor, containers, 2)));
+	}
+
+	@Test
+	public void preferContainersWithoutOtherInstancesOfTheModule() {
+		deployModules("container0", "stream2.sink.log.0", "stream3.sink.log.0");
+		deployModules("container1", "stream1.processor.transform.0");
+		LeastLoadedPlacementStrategy strategy = new LeastLoadedPlacementStrategy(moduleMetadataRepository, null);
+
+		assertEquals(names("container2"), names(strategy.select(moduleDescriptor, containers, 1)));
+		assertEquals(names("container0", "container2"), names(strategy.select(moduleDescriptor, containers, 2)));
+	}
+
+	@Test
+	public void messageRatesAddToLoad() {
+		deployModules("container0", "stream2.sink.log.0");
+		deployModules("container1", "stream2.source.http.0");
+		deployModules("container2", "stream3.source.http.0");
+		setMessageRate("container0", "stream2.sink.log.0", 500d, null);
+		setMessageRate("container1", "stream2.source.http.0", null, 2500d);
+		LeastLoadedPlacementStrategy strategy = new LeastLoadedPlacementStrategy(moduleMetadataRepository,
+				messageRateRepository);
+
+		assertEquals(names("container2"), names(strategy.select(moduleDescriptor, containers, 1)));
+		assertEquals(names("container0", "container2"), names(strategy.select(moduleDescriptor, containers, 2)));
+
+		// 2 modules on container2 outweigh 2500 msg/s on container1 at 5000 msg/s per module
+		deployModules("container2", "stream3.source.http.0", "stream3.sink.log.0");
+		strategy.setMessageRatePerModule(5000);
+		assertEquals(names("container0", "container1"), names(strategy.select(moduleDescriptor, containers, 2)));
+	}
+
+	@Test
+	public void rotateContainersWithEqualLoad() {
+		LeastLoadedPlacementStrategy strategy = new LeastLoadedPlacementStrategy(moduleMetadataRepository, null);
+		Set<String> selected = new HashSet<String>();
+		for (int i = 0; i < containers.size(); i++) {
+			selected.addAll(names(strategy.select(moduleDescriptor, containers, 1)));
+		}
+		assertEquals(names("container0", "container1", "container2"), selected);
+	}
+
+	@Test
+	public void readLoadOncePerDeployment() {
+		LeastLoadedPlacementStrategy strategy = new LeastLoadedPlacementStrategy(moduleMetadataRepository,
+				messageRateRepository);
+		ContainerPlacementStrategy deployment = strategy.forDeployment();
+		for (int i = 0; i < 5; i++) {
+			assertEquals(2, deployment.select(moduleDescriptor, containers, 2).size());
+		}
+		for (Container container : containers) {
+			verify(moduleMetadataRepository).findAllIdsByContainerId(container.getName());
+			verify(messageRateRepository).findByContainerId(container.getName());
+		}
+
+		strategy.select(moduleDescriptor, containers, 2);
+		verify(moduleMetadataRepository, times(2)).findAllIdsByContainerId("container0");
+	}
+
+	@Test
+	public void countModulesPlacedForTheDeployment() {
+		deployModules("container0", "stream2.sink.log.0", "stream3.sink.log.0");
+		LeastLoadedPlacementStrategy strategy = new LeastLoadedPlacementStrategy(moduleMetadataRepository, null);
+		ContainerPlacementStrategy deployment = strategy.forDeployment();
+
+		Set<String> selected = new HashSet<String>();
+		selected.addAll(names(deployment.select(descriptor("log", ModuleType.sink, 1), containers, 1)));
+		selected.addAll(names(deployment.select(descriptor("transform", ModuleType.processor, 1), containers, 1)));
+		assertEquals(names("container1", "container2"), selected);
+
+		// modules deployed to all of a subset of the candidates are counted too
+		deployment.placed(descriptor("filter", ModuleType.processor, 0), containers("container1", "container2"));
+		deployment.placed(descriptor("file", ModuleType.sink, 0), containers("container1", "container2"));
+		assertEquals(names("container0"),
+				names(deployment.select(descriptor("http", ModuleType.source, 0), containers, 1)));
+	}
+
+	@Test
+	public void preferContainersWithoutInstancesPlacedForTheDeployment() {
+		ContainerPlacementStrategy deployment = new LeastLoadedPlacementStrategy(moduleMetadataRepository, null)
+				.forDeployment();
+		Set<String> selected = new HashSet<String>();
+		for (int i = 0; i < containers.size(); i++) {
+			selected.addAll(names(deployment.select(descriptor("transform", ModuleType.processor, i),
+					containers, 1)));
+		}
+		assertEquals(names("container0", "container1", "container2"), selected);
+	}
+
+	@Test
+	public void fallBackToRoundRobinWhenLoadCannotBeRead() {
+		when(moduleMetadataRepository.findAllIdsByContainerId("container1")).thenThrow(
+				new IllegalStateException("connection lost"));
+		LeastLoadedPlacementStrategy strategy = new LeastLoadedPlacementStrategy(moduleMetadataRepository, null);
+		assertEquals(2, strategy.select(moduleDescriptor, containers, 2).size());
+	}
+
+	private ModuleDescriptor descriptor(String label, ModuleType type, int index) {
+		return new ModuleDescriptor.Builder()
+				.setModuleDefinition(TestModuleDefinitions.dummy(label, type))
+				.setGroup("stream1")
+				.setModuleLabel(label)
+				.setIndex(index)
+				.build();
+	}
+
+	private List<Container> containers(String... names) {
+		List<Container> selected = new ArrayList<Container>();
+		for (Container container : containers) {
+			if (names(names).contains(container.getName())) {
+				selected.add(container);
+			}
+		}
+		return selected;
+	}
+
+	private void deployModules(String containerId, String... fullyQualifiedIds) {
+		List<ModuleMetadata.Id> ids = new ArrayList<ModuleMetadata.Id>();
+		for (String fullyQualifiedId : fullyQualifiedIds) {
+			ids.add(new ModuleMetadata.Id(containerId, fullyQualifiedId));
+		}
+		when(moduleMetadataRepository.findAllIdsByContainerId(containerId)).thenReturn(ids);
+	}
+
+	private void setMessageRate(String containerId, String moduleId, Double input, Double output) {
+		HashMap<String, Double> rates = new HashMap<String, Double>();
+		if (input != null) {
+			rates.put("input", input);
+		}
+		if (output != null) {
+			rates.put("output", output);
+		}
+		Map<String, HashMap<String, Double>> moduleRates = new HashMap<String, HashMap<String, Double>>();
+		moduleRates.put(moduleId, rates);
+		when(messageRateRepository.findByContainerId(containerId)).thenReturn(moduleRates);
+	}
+
+	private Set<String> names(String... names) {
+		Set<String> set = new HashSet<String>();
+		Collections.addAll(set, names);
+		return set;
+	}
+
+	private Set<String> names(Collection<Container> containers) {
+		Set<String> set = new HashSet<String>();
+		for (Container container : containers) {
+			set.add(container.getName());
+		}
+		return set;
+	}
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.server.admin.deployment.zk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.xd.dirt.cluster.Container;
+import org.springframework.xd.dirt.core.ModuleDeploymentsPath;
+import org.springframework.xd.dirt.server.admin.deployment.ModuleDeploymentPropertiesProvider;
+import org.springframework.xd.dirt.server.admin.deployment.ModuleDeploymentStatus;
+import org.springframework.xd.dirt.server.admin.deployment.zk.ModuleDeploymentWriterTests.ModuleDeploymentWriterTestsConfig;
+import org.springframework.xd.dirt.zookeeper.EmbeddedZooKeeper;
+import org.springframework.xd.dirt.zookeeper.Paths;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperConnection;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperUtils;
+import org.springframework.xd.module.ModuleDescriptor;
+import org.springframework.xd.module.ModuleType;
+import org.springframework.xd.module.RuntimeModuleDeploymentProperties;
+import org.springframework.xd.module.TestModuleDefinitions;
+
+/**
+ * Tests for the batched module deployment writes of {@link ModuleDeploymentWriter}.
+ */
+@ContextConfiguration(classes = ModuleDeploymentWriterTestsConfig.class)
+@RunWith(SpringJUnit4ClassRunner.class)
+public class ModuleDeploymentWriterTests {
+
+	private static final Collection<Container> CONTAINERS = Arrays.asList(
+			new Container("container1", Collections.<String, String>emptyMap()),
+			new Container("container2", Collections.<String, String>emptyMap()));
+
+	private static final ModuleDeploymentPropertiesProvider<RuntimeModuleDeploymentProperties> PROVIDER =
+			new ModuleDeploymentPropertiesProvider<RuntimeModuleDeploymentProperties>() {
+
+				@Override
+				public RuntimeModuleDeploymentProperties propertiesForDescriptor(ModuleDescriptor descriptor) {
+					RuntimeModuleDeploymentProperties properties = new RuntimeModuleDeploymentProperties();
+					properties.setSequence(0);
+					return properties;
+				}
+			};
+
+	@Autowired
+	private ZooKeeperConnection zooKeeperConnection;
+
+	@Autowired
+	private ModuleDeploymentWriter moduleDeploymentWriter;
+
+	private final Map<ModuleDescriptor, Collection<Container>> deployments =
+			new LinkedHashMap<ModuleDescriptor, Collection<Container>>();
+
+	private volatile Thread responder;
+
+	@Before
+	public void setUp() throws Exception {
+		CuratorFramework client = zooKeeperConnection.getClient();
+		for (Container container : CONTAINERS) {
+			client.create().creatingParentsIfNeeded().forPath(
+					Paths.build(Paths.MODULE_DEPLOYMENTS, Paths.ALLOCATED, container.getName()));
+		}
+		deployments.put(createDescriptor("bar", ModuleType.sink, 2), CONTAINERS);
+		deployments.put(createDescriptor("foo", ModuleType.processor, 1), CONTAINERS);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (responder != null) {
+			responder.interrupt();
+			responder.join();
+		}
+		zooKeeperConnection.getClient().delete().deletingChildrenIfNeeded().forPath(Paths.build(Paths.DEPLOYMENTS));
+	}
+
+	@Test
+	public void writeDeploymentsForAllModules() throws Exception {
+		startResponder();
+		Collection<ModuleDeploymentStatus> statuses = moduleDeploymentWriter.writeDeployments(deployments, PROVIDER);
+
+		assertEquals(4, statuses.size());
+		for (ModuleDeploymentStatus status : statuses) {
+			assertEquals(ModuleDeploymentStatus.State.deployed, status.getState());
+		}
+	}
+
+	@Test
+	public void writeDeploymentsWithExistingRequest() throws Exception {
+		// a request for one of the modules was written before, and its container
+		// has already responded; the other requests must still be written
+		ModuleDescriptor descriptor = deployments.keySet().iterator().next();
+		ModuleDeploymentStatus existing = new ModuleDeploymentStatus("container1", 0, descriptor.createKey(),
+				ModuleDeploymentStatus.State.deployed, null);
+		String path = new ModuleDeploymentsPath().setContainer("container1")
+				.setDeploymentUnitName(descriptor.getGroup())
+				.setModuleType(descriptor.getType().toString())
+				.setModuleLabel(descriptor.getModuleLabel())
+				.setModuleSequence("0").build();
+		CuratorFramework client = zooKeeperConnection.getClient();
+		client.create().forPath(path, ZooKeeperUtils.mapToBytes(PROVIDER.propertiesForDescriptor(descriptor)));
+		client.create().forPath(existing.buildPath(), ZooKeeperUtils.mapToBytes(existing.toMap()));
+
+		startResponder();
+		Collection<ModuleDeploymentStatus> statuses = moduleDeploymentWriter.writeDeployments(deployments, PROVIDER);
+
+		assertEquals(4, statuses.size());
+		for (ModuleDeploymentStatus status : statuses) {
+			assertEquals(ModuleDeploymentStatus.State.deployed, status.getState());
+		}
+	}
+
+	@Test
+	public void writeDeploymentsTimeout() throws Exception {
+		Collection<ModuleDeploymentStatus> statuses = moduleDeploymentWriter.writeDeployments(deployments, PROVIDER);
+
+		assertEquals(4, statuses.size());
+		CuratorFramework client = zooKeeperConnection.getClient();
+		for (ModuleDeploymentStatus status : statuses) {
+			assertEquals(ModuleDeploymentStatus.State.failed, status.getState());
+			assertTrue(status.getErrorDescription().contains("timed out"));
+			// requests that failed are removed
+			assertNull(client.checkExists().forPath(status.buildPath()));
+		}
+	}
+
+	private ModuleDescriptor createDescriptor(String label, ModuleType type, int index) {
+		return new ModuleDescriptor.Builder()
+				.setModuleDefinition(TestModuleDefinitions.dummy(label, type))
+				.setGroup("test")
+				.setModuleLabel(label)
+				.setIndex(index)
+				.build();
+	}
+
+	/**
+	 * Start a thread that acts as the containers by writing a successful
+	 * status for each module deployment request.
+	 */
+	private void startResponder() {
+		responder = new Thread() {
+
+			@Override
+			public void run() {
+				CuratorFramework client = zooKeeperConnection.getClient();
+				try {
+					while (!isInterrupted()) {
+						for (Container container : CONTAINERS) {
+							String containerPath = Paths.build(Paths.MODULE_DEPLOYMENTS, Paths.ALLOCATED,
+									container.getName());
+							for (String child : client.getChildren().forPath(containerPath)) {
+								ModuleDeploymentsPath path = new ModuleDeploymentsPath(Paths.build(containerPath, child));
+								ModuleDeploymentStatus status = new ModuleDeploymentStatus(container.getName(),
+										path.getModuleSequence(), new ModuleDescriptor.Key(path.getDeploymentUnitName(),
+												ModuleType.valueOf(path.getModuleType()), path.getModuleLabel()),
+										ModuleDeploymentStatus.State.deployed, null);
+								byte[] data = client.getData().forPath(status.buildPath());
+								if (data == null || data.length == 0) {
+									client.setData().forPath(status.buildPath(), ZooKeeperUtils.mapToBytes(status.toMap()));
+								}
+							}
+						}
+						Thread.sleep(50);
+					}
+				}
+				catch (InterruptedException e) {
+					// test finished
+				}
+				catch (Exception e) {
+					// the nodes were removed by the test
+				}
+			}
+		};
+		responder.start();
+	}
+
+	@Configuration
+	public static class ModuleDeploymentWriterTestsConfig {
+
+		@Bean
+		public static PropertySourcesPlaceholderConfigurer placeholderConfigurer() {
+			PropertySourcesPlaceholderConfigurer configurer = new PropertySourcesPlaceholderConfigurer();
+			Properties properties = new Properties();
+			properties.setProperty("xd.admin.deploymentTimeout", "2000");
+			configurer.setProperties(properties);
+			return configurer;
+		}
+
+		@Bean
+		public EmbeddedZooKeeper embeddedZooKeeper() {
+			return new EmbeddedZooKeeper();
+		}
+
+		@Bean
+		public ZooKeeperConnection zooKeeperConnection() {
+			return new ZooKeeperConnection("localhost:" + embeddedZooKeeper().getClientPort());
+		}
+
+		@Bean
+		public ModuleDeploymentWriter moduleDeploymentWriter() {
+			return new ModuleDeploymentWriter();
+		}
+
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.server.container;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.xd.dirt.container.store.ZooKeeperModuleMessageRateRepository;
+import org.springframework.xd.dirt.module.ModuleDeployer;
+import org.springframework.xd.dirt.server.container.ModuleMessageRatePublisherTests.ModuleMessageRatePublisherTestsConfig;
+import org.springframework.xd.dirt.zookeeper.EmbeddedZooKeeper;
+import org.springframework.xd.dirt.zookeeper.Paths;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperConnection;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperUtils;
+import org.springframework.xd.module.ModuleDescriptor;
+import org.springframework.xd.module.ModuleType;
+import org.springframework.xd.module.RuntimeModuleDeploymentProperties;
+import org.springframework.xd.module.TestModuleDefinitions;
+import org.springframework.xd.module.core.Module;
+
+/**
+ * Tests for {@link ModuleMessageRatePublisher} and
+ * {@link ZooKeeperModuleMessageRateRepository}.
+ */
+@ContextConfiguration(classes = ModuleMessageRatePublisherTestsConfig.class)
+@RunWith(SpringJUnit4ClassRunner.class)
+public class ModuleMessageRatePublisherTests {
+
+	private static final String CONTAINER_ID = "container1";
+
+	private static final String MODULE_KEY = "test.processor.foo.1";
+
+	@Autowired
+	private ZooKeeperConnection zooKeeperConnection;
+
+	@Autowired
+	private ZooKeeperModuleMessageRateRepository messageRateRepository;
+
+	private final DirectChannel input = new DirectChannel();
+
+	private final QueueChannel output = new QueueChannel();
+
+	private ModuleMessageRatePublisher publisher;
+
+	@Before
+	public void setUp() {
+		ModuleDescriptor descriptor = new ModuleDescriptor.Builder()
+				.setModuleDefinition(TestModuleDefinitions.dummy("foo", ModuleType.processor))
+				.setGroup("test")
+				.setModuleLabel("foo")
+				.setIndex(1)
+				.build();
+		RuntimeModuleDeploymentProperties deploymentProperties = new RuntimeModuleDeploymentProperties();
+		deploymentProperties.setSequence(1);
+
+		Module module = mock(Module.class);
+		when(module.getDescriptor()).thenReturn(descriptor);
+		when(module.getType()).thenReturn(ModuleType.processor);
+		when(module.getDeploymentProperties()).thenReturn(deploymentProperties);
+		when(module.getComponent("input", MessageChannel.class)).thenReturn(input);
+		when(module.getComponent("output", MessageChannel.class)).thenReturn(output);
+		input.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				output.send(message);
+			}
+		});
+
+		Map<String, Map<Integer, Module>> deployedModules = new HashMap<String, Map<Integer, Module>>();
+		deployedModules.put("test", Collections.singletonMap(1, module));
+		ModuleDeployer moduleDeployer = mock(ModuleDeployer.class);
+		when(moduleDeployer.getDeployedModules()).thenReturn(deployedModules);
+
+		publisher = new ModuleMessageRatePublisher(zooKeeperConnection, moduleDeployer, CONTAINER_ID, 100);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		publisher.stop();
+		CuratorFramework client = zooKeeperConnection.getClient();
+		if (client.checkExists().forPath(Paths.MESSAGE_RATES) != null) {
+			for (String path : client.getChildren().forPath(Paths.MESSAGE_RATES)) {
+				client.delete().forPath(Paths.build(Paths.MESSAGE_RATES, path));
+			}
+		}
+	}
+
+	@Test
+	public void publishAndFindMessageRates() throws Exception {
+		publisher.start();
+		for (int i = 0; i < 3; i++) {
+			input.send(MessageBuilder.withPayload("foo").build());
+		}
+
+		Map<String, Double> rates = awaitModuleRates("outputQueueSize");
+		assertNotNull("Message rates were not published", rates);
+		assertEquals(3, rates.get("outputQueueSize").intValue());
+		assertTrue(rates.containsKey("input"));
+		assertTrue(rates.containsKey("output"));
+		assertTrue(rates.get("input") >= 0);
+
+		publisher.stop();
+		long timeout = System.currentTimeMillis() + 5000;
+		while (!messageRateRepository.findByContainerId(CONTAINER_ID).isEmpty()
+				&& System.currentTimeMillis() < timeout) {
+			Thread.sleep(100);
+		}
+		assertTrue("Message rates of a stopped publisher should be removed",
+				messageRateRepository.findByContainerId(CONTAINER_ID).isEmpty());
+	}
+
+	@Test
+	public void staleMessageRatesAreIgnored() throws Exception {
+		Map<String, String> data = Collections.singletonMap(MODULE_KEY + ".input", "1.5");
+		zooKeeperConnection.getClient().create().creatingParentsIfNeeded().forPath(
+				Paths.build(Paths.MESSAGE_RATES, CONTAINER_ID), ZooKeeperUtils.mapToBytes(data));
+
+		Map<String, Double> rates = awaitModuleRates("input");
+		assertNotNull("Message rates were not found", rates);
+		assertEquals(1.5, rates.get("input"), 0.0);
+
+		// nothing updates the node, so it becomes stale after 1 second
+		Thread.sleep(1500);
+		assertTrue(messageRateRepository.findByContainerId(CONTAINER_ID).isEmpty());
+	}
+
+	/**
+	 * Wait for the repository to return the rates of the test module
+	 * containing the given metric.
+	 *
+	 * @param metric the metric to wait for
+	 * @return the rates of the test module, or {@code null} if not found in time
+	 */
+	private Map<String, Double> awaitModuleRates(String metric) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 15000;
+		while (System.currentTimeMillis() < timeout) {
+			Map<String, Double> rates = messageRateRepository.findByContainerId(CONTAINER_ID).get(MODULE_KEY);
+			if (rates != null && rates.containsKey(metric)) {
+				return rates;
+			}
+			Thread.sleep(100);
+		}
+		return null;
+	}
+
+	@Configuration
+	public static class ModuleMessageRatePublisherTestsConfig {
+
+		@Bean
+		public EmbeddedZooKeeper embeddedZooKeeper() {
+			return new EmbeddedZooKeeper();
+		}
+
+		@Bean
+		public ZooKeeperConnection zooKeeperConnection() {
+			return new ZooKeeperConnection("localhost:" + embeddedZooKeeper().getClientPort());
+		}
+
+		@Bean
+		public ZooKeeperModuleMessageRateRepository messageRateRepository() {
+			return new ZooKeeperModuleMessageRateRepository(zooKeeperConnection(), 1000);
+		}
+
+	}
+
+}
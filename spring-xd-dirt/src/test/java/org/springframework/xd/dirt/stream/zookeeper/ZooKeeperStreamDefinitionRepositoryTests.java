@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -37,7 +38,9 @@ import org.springframework.xd.dirt.module.store.ZooKeeperModuleDependencyReposit
 import org.springframework.xd.dirt.stream.StreamDefinition;
 import org.springframework.xd.dirt.stream.zookeeper.ZooKeeperStreamDefinitionRepository;
 import org.springframework.xd.dirt.zookeeper.EmbeddedZooKeeper;
+import org.springframework.xd.dirt.zookeeper.Paths;
 import org.springframework.xd.dirt.zookeeper.ZooKeeperConnection;
+import org.springframework.xd.dirt.zookeeper.ZooKeeperUtils;
 
 /**
  * Unit tests for {@link ZooKeeperStreamDefinitionRepository}.
@@ -77,6 +80,7 @@ public class ZooKeeperStreamDefinitionRepositoryTests {
 	public void shutdownRepository() {
 		if (repository != null) {
 			repository.deleteAll();
+			repository.destroy();
 		}
 
 	}
@@ -233,4 +237,42 @@ public class ZooKeeperStreamDefinitionRepositoryTests {
 
 	}
 
+	@Test
+	public void findAllServedFromCache() {
+		Assert.assertEquals(-1, repository.getDefinitionCache().getStaleness());
+		repository.save(new StreamDefinition("one", "http | hdfs"));
+		Assert.assertEquals(1, repository.findAll().size());
+		Assert.assertEquals(1, repository.getDefinitionCache().getMisses());
+		Assert.assertEquals(0, repository.getDefinitionCache().getStaleness());
+
+		repository.save(new StreamDefinition("two", "tcp | file"));
+		Assert.assertEquals(2, repository.findAll().size());
+		repository.delete("one");
+		List<StreamDefinition> all = repository.findAll();
+		Assert.assertEquals(1, all.size());
+		Assert.assertEquals("tcp | file", all.get(0).getDefinition());
+		Assert.assertEquals(2, repository.getDefinitionCache().getHits());
+		Assert.assertEquals(1, repository.getDefinitionCache().getMisses());
+		Assert.assertEquals(2.0 / 3, repository.getDefinitionCache().getHitRate(), 0.001);
+
+		repository.getDefinitionCache().close();
+		Assert.assertTrue(repository.getDefinitionCache().getStaleness() >= 0);
+	}
+
+	@Test
+	public void findAllSeesExternalChanges() throws Exception {
+		Assert.assertTrue(repository.findAll().isEmpty());
+
+		zkConnection.getClient().create().forPath(Paths.build(Paths.STREAMS, "external"),
+				ZooKeeperUtils.mapToBytes(Collections.singletonMap("definition", "time | log")));
+		List<StreamDefinition> all = repository.findAll();
+		for (int i = 0; all.isEmpty() && i < 50; i++) {
+			Thread.sleep(100);
+			all = repository.findAll();
+		}
+		Assert.assertEquals(1, all.size());
+		Assert.assertEquals("external", all.get(0).getName());
+		Assert.assertEquals("time | log", all.get(0).getDefinition());
+	}
+
 }
@@ -21,9 +21,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -75,6 +78,7 @@ import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import org.springframework.xd.dirt.integration.bus.AbstractBusPropertiesAccessor;
+import org.springframework.xd.dirt.integration.bus.AdaptiveBatcher;
 import org.springframework.xd.dirt.integration.bus.Binding;
 import org.springframework.xd.dirt.integration.bus.BusProperties;
 import org.springframework.xd.dirt.integration.bus.BusUtils;
@@ -159,6 +163,11 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 
 	private static final boolean DEFAULT_AUTO_COMMIT_OFFSET_ENABLED = true;
 
+	/**
+	 * The maximum number of records in a batch delivered to a batching consumer, if the consumer does not set one.
+	 */
+	private static final int DEFAULT_CONSUMER_BATCH_SIZE = 100;
+
 	private RetryOperations retryOperations;
 
 	/**
@@ -203,6 +212,9 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 			.add(AUTO_COMMIT_OFFSET_ENABLED)
 			.add(FETCH_SIZE)
 			.add(QUEUE_SIZE)
+			.add(BusProperties.BATCHING_ENABLED)
+			.add(BusProperties.BATCH_SIZE)
+			.add(BusProperties.BATCH_TIMEOUT)
 			.build();
 
 	/**
@@ -523,6 +535,16 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 		this.mode = mode;
 	}
 
+	/**
+	 * Set to true to embed headers using the compact binary format rather than JSON.
+	 * Consumers that predate the binary format can't decode it, so only enable this
+	 * once all containers have been upgraded. Default false.
+	 * @param binaryEmbeddedHeaders true to embed headers using the binary format.
+	 */
+	public void setBinaryEmbeddedHeaders(boolean binaryEmbeddedHeaders) {
+		this.embeddedHeadersMessageConverter.setBinaryEncoding(binaryEmbeddedHeaders);
+	}
+
 	/**
 	 * Set the {@link OffsetManagement} to use. Default:
 	 * {@link OffsetManagement#kafkaTopic}.
@@ -572,13 +594,19 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 			producerMetadata.setCompressionType(ProducerMetadata.CompressionType
 					.valueOf(accessor.getCompressionCodec(this.defaultCompressionCodec)));
 			producerMetadata.setBatchBytes(accessor.getBatchSize(this.defaultBatchSize));
-			producerMetadata.setSync(accessor.getSyncProducer(this.defaultSyncProducer));
+			boolean syncProducer = accessor.getSyncProducer(this.defaultSyncProducer);
+			producerMetadata.setSync(syncProducer);
 			producerMetadata.setSendTimeout(accessor.getSyncProducerTimeout(this.defaultSyncProducerTimeout));
+			long lingerMs = accessor.getBatchTimeout(this.defaultBatchTimeout);
+			// the producer batches records itself; batching makes it wait for a batch to fill, but a sync
+			// producer sends one record at a time, so waiting would only add latency
+			if (lingerMs <= 0 && accessor.isBatchingEnabled(this.defaultBatchingEnabled) && !syncProducer) {
+				lingerMs = AdaptiveBatcher.DEFAULT_LATENCY_CEILING;
+			}
 			Properties additionalProps = new Properties();
 			additionalProps.put(ProducerConfig.ACKS_CONFIG,
 					String.valueOf(accessor.getRequiredAcks(this.defaultRequiredAcks)));
-			additionalProps.put(ProducerConfig.LINGER_MS_CONFIG,
-					String.valueOf(accessor.getBatchTimeout(this.defaultBatchTimeout)));
+			additionalProps.put(ProducerConfig.LINGER_MS_CONFIG, String.valueOf(lingerMs));
 			ProducerFactoryBean<byte[], byte[]> producerFB = new ProducerFactoryBean<>(producerMetadata, brokers,
 					additionalProps);
 
@@ -762,8 +790,17 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 			}
 		}
 
+		boolean autoCommitOffset = accessor.getAutoCommitOffsetEnabled(this.defaultAutoCommitOffsetEnabled);
+		// batches are delivered as a List payload, so only consumers that ask for them get them
+		BatchingReceivingHandler batchingHandler = null;
 		ReceivingHandler rh = new ReceivingHandler();
-		rh.setOutputChannel(moduleInputChannel);
+		if (accessor.isBatchingEnabled(false)) {
+			batchingHandler = new BatchingReceivingHandler(moduleInputChannel, accessor, autoCommitOffset);
+			rh.setOutputChannel(new FixedSubscriberChannel(batchingHandler));
+		}
+		else {
+			rh.setOutputChannel(moduleInputChannel);
+		}
 
 		final FixedSubscriberChannel bridge = new FixedSubscriberChannel(rh);
 		bridge.setBeanName("bridge." + name);
@@ -783,13 +820,14 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 		kafkaMessageDrivenChannelAdapter.setKeyDecoder(keyDecoder);
 		kafkaMessageDrivenChannelAdapter.setPayloadDecoder(valueDecoder);
 		kafkaMessageDrivenChannelAdapter.setOutputChannel(bridge);
-		kafkaMessageDrivenChannelAdapter.setAutoCommitOffset(
-				accessor.getAutoCommitOffsetEnabled(this.defaultAutoCommitOffsetEnabled));
+		// a batching consumer commits offsets itself, once the batch is delivered
+		kafkaMessageDrivenChannelAdapter.setAutoCommitOffset(autoCommitOffset && batchingHandler == null);
 		kafkaMessageDrivenChannelAdapter.afterPropertiesSet();
 		kafkaMessageDrivenChannelAdapter.start();
 
 
-		EventDrivenConsumer edc = new KafkaConsumerBusAdapter(bridge, rh, kafkaMessageDrivenChannelAdapter, messageListenerContainer);
+		EventDrivenConsumer edc = new KafkaConsumerBusAdapter(bridge, rh, kafkaMessageDrivenChannelAdapter,
+				messageListenerContainer, batchingHandler);
 		edc.setBeanName("inbound." + name);
 
 		Binding consumerBinding = Binding.forConsumer(name, edc, moduleInputChannel, accessor);
@@ -905,10 +943,15 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 
 		private final KafkaMessageListenerContainer messageListenerContainer;
 
-		public KafkaConsumerBusAdapter(FixedSubscriberChannel bridge, ReceivingHandler rh, KafkaMessageDrivenChannelAdapter kafkaMessageDrivenChannelAdapter, KafkaMessageListenerContainer messageListenerContainer) {
+		private final BatchingReceivingHandler batchingHandler;
+
+		public KafkaConsumerBusAdapter(FixedSubscriberChannel bridge, ReceivingHandler rh,
+				KafkaMessageDrivenChannelAdapter kafkaMessageDrivenChannelAdapter,
+				KafkaMessageListenerContainer messageListenerContainer, BatchingReceivingHandler batchingHandler) {
 			super(bridge, rh);
 			this.kafkaMessageDrivenChannelAdapter = kafkaMessageDrivenChannelAdapter;
 			this.messageListenerContainer = messageListenerContainer;
+			this.batchingHandler = batchingHandler;
 		}
 
 		@Override
@@ -916,6 +959,10 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 			// stop the offset manager and the channel adapter before unbinding
 			// this means that the upstream channel adapter has a chance to stop
 			kafkaMessageDrivenChannelAdapter.stop();
+			// deliver, and commit, the records already received before the offset manager is closed
+			if (batchingHandler != null) {
+				batchingHandler.flush();
+			}
 			if (messageListenerContainer.getOffsetManager() instanceof DisposableBean) {
 				try {
 					((DisposableBean) messageListenerContainer.getOffsetManager()).destroy();
@@ -1023,6 +1070,99 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 		}
 	}
 
+	/**
+	 * Delivers the converted records of a consumer to the module as batches, each a single message with a
+	 * {@link List} payload and, in the {@link XdHeaders#XD_BATCH_HEADERS} header, a list of the records' headers.
+	 * Records are grouped by an {@link AdaptiveBatcher}, so a batch holds the records that the listener container
+	 * drains from a fetch, up to the batch size, while a sparse stream is still delivered with at most the batch
+	 * timeout of latency. Offsets are committed once per batch, for the last record of each partition: by the bus
+	 * after the batch is delivered, or, when auto commit is disabled, by the module through the batch message's
+	 * acknowledgment header. A batch the module fails to handle is sent to the {@code errorChannel} before its
+	 * offsets are committed, so that a later batch never commits past records that were neither delivered nor
+	 * published as errors.
+	 */
+	private class BatchingReceivingHandler extends AbstractMessageHandler
+			implements AdaptiveBatcher.BatchSender<Message<?>> {
+
+		private final MessageChannel outputChannel;
+
+		private final boolean autoCommitOffset;
+
+		private final AdaptiveBatcher<Message<?>> batcher;
+
+		private BatchingReceivingHandler(MessageChannel outputChannel, KafkaPropertiesAccessor properties,
+				boolean autoCommitOffset) {
+			this.outputChannel = outputChannel;
+			this.autoCommitOffset = autoCommitOffset;
+			this.batcher = createAdaptiveBatcher(this, properties.getBatchSize(DEFAULT_CONSUMER_BATCH_SIZE),
+					Integer.MAX_VALUE, properties.getBatchTimeout(defaultBatchTimeout));
+			this.setBeanFactory(KafkaMessageBus.this.getBeanFactory());
+		}
+
+		@Override
+		protected void handleMessageInternal(Message<?> message) throws Exception {
+			this.batcher.add(message, 1);
+		}
+
+		@Override
+		public void send(List<Message<?>> batch) throws Exception {
+			List<Object> payloads = new ArrayList<>(batch.size());
+			List<Map<String, Object>> batchHeaders = new ArrayList<>(batch.size());
+			Map<String, Acknowledgment> acknowledgments = new LinkedHashMap<>();
+			for (Message<?> message : batch) {
+				payloads.add(message.getPayload());
+				MessageHeaders headers = message.getHeaders();
+				Map<String, Object> recordHeaders = new HashMap<>(headers);
+				Acknowledgment acknowledgment = (Acknowledgment) recordHeaders.remove(KafkaHeaders.ACKNOWLEDGMENT);
+				batchHeaders.add(recordHeaders);
+				if (acknowledgment != null) {
+					// records of a partition arrive in order, so the last one commits them all
+					acknowledgments.put(headers.get(KafkaHeaders.TOPIC) + "-" + headers.get(KafkaHeaders.PARTITION_ID),
+							acknowledgment);
+				}
+			}
+			final Collection<Acknowledgment> batchAcknowledgments = acknowledgments.values();
+			MessageBuilder<List<Object>> batchMessage = MessageBuilder.withPayload(payloads)
+					.setHeader(XdHeaders.XD_BATCH_HEADERS, batchHeaders);
+			if (!this.autoCommitOffset && !batchAcknowledgments.isEmpty()) {
+				batchMessage.setHeader(KafkaHeaders.ACKNOWLEDGMENT, new Acknowledgment() {
+
+					@Override
+					public void acknowledge() {
+						for (Acknowledgment acknowledgment : batchAcknowledgments) {
+							acknowledgment.acknowledge();
+						}
+					}
+
+				});
+			}
+			Message<List<Object>> message = batchMessage.build();
+			try {
+				this.outputChannel.send(message);
+			}
+			catch (Exception e) {
+				publishUndeliveredMessage(message, "Failed to deliver batch", e);
+			}
+			if (this.autoCommitOffset) {
+				for (Acknowledgment acknowledgment : batchAcknowledgments) {
+					acknowledgment.acknowledge();
+				}
+			}
+		}
+
+		@Override
+		public void failed(List<Message<?>> batch, Exception cause) {
+			for (Message<?> message : batch) {
+				publishUndeliveredMessage(message, "Failed to deliver batch", cause);
+			}
+		}
+
+		private void flush() {
+			this.batcher.drain();
+		}
+
+	}
+
 	private class SendingHandler extends AbstractMessageHandler {
 
 		private final PartitioningMetadata partitioningMetadata;
@@ -1056,9 +1196,8 @@ public class KafkaMessageBus extends MessageBusSupport implements DisposableBean
 			}
 
 			if (Mode.embeddedHeaders.equals(mode)) {
-				MessageValues transformed = serializePayloadIfNecessary(message);
-				byte[] messageToSend = embeddedHeadersMessageConverter.embedHeaders(transformed,
-						KafkaMessageBus.this.headersToMap);
+				byte[] messageToSend = (byte[]) serializeAndEmbedHeaders(embeddedHeadersMessageConverter, message,
+						null, KafkaMessageBus.this.headersToMap).getPayload();
 				producerConfiguration.send(topicName, targetPartition, null, messageToSend);
 			}
 			else if (Mode.raw.equals(mode)) {
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus.local;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link TaskExecutor} for one bus binding that runs tasks on a (possibly shared) delegate executor, with at most
+ * {@code concurrency} of them running at a time, and records the binding's queue depth and task latency. Tasks beyond
+ * the concurrency limit wait in a bounded queue owned by the binding rather than in the delegate, so a burst on one
+ * binding does not occupy more than its share of a shared pool; a task submitted when that queue is full is rejected.
+ * A task the delegate rejects stays queued until a running task of the binding completes, or, if none is running,
+ * runs on the submitting thread.
+ */
+public class BindingTaskExecutor implements TaskExecutor {
+
+	private static final Log logger = LogFactory.getLog(BindingTaskExecutor.class);
+
+	private final String name;
+
+	private final Executor delegate;
+
+	private final int concurrency;
+
+	private final int queueCapacity;
+
+	private final Deque<TimedTask> pending = new ConcurrentLinkedDeque<TimedTask>();
+
+	private final AtomicInteger queueDepth = new AtomicInteger();
+
+	private final AtomicInteger active = new AtomicInteger();
+
+	private final AtomicLong completed = new AtomicLong();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	/**
+	 * Create an executor with an unbounded queue.
+	 * @param name the binding name, for reporting.
+	 * @param delegate the executor that runs the tasks.
+	 * @param concurrency the maximum number of tasks running on the delegate at a time.
+	 */
+	public BindingTaskExecutor(String name, Executor delegate, int concurrency) {
+		this(name, delegate, concurrency, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create an executor.
+	 * @param name the binding name, for reporting.
+	 * @param delegate the executor that runs the tasks.
+	 * @param concurrency the maximum number of tasks running on the delegate at a time.
+	 * @param queueCapacity the maximum number of tasks waiting to start.
+	 */
+	public BindingTaskExecutor(String name, Executor delegate, int concurrency, int queueCapacity) {
+		Assert.notNull(delegate, "'delegate' must not be null");
+		Assert.isTrue(concurrency > 0, "'concurrency' must be greater than 0");
+		Assert.isTrue(queueCapacity > 0, "'queueCapacity' must be greater than 0");
+		this.name = name;
+		this.delegate = delegate;
+		this.concurrency = concurrency;
+		this.queueCapacity = queueCapacity;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		if (this.queueDepth.incrementAndGet() > this.queueCapacity) {
+			this.queueDepth.decrementAndGet();
+			this.rejected.incrementAndGet();
+			throw new TaskRejectedException("Queue of binding '" + this.name + "' is full");
+		}
+		this.pending.add(new TimedTask(task));
+		schedule();
+	}
+
+	/**
+	 * Hand pending tasks to the delegate while there are free permits. When the delegate rejects a task, it goes
+	 * back to the head of the queue for the next running task to hand over when it completes; if no task is
+	 * running, the current thread runs it.
+	 */
+	private void schedule() {
+		boolean rejected = false;
+		while (!this.pending.isEmpty()) {
+			int running = this.active.get();
+			if (running >= this.concurrency) {
+				return;
+			}
+			if (!this.active.compareAndSet(running, running + 1)) {
+				continue;
+			}
+			final TimedTask task = this.pending.poll();
+			if (task == null) {
+				this.active.decrementAndGet();
+				continue;
+			}
+			if (rejected) {
+				runHere(task);
+				rejected = false;
+				continue;
+			}
+			try {
+				this.delegate.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							task.run();
+						}
+						finally {
+							active.decrementAndGet();
+							schedule();
+						}
+					}
+
+				});
+			}
+			catch (RejectedExecutionException e) {
+				this.pending.addFirst(task);
+				if (this.active.decrementAndGet() > 0) {
+					return;
+				}
+				rejected = true;
+			}
+		}
+	}
+
+	private void runHere(TimedTask task) {
+		try {
+			task.run();
+		}
+		catch (RuntimeException e) {
+			logger.error("Task of binding '" + this.name + "' failed", e);
+		}
+		finally {
+			this.active.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @return the number of tasks submitted but not yet started.
+	 */
+	public int getQueueDepth() {
+		return this.queueDepth.get();
+	}
+
+	/**
+	 * @return the number of tasks currently running or handed to the delegate.
+	 */
+	public int getActiveCount() {
+		return this.active.get();
+	}
+
+	public long getCompletedCount() {
+		return this.completed.get();
+	}
+
+	/**
+	 * @return the number of tasks rejected because the queue was full.
+	 */
+	public long getRejectedCount() {
+		return this.rejected.get();
+	}
+
+	/**
+	 * @return the mean time, in milliseconds, from submission to the start of a completed task.
+	 */
+	public double getMeanWaitTime() {
+		return mean(this.totalWaitNanos.get());
+	}
+
+	/**
+	 * @return the mean time, in milliseconds, from submission to the completion of a task.
+	 */
+	public double getMeanLatency() {
+		return mean(this.totalLatencyNanos.get());
+	}
+
+	/**
+	 * @return the longest time, in milliseconds, from submission to the completion of a task.
+	 */
+	public double getMaxLatency() {
+		return this.maxLatencyNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	private double mean(long totalNanos) {
+		long count = this.completed.get();
+		return count == 0 ? 0 : totalNanos / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s [queueDepth=%d, active=%d, completed=%d, meanWait=%.3fms, meanLatency=%.3fms, "
+				+ "maxLatency=%.3fms]", this.name, getQueueDepth(), getActiveCount(), getCompletedCount(),
+				getMeanWaitTime(), getMeanLatency(), getMaxLatency());
+	}
+
+	private class TimedTask implements Runnable {
+
+		private final Runnable task;
+
+		private final long submitted = System.nanoTime();
+
+		TimedTask(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			long started = System.nanoTime();
+			queueDepth.decrementAndGet();
+			try {
+				this.task.run();
+			}
+			finally {
+				long latency = System.nanoTime() - this.submitted;
+				totalWaitNanos.addAndGet(started - this.submitted);
+				totalLatencyNanos.addAndGet(latency);
+				long max = maxLatencyNanos.get();
+				while (latency > max && !maxLatencyNanos.compareAndSet(max, latency)) {
+					max = maxLatencyNanos.get();
+				}
+				completed.incrementAndGet();
+			}
+		}
+
+	}
+
+}
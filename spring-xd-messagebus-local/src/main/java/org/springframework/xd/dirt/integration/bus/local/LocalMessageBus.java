@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -14,12 +14,19 @@
 package org.springframework.xd.dirt.integration.bus.local;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.ExecutorChannel;
 import org.springframework.integration.channel.PublishSubscribeChannel;
@@ -55,7 +62,33 @@ import org.springframework.xd.dirt.integration.bus.MessageBusSupport;
  * @author Ilayaperumal Gopinathan
  * @since 1.0
  */
-public class LocalMessageBus extends MessageBusSupport {
+public class LocalMessageBus extends MessageBusSupport implements DisposableBean {
+
+	/**
+	 * Where the bus runs pub/sub deliveries and request/reply handlers.
+	 */
+	public enum ExecutorStrategy {
+
+		/**
+		 * A bounded pool shared by pub/sub channels and a dedicated pool per request/reply binding. Pub/sub
+		 * deliveries are handed to the shared pool directly, so they have no binding executor.
+		 */
+		POOLED,
+
+		/**
+		 * One unbounded pool, without a queue, shared by all bindings; threads are created on demand for a burst
+		 * and retired after the keep alive time. Request/reply bindings are limited to their concurrency.
+		 */
+		ELASTIC,
+
+		/**
+		 * One work-stealing {@link ForkJoinPool}, sized to the number of processors, shared by all bindings;
+		 * suits short, non-blocking handlers. Request/reply bindings are limited to their concurrency.
+		 */
+		FORK_JOIN
+
+	}
+
 
 	private static final int DEFAULT_EXECUTOR_CORE_POOL_SIZE = 0;
 
@@ -67,6 +100,10 @@ public class LocalMessageBus extends MessageBusSupport {
 
 	private static final int DEFAULT_REQ_REPLY_CONCURRENCY = 1;
 
+	private static final int DEFAULT_RING_BUFFER_SIZE = 1024;
+
+	private static final int DEFAULT_RING_BUFFER_BATCH_SIZE = 64;
+
 	protected static final Set<Object> CONSUMER_REQUEST_REPLY_PROPERTIES = new SetBuilder()
 			.addAll(CONSUMER_STANDARD_PROPERTIES)
 			.add(BusProperties.CONCURRENCY)
@@ -88,8 +125,24 @@ public class LocalMessageBus extends MessageBusSupport {
 
 	private volatile int queueSize = Integer.MAX_VALUE;
 
+	private volatile boolean ringBufferEnabled;
+
+	private volatile int ringBufferSize = DEFAULT_RING_BUFFER_SIZE;
+
+	private volatile int ringBufferBatchSize = DEFAULT_RING_BUFFER_BATCH_SIZE;
+
+	private volatile RingBufferChannel.WaitStrategy ringBufferWaitStrategy = RingBufferChannel.WaitStrategy.PARK;
+
 	private final Map<String, ThreadPoolTaskExecutor> reqRepExecutors = new ConcurrentHashMap<>();
 
+	private final Map<String, BindingTaskExecutor> bindingExecutors = new ConcurrentHashMap<>();
+
+	private volatile ExecutorStrategy executorStrategy = ExecutorStrategy.POOLED;
+
+	private volatile Executor sharedExecutor = executor;
+
+	private volatile ForkJoinPool forkJoinPool;
+
 	/**
 	 * Used to create and customize {@link QueueChannel}s when the binding operation involves aliased names.
 	 */
@@ -103,12 +156,26 @@ public class LocalMessageBus extends MessageBusSupport {
 		}
 	};
 
+	/**
+	 * Used instead of the {@link #queueChannelProvider} when ring buffers are enabled.
+	 */
+	private final SharedChannelProvider<RingBufferChannel> ringBufferChannelProvider = new SharedChannelProvider<RingBufferChannel>(
+			RingBufferChannel.class) {
+
+		@Override
+		protected RingBufferChannel createSharedChannel(String name) {
+			return new RingBufferChannel(ringBufferSize, ringBufferBatchSize, ringBufferWaitStrategy);
+		}
+	};
+
 	private final SharedChannelProvider<PublishSubscribeChannel> pubsubChannelProvider = new SharedChannelProvider<PublishSubscribeChannel>(
 			PublishSubscribeChannel.class) {
 
 		@Override
 		protected PublishSubscribeChannel createSharedChannel(String name) {
-			PublishSubscribeChannel publishSubscribeChannel = new PublishSubscribeChannel(executor);
+			PublishSubscribeChannel publishSubscribeChannel = new PublishSubscribeChannel(
+					executorStrategy == ExecutorStrategy.POOLED ? executor
+							: createBindingExecutor(name, sharedExecutor, Integer.MAX_VALUE));
 			publishSubscribeChannel.setIgnoreFailures(true);
 			return publishSubscribeChannel;
 		}
@@ -128,6 +195,64 @@ public class LocalMessageBus extends MessageBusSupport {
 		this.queueSize = queueSize;
 	}
 
+	/**
+	 * Use {@link RingBufferChannel}s rather than polled {@link QueueChannel}s for named queue and job channels.
+	 * Default: false.
+	 * @param ringBufferEnabled true to use ring buffers.
+	 */
+	public void setRingBufferEnabled(boolean ringBufferEnabled) {
+		this.ringBufferEnabled = ringBufferEnabled;
+	}
+
+	/**
+	 * Set the number of slots in each ring buffer, rounded up to a power of two; senders block when it is full.
+	 * Default: 1024.
+	 * @param ringBufferSize the ring buffer size.
+	 */
+	public void setRingBufferSize(int ringBufferSize) {
+		this.ringBufferSize = ringBufferSize;
+	}
+
+	/**
+	 * Set the maximum number of messages a ring buffer consumer drains at a time.
+	 * Default: 64.
+	 * @param ringBufferBatchSize the batch size.
+	 */
+	public void setRingBufferBatchSize(int ringBufferBatchSize) {
+		this.ringBufferBatchSize = ringBufferBatchSize;
+	}
+
+	/**
+	 * Set how ring buffer senders and consumers wait for space or messages.
+	 * Default: {@link RingBufferChannel.WaitStrategy#PARK}.
+	 * @param ringBufferWaitStrategy the wait strategy.
+	 */
+	public void setRingBufferWaitStrategy(RingBufferChannel.WaitStrategy ringBufferWaitStrategy) {
+		this.ringBufferWaitStrategy = ringBufferWaitStrategy;
+	}
+
+	/**
+	 * Set where pub/sub deliveries and request/reply handlers run. With {@link ExecutorStrategy#ELASTIC} the
+	 * executor max pool size and queue size are not used; with {@link ExecutorStrategy#FORK_JOIN} none of the
+	 * executor properties are used.
+	 * Default: {@link ExecutorStrategy#POOLED}.
+	 * @param executorStrategy the executor strategy.
+	 */
+	public void setExecutorStrategy(ExecutorStrategy executorStrategy) {
+		Assert.notNull(executorStrategy, "'executorStrategy' must not be null");
+		this.executorStrategy = executorStrategy;
+	}
+
+	/**
+	 * Return the executors of the request/reply bindings and, unless the strategy is
+	 * {@link ExecutorStrategy#POOLED}, of the pub/sub channels, keyed by channel name, for their queue depth and
+	 * task latency.
+	 * @return the binding executors.
+	 */
+	public Map<String, BindingTaskExecutor> getBindingExecutors() {
+		return Collections.unmodifiableMap(this.bindingExecutors);
+	}
+
 	/**
 	 * Set the {@link ThreadPoolTaskExecutor}} core pool size to limit the number of concurrent
 	 * threads. The executor is used for PubSub operations.
@@ -150,7 +275,8 @@ public class LocalMessageBus extends MessageBusSupport {
 
 	/**
 	 * Set the {@link ThreadPoolTaskExecutor}} queue size to limit the number of concurrent
-	 * threads. The executor is used for PubSub operations.
+	 * threads. The executor is used for PubSub operations. Also limits the number of tasks waiting in the queue
+	 * of each binding executor.
 	 * Default: {@link Integer#MAX_VALUE}.
 	 * @param executorQueueSize the queue size.
 	 */
@@ -174,7 +300,39 @@ public class LocalMessageBus extends MessageBusSupport {
 		this.executor.setQueueCapacity(this.executorQueueSize);
 		this.executor.setKeepAliveSeconds(this.executorKeepAliveSeconds);
 		this.executor.setThreadNamePrefix("xd.localbus-");
+		if (this.executorStrategy == ExecutorStrategy.ELASTIC) {
+			this.executor.setMaxPoolSize(Integer.MAX_VALUE);
+			this.executor.setQueueCapacity(0);
+		}
 		this.executor.initialize();
+		if (this.executorStrategy == ExecutorStrategy.FORK_JOIN) {
+			this.forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+					new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+						@Override
+						public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+							ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+							thread.setName("xd.localbus-fj-" + thread.getPoolIndex());
+							return thread;
+						}
+
+					}, null, true);
+			this.sharedExecutor = this.forkJoinPool;
+		}
+		else {
+			this.sharedExecutor = this.executor;
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.executor.shutdown();
+		if (this.forkJoinPool != null) {
+			this.forkJoinPool.shutdown();
+		}
+		for (ThreadPoolTaskExecutor reqRepExecutor : this.reqRepExecutors.values()) {
+			reqRepExecutor.shutdown();
+		}
 	}
 
 	/**
@@ -202,7 +360,7 @@ public class LocalMessageBus extends MessageBusSupport {
 		// Use queue channel provider in case of named channels:
 		// point-to-point type syntax (queue:) and job input channel syntax (job:)
 		if (name.startsWith(P2P_NAMED_CHANNEL_TYPE_PREFIX) || name.startsWith(JOB_CHANNEL_TYPE_PREFIX)) {
-			channelProvider = queueChannelProvider;
+			channelProvider = this.ringBufferEnabled ? ringBufferChannelProvider : queueChannelProvider;
 		}
 		return channelProvider;
 	}
@@ -315,33 +473,84 @@ public class LocalMessageBus extends MessageBusSupport {
 		String channelName = prefix + name;
 		ExecutorChannel channel = this.requestReplyChannels.get(channelName);
 		if (channel == null) {
-			ThreadPoolTaskExecutor executor = createRequestReplyExecutor(name, properties);
-			channel = new ExecutorChannel(executor);
+			int concurrency = new LocalBusPropertiesAccessor(properties).getConcurrency(DEFAULT_REQ_REPLY_CONCURRENCY);
+			Executor executor = this.sharedExecutor;
+			if (this.executorStrategy == ExecutorStrategy.POOLED) {
+				ThreadPoolTaskExecutor reqRepExecutor = createRequestReplyExecutor(name, concurrency);
+				this.reqRepExecutors.put(channelName, reqRepExecutor);
+				executor = reqRepExecutor;
+			}
+			channel = new ExecutorChannel(createBindingExecutor(channelName, executor, concurrency));
 			channel.setBeanFactory(getBeanFactory());
 			this.requestReplyChannels.put(channelName, channel);
-			this.reqRepExecutors.put(name, executor);
 		}
 		return channel;
 	}
 
-	private ThreadPoolTaskExecutor createRequestReplyExecutor(String name, Properties properties) {
+	private ThreadPoolTaskExecutor createRequestReplyExecutor(String name, int concurrency) {
 		ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-		executor.setCorePoolSize(new LocalBusPropertiesAccessor(properties).getConcurrency(DEFAULT_REQ_REPLY_CONCURRENCY));
+		executor.setCorePoolSize(concurrency);
 		executor.setThreadNamePrefix("xd.localBus." + name + "-");
 		executor.initialize();
 		return executor;
 	}
 
+	private BindingTaskExecutor createBindingExecutor(String name, Executor executor, int concurrency) {
+		BindingTaskExecutor bindingExecutor = new BindingTaskExecutor(name, executor, concurrency,
+				this.executorQueueSize);
+		this.bindingExecutors.put(name, bindingExecutor);
+		return bindingExecutor;
+	}
+
+	@Override
+	public void unbindConsumers(String name) {
+		super.unbindConsumers(name);
+		releaseUnboundPubSubChannel(name);
+	}
+
+	@Override
+	public void unbindProducers(String name) {
+		super.unbindProducers(name);
+		releaseUnboundPubSubChannel(name);
+	}
+
+	@Override
+	public void unbindConsumer(String name, MessageChannel channel) {
+		super.unbindConsumer(name, channel);
+		releaseUnboundPubSubChannel(name);
+	}
+
 	@Override
 	public void unbindProducer(String name, MessageChannel channel) {
 		this.requestReplyChannels.remove("replier." + name);
 		MessageChannel requestChannel = this.requestReplyChannels.remove("requestor." + name);
 		if (requestChannel == null) {
 			super.unbindProducer(name, channel);
+			releaseUnboundPubSubChannel(name);
 		}
-		ThreadPoolTaskExecutor executor = this.reqRepExecutors.remove(name);
-		if (executor != null) {
-			executor.shutdown();
+		for (String channelName : new String[] {"requestor." + name, "replier." + name}) {
+			this.bindingExecutors.remove(channelName);
+			ThreadPoolTaskExecutor executor = this.reqRepExecutors.remove(channelName);
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Remove a pub/sub channel that has a binding executor, and the executor, once it has no bindings left; it is
+	 * created again if it is bound again.
+	 */
+	private void releaseUnboundPubSubChannel(String name) {
+		synchronized (this.pubsubChannelProvider) {
+			if (this.bindingExecutors.containsKey(name) && !hasBinding("inbound." + name)
+					&& !hasBinding("outbound." + name)) {
+				this.bindingExecutors.remove(name);
+				ConfigurableListableBeanFactory beanFactory = getBeanFactory();
+				if (beanFactory instanceof DefaultListableBeanFactory) {
+					((DefaultListableBeanFactory) beanFactory).destroySingleton(name);
+				}
+			}
 		}
 	}
 
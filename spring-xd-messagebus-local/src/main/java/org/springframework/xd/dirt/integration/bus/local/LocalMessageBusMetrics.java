@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.util.Assert;
+
+/**
+ * {@link PublicMetrics} for the binding executors of a {@link LocalMessageBus}, exposed
+ * through the management {@code metrics} endpoint as
+ * {@code xd.messagebus.local.<channel>.<queueDepth|activeCount|completed|rejected|meanLatency|maxLatency>}.
+ *
+ * @see BindingTaskExecutor
+ */
+public class LocalMessageBusMetrics implements PublicMetrics {
+
+	private static final String PREFIX = "xd.messagebus.local.";
+
+	private final LocalMessageBus messageBus;
+
+	/**
+	 * Construct a {@code LocalMessageBusMetrics}.
+	 *
+	 * @param messageBus the local message bus
+	 */
+	public LocalMessageBusMetrics(LocalMessageBus messageBus) {
+		Assert.notNull(messageBus, "messageBus cannot be null");
+		this.messageBus = messageBus;
+	}
+
+	@Override
+	public Collection<Metric<?>> metrics() {
+		List<Metric<?>> metrics = new ArrayList<Metric<?>>();
+		for (Map.Entry<String, BindingTaskExecutor> entry : messageBus.getBindingExecutors().entrySet()) {
+			addMetrics(metrics, entry.getKey(), entry.getValue());
+		}
+		return metrics;
+	}
+
+	private void addMetrics(List<Metric<?>> metrics, String name, BindingTaskExecutor executor) {
+		metrics.add(new Metric<Integer>(PREFIX + name + ".queueDepth", executor.getQueueDepth()));
+		metrics.add(new Metric<Integer>(PREFIX + name + ".activeCount", executor.getActiveCount()));
+		metrics.add(new Metric<Long>(PREFIX + name + ".completed", executor.getCompletedCount()));
+		metrics.add(new Metric<Long>(PREFIX + name + ".rejected", executor.getRejectedCount()));
+		metrics.add(new Metric<Double>(PREFIX + name + ".meanLatency", executor.getMeanLatency()));
+		metrics.add(new Metric<Double>(PREFIX + name + ".maxLatency", executor.getMaxLatency()));
+	}
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus.local;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.integration.channel.AbstractSubscribableChannel;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.dispatcher.MessageDispatcher;
+import org.springframework.integration.dispatcher.UnicastingDispatcher;
+import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.scheduling.support.TaskUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * A bounded, point-to-point {@link org.springframework.messaging.SubscribableChannel} backed by a pre-allocated
+ * ring buffer, in the style of the LMAX Disruptor. Senders claim a slot with a single CAS and publish the message
+ * without taking a lock; a dedicated consumer thread, started when the first handler subscribes, drains the
+ * published messages in batches and dispatches them to one of the subscribers. There is no poll interval: when
+ * the buffer is empty the consumer, and when it is full the senders, wait using the configured
+ * {@link WaitStrategy}, so a full buffer applies backpressure to senders until {@code send} times out.
+ * <p>
+ * Exceptions thrown by subscribers are published to the {@code errorChannel}, as they are when a poller drains a
+ * {@link org.springframework.integration.channel.QueueChannel}.
+ */
+public class RingBufferChannel extends AbstractSubscribableChannel {
+
+	private static final long PARK_NANOS = 1000;
+
+	/**
+	 * The longest a {@link WaitStrategy#PARK} consumer blocks before checking the buffer again without having
+	 * been signalled.
+	 */
+	private static final long MAX_CONSUMER_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/**
+	 * How a thread waits for the ring buffer to change.
+	 */
+	public enum WaitStrategy {
+
+		/**
+		 * Spin on the sequence; lowest latency, but occupies a core while waiting, so only use it when there
+		 * are more cores than spinning threads.
+		 */
+		BUSY_SPIN {
+
+			@Override
+			void idle() {
+			}
+
+		},
+
+		/**
+		 * Yield the processor between checks; low latency while leaving the core to other runnable threads.
+		 */
+		YIELD {
+
+			@Override
+			void idle() {
+				Thread.yield();
+			}
+
+		},
+
+		/**
+		 * Block an idle consumer until a sender publishes, and park senders for about a microsecond between
+		 * checks while the buffer is full; the least CPU, at the cost of waking the consumer. The default.
+		 */
+		PARK {
+
+			@Override
+			void idle() {
+				LockSupport.parkNanos(PARK_NANOS);
+			}
+
+		};
+
+		abstract void idle();
+
+	}
+
+	private final UnicastingDispatcher dispatcher = new UnicastingDispatcher();
+
+	private final Object[] entries;
+
+	private final int mask;
+
+	/**
+	 * The sequence most recently published in each slot.
+	 */
+	private final AtomicLongArray published;
+
+	/**
+	 * The next sequence to be claimed by a sender.
+	 */
+	private final AtomicLong claimed = new AtomicLong();
+
+	/**
+	 * The next sequence to be consumed; the slots of all earlier sequences may be reused.
+	 */
+	private volatile long consumed;
+
+	private final int batchSize;
+
+	private final WaitStrategy waitStrategy;
+
+	private volatile ErrorHandler errorHandler;
+
+	private volatile Thread consumer;
+
+	/**
+	 * Whether the consumer is blocked, or about to block, waiting for a sender to publish.
+	 */
+	private volatile boolean consumerParked;
+
+	/**
+	 * Create a channel.
+	 * @param capacity the number of slots, rounded up to a power of two.
+	 * @param batchSize the maximum number of messages the consumer drains before releasing their slots.
+	 * @param waitStrategy how senders and the consumer wait.
+	 */
+	public RingBufferChannel(int capacity, int batchSize, WaitStrategy waitStrategy) {
+		Assert.isTrue(capacity > 0 && capacity <= 1 << 30, "'capacity' must be between 1 and 2^30");
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		Assert.notNull(waitStrategy, "'waitStrategy' must not be null");
+		int size = Integer.highestOneBit(capacity);
+		size = size < capacity ? size << 1 : size;
+		this.entries = new Object[size];
+		this.mask = size - 1;
+		this.published = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.published.set(i, -1);
+		}
+		this.batchSize = Math.min(batchSize, size);
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Set the handler for exceptions thrown by subscribers; by default they are published to the
+	 * {@code errorChannel}, or logged if there is no bean factory.
+	 * @param errorHandler the error handler.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		Assert.notNull(errorHandler, "'errorHandler' must not be null");
+		this.errorHandler = errorHandler;
+	}
+
+	public int getCapacity() {
+		return this.entries.length;
+	}
+
+	/**
+	 * @return the number of messages sent but not yet consumed.
+	 */
+	public int getQueueSize() {
+		return (int) (this.claimed.get() - this.consumed);
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		if (this.errorHandler == null && getBeanFactory() != null) {
+			this.errorHandler = new MessagePublishingErrorHandler(new BeanFactoryChannelResolver(getBeanFactory()));
+		}
+	}
+
+	@Override
+	protected MessageDispatcher getDispatcher() {
+		return this.dispatcher;
+	}
+
+	/**
+	 * Publish the message to the next free slot, waiting for one up to {@code timeout} ms (indefinitely if
+	 * negative) when the buffer is full.
+	 */
+	@Override
+	protected boolean doSend(Message<?> message, long timeout) {
+		long deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+		long sequence;
+		while (true) {
+			sequence = this.claimed.get();
+			if (sequence - this.consumed < this.entries.length) {
+				if (this.claimed.compareAndSet(sequence, sequence + 1)) {
+					break;
+				}
+			}
+			else if (timeout == 0 || (timeout > 0 && System.nanoTime() - deadline >= 0)) {
+				return false;
+			}
+			else {
+				this.waitStrategy.idle();
+			}
+		}
+		int index = (int) sequence & this.mask;
+		this.entries[index] = message;
+		if (this.waitStrategy == WaitStrategy.PARK) {
+			// a full fence, so that either the consumer sees the message or we see that it is parked
+			this.published.set(index, sequence);
+			if (this.consumerParked) {
+				LockSupport.unpark(this.consumer);
+			}
+		}
+		else {
+			this.published.lazySet(index, sequence);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean subscribe(MessageHandler handler) {
+		boolean subscribed = super.subscribe(handler);
+		startConsumerIfNecessary();
+		return subscribed;
+	}
+
+	/**
+	 * Stops the consumer before the last handler is removed so that it never dispatches to an empty dispatcher.
+	 */
+	@Override
+	public boolean unsubscribe(MessageHandler handler) {
+		if (this.dispatcher.getHandlerCount() <= 1) {
+			stopConsumer();
+		}
+		boolean unsubscribed = super.unsubscribe(handler);
+		startConsumerIfNecessary();
+		return unsubscribed;
+	}
+
+	private synchronized void startConsumerIfNecessary() {
+		if (this.consumer == null && this.dispatcher.getHandlerCount() > 0) {
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					consume();
+				}
+
+			}, "ringbuffer." + getComponentName());
+			thread.setDaemon(true);
+			this.consumer = thread;
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stop the consumer after the message it is dispatching; undispatched messages stay in the buffer for the
+	 * next subscriber.
+	 */
+	private synchronized void stopConsumer() {
+		Thread thread = this.consumer;
+		this.consumer = null;
+		if (thread != null && thread != Thread.currentThread()) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void consume() {
+		Thread self = Thread.currentThread();
+		long next = this.consumed;
+		while (this.consumer == self) {
+			int available = 0;
+			while (available < this.batchSize && this.published.get((int) (next + available) & this.mask)
+					== next + available) {
+				available++;
+			}
+			if (available == 0) {
+				if (this.waitStrategy == WaitStrategy.PARK) {
+					awaitPublication(next);
+				}
+				else {
+					this.waitStrategy.idle();
+				}
+				continue;
+			}
+			for (int i = 0; i < available; i++) {
+				if (this.consumer != self) {
+					this.consumed = next + i;
+					return;
+				}
+				int index = (int) (next + i) & this.mask;
+				Message<?> message = (Message<?>) this.entries[index];
+				this.entries[index] = null;
+				try {
+					this.dispatcher.dispatch(message);
+				}
+				catch (Throwable t) {
+					ErrorHandler errorHandler = this.errorHandler;
+					(errorHandler != null ? errorHandler : TaskUtils.LOG_AND_SUPPRESS_ERROR_HANDLER).handleError(t);
+				}
+			}
+			next += available;
+			this.consumed = next;
+		}
+		this.consumed = next;
+	}
+
+	/**
+	 * Block until the sequence is published, a sender signals, the consumer is stopped, or a timeout elapses.
+	 */
+	private void awaitPublication(long sequence) {
+		this.consumerParked = true;
+		try {
+			if (this.published.get((int) sequence & this.mask) != sequence
+					&& this.consumer == Thread.currentThread()) {
+				LockSupport.parkNanos(this, MAX_CONSUMER_PARK_NANOS);
+			}
+		}
+		finally {
+			this.consumerParked = false;
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,15 +16,27 @@
 
 package org.springframework.xd.dirt.integration.redis;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
 
 import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisConnectionUtils;
 import org.springframework.expression.Expression;
+import org.springframework.expression.common.LiteralExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.codec.Codec;
@@ -39,6 +51,7 @@ import org.springframework.integration.redis.outbound.RedisQueueOutboundChannelA
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHandlingException;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.retry.RecoveryCallback;
@@ -48,6 +61,7 @@ import org.springframework.retry.support.RetryTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.xd.dirt.integration.bus.AbstractBusPropertiesAccessor;
+import org.springframework.xd.dirt.integration.bus.AdaptiveBatcher;
 import org.springframework.xd.dirt.integration.bus.Binding;
 import org.springframework.xd.dirt.integration.bus.BusProperties;
 import org.springframework.xd.dirt.integration.bus.EmbeddedHeadersMessageConverter;
@@ -55,6 +69,7 @@ import org.springframework.xd.dirt.integration.bus.MessageBus;
 import org.springframework.xd.dirt.integration.bus.MessageBusSupport;
 import org.springframework.xd.dirt.integration.bus.MessageValues;
 import org.springframework.xd.dirt.integration.bus.XdHeaders;
+import org.springframework.xd.redis.RedisInFlightKeys;
 
 /**
  * A {@link MessageBus} implementation backed by Redis.
@@ -69,6 +84,37 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 
 	private static final SpelExpressionParser parser = new SpelExpressionParser();
 
+	/**
+	 * Removes and returns up to ARGV[1] elements from the tail of the list KEYS[1]; the oldest element is last.
+	 */
+	private static final byte[] DRAIN_SCRIPT = ("local items = redis.call('LRANGE', KEYS[1], -tonumber(ARGV[1]), -1)\n"
+			+ "if #items > 0 then redis.call('LTRIM', KEYS[1], 0, -tonumber(ARGV[1]) - 1) end\n"
+			+ "return items").getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Registers the in-flight list KEYS[2] of the queue KEYS[1] under the owner ARGV[3], in the set KEYS[3] and the
+	 * hash KEYS[4], in case the registration was removed while the owner was unreachable; acknowledges the ARGV[2]
+	 * oldest elements of the in-flight list, then moves up to ARGV[1] elements from the tail of the queue to the
+	 * in-flight list and returns them; the oldest element is last.
+	 */
+	private static final byte[] RELIABLE_DRAIN_SCRIPT = ("redis.call('SADD', KEYS[3], ARGV[3])\n"
+			+ "redis.call('HSET', KEYS[4], KEYS[2], KEYS[1])\n"
+			+ "local acked = tonumber(ARGV[2])\n"
+			+ "if acked > 0 then redis.call('LTRIM', KEYS[2], 0, -acked - 1) end\n"
+			+ "local items = redis.call('LRANGE', KEYS[1], -tonumber(ARGV[1]), -1)\n"
+			+ "if #items > 0 then\n"
+			+ "  redis.call('LTRIM', KEYS[1], 0, -tonumber(ARGV[1]) - 1)\n"
+			+ "  for i = #items, 1, -1 do redis.call('LPUSH', KEYS[2], items[i]) end\n"
+			+ "end\n"
+			+ "return items").getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Seconds a batching consumer blocks waiting for a message when its queue is empty.
+	 */
+	private static final int BLOCKING_POP_TIMEOUT = 1;
+
+	private static final long RECOVERY_INTERVAL = 5000;
+
 	private final String[] headersToMap;
 
 	/**
@@ -80,12 +126,14 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 			.build();
 
 	/**
-	 * Retry + concurrency.
+	 * Retry + concurrency + batching.
 	 */
 	private static final Set<Object> SUPPORTED_NAMED_CONSUMER_PROPERTIES = new SetBuilder()
 			.addAll(CONSUMER_STANDARD_PROPERTIES)
 			.addAll(CONSUMER_RETRY_PROPERTIES)
 			.add(BusProperties.CONCURRENCY)
+			.add(BusProperties.BATCHING_ENABLED)
+			.add(BusProperties.BATCH_SIZE)
 			.build();
 
 	/**
@@ -112,16 +160,22 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 	private static final Set<Object> SUPPORTED_PUBSUB_PRODUCER_PROPERTIES = PRODUCER_STANDARD_PROPERTIES;
 
 	/**
-	 * None.
+	 * Batching.
 	 */
-	private static final Set<Object> SUPPORTED_NAMED_PRODUCER_PROPERTIES = PRODUCER_STANDARD_PROPERTIES;
+	private static final Set<Object> SUPPORTED_NAMED_PRODUCER_PROPERTIES = new SetBuilder()
+			.addAll(PRODUCER_STANDARD_PROPERTIES)
+			.addAll(PRODUCER_BATCHING_BASIC_PROPERTIES)
+			.addAll(PRODUCER_BATCHING_ADVANCED_PROPERTIES)
+			.build();
 
 	/**
-	 * Partitioning.
+	 * Partitioning + batching.
 	 */
 	private static final Set<Object> SUPPORTED_PRODUCER_PROPERTIES = new SetBuilder()
 			.addAll(PRODUCER_PARTITIONING_PROPERTIES)
 			.addAll(PRODUCER_STANDARD_PROPERTIES)
+			.addAll(PRODUCER_BATCHING_BASIC_PROPERTIES)
+			.addAll(PRODUCER_BATCHING_ADVANCED_PROPERTIES)
 			.add(BusProperties.DIRECT_BINDING_ALLOWED)
 			.build();
 
@@ -141,6 +195,14 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 
 	private final RedisQueueOutboundChannelAdapter errorAdapter;
 
+	private volatile boolean reliable;
+
+	private volatile String inFlightOwner = UUID.randomUUID().toString();
+
+	private final Object heartbeatMonitor = new Object();
+
+	private ScheduledFuture<?> heartbeat;
+
 	public RedisMessageBus(RedisConnectionFactory connectionFactory, Codec codec) {
 		this(connectionFactory, codec, new String[0]);
 	}
@@ -166,6 +228,36 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 		}
 	}
 
+	/**
+	 * Set to true to embed headers using the compact binary format rather than JSON.
+	 * Consumers that predate the binary format can't decode it, so only enable this
+	 * once all containers have been upgraded. Default false.
+	 * @param binaryEmbeddedHeaders true to embed headers using the binary format.
+	 */
+	public void setBinaryEmbeddedHeaders(boolean binaryEmbeddedHeaders) {
+		this.embeddedHeadersMessageConverter.setBinaryEncoding(binaryEmbeddedHeaders);
+	}
+
+	/**
+	 * Set to true to consume with at-least-once delivery: popped messages are kept in an in-flight list until
+	 * they have been handled, and are returned to their queue if the consumer stops or its owner dies first.
+	 * @param reliable true for reliable delivery.
+	 */
+	public void setReliable(boolean reliable) {
+		this.reliable = reliable;
+	}
+
+	/**
+	 * Set the identity under which in-flight lists are registered; the container id, so that the lists of a
+	 * container that leaves the cluster can be requeued. Defaults to a random id.
+	 * @param inFlightOwner the owner.
+	 */
+	public void setInFlightOwner(String inFlightOwner) {
+		if (StringUtils.hasText(inFlightOwner)) {
+			this.inFlightOwner = inFlightOwner;
+		}
+	}
+
 	@Override
 	protected void onInit() {
 		this.errorAdapter.setIntegrationEvaluationContext(this.evaluationContext);
@@ -195,7 +287,12 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 		MessageProducerSupport adapter;
 		int concurrency = accessor.getConcurrency(this.defaultConcurrency);
 		concurrency = concurrency > 0 ? concurrency : 1;
-		if (concurrency == 1) {
+		boolean batching = accessor.isBatchingEnabled(this.defaultBatchingEnabled);
+		if (batching || this.reliable) {
+			adapter = new BatchingRedisQueueMessageDrivenEndpoint(queueName, concurrency,
+					batching ? accessor.getBatchSize(this.defaultBatchSize) : 1, this.reliable);
+		}
+		else if (concurrency == 1) {
 			RedisQueueMessageDrivenEndpoint single = new RedisQueueMessageDrivenEndpoint(queueName,
 					this.connectionFactory);
 			single.setBeanFactory(getBeanFactory());
@@ -312,9 +409,18 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 		if (!bindNewProducerDirectlyIfPossible(name, (SubscribableChannel) moduleOutputChannel, accessor)) {
 			String partitionKeyExtractorClass = accessor.getPartitionKeyExtractorClass();
 			Expression partitionKeyExpression = accessor.getPartitionKeyExpression();
-			RedisQueueOutboundChannelAdapter queue;
 			String queueName = "queue." + name;
-			if (partitionKeyExpression == null && !StringUtils.hasText(partitionKeyExtractorClass)) {
+			boolean partitioned = partitionKeyExpression != null || StringUtils.hasText(partitionKeyExtractorClass);
+			if (accessor.isBatchingEnabled(this.defaultBatchingEnabled)) {
+				Expression queueNameExpression = partitioned
+						? parser.parseExpression(buildPartitionRoutingExpression(queueName))
+						: new LiteralExpression(queueName);
+				doRegisterProducer(name, moduleOutputChannel, new BatchingQueueHandler(queueNameExpression, accessor),
+						accessor);
+				return;
+			}
+			RedisQueueOutboundChannelAdapter queue;
+			if (!partitioned) {
 				queue = new RedisQueueOutboundChannelAdapter(queueName, this.connectionFactory);
 			}
 			else {
@@ -344,11 +450,21 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 		this.doRegisterProducer(name, moduleOutputChannel, delegate, null, properties);
 	}
 
-	private void doRegisterProducer(final String name, MessageChannel moduleOutputChannel, MessageHandler delegate,
-			String replyTo, RedisPropertiesAccessor properties) {
+	private void doRegisterProducer(final String name, MessageChannel moduleOutputChannel,
+			final MessageHandler delegate, String replyTo, RedisPropertiesAccessor properties) {
 		Assert.isInstanceOf(SubscribableChannel.class, moduleOutputChannel);
 		MessageHandler handler = new SendingHandler(delegate, replyTo, properties);
-		EventDrivenConsumer consumer = new EventDrivenConsumer((SubscribableChannel) moduleOutputChannel, handler);
+		EventDrivenConsumer consumer = new EventDrivenConsumer((SubscribableChannel) moduleOutputChannel, handler) {
+
+			@Override
+			protected void doStop() {
+				super.doStop();
+				if (delegate instanceof BatchingQueueHandler) {
+					((BatchingQueueHandler) delegate).flush();
+				}
+			}
+
+		};
 		consumer.setBeanFactory(this.getBeanFactory());
 		consumer.setBeanName("outbound." + name);
 		consumer.afterPropertiesSet();
@@ -399,6 +515,48 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 	@Override
 	public void destroy() {
 		stopBindings();
+		stopHeartbeat();
+	}
+
+	/**
+	 * Start refreshing the heartbeat that tells the admin this owner's in-flight messages must not be requeued.
+	 */
+	private void startHeartbeat() {
+		synchronized (this.heartbeatMonitor) {
+			if (this.heartbeat == null) {
+				final byte[] heartbeatKey = RedisInFlightKeys.heartbeatKey(this.inFlightOwner);
+				Runnable beat = new Runnable() {
+
+					@Override
+					public void run() {
+						RedisConnection connection = RedisConnectionUtils.getConnection(connectionFactory);
+						try {
+							connection.setEx(heartbeatKey, RedisInFlightKeys.HEARTBEAT_TTL, new byte[] { 1 });
+						}
+						catch (Exception e) {
+							logger.warn("Failed to refresh the in-flight heartbeat", e);
+						}
+						finally {
+							RedisConnectionUtils.releaseConnection(connection, connectionFactory);
+						}
+					}
+
+				};
+				beat.run();
+				this.heartbeat = getTaskScheduler().scheduleAtFixedRate(beat,
+						new Date(System.currentTimeMillis() + RedisInFlightKeys.HEARTBEAT_INTERVAL),
+						RedisInFlightKeys.HEARTBEAT_INTERVAL);
+			}
+		}
+	}
+
+	private void stopHeartbeat() {
+		synchronized (this.heartbeatMonitor) {
+			if (this.heartbeat != null) {
+				this.heartbeat.cancel(false);
+				this.heartbeat = null;
+			}
+		}
 	}
 
 	private class SendingHandler extends AbstractMessageHandler {
@@ -419,19 +577,101 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 
 		@Override
 		protected void handleMessageInternal(Message<?> message) throws Exception {
-			MessageValues transformed = serializePayloadIfNecessary(message);
-
+			Map<String, Object> additionalHeaders = new HashMap<String, Object>(4);
 			if (replyTo != null) {
-				transformed.put(XdHeaders.REPLY_TO, this.replyTo);
+				additionalHeaders.put(XdHeaders.REPLY_TO, this.replyTo);
 			}
 			if (this.partitioningMetadata.isPartitionedModule()) {
 
-				transformed.put(PARTITION_HEADER, determinePartition(message, this.partitioningMetadata));
+				additionalHeaders.put(PARTITION_HEADER, determinePartition(message, this.partitioningMetadata));
 			}
 
-			byte[] messageToSend = embeddedHeadersMessageConverter.embedHeaders(transformed,
-					RedisMessageBus.this.headersToMap);
-			delegate.handleMessage(MessageBuilder.withPayload(messageToSend).copyHeaders(transformed).build());
+			MessageValues serialized = serializeAndEmbedHeaders(embeddedHeadersMessageConverter, message,
+					additionalHeaders, RedisMessageBus.this.headersToMap);
+			delegate.handleMessage(MessageBuilder.withPayload(serialized.getPayload())
+					.copyHeaders(message.getHeaders()).copyHeaders(serialized).build());
+		}
+
+	}
+
+	/**
+	 * Pushes messages to their queues in adaptively sized batches, using a single pipelined round trip per
+	 * batch.
+	 */
+	private class BatchingQueueHandler implements MessageHandler, AdaptiveBatcher.BatchSender<QueuedPayload> {
+
+		private final Expression queueNameExpression;
+
+		private final AdaptiveBatcher<QueuedPayload> batcher;
+
+		private BatchingQueueHandler(Expression queueNameExpression, RedisPropertiesAccessor properties) {
+			this.queueNameExpression = queueNameExpression;
+			this.batcher = createAdaptiveBatcher(this, properties.getBatchSize(defaultBatchSize),
+					properties.geteBatchBufferLimit(defaultBatchBufferLimit),
+					properties.getBatchTimeout(defaultBatchTimeout));
+		}
+
+		@Override
+		public void handleMessage(Message<?> message) {
+			String queueName = this.queueNameExpression.getValue(evaluationContext, message, String.class);
+			byte[] payload = (byte[]) message.getPayload();
+			try {
+				this.batcher.add(new QueuedPayload(message, queueName, payload), payload.length);
+			}
+			catch (Exception e) {
+				throw new MessageHandlingException(message, "Failed to send batch to Redis", e);
+			}
+		}
+
+		@Override
+		public void send(List<QueuedPayload> batch) {
+			RedisConnection connection = RedisConnectionUtils.getConnection(connectionFactory);
+			try {
+				connection.openPipeline();
+				int start = 0;
+				for (int i = 1; i <= batch.size(); i++) {
+					// one multi-value LPUSH per run of payloads for the same queue
+					if (i == batch.size() || !Arrays.equals(batch.get(i).queueName, batch.get(start).queueName)) {
+						byte[][] payloads = new byte[i - start][];
+						for (int j = start; j < i; j++) {
+							payloads[j - start] = batch.get(j).payload;
+						}
+						connection.lPush(batch.get(start).queueName, payloads);
+						start = i;
+					}
+				}
+				connection.closePipeline();
+			}
+			finally {
+				RedisConnectionUtils.releaseConnection(connection, connectionFactory);
+			}
+		}
+
+		@Override
+		public void failed(List<QueuedPayload> batch, Exception cause) {
+			for (QueuedPayload queued : batch) {
+				publishUndeliveredMessage(queued.message, "Failed to send final batch to Redis", cause);
+			}
+		}
+
+		private void flush() {
+			this.batcher.drain();
+		}
+
+	}
+
+	private static class QueuedPayload {
+
+		private final Message<?> message;
+
+		private final byte[] queueName;
+
+		private final byte[] payload;
+
+		private QueuedPayload(Message<?> message, String queueName, byte[] payload) {
+			this.message = message;
+			this.queueName = queueName.getBytes(StandardCharsets.UTF_8);
+			this.payload = payload;
 		}
 
 	}
@@ -529,4 +769,239 @@ public class RedisMessageBus extends MessageBusSupport implements DisposableBean
 
 	}
 
+	/**
+	 * Drains up to {@code batchSize} messages from the tail of a queue in a single round trip on each of
+	 * {@code concurrency} threads, blocking only when the queue is empty, and dispatches them in the order they
+	 * were pushed. In reliable mode each thread moves the messages it pops into its own in-flight list, and
+	 * removes them once they have been handled; the acknowledgements are applied by the next pop, so they cost
+	 * no extra round trip. A message that can't be dispatched is published to the {@code errorChannel}; in
+	 * reliable mode it is also left unacknowledged and returned to the queue with the rest of its batch.
+	 */
+	private class BatchingRedisQueueMessageDrivenEndpoint extends MessageProducerSupport {
+
+		private final String queueName;
+
+		private final byte[] queueKey;
+
+		private final byte[] batchSize;
+
+		private final int concurrency;
+
+		private final boolean reliable;
+
+		private final SimpleAsyncTaskExecutor taskExecutor;
+
+		private volatile boolean listening;
+
+		public BatchingRedisQueueMessageDrivenEndpoint(String queueName, int concurrency, int batchSize,
+				boolean reliable) {
+			Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+			this.queueName = queueName;
+			this.queueKey = queueName.getBytes(StandardCharsets.UTF_8);
+			this.batchSize = Integer.toString(batchSize).getBytes(StandardCharsets.UTF_8);
+			this.concurrency = concurrency;
+			this.reliable = reliable;
+			this.taskExecutor = new SimpleAsyncTaskExecutor("inbound." + queueName + "-");
+			this.setBeanFactory(RedisMessageBus.this.getBeanFactory());
+		}
+
+		@Override
+		protected void doStart() {
+			this.listening = true;
+			if (this.reliable) {
+				startHeartbeat();
+			}
+			for (int i = 0; i < this.concurrency; i++) {
+				final byte[] inFlightKey = this.reliable ? RedisInFlightKeys.newInFlightKey(inFlightOwner) : null;
+				this.taskExecutor.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						receiveUntilStopped(inFlightKey);
+					}
+
+				});
+			}
+		}
+
+		@Override
+		protected void doStop() {
+			this.listening = false;
+		}
+
+		private void receiveUntilStopped(byte[] inFlightKey) {
+			boolean inFlightUnknown = false;
+			int handled = 0;
+			while (this.listening) {
+				List<byte[]> batch;
+				try {
+					if (inFlightUnknown) {
+						// a failed pop may have moved messages we never received; requeue the whole in-flight
+						// list, including messages already handled, so that none is acknowledged unhandled
+						releaseInFlight(inFlightKey, 0);
+						inFlightUnknown = false;
+						handled = 0;
+					}
+					batch = popBatch(inFlightKey, handled);
+					handled = 0;
+				}
+				catch (Exception e) {
+					inFlightUnknown = inFlightKey != null;
+					if (this.listening) {
+						logger.error("Failed to pop messages from Redis queue; retrying in " + RECOVERY_INTERVAL
+								+ "ms", e);
+						if (!backOff()) {
+							break;
+						}
+					}
+					continue;
+				}
+				boolean failed = false;
+				for (int i = 0; i < batch.size(); i++) {
+					if (!this.listening) {
+						if (inFlightKey == null) {
+							restore(batch.subList(i, batch.size()));
+						}
+						break;
+					}
+					Message<byte[]> message = getMessageBuilderFactory().withPayload(batch.get(i)).build();
+					try {
+						sendMessage(message);
+					}
+					catch (Exception e) {
+						publishUndeliveredMessage(message, "Failed to dispatch message from Redis queue", e);
+						if (inFlightKey != null) {
+							// leave the message, and the rest of the batch, unacknowledged so it is redelivered
+							failed = true;
+							break;
+						}
+					}
+					handled++;
+				}
+				if (failed) {
+					try {
+						releaseInFlight(inFlightKey, handled);
+						handled = 0;
+					}
+					catch (Exception e) {
+						inFlightUnknown = true;
+						logger.error("Failed to return undelivered messages to Redis queue", e);
+					}
+					if (this.listening && !backOff()) {
+						break;
+					}
+				}
+			}
+			if (inFlightKey != null) {
+				try {
+					releaseInFlight(inFlightKey, inFlightUnknown ? 0 : handled);
+					unregisterInFlight(inFlightKey);
+				}
+				catch (Exception e) {
+					logger.error("Failed to release in-flight messages for " + this.queueName
+							+ "; they will be requeued when this container leaves the cluster", e);
+				}
+			}
+		}
+
+		/**
+		 * Wait for the recovery interval before receiving again.
+		 * @return false if the thread was interrupted
+		 */
+		private boolean backOff() {
+			try {
+				Thread.sleep(RECOVERY_INTERVAL);
+				return true;
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		/**
+		 * Pop the next batch, oldest message first; in reliable mode first (re-)register the in-flight list and
+		 * acknowledge the {@code handled} oldest messages in it, and move the popped messages into it.
+		 */
+		private List<byte[]> popBatch(byte[] inFlightKey, int handled) {
+			RedisConnection connection = RedisConnectionUtils.getConnection(connectionFactory);
+			try {
+				List<byte[]> drained = inFlightKey == null
+						? connection.<List<byte[]>> eval(DRAIN_SCRIPT, ReturnType.MULTI, 1, this.queueKey,
+								this.batchSize)
+						: connection.<List<byte[]>> eval(RELIABLE_DRAIN_SCRIPT, ReturnType.MULTI, 4, this.queueKey,
+								inFlightKey, RedisInFlightKeys.IN_FLIGHT_OWNERS_KEY,
+								RedisInFlightKeys.ownerKey(inFlightOwner), this.batchSize,
+								Integer.toString(handled).getBytes(StandardCharsets.UTF_8),
+								inFlightOwner.getBytes(StandardCharsets.UTF_8));
+				if (drained != null && !drained.isEmpty()) {
+					List<byte[]> batch = new ArrayList<byte[]>(drained);
+					Collections.reverse(batch);
+					return batch;
+				}
+				if (inFlightKey == null) {
+					List<byte[]> popped = connection.bRPop(BLOCKING_POP_TIMEOUT, this.queueKey);
+					return popped == null || popped.size() < 2
+							? Collections.<byte[]> emptyList()
+							: Collections.singletonList(popped.get(1));
+				}
+				byte[] popped = connection.bRPopLPush(BLOCKING_POP_TIMEOUT, this.queueKey, inFlightKey);
+				return popped == null ? Collections.<byte[]> emptyList() : Collections.singletonList(popped);
+			}
+			finally {
+				RedisConnectionUtils.releaseConnection(connection, connectionFactory);
+			}
+		}
+
+		/**
+		 * Return messages popped but not dispatched before the endpoint stopped to the tail of the queue, so
+		 * they are consumed next, in their original order.
+		 */
+		private void restore(List<byte[]> undispatched) {
+			byte[][] payloads = new byte[undispatched.size()][];
+			for (int i = 0; i < payloads.length; i++) {
+				payloads[i] = undispatched.get(payloads.length - 1 - i);
+			}
+			RedisConnection connection = RedisConnectionUtils.getConnection(connectionFactory);
+			try {
+				connection.rPush(this.queueKey, payloads);
+			}
+			catch (Exception e) {
+				logger.error("Failed to return " + payloads.length + " undispatched messages to Redis queue", e);
+			}
+			finally {
+				RedisConnectionUtils.releaseConnection(connection, connectionFactory);
+			}
+		}
+
+		/**
+		 * Acknowledge the {@code handled} oldest messages in the in-flight list and move the rest back to the tail
+		 * of the queue, in their original order.
+		 */
+		private void releaseInFlight(byte[] inFlightKey, int handled) {
+			RedisConnection connection = RedisConnectionUtils.getConnection(connectionFactory);
+			try {
+				Long requeued = connection.eval(RedisInFlightKeys.RELEASE_SCRIPT, ReturnType.INTEGER, 2,
+						this.queueKey, inFlightKey, Integer.toString(handled).getBytes(StandardCharsets.UTF_8));
+				if (requeued != null && requeued > 0 && logger.isDebugEnabled()) {
+					logger.debug("Returned " + requeued + " in-flight messages to " + this.queueName);
+				}
+			}
+			finally {
+				RedisConnectionUtils.releaseConnection(connection, connectionFactory);
+			}
+		}
+
+		private void unregisterInFlight(byte[] inFlightKey) {
+			RedisConnection connection = RedisConnectionUtils.getConnection(connectionFactory);
+			try {
+				connection.hDel(RedisInFlightKeys.ownerKey(inFlightOwner), inFlightKey);
+			}
+			finally {
+				RedisConnectionUtils.releaseConnection(connection, connectionFactory);
+			}
+		}
+
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,8 @@ package org.springframework.xd.dirt.integration.bus;
 import java.util.Properties;
 
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.util.StringUtils;
 
@@ -31,7 +33,12 @@ import org.springframework.util.StringUtils;
  */
 public abstract class AbstractBusPropertiesAccessor implements BusProperties {
 
-	private static final SpelExpressionParser spelExpressionParser = new SpelExpressionParser();
+	/**
+	 * Partition expressions are evaluated for every message; they are compiled to bytecode once their
+	 * types have been observed, reverting to interpretation if a compiled expression fails.
+	 */
+	private static final SpelExpressionParser spelExpressionParser = new SpelExpressionParser(
+			new SpelParserConfiguration(SpelCompilerMode.MIXED, null));
 
 	private final Properties properties;
 
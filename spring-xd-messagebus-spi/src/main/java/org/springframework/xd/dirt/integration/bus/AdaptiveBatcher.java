@@ -0,0 +1,318 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * Bus-agnostic producer side batcher whose batch size adapts to the observed traffic.
+ * <p>
+ * The target batch size is the number of items expected to arrive while one batch is
+ * being sent, i.e. the ratio of the (smoothed) send latency to the (smoothed) gap
+ * between arrivals, bounded by {@code maxBatchSize}. A slow stream therefore gets a
+ * target of one and each item is sent as soon as it arrives, while a burst grows the
+ * batch so that the cost of a round trip is shared by many items.
+ * <p>
+ * An item is never held for longer than the {@code latencyCeiling}: a partial batch is
+ * sent by the {@link TaskScheduler} when the expected fill time (capped by the ceiling)
+ * has elapsed since its first item arrived. A batch is also sent early when its
+ * accumulated size reaches {@code bufferLimit}.
+ * <p>
+ * Batches are sent one at a time, in arrival order, either on the thread that completes
+ * the batch or on a scheduler thread.
+ * <p>
+ * A batch that cannot be sent is kept and retried: by the next batch, or by the scheduler
+ * after the latency ceiling. When the failed send was triggered by {@link #add}, the item
+ * being added is removed from the batch and the exception is thrown to the caller instead.
+ * Items that still cannot be sent when the batcher is {@link #drain() drained} are passed
+ * to {@link BatchSender#failed}.
+ */
+public class AdaptiveBatcher<T> {
+
+	/**
+	 * The latency ceiling used when none is configured.
+	 */
+	public static final long DEFAULT_LATENCY_CEILING = 10;
+
+	private static final double SMOOTHING = 0.2;
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final BatchSender<T> sender;
+
+	private final TaskScheduler taskScheduler;
+
+	private final int maxBatchSize;
+
+	private final int bufferLimit;
+
+	private final long latencyCeilingNanos;
+
+	private final Object monitor = new Object();
+
+	private List<T> buffer = new ArrayList<T>();
+
+	private List<Integer> sizes = new ArrayList<Integer>();
+
+	private int bufferedBytes;
+
+	private long firstArrival;
+
+	private long generation;
+
+	private ScheduledFuture<?> scheduledFlush;
+
+	private long lastArrival = -1;
+
+	private double arrivalGap = -1;
+
+	private double sendLatency = -1;
+
+	private volatile int targetBatchSize = 1;
+
+	/**
+	 * Create a batcher.
+	 * @param sender the callback that sends a batch.
+	 * @param taskScheduler the scheduler used to send partial batches.
+	 * @param maxBatchSize the maximum number of items in a batch.
+	 * @param bufferLimit the maximum accumulated size of a batch; a batch reaching this
+	 * size is sent immediately.
+	 * @param latencyCeiling the maximum time (ms) an item is held before being sent;
+	 * {@link #DEFAULT_LATENCY_CEILING} is used if not positive.
+	 */
+	public AdaptiveBatcher(BatchSender<T> sender, TaskScheduler taskScheduler, int maxBatchSize, int bufferLimit,
+			long latencyCeiling) {
+		Assert.notNull(sender, "'sender' cannot be null");
+		Assert.notNull(taskScheduler, "'taskScheduler' cannot be null");
+		Assert.isTrue(maxBatchSize > 0, "'maxBatchSize' must be greater than 0");
+		Assert.isTrue(bufferLimit > 0, "'bufferLimit' must be greater than 0");
+		this.sender = sender;
+		this.taskScheduler = taskScheduler;
+		this.maxBatchSize = maxBatchSize;
+		this.bufferLimit = bufferLimit;
+		this.latencyCeilingNanos = TimeUnit.MILLISECONDS.toNanos(latencyCeiling > 0 ? latencyCeiling
+				: DEFAULT_LATENCY_CEILING);
+	}
+
+	/**
+	 * Add an item; the batch is sent on the calling thread if this completes it.
+	 * @param item the item.
+	 * @param size the size of the item, counted against the buffer limit.
+	 * @throws Exception if a batch completed by this item could not be sent; the item is
+	 * then discarded, but the rest of the batch is kept for a retry.
+	 */
+	public void add(T item, int size) throws Exception {
+		synchronized (this.monitor) {
+			long now = System.nanoTime();
+			if (this.lastArrival >= 0) {
+				this.arrivalGap = smooth(this.arrivalGap, now - this.lastArrival);
+			}
+			if (this.buffer.isEmpty()) {
+				this.firstArrival = now;
+			}
+			this.buffer.add(item);
+			this.sizes.add(size);
+			this.bufferedBytes += size;
+			try {
+				if (this.buffer.size() >= this.targetBatchSize || this.bufferedBytes >= this.bufferLimit
+						|| now - this.firstArrival >= this.latencyCeilingNanos) {
+					try {
+						doFlush();
+					}
+					catch (Exception e) {
+						// the item was the last one added to the kept batch
+						int last = this.buffer.size() - 1;
+						this.buffer.remove(last);
+						this.bufferedBytes -= this.sizes.remove(last);
+						if (!this.buffer.isEmpty()) {
+							scheduleRetry();
+						}
+						throw e;
+					}
+				}
+				else if (this.buffer.size() == 1) {
+					scheduleFlush();
+				}
+			}
+			finally {
+				// the time spent sending is not part of the gap between arrivals
+				this.lastArrival = System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Send any buffered items now.
+	 * @throws Exception if the batch could not be sent; it is kept for a retry.
+	 */
+	public void flush() throws Exception {
+		synchronized (this.monitor) {
+			try {
+				doFlush();
+			}
+			catch (Exception e) {
+				scheduleRetry();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Send any buffered items now, typically when the producer stops; items that cannot be
+	 * sent are passed to {@link BatchSender#failed} rather than kept for a retry.
+	 */
+	public void drain() {
+		synchronized (this.monitor) {
+			try {
+				doFlush();
+			}
+			catch (Exception e) {
+				List<T> batch = this.buffer;
+				this.buffer = new ArrayList<T>();
+				this.sizes = new ArrayList<Integer>();
+				this.bufferedBytes = 0;
+				this.sender.failed(batch, e);
+			}
+		}
+	}
+
+	/**
+	 * @return the current target batch size.
+	 */
+	public int getTargetBatchSize() {
+		return this.targetBatchSize;
+	}
+
+	private void doFlush() throws Exception {
+		if (this.scheduledFlush != null) {
+			this.scheduledFlush.cancel(false);
+			this.scheduledFlush = null;
+		}
+		if (this.buffer.isEmpty()) {
+			return;
+		}
+		List<T> batch = this.buffer;
+		List<Integer> batchSizes = this.sizes;
+		int batchBytes = this.bufferedBytes;
+		this.buffer = new ArrayList<T>(Math.min(this.targetBatchSize * 2, this.maxBatchSize));
+		this.sizes = new ArrayList<Integer>();
+		this.bufferedBytes = 0;
+		this.generation++;
+		long start = System.nanoTime();
+		try {
+			this.sender.send(batch);
+		}
+		catch (Exception e) {
+			// keep the batch, ahead of anything buffered since
+			batch.addAll(this.buffer);
+			batchSizes.addAll(this.sizes);
+			this.buffer = batch;
+			this.sizes = batchSizes;
+			this.bufferedBytes += batchBytes;
+			throw e;
+		}
+		finally {
+			this.sendLatency = smooth(this.sendLatency, System.nanoTime() - start);
+			this.targetBatchSize = computeTargetBatchSize();
+		}
+	}
+
+	private int computeTargetBatchSize() {
+		if (this.arrivalGap < 0) {
+			return 1;
+		}
+		double gap = Math.max(this.arrivalGap, 1);
+		// items expected during one send, but not more than can arrive within the ceiling
+		double target = Math.min(Math.ceil(this.sendLatency / gap), this.latencyCeilingNanos / gap + 1);
+		return (int) Math.max(1, Math.min(this.maxBatchSize, target));
+	}
+
+	private void scheduleFlush() {
+		long linger = this.latencyCeilingNanos;
+		if (this.arrivalGap >= 0) {
+			linger = Math.min(linger, (long) (this.arrivalGap * (this.targetBatchSize - 1)));
+		}
+		schedule(linger);
+	}
+
+	private void scheduleRetry() {
+		if (this.scheduledFlush != null) {
+			this.scheduledFlush.cancel(false);
+		}
+		schedule(this.latencyCeilingNanos);
+	}
+
+	private void schedule(long delayNanos) {
+		final long scheduledGeneration = this.generation;
+		this.scheduledFlush = this.taskScheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (AdaptiveBatcher.this.monitor) {
+					if (AdaptiveBatcher.this.generation == scheduledGeneration) {
+						try {
+							doFlush();
+						}
+						catch (Exception e) {
+							AdaptiveBatcher.this.logger.warn("Failed to send batch, will retry", e);
+							scheduleRetry();
+						}
+					}
+				}
+			}
+
+		}, new Date(System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(delayNanos)));
+	}
+
+	private static double smooth(double average, long sample) {
+		return average < 0 ? sample : average + SMOOTHING * (sample - average);
+	}
+
+
+	/**
+	 * Sends a batch of items.
+	 */
+	public interface BatchSender<T> {
+
+		/**
+		 * Send the batch.
+		 * @param batch the items, in arrival order.
+		 * @throws Exception if the batch could not be sent.
+		 */
+		void send(List<T> batch) throws Exception;
+
+		/**
+		 * Handle items that could not be sent when the batcher was drained; they will not
+		 * be retried.
+		 * @param batch the items, in arrival order.
+		 * @param cause the exception thrown by the last attempt to send them.
+		 */
+		void failed(List<T> batch, Exception cause);
+
+	}
+
+}
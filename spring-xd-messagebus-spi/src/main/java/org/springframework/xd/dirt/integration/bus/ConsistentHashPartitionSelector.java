@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus;
+
+/**
+ * A {@link PartitionSelectorStrategy} using jump consistent hashing (Lamping and Veach),
+ * so that when the partition count grows from {@code n} to {@code n + 1} only about
+ * {@code 1 / (n + 1)} of the keys move, all of them to the new partition; with the
+ * default {@code hashCode() % partitionCount} strategy nearly every key moves.
+ * <p>
+ * Keys should have "real" hash codes, such as String. Select it for a producer with the
+ * {@code partitionSelectorClass} deployment property.
+ */
+public class ConsistentHashPartitionSelector implements PartitionSelectorStrategy {
+
+	@Override
+	public int selectPartition(Object key, int partitionCount) {
+		return jumpHash(mix(key.hashCode()), partitionCount);
+	}
+
+	/**
+	 * Spread a 32 bit hash code over 64 bits (the SplitMix64 finalizer) so that keys
+	 * with sequential hash codes are not clustered.
+	 */
+	private static long mix(int hashCode) {
+		long z = hashCode * 0x9e3779b97f4a7c15L;
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static int jumpHash(long key, int buckets) {
+		long b = -1;
+		long j = 0;
+		while (j < buckets) {
+			b = j;
+			key = key * 2862933555777941757L + 1;
+			j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+		}
+		return (int) b;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,44 +16,119 @@
 
 package org.springframework.xd.dirt.integration.bus;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 import javax.xml.bind.DatatypeConverter;
 
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.support.json.Jackson2JsonObjectMapper;
 import org.springframework.messaging.Message;
+import org.springframework.util.MimeType;
 
 /**
- * Encodes requested headers into payload with format
- * {@code 0xff, n(1), [ [lenHdr(1), hdr, lenValue(4), value] ... ]}.
- * The 0xff indicates this new format; n is number of headers (max 255); for
- * each header, the name length (1 byte) is followed by the name, followed by
- * the value length (int) followed by the value (json).
+ * Encodes requested headers into payload.
+ * <p>
+ * By default, the format
+ * {@code 0xff, n(1), [ [lenHdr(1), hdr, lenValue(4), value] ... ]} is used, where
+ * every value is JSON.
+ * <p>
+ * When {@link #setBinaryEncoding(boolean) binary encoding} is enabled, the format
+ * {@code 0xfe, version(1), n(1), [ [lenHdr(1), hdr, type(1), value] ... ]} is used.
+ * The 0xfe indicates the binary format; n is number of headers (max 255); for
+ * each header, the name length (1 byte) is followed by the name, followed by a
+ * type tag and the value. {@code String}, {@code Integer}, {@code Long},
+ * {@link MimeType} and {@link UUID} values are written natively (strings and mime
+ * types as lenValue(4) followed by UTF-8 bytes); any other value is written as
+ * lenValue(4) followed by its JSON representation. Unlike the JSON format, the
+ * binary format preserves these types; for example a {@link UUID} correlation id is
+ * decoded as a {@code UUID} rather than a {@code String}. Consumers that predate the
+ * binary format can't decode it.
  * <p>
  * Previously, there was no leading 0xff; the value length was 1 byte and only
  * String header values were supported (no JSON conversion).
+ * <p>
+ * All three formats can be decoded, regardless of the encoding in use.
+ * <p>
+ * {@link #serializeAndEmbedHeaders(Message, Map, PayloadEncoder, String...)} writes the
+ * headers and the serialized payload into a per-thread buffer, so that the returned
+ * array is the only one allocated for the message.
  *
  * @author Eric Bottard
  * @author Gary Russell
  */
 public class EmbeddedHeadersMessageConverter {
 
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int JSON_FORMAT = 0xff;
+
+	private static final int BINARY_FORMAT = 0xfe;
+
+	private static final byte BINARY_FORMAT_VERSION = 1;
+
+	private static final byte TYPE_STRING = 1;
+
+	private static final byte TYPE_INTEGER = 2;
+
+	private static final byte TYPE_LONG = 3;
+
+	private static final byte TYPE_MIME_TYPE = 4;
+
+	private static final byte TYPE_UUID = 5;
+
+	private static final byte TYPE_JSON = 6;
+
+	/**
+	 * Scratch buffers larger than this are not kept for reuse.
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<HeaderBuffer> headerBuffers = new ThreadLocal<HeaderBuffer>() {
+
+		@Override
+		protected HeaderBuffer initialValue() {
+			return new HeaderBuffer();
+		}
+
+	};
+
 	private final Jackson2JsonObjectMapper objectMapper = new Jackson2JsonObjectMapper();
 
+	private volatile boolean binaryEncoding;
+
 	public static String decodeExceptionMessage(Message<?> requestMessage) {
 		return "Could not convert message: " + DatatypeConverter.printHexBinary((byte[]) requestMessage.getPayload());
 	}
 
+	/**
+	 * Set to true to embed headers using the binary format. Only enable once every
+	 * consumer of the bus can decode it. Default false (JSON format).
+	 * @param binaryEncoding true to use the binary format
+	 */
+	public void setBinaryEncoding(boolean binaryEncoding) {
+		this.binaryEncoding = binaryEncoding;
+	}
 
 	/**
 	 * Return a new message where some of the original headers of {@code original}
 	 * have been embedded into the new message payload.
 	 */
 	public byte[] embedHeaders(MessageValues original, String... headers) throws Exception {
+		if (this.binaryEncoding) {
+			return embedHeadersBinary(original, headers);
+		}
+		return embedHeadersJson(original, headers);
+	}
+
+	private byte[] embedHeadersJson(MessageValues original, String... headers) throws Exception {
 		byte[][] headerValues = new byte[headers.length][];
 		int n = 0;
 		int headerCount = 0;
@@ -74,7 +149,7 @@ public class EmbeddedHeadersMessageConverter {
 		// 0xff, n(1), [ [lenHdr(1), hdr, lenValue(4), value] ... ]
 		byte[] newPayload = new byte[((byte[])original.getPayload()).length + headersLength + headerCount * 5 + 2];
 		ByteBuffer byteBuffer = ByteBuffer.wrap(newPayload);
-		byteBuffer.put((byte) 0xff); // signal new format
+		byteBuffer.put((byte) JSON_FORMAT); // signal new format
 		byteBuffer.put((byte) headerCount);
 		for (int i = 0; i < headers.length; i++) {
 			if (headerValues[i] != null) {
@@ -89,6 +164,152 @@ public class EmbeddedHeadersMessageConverter {
 		return byteBuffer.array();
 	}
 
+	/**
+	 * Return a payload consisting of the embedded headers followed by the serialized
+	 * payload of {@code message}. Header values are taken from {@code overrides} when
+	 * present there, otherwise from the message headers. {@code byte[]} payloads are
+	 * copied as is, {@code String} payloads are UTF-8 encoded and any other payload is
+	 * written by the {@code encoder}.
+	 * @param message the message
+	 * @param overrides header values that replace or supplement those of the message; may be null
+	 * @param encoder the encoder for payloads other than {@code byte[]} and {@code String}
+	 * @param headers the names of the headers to embed
+	 * @return the new payload
+	 * @throws Exception if the headers or payload could not be written
+	 */
+	public byte[] serializeAndEmbedHeaders(Message<?> message, Map<String, Object> overrides, PayloadEncoder encoder,
+			String... headers) throws Exception {
+		HeaderBuffer buffer = headerBuffers.get();
+		try {
+			if (this.binaryEncoding) {
+				writeHeaders(buffer, overrides, message.getHeaders(), headers);
+			}
+			else {
+				writeJsonHeaders(buffer, overrides, message.getHeaders(), headers);
+			}
+			writePayload(buffer, message.getPayload(), encoder);
+			return buffer.toByteArray();
+		}
+		finally {
+			release(buffer);
+		}
+	}
+
+	private byte[] embedHeadersBinary(MessageValues original, String... headers) throws Exception {
+		HeaderBuffer buffer = headerBuffers.get();
+		try {
+			writeHeaders(buffer, original, null, headers);
+			byte[] payload = (byte[]) original.getPayload();
+			buffer.write(payload, 0, payload.length);
+			return buffer.toByteArray();
+		}
+		finally {
+			release(buffer);
+		}
+	}
+
+	private void release(HeaderBuffer buffer) {
+		if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+			headerBuffers.remove();
+		}
+		else {
+			buffer.reset();
+		}
+	}
+
+	private void writeHeaders(HeaderBuffer buffer, Map<String, Object> values, Map<String, Object> defaults,
+			String... headers) throws Exception {
+		// 0xfe, version(1), n(1), [ [lenHdr(1), hdr, type(1), value] ... ]
+		buffer.put((byte) BINARY_FORMAT);
+		buffer.put(BINARY_FORMAT_VERSION);
+		int countPosition = buffer.position();
+		buffer.put((byte) 0);
+		int headerCount = 0;
+		for (String header : headers) {
+			Object value = values == null ? null : values.get(header);
+			if (value == null && defaults != null) {
+				value = defaults.get(header);
+			}
+			if (value != null) {
+				int namePosition = buffer.position();
+				buffer.put((byte) 0);
+				buffer.putLength(namePosition, buffer.putUtf8(header), 1);
+				writeValue(buffer, value);
+				headerCount++;
+			}
+		}
+		buffer.putLength(countPosition, headerCount, 1);
+	}
+
+	private void writeJsonHeaders(HeaderBuffer buffer, Map<String, Object> values, Map<String, Object> defaults,
+			String... headers) throws Exception {
+		// 0xff, n(1), [ [lenHdr(1), hdr, lenValue(4), value] ... ]
+		buffer.put((byte) JSON_FORMAT);
+		int countPosition = buffer.position();
+		buffer.put((byte) 0);
+		int headerCount = 0;
+		for (String header : headers) {
+			Object value = values == null ? null : values.get(header);
+			if (value == null && defaults != null) {
+				value = defaults.get(header);
+			}
+			if (value != null) {
+				int namePosition = buffer.position();
+				buffer.put((byte) 0);
+				buffer.putLength(namePosition, buffer.putUtf8(header), 1);
+				writeString(buffer, this.objectMapper.toJson(value));
+				headerCount++;
+			}
+		}
+		buffer.putLength(countPosition, headerCount, 1);
+	}
+
+	private void writePayload(HeaderBuffer buffer, Object payload, PayloadEncoder encoder) throws IOException {
+		if (payload instanceof byte[]) {
+			buffer.write((byte[]) payload, 0, ((byte[]) payload).length);
+		}
+		else if (payload instanceof String) {
+			buffer.putUtf8((String) payload);
+		}
+		else {
+			encoder.encode(payload, buffer);
+		}
+	}
+
+	private void writeValue(HeaderBuffer buffer, Object value) throws Exception {
+		if (value instanceof String) {
+			buffer.put(TYPE_STRING);
+			writeString(buffer, (String) value);
+		}
+		else if (value instanceof Integer) {
+			buffer.put(TYPE_INTEGER);
+			buffer.putInt((Integer) value);
+		}
+		else if (value instanceof Long) {
+			buffer.put(TYPE_LONG);
+			buffer.putLong((Long) value);
+		}
+		else if (value instanceof MimeType) {
+			buffer.put(TYPE_MIME_TYPE);
+			writeString(buffer, value.toString());
+		}
+		else if (value instanceof UUID) {
+			buffer.put(TYPE_UUID);
+			buffer.putLong(((UUID) value).getMostSignificantBits());
+			buffer.putLong(((UUID) value).getLeastSignificantBits());
+		}
+		else {
+			buffer.put(TYPE_JSON);
+			writeString(buffer, this.objectMapper.toJson(value));
+		}
+	}
+
+	private void writeString(HeaderBuffer buffer, String value) {
+		int lengthPosition = buffer.position();
+		buffer.putInt(0);
+		buffer.putLength(lengthPosition, buffer.putUtf8(value), 4);
+	}
+
 	/**
 	 * Return a message where headers, that were originally embedded into the payload, have been promoted
 	 * back to actual headers. The new payload is now the original payload.
@@ -100,7 +321,10 @@ public class EmbeddedHeadersMessageConverter {
 		byte[] bytes = message.getPayload();
 		ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
 		int headerCount = byteBuffer.get() & 0xff;
-		if (headerCount < 255) {
+		if (headerCount == BINARY_FORMAT) {
+			return binaryExtractHeaders(byteBuffer, bytes, message, copyRequestHeaders);
+		}
+		else if (headerCount < JSON_FORMAT) {
 			return oldExtractHeaders(byteBuffer, bytes, headerCount, message, copyRequestHeaders);
 		}
 		else {
@@ -122,6 +346,51 @@ public class EmbeddedHeadersMessageConverter {
 		}
 	}
 
+	private MessageValues binaryExtractHeaders(ByteBuffer byteBuffer, byte[] bytes, Message<byte[]> message,
+			boolean copyRequestHeaders) throws Exception {
+		int version = byteBuffer.get() & 0xff;
+		if (version != BINARY_FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported embedded headers format version: " + version);
+		}
+		int headerCount = byteBuffer.get() & 0xff;
+		Map<String, Object> headers = new HashMap<String, Object>();
+		for (int i = 0; i < headerCount; i++) {
+			int len = byteBuffer.get() & 0xff;
+			String headerName = new String(bytes, byteBuffer.position(), len, UTF_8);
+			byteBuffer.position(byteBuffer.position() + len);
+			headers.put(headerName, readValue(byteBuffer, bytes));
+		}
+		byte[] newPayload = Arrays.copyOfRange(bytes, byteBuffer.position(), bytes.length);
+		return buildMessageValues(message, newPayload, headers, copyRequestHeaders);
+	}
+
+	private Object readValue(ByteBuffer byteBuffer, byte[] bytes) throws Exception {
+		byte type = byteBuffer.get();
+		switch (type) {
+			case TYPE_STRING:
+				return readString(byteBuffer, bytes);
+			case TYPE_INTEGER:
+				return byteBuffer.getInt();
+			case TYPE_LONG:
+				return byteBuffer.getLong();
+			case TYPE_MIME_TYPE:
+				return MimeType.valueOf(readString(byteBuffer, bytes));
+			case TYPE_UUID:
+				return new UUID(byteBuffer.getLong(), byteBuffer.getLong());
+			case TYPE_JSON:
+				return this.objectMapper.fromJson(readString(byteBuffer, bytes), Object.class);
+			default:
+				throw new IllegalArgumentException("Unknown embedded header type: " + type);
+		}
+	}
+
+	private String readString(ByteBuffer byteBuffer, byte[] bytes) {
+		int len = byteBuffer.getInt();
+		String value = new String(bytes, byteBuffer.position(), len, UTF_8);
+		byteBuffer.position(byteBuffer.position() + len);
+		return value;
+	}
+
 	private MessageValues oldExtractHeaders(ByteBuffer byteBuffer, byte[] bytes, int headerCount,
 			Message<byte[]> message, boolean copyRequestHeaders)
 			throws UnsupportedEncodingException {
@@ -155,4 +424,127 @@ public class EmbeddedHeadersMessageConverter {
 		return messageValues;
 	}
 
+
+	/**
+	 * Serializes payloads that are neither {@code byte[]} nor {@code String}.
+	 */
+	public interface PayloadEncoder {
+
+		/**
+		 * Write the serialized form of the payload.
+		 * @param payload the payload
+		 * @param outputStream the stream to write to
+		 * @throws IOException if the payload could not be serialized
+		 */
+		void encode(Object payload, OutputStream outputStream) throws IOException;
+
+	}
+
+
+	/**
+	 * A growable, per-thread scratch buffer into which the embedded headers and
+	 * the payload are written before being copied into the outgoing array.
+	 */
+	private static class HeaderBuffer extends OutputStream {
+
+		private byte[] bytes = new byte[256];
+
+		private int position;
+
+		int position() {
+			return this.position;
+		}
+
+		int capacity() {
+			return this.bytes.length;
+		}
+
+		void reset() {
+			this.position = 0;
+		}
+
+		void put(byte b) {
+			ensureCapacity(1);
+			this.bytes[this.position++] = b;
+		}
+
+		void putInt(int value) {
+			ensureCapacity(4);
+			this.bytes[this.position++] = (byte) (value >>> 24);
+			this.bytes[this.position++] = (byte) (value >>> 16);
+			this.bytes[this.position++] = (byte) (value >>> 8);
+			this.bytes[this.position++] = (byte) value;
+		}
+
+		void putLong(long value) {
+			putInt((int) (value >>> 32));
+			putInt((int) value);
+		}
+
+		/**
+		 * Write the UTF-8 encoding of {@code value}, avoiding an intermediate array
+		 * when the value is plain ASCII.
+		 * @return the number of bytes written
+		 */
+		int putUtf8(String value) {
+			int length = value.length();
+			ensureCapacity(length);
+			int start = this.position;
+			for (int i = 0; i < length; i++) {
+				char c = value.charAt(i);
+				if (c >= 0x80) {
+					this.position = start;
+					byte[] encoded = value.getBytes(UTF_8);
+					ensureCapacity(encoded.length);
+					System.arraycopy(encoded, 0, this.bytes, this.position, encoded.length);
+					this.position += encoded.length;
+					return encoded.length;
+				}
+				this.bytes[this.position++] = (byte) c;
+			}
+			return length;
+		}
+
+		/**
+		 * Back-patch a length of {@code width} bytes (1 or 4) at {@code index}.
+		 */
+		void putLength(int index, int length, int width) {
+			if (width == 1) {
+				if (length > 0xff) {
+					throw new IllegalArgumentException("Value too long for a single byte length: " + length);
+				}
+				this.bytes[index] = (byte) length;
+			}
+			else {
+				this.bytes[index] = (byte) (length >>> 24);
+				this.bytes[index + 1] = (byte) (length >>> 16);
+				this.bytes[index + 2] = (byte) (length >>> 8);
+				this.bytes[index + 3] = (byte) length;
+			}
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(this.bytes, this.position);
+		}
+
+		@Override
+		public void write(int b) {
+			put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			ensureCapacity(len);
+			System.arraycopy(b, off, this.bytes, this.position, len);
+			this.position += len;
+		}
+
+		private void ensureCapacity(int required) {
+			if (this.position + required > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(this.bytes.length * 2, this.position + required));
+			}
+		}
+
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -21,10 +21,12 @@ import static org.springframework.util.MimeTypeUtils.TEXT_PLAIN_VALUE;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -35,6 +37,8 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,13 +60,16 @@ import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.endpoint.EventDrivenConsumer;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.ErrorMessage;
 import org.springframework.retry.backoff.ExponentialBackOffPolicy;
 import org.springframework.retry.policy.SimpleRetryPolicy;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.AlternativeJdkIdGenerator;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
@@ -94,6 +101,22 @@ public abstract class MessageBusSupport
 
 	private volatile Codec codec;
 
+	private final EmbeddedHeadersMessageConverter.PayloadEncoder payloadEncoder =
+			new EmbeddedHeadersMessageConverter.PayloadEncoder() {
+
+				@Override
+				public void encode(Object payload, OutputStream outputStream) throws IOException {
+					try {
+						MessageBusSupport.this.codec.encode(payload, outputStream);
+					}
+					catch (IOException e) {
+						throw new SerializationException("unable to serialize payload ["
+								+ payload.getClass().getName() + "]", e);
+					}
+				}
+
+			};
+
 	private final StringConvertingContentTypeResolver contentTypeResolver = new StringConvertingContentTypeResolver();
 
 	private final ThreadLocal<Boolean> revertingDirectBinding = new ThreadLocal<Boolean>();
@@ -269,6 +292,50 @@ public abstract class MessageBusSupport
 		this.evaluationContext = evaluationContext;
 	}
 
+	/**
+	 * Create an {@link AdaptiveBatcher} that sends partial batches using the integration task scheduler.
+	 * @param sender the callback that sends a batch.
+	 * @param maxBatchSize the maximum number of messages in a batch.
+	 * @param bufferLimit the maximum accumulated payload size of a batch.
+	 * @param latencyCeiling the maximum time (ms) a message is held before being sent.
+	 * @return the batcher.
+	 */
+	protected <T> AdaptiveBatcher<T> createAdaptiveBatcher(AdaptiveBatcher.BatchSender<T> sender, int maxBatchSize,
+			int bufferLimit, long latencyCeiling) {
+		return new AdaptiveBatcher<T>(sender, getTaskScheduler(), maxBatchSize, bufferLimit, latencyCeiling);
+	}
+
+	/**
+	 * @return the integration task scheduler.
+	 */
+	protected TaskScheduler getTaskScheduler() {
+		return this.applicationContext.getBean(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, TaskScheduler.class);
+	}
+
+	/**
+	 * Publish a message that could not be delivered to the {@code errorChannel}; it is logged if there is no
+	 * error channel or it does not accept the message.
+	 * @param message the message.
+	 * @param description the description of the failure.
+	 * @param cause the cause of the failure.
+	 */
+	protected void publishUndeliveredMessage(Message<?> message, String description, Exception cause) {
+		MessageDeliveryException exception = new MessageDeliveryException(message, description, cause);
+		boolean published = false;
+		if (this.applicationContext.containsBean(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)) {
+			try {
+				published = this.applicationContext.getBean(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME,
+						MessageChannel.class).send(new ErrorMessage(exception));
+			}
+			catch (Exception e) {
+				logger.warn("Failed to publish to the error channel", e);
+			}
+		}
+		if (!published) {
+			logger.error(description, exception);
+		}
+	}
+
 	/**
 	 * Set the partition strategy to be used by this bus if no partitionExpression is provided for a module.
 	 * @param partitionSelector The selector.
@@ -496,6 +563,21 @@ public abstract class MessageBusSupport
 		this.bindings.add(binding);
 	}
 
+	/**
+	 * @param name the binding's endpoint name, e.g. {@code inbound.<name>}.
+	 * @return true if there is a binding with the endpoint name.
+	 */
+	protected boolean hasBinding(String name) {
+		synchronized (this.bindings) {
+			for (Binding binding : this.bindings) {
+				if (binding.getEndpoint().getComponentName().equals(name)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	protected void deleteBindings(String name) {
 		Assert.hasText(name, "a valid name is required to remove bindings");
 		List<Binding> bindingsToRemove = new ArrayList<Binding>();
@@ -575,16 +657,46 @@ public abstract class MessageBusSupport
 		return messageValues;
 	}
 
+	/**
+	 * Serialize the payload, if necessary, and embed headers into it, as
+	 * {@link #serializePayloadIfNecessary(Message)} followed by
+	 * {@link EmbeddedHeadersMessageConverter#embedHeaders(MessageValues, String...)} would,
+	 * but without copying the message headers or the serialized payload; the returned
+	 * array is the only one allocated for the payload.
+	 * @param converter the converter that embeds the headers.
+	 * @param message the message.
+	 * @param additionalHeaders headers added by the bus; may be null. The map is not modified.
+	 * @param headersToEmbed the names of the headers to embed.
+	 * @return the payload to send, with only the headers that take precedence over the
+	 * message headers: the additional headers and the content type headers set by the
+	 * serialization.
+	 * @throws Exception if the payload could not be serialized.
+	 */
+	protected final MessageValues serializeAndEmbedHeaders(EmbeddedHeadersMessageConverter converter,
+			Message<?> message, Map<String, Object> additionalHeaders, String... headersToEmbed) throws Exception {
+		Object originalContentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+		MessageValues serialized = new MessageValues(null, additionalHeaders != null ? additionalHeaders
+				: Collections.<String, Object>emptyMap());
+		serialized.put(MessageHeaders.CONTENT_TYPE,
+				JavaClassMimeTypeConversion.mimeTypeFromObject(message.getPayload()).toString());
+		if (originalContentType != null) {
+			serialized.put(XdHeaders.XD_ORIGINAL_CONTENT_TYPE, originalContentType);
+		}
+		serialized.setPayload(converter.serializeAndEmbedHeaders(message, serialized, this.payloadEncoder,
+				headersToEmbed));
+		return serialized;
+	}
+
 	private byte[] serializePayloadIfNecessary(Object originalPayload) {
 		if (originalPayload instanceof byte[]) {
 			return (byte[]) originalPayload;
 		}
 		else {
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
 			try {
 				if (originalPayload instanceof String) {
 					return ((String) originalPayload).getBytes("UTF-8");
 				}
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
 				this.codec.encode(originalPayload, bos);
 				return bos.toByteArray();
 			}
@@ -668,15 +780,32 @@ public abstract class MessageBusSupport
 	protected int determinePartition(Message<?> message, PartitioningMetadata meta) {
 		Object key = null;
 		if (StringUtils.hasText(meta.partitionKeyExtractorClass)) {
-			key = invokeExtractor(meta.partitionKeyExtractorClass, message);
+			PartitionKeyExtractorStrategy extractor = meta.partitionKeyExtractor;
+			if (extractor == null) {
+				extractor = resolvePartitionStrategy(meta.partitionKeyExtractorClass,
+						PartitionKeyExtractorStrategy.class, "key extractor");
+				meta.partitionKeyExtractor = extractor;
+			}
+			key = extractor.extractKey(message);
 		}
 		else if (meta.partitionKeyExpression != null) {
-			key = meta.partitionKeyExpression.getValue(this.evaluationContext, message);
+			if (meta.simpleKeyExtractor != null) {
+				key = meta.simpleKeyExtractor.extractKey(message);
+			}
+			if (key == null) {
+				key = meta.partitionKeyExpression.getValue(this.evaluationContext, message);
+			}
 		}
 		Assert.notNull(key, "Partition key cannot be null");
 		int partition;
 		if (StringUtils.hasText(meta.partitionSelectorClass)) {
-			partition = invokePartitionSelector(meta.partitionSelectorClass, key, meta.partitionCount);
+			PartitionSelectorStrategy selector = meta.partitionSelector;
+			if (selector == null) {
+				selector = resolvePartitionStrategy(meta.partitionSelectorClass, PartitionSelectorStrategy.class,
+						"partition selector");
+				meta.partitionSelector = selector;
+			}
+			partition = selector.selectPartition(key, meta.partitionCount);
 		}
 		else if (meta.partitionSelectorExpression != null) {
 			partition = meta.partitionSelectorExpression.getValue(this.evaluationContext, key, Integer.class);
@@ -691,56 +820,32 @@ public abstract class MessageBusSupport
 		return partition;
 	}
 
-	private Object invokeExtractor(String partitionKeyExtractorClassName, Message<?> message) {
-		if (this.applicationContext.containsBean(partitionKeyExtractorClassName)) {
-			return this.applicationContext.getBean(partitionKeyExtractorClassName, PartitionKeyExtractorStrategy.class)
-					.extractKey(message);
-		}
-		Class<?> clazz;
-		try {
-			clazz = ClassUtils.forName(partitionKeyExtractorClassName, this.applicationContext.getClassLoader());
-		}
-		catch (Exception e) {
-			logger.error("Failed to load key extractor", e);
-			throw new MessageBusException("Failed to load key extractor: " + partitionKeyExtractorClassName, e);
-		}
-		try {
-			Object extractor = clazz.newInstance();
-			Assert.isInstanceOf(PartitionKeyExtractorStrategy.class, extractor);
-			this.applicationContext.getBeanFactory().registerSingleton(partitionKeyExtractorClassName, extractor);
-			this.applicationContext.getBeanFactory().initializeBean(extractor, partitionKeyExtractorClassName);
-			return ((PartitionKeyExtractorStrategy) extractor).extractKey(message);
-		}
-		catch (Exception e) {
-			logger.error("Failed to instantiate key extractor", e);
-			throw new MessageBusException("Failed to instantiate key extractor: " + partitionKeyExtractorClassName, e);
-		}
-	}
-
-	private int invokePartitionSelector(String partitionSelectorClassName, Object key, int partitionCount) {
-		if (this.applicationContext.containsBean(partitionSelectorClassName)) {
-			return this.applicationContext.getBean(partitionSelectorClassName, PartitionSelectorStrategy.class)
-					.selectPartition(key, partitionCount);
+	/**
+	 * Look up a key extractor or partition selector bean by name, creating and registering it if there is
+	 * none. The result is cached in the {@link PartitioningMetadata} so this happens once per binding.
+	 */
+	private synchronized <T> T resolvePartitionStrategy(String className, Class<T> type, String description) {
+		if (this.applicationContext.containsBean(className)) {
+			return this.applicationContext.getBean(className, type);
 		}
 		Class<?> clazz;
 		try {
-			clazz = ClassUtils.forName(partitionSelectorClassName, this.applicationContext.getClassLoader());
+			clazz = ClassUtils.forName(className, this.applicationContext.getClassLoader());
 		}
 		catch (Exception e) {
-			logger.error("Failed to load partition selector", e);
-			throw new MessageBusException("Failed to load partition selector: " + partitionSelectorClassName, e);
+			logger.error("Failed to load " + description, e);
+			throw new MessageBusException("Failed to load " + description + ": " + className, e);
 		}
 		try {
-			Object extractor = clazz.newInstance();
-			Assert.isInstanceOf(PartitionKeyExtractorStrategy.class, extractor);
-			this.applicationContext.getBeanFactory().registerSingleton(partitionSelectorClassName, extractor);
-			this.applicationContext.getBeanFactory().initializeBean(extractor, partitionSelectorClassName);
-			return ((PartitionSelectorStrategy) extractor).selectPartition(key, partitionCount);
+			Object strategy = clazz.newInstance();
+			Assert.isInstanceOf(type, strategy);
+			this.applicationContext.getBeanFactory().registerSingleton(className, strategy);
+			this.applicationContext.getBeanFactory().initializeBean(strategy, className);
+			return type.cast(strategy);
 		}
 		catch (Exception e) {
-			logger.error("Failed to instantiate partition selector", e);
-			throw new MessageBusException("Failed to instantiate partition selector: " + partitionSelectorClassName,
-					e);
+			logger.error("Failed to instantiate " + description, e);
+			throw new MessageBusException("Failed to instantiate " + description + ": " + className, e);
 		}
 	}
 
@@ -979,20 +1084,35 @@ public abstract class MessageBusSupport
 
 	protected static class PartitioningMetadata {
 
+		private static final Pattern HEADER_KEY_EXPRESSION =
+				Pattern.compile("\\s*headers\\s*\\[\\s*'([^']*)'\\s*\\]\\s*");
+
+		private static final Pattern PAYLOAD_KEY_EXPRESSION = Pattern.compile("\\s*payload\\s*");
+
+		private static final Pattern PAYLOAD_ENTRY_KEY_EXPRESSION =
+				Pattern.compile("\\s*payload\\s*\\[\\s*'([^']*)'\\s*\\]\\s*");
+
 		private final String partitionKeyExtractorClass;
 
 		private final Expression partitionKeyExpression;
 
+		private final PartitionKeyExtractorStrategy simpleKeyExtractor;
+
 		private final String partitionSelectorClass;
 
 		private final Expression partitionSelectorExpression;
 
 		private final int partitionCount;
 
+		private volatile PartitionKeyExtractorStrategy partitionKeyExtractor;
+
+		private volatile PartitionSelectorStrategy partitionSelector;
+
 		public PartitioningMetadata(AbstractBusPropertiesAccessor properties, int partitionCount) {
 			this.partitionCount = partitionCount;
 			this.partitionKeyExtractorClass = properties.getPartitionKeyExtractorClass();
 			this.partitionKeyExpression = properties.getPartitionKeyExpression();
+			this.simpleKeyExtractor = simpleKeyExtractor(this.partitionKeyExpression);
 			this.partitionSelectorClass = properties.getPartitionSelectorClass();
 			this.partitionSelectorExpression = properties.getPartitionSelectorExpression();
 		}
@@ -1004,6 +1124,55 @@ public abstract class MessageBusSupport
 		public int getPartitionCount() {
 			return partitionCount;
 		}
+
+		/**
+		 * Return an extractor that evaluates {@code headers['name']}, {@code payload} or, for
+		 * {@code Map} payloads, {@code payload['name']} without SpEL; null for any other expression.
+		 * A null key from the extractor means the expression itself must be evaluated.
+		 */
+		private static PartitionKeyExtractorStrategy simpleKeyExtractor(Expression expression) {
+			if (expression == null) {
+				return null;
+			}
+			String expressionString = expression.getExpressionString();
+			Matcher matcher = HEADER_KEY_EXPRESSION.matcher(expressionString);
+			if (matcher.matches()) {
+				final String header = matcher.group(1);
+				return new PartitionKeyExtractorStrategy() {
+
+					@Override
+					public Object extractKey(Message<?> message) {
+						return message.getHeaders().get(header);
+					}
+
+				};
+			}
+			if (PAYLOAD_KEY_EXPRESSION.matcher(expressionString).matches()) {
+				return new PartitionKeyExtractorStrategy() {
+
+					@Override
+					public Object extractKey(Message<?> message) {
+						return message.getPayload();
+					}
+
+				};
+			}
+			matcher = PAYLOAD_ENTRY_KEY_EXPRESSION.matcher(expressionString);
+			if (matcher.matches()) {
+				final String entry = matcher.group(1);
+				return new PartitionKeyExtractorStrategy() {
+
+					@Override
+					public Object extractKey(Message<?> message) {
+						Object payload = message.getPayload();
+						return payload instanceof Map ? ((Map<?, ?>) payload).get(entry) : null;
+					}
+
+				};
+			}
+			return null;
+		}
+
 	}
 
 	/**
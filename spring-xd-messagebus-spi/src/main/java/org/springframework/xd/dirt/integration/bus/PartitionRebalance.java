@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+/**
+ * The effect of changing the partition count of a producer on a set of keys: which keys
+ * are routed to a different partition, and what fraction of the keys that is. Use it
+ * before scaling out a partitioned stream to estimate how much state held by the
+ * consuming modules loses its locality.
+ */
+public final class PartitionRebalance {
+
+	private final int keyCount;
+
+	private final Map<Object, Integer> movedKeys;
+
+	private PartitionRebalance(int keyCount, Map<Object, Integer> movedKeys) {
+		this.keyCount = keyCount;
+		this.movedKeys = Collections.unmodifiableMap(movedKeys);
+	}
+
+	/**
+	 * Compute the rebalance of the keys, routing them as the bus would.
+	 * @param keys the partition keys.
+	 * @param selector the partition selector.
+	 * @param fromPartitionCount the current partition count.
+	 * @param toPartitionCount the new partition count.
+	 * @return the rebalance.
+	 */
+	public static PartitionRebalance compute(Iterable<?> keys, PartitionSelectorStrategy selector,
+			int fromPartitionCount, int toPartitionCount) {
+		Assert.notNull(keys, "'keys' cannot be null");
+		Assert.notNull(selector, "'selector' cannot be null");
+		Assert.isTrue(fromPartitionCount > 0 && toPartitionCount > 0, "partition counts must be greater than 0");
+		int keyCount = 0;
+		Map<Object, Integer> movedKeys = new LinkedHashMap<Object, Integer>();
+		for (Object key : keys) {
+			keyCount++;
+			int to = partition(selector, key, toPartitionCount);
+			if (partition(selector, key, fromPartitionCount) != to) {
+				movedKeys.put(key, to);
+			}
+		}
+		return new PartitionRebalance(keyCount, movedKeys);
+	}
+
+	/**
+	 * @return the number of keys.
+	 */
+	public int getKeyCount() {
+		return this.keyCount;
+	}
+
+	/**
+	 * @return the keys routed to a different partition, mapped to their new partition.
+	 */
+	public Map<Object, Integer> getMovedKeys() {
+		return this.movedKeys;
+	}
+
+	/**
+	 * @return the fraction (0 to 1) of the keys routed to a different partition.
+	 */
+	public double getMovedFraction() {
+		return this.keyCount == 0 ? 0 : (double) this.movedKeys.size() / this.keyCount;
+	}
+
+	@Override
+	public String toString() {
+		return "PartitionRebalance [keys=" + this.keyCount + ", moved=" + this.movedKeys.size() + "]";
+	}
+
+	private static int partition(PartitionSelectorStrategy selector, Object key, int partitionCount) {
+		// same as MessageBusSupport.determinePartition
+		int partition = selector.selectPartition(key, partitionCount) % partitionCount;
+		return partition < 0 ? Math.abs(partition) : partition;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -41,6 +41,12 @@ public final class XdHeaders {
 	 */
 	public static final String REPLY_TO = "replyTo";
 
+	/**
+	 * The headers of each message of a batch delivered as a single message, in the order of its {@code List}
+	 * payload.
+	 */
+	public static final String XD_BATCH_HEADERS = "xdBatchHeaders";
+
 	/**
 	 * The headers that will be propagated, by default, by message bus implementations
 	 * that have no inherent header support (by embedding the headers in the payload).
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Tests for {@link AdaptiveBatcher}.
+ */
+public class AdaptiveBatcherTests {
+
+	private ThreadPoolTaskScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		this.scheduler = new ThreadPoolTaskScheduler();
+		this.scheduler.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() {
+		this.scheduler.destroy();
+	}
+
+	@Test
+	public void testSlowStreamIsNotBatched() throws Exception {
+		RecordingSender sender = new RecordingSender(0);
+		AdaptiveBatcher<Integer> batcher = new AdaptiveBatcher<Integer>(sender, this.scheduler, 100, 10000, 1000);
+		for (int i = 0; i < 10; i++) {
+			batcher.add(i, 1);
+			assertEquals(i + 1, sender.count());
+			Thread.sleep(5);
+		}
+		assertEquals(10, sender.batches.size());
+		assertEquals(1, batcher.getTargetBatchSize());
+	}
+
+	@Test
+	public void testBurstIsBatchedInOrder() throws Exception {
+		RecordingSender sender = new RecordingSender(20);
+		AdaptiveBatcher<Integer> batcher = new AdaptiveBatcher<Integer>(sender, this.scheduler, 50, 10000, 1000);
+		for (int i = 0; i < 1000; i++) {
+			batcher.add(i, 1);
+		}
+		batcher.flush();
+		assertEquals(1000, sender.count());
+		assertThat(sender.batches.size(), lessThan(1000));
+		int largest = 0;
+		int expected = 0;
+		for (List<Integer> batch : sender.batches) {
+			largest = Math.max(largest, batch.size());
+			for (Integer item : batch) {
+				assertEquals(expected++, item.intValue());
+			}
+		}
+		assertThat(largest, greaterThan(1));
+		assertThat(largest, lessThanOrEqualTo(50));
+	}
+
+	@Test
+	public void testPartialBatchIsSentWithinLatencyCeiling() throws Exception {
+		RecordingSender sender = new RecordingSender(20);
+		AdaptiveBatcher<Integer> batcher = new AdaptiveBatcher<Integer>(sender, this.scheduler, 1000, 100000, 50);
+		for (int i = 0; i < 200; i++) {
+			batcher.add(i, 1);
+		}
+		batcher.flush();
+		assertThat(batcher.getTargetBatchSize(), greaterThan(1));
+		sender.latch = new CountDownLatch(1);
+		long start = System.currentTimeMillis();
+		batcher.add(-1, 1);
+		assertEquals(200, sender.count());
+		assertTrue(sender.latch.await(10, TimeUnit.SECONDS));
+		assertThat(System.currentTimeMillis() - start, lessThan(1000L));
+		assertEquals(Collections.singletonList(-1), sender.batches.get(sender.batches.size() - 1));
+	}
+
+	@Test
+	public void testBufferLimitSendsEarly() throws Exception {
+		RecordingSender sender = new RecordingSender(20);
+		AdaptiveBatcher<Integer> batcher = new AdaptiveBatcher<Integer>(sender, this.scheduler, 1000, 100, 1000);
+		for (int i = 0; i < 500; i++) {
+			batcher.add(i, 10);
+		}
+		batcher.flush();
+		for (List<Integer> batch : sender.batches) {
+			assertThat(batch.size(), lessThanOrEqualTo(10));
+		}
+	}
+
+	@Test
+	public void testFailedBatchIsKept() throws Exception {
+		RecordingSender sender = new RecordingSender(20);
+		AdaptiveBatcher<Integer> batcher = warmedUp(sender, 10000, 5000);
+		sender.failures = 1;
+		batcher.add(-1, 1);
+		batcher.add(-2, 1);
+		try {
+			batcher.flush();
+			fail("Expected exception");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		batcher.flush();
+		assertEquals(Arrays.asList(-1, -2), sender.batches.get(sender.batches.size() - 1));
+	}
+
+	@Test
+	public void testItemCompletingAFailedBatchIsNotKept() throws Exception {
+		RecordingSender sender = new RecordingSender(20);
+		AdaptiveBatcher<Integer> batcher = warmedUp(sender, 100, 5000);
+		sender.failures = 1;
+		batcher.add(-1, 1);
+		try {
+			batcher.add(-2, 100);
+			fail("Expected exception");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		batcher.flush();
+		assertEquals(Collections.singletonList(-1), sender.batches.get(sender.batches.size() - 1));
+	}
+
+	@Test
+	public void testScheduledFlushIsRetried() throws Exception {
+		RecordingSender sender = new RecordingSender(20);
+		AdaptiveBatcher<Integer> batcher = warmedUp(sender, 100000, 50);
+		sender.failures = 2;
+		sender.latch = new CountDownLatch(1);
+		batcher.add(-1, 1);
+		assertTrue(sender.latch.await(10, TimeUnit.SECONDS));
+		assertEquals(Collections.singletonList(-1), sender.batches.get(sender.batches.size() - 1));
+		assertEquals(0, sender.failures);
+	}
+
+	@Test
+	public void testItemsThatCannotBeDrainedAreFailed() throws Exception {
+		RecordingSender sender = new RecordingSender(20);
+		AdaptiveBatcher<Integer> batcher = warmedUp(sender, 10000, 5000);
+		int sent = sender.count();
+		sender.failures = Integer.MAX_VALUE;
+		batcher.add(-1, 1);
+		batcher.add(-2, 1);
+		batcher.drain();
+		assertEquals(Arrays.asList(-1, -2), sender.failed);
+		sender.failures = 0;
+		batcher.flush();
+		assertEquals(sent, sender.count());
+	}
+
+	private AdaptiveBatcher<Integer> warmedUp(RecordingSender sender, int bufferLimit, long latencyCeiling)
+			throws Exception {
+		AdaptiveBatcher<Integer> batcher = new AdaptiveBatcher<Integer>(sender, this.scheduler, 1000, bufferLimit,
+				latencyCeiling);
+		for (int i = 0; i < 200; i++) {
+			batcher.add(i, 0);
+		}
+		batcher.flush();
+		assertThat(batcher.getTargetBatchSize(), greaterThan(2));
+		return batcher;
+	}
+
+
+	private static class RecordingSender implements AdaptiveBatcher.BatchSender<Integer> {
+
+		private final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+
+		private final long delay;
+
+		private volatile CountDownLatch latch;
+
+		private volatile int failures;
+
+		private final List<Integer> failed = new ArrayList<Integer>();
+
+		RecordingSender(long delay) {
+			this.delay = delay;
+		}
+
+		@Override
+		public void send(List<Integer> batch) throws Exception {
+			if (this.delay > 0) {
+				Thread.sleep(this.delay);
+			}
+			if (this.failures > 0) {
+				this.failures--;
+				throw new IllegalStateException("test");
+			}
+			this.batches.add(batch);
+			if (this.latch != null) {
+				this.latch.countDown();
+			}
+		}
+
+		@Override
+		public void failed(List<Integer> batch, Exception cause) {
+			this.failed.addAll(batch);
+		}
+
+		int count() {
+			int count = 0;
+			synchronized (this.batches) {
+				for (List<Integer> batch : this.batches) {
+					count += batch.size();
+				}
+			}
+			return count;
+		}
+
+	}
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.dirt.integration.bus;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConsistentHashPartitionSelector} and {@link PartitionRebalance}.
+ */
+public class ConsistentHashPartitionSelectorTests {
+
+	private final ConsistentHashPartitionSelector selector = new ConsistentHashPartitionSelector();
+
+	private final List<String> keys = new ArrayList<String>();
+
+	{
+		for (int i = 0; i < 10000; i++) {
+			keys.add("customer" + i);
+		}
+	}
+
+	@Test
+	public void testPartitionsAreInRangeAndBalanced() {
+		int[] counts = new int[7];
+		for (String key : keys) {
+			int partition = selector.selectPartition(key, counts.length);
+			assertTrue(partition >= 0 && partition < counts.length);
+			assertEquals(partition, selector.selectPartition(key, counts.length));
+			counts[partition]++;
+		}
+		for (int count : counts) {
+			assertThat(count, greaterThan(keys.size() / counts.length * 8 / 10));
+		}
+	}
+
+	@Test
+	public void testScaleOutMovesKeysOnlyToNewPartition() {
+		PartitionRebalance rebalance = PartitionRebalance.compute(keys, selector, 10, 11);
+		assertEquals(keys.size(), rebalance.getKeyCount());
+		assertThat(rebalance.getMovedFraction(), greaterThan(0.05));
+		assertThat(rebalance.getMovedFraction(), lessThan(0.13));
+		for (Map.Entry<Object, Integer> moved : rebalance.getMovedKeys().entrySet()) {
+			assertEquals(10, moved.getValue().intValue());
+		}
+	}
+
+	@Test
+	public void testModuloSelectorMovesMostKeys() {
+		PartitionSelectorStrategy modulo = new PartitionSelectorStrategy() {
+
+			@Override
+			public int selectPartition(Object key, int partitionCount) {
+				return key.hashCode();
+			}
+
+		};
+		assertThat(PartitionRebalance.compute(keys, modulo, 10, 11).getMovedFraction(), greaterThan(0.8));
+		assertEquals(0, PartitionRebalance.compute(keys, modulo, 10, 10).getMovedKeys().size());
+	}
+
+}
@@ -18,15 +18,27 @@ package org.springframework.xd.dirt.integration.bus;
 
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.MimeType;
 
 /**
  * @author Gary Russell
@@ -84,6 +96,112 @@ public class MessageConverterTests {
 				new String(embedded).substring(1));
 	}
 
+	@Test
+	public void testBinaryHeaderEmbedding() throws Exception {
+		EmbeddedHeadersMessageConverter converter = new EmbeddedHeadersMessageConverter();
+		converter.setBinaryEncoding(true);
+		Message<byte[]> message = MessageBuilder.withPayload("Hello".getBytes())
+				.setHeader("foo", "bar")
+				.setHeader("baz", "quxx")
+				.build();
+		byte[] embedded = converter.embedHeaders(new MessageValues(message), "foo", "baz");
+		assertEquals(0xfe, embedded[0] & 0xff);
+		assertEquals("\u0001\u0002\u0003foo\u0001\u0000\u0000\u0000\u0003bar\u0003baz\u0001\u0000\u0000\u0000\u0004quxxHello",
+				new String(embedded).substring(1));
+
+		MessageValues extracted = converter.extractHeaders(MessageBuilder.withPayload(embedded).build(), false);
+		assertEquals("Hello", new String((byte[]) extracted.getPayload()));
+		assertEquals("bar", extracted.get("foo"));
+		assertEquals("quxx", extracted.get("baz"));
+	}
+
+	@Test
+	public void testBinaryHeaderTypes() throws Exception {
+		EmbeddedHeadersMessageConverter converter = new EmbeddedHeadersMessageConverter();
+		converter.setBinaryEncoding(true);
+		UUID correlationId = UUID.randomUUID();
+		Message<byte[]> message = MessageBuilder.withPayload("Hello".getBytes())
+				.setHeader(IntegrationMessageHeaderAccessor.CORRELATION_ID, correlationId)
+				.setHeader(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER, 3)
+				.setHeader("aLong", Long.MAX_VALUE)
+				.setHeader(MessageHeaders.CONTENT_TYPE, MimeType.valueOf("text/plain;charset=UTF-8"))
+				.setHeader("unicode", "\u00d8\u00d8\u00d8")
+				.setHeader("map", Collections.singletonMap("qux", 42))
+				.build();
+		byte[] embedded = converter.embedHeaders(new MessageValues(message),
+				IntegrationMessageHeaderAccessor.CORRELATION_ID, IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER,
+				"aLong", MessageHeaders.CONTENT_TYPE, "unicode", "map", "missing");
+
+		MessageValues extracted = converter.extractHeaders(MessageBuilder.withPayload(embedded).build(), false);
+		assertEquals("Hello", new String((byte[]) extracted.getPayload()));
+		assertEquals(correlationId, extracted.get(IntegrationMessageHeaderAccessor.CORRELATION_ID));
+		assertEquals(3, extracted.get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER));
+		assertEquals(Long.MAX_VALUE, extracted.get("aLong"));
+		assertEquals(MimeType.valueOf("text/plain;charset=UTF-8"), extracted.get(MessageHeaders.CONTENT_TYPE));
+		assertEquals("\u00d8\u00d8\u00d8", extracted.get("unicode"));
+		assertEquals(42, ((Map<?, ?>) extracted.get("map")).get("qux"));
+		assertNull(extracted.get("missing"));
+	}
+
+	@Test
+	public void testBinaryEncodingReusesBufferAcrossMessages() throws Exception {
+		EmbeddedHeadersMessageConverter converter = new EmbeddedHeadersMessageConverter();
+		converter.setBinaryEncoding(true);
+		StringBuilder longValue = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			longValue.append('x');
+		}
+		Message<byte[]> big = MessageBuilder.withPayload("big".getBytes())
+				.setHeader("foo", longValue.toString())
+				.build();
+		Message<byte[]> small = MessageBuilder.withPayload("small".getBytes())
+				.setHeader("foo", "bar")
+				.build();
+		byte[] bigEmbedded = converter.embedHeaders(new MessageValues(big), "foo");
+		byte[] smallEmbedded = converter.embedHeaders(new MessageValues(small), "foo");
+
+		MessageValues extracted = converter.extractHeaders(MessageBuilder.withPayload(smallEmbedded).build(), false);
+		assertEquals("small", new String((byte[]) extracted.getPayload()));
+		assertEquals("bar", extracted.get("foo"));
+		extracted = converter.extractHeaders(MessageBuilder.withPayload(bigEmbedded).build(), false);
+		assertEquals("big", new String((byte[]) extracted.getPayload()));
+		assertEquals(longValue.toString(), extracted.get("foo"));
+	}
+
+	@Test
+	public void testSerializeAndEmbedHeaders() throws Exception {
+		EmbeddedHeadersMessageConverter.PayloadEncoder encoder = new EmbeddedHeadersMessageConverter.PayloadEncoder() {
+
+			@Override
+			public void encode(Object payload, OutputStream outputStream) throws IOException {
+				outputStream.write(("encoded:" + payload).getBytes("UTF-8"));
+			}
+
+		};
+		Map<String, Object> overrides = Collections.<String, Object> singletonMap("baz", "override");
+		for (boolean binary : new boolean[] {true, false}) {
+			EmbeddedHeadersMessageConverter converter = new EmbeddedHeadersMessageConverter();
+			converter.setBinaryEncoding(binary);
+			Object[] payloads = new Object[] {"Hello".getBytes(), "Hell\u00d8", 42};
+			String[] expected = new String[] {"Hello", "Hell\u00d8", "encoded:42"};
+			for (int i = 0; i < payloads.length; i++) {
+				Message<?> message = MessageBuilder.withPayload(payloads[i])
+						.setHeader("foo", "bar")
+						.setHeader("baz", "quxx")
+						.build();
+				byte[] embedded = converter.serializeAndEmbedHeaders(message, overrides, encoder, "foo", "baz");
+				MessageValues copied = new MessageValues(expected[i].getBytes("UTF-8"), message.getHeaders());
+				copied.putAll(overrides);
+				assertArrayEquals(converter.embedHeaders(copied, "foo", "baz"), embedded);
+
+				MessageValues extracted = converter.extractHeaders(MessageBuilder.withPayload(embedded).build(), false);
+				assertEquals(expected[i], new String((byte[]) extracted.getPayload(), "UTF-8"));
+				assertEquals("bar", extracted.get("foo"));
+				assertEquals("override", extracted.get("baz"));
+			}
+		}
+	}
+
 	@Test
 	public void testCanDecodeOldFormat() throws Exception {
 		EmbeddedHeadersMessageConverter converter = new EmbeddedHeadersMessageConverter();
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.rest.client;
+
+import java.util.Date;
+
+import org.springframework.hateoas.PagedResources;
+import org.springframework.xd.rest.client.AggregateCounterOperations.Resolution;
+import org.springframework.xd.rest.domain.metrics.CardinalityCounterResource;
+import org.springframework.xd.rest.domain.metrics.MetricResource;
+
+/**
+ * Interface defining operations available when dealing with Cardinality Counters.
+ */
+public interface CardinalityCounterOperations {
+
+	/**
+	 * Retrieve the estimated number of distinct values ever seen by the named counter.
+	 *
+	 * @param name the name of the counter
+	 * @return the cardinality counter resource
+	 */
+	CardinalityCounterResource retrieve(String name);
+
+	/**
+	 * Retrieve the estimated number of distinct values seen by the named counter during the given interval.
+	 *
+	 * @param name the name of the counter
+	 * @param from the start of the interval, or {@code null} for a default depending on the resolution
+	 * @param to the end of the interval, or {@code null} for now
+	 * @param resolution the size of the buckets to query, which can't be {@link Resolution#month}
+	 * @return the cardinality counter resource
+	 */
+	CardinalityCounterResource retrieve(String name, Date from, Date to, Resolution resolution);
+
+	/**
+	 * List the names of the available cardinality counters
+	 */
+	PagedResources<MetricResource> list();
+
+	/**
+	 * Delete the given named cardinality counter
+	 *
+	 * @param name the name of the cardinality counter to delete
+	 */
+	void delete(String name);
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.rest.client;
+
+import org.springframework.hateoas.PagedResources;
+import org.springframework.xd.rest.domain.metrics.HistogramResource;
+import org.springframework.xd.rest.domain.metrics.MetricResource;
+
+/**
+ * Interface defining operations available when dealing with Histograms.
+ */
+public interface HistogramOperations {
+
+	/**
+	 * Retrieve the percentiles of the named histogram over the default window.
+	 *
+	 * @param name the name of the histogram
+	 * @return the histogram resource
+	 */
+	HistogramResource retrieve(String name);
+
+	/**
+	 * Retrieve the percentiles of the named histogram over the given window.
+	 *
+	 * @param name the name of the histogram
+	 * @param window the width of the window, in minutes
+	 * @return the histogram resource
+	 */
+	HistogramResource retrieve(String name, int window);
+
+	/**
+	 * List the names of the available histograms
+	 */
+	PagedResources<MetricResource> list();
+
+	/**
+	 * Delete the given named histogram
+	 *
+	 * @param name the name of the histogram to delete
+	 */
+	void delete(String name);
+
+}
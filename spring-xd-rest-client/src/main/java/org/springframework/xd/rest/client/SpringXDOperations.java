@@ -70,6 +70,16 @@ public interface SpringXDOperations {
 	 */
 	public RichGaugeOperations richGaugeOperations();
 
+	/**
+	 * Returns the portion of the API for interaction with Histograms.
+	 */
+	public HistogramOperations histogramOperations();
+
+	/**
+	 * Returns the portion of the API for interaction with Cardinality Counters.
+	 */
+	public CardinalityCounterOperations cardinalityCounterOperations();
+
 	/**
 	 * Returns the portion of the API for providing code completion.
 	 */
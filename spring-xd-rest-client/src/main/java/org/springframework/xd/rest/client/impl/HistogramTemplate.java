@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.rest.client.impl;
+
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.xd.rest.client.HistogramOperations;
+import org.springframework.xd.rest.domain.metrics.HistogramResource;
+
+/**
+ * Implementation of the Histogram part of the metrics API.
+ */
+public class HistogramTemplate extends AbstractSingleMetricTemplate<HistogramResource> implements HistogramOperations {
+
+	public HistogramTemplate(AbstractTemplate abstractTemplate) {
+		super(abstractTemplate, "histograms", HistogramResource.class);
+	}
+
+	@Override
+	public HistogramResource retrieve(String name, int window) {
+		String url = resources.get("histograms").toString() + "/{name}";
+		String uriString = UriComponentsBuilder.fromUriString(url).queryParam("window", window).build().toUriString();
+		return restTemplate.getForObject(uriString, HistogramResource.class, name);
+	}
+
+}
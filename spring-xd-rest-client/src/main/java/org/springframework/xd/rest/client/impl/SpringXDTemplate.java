@@ -22,10 +22,12 @@ import org.springframework.hateoas.UriTemplate;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.xd.rest.client.AggregateCounterOperations;
+import org.springframework.xd.rest.client.CardinalityCounterOperations;
 import org.springframework.xd.rest.client.CompletionOperations;
 import org.springframework.xd.rest.client.CounterOperations;
 import org.springframework.xd.rest.client.FieldValueCounterOperations;
 import org.springframework.xd.rest.client.GaugeOperations;
+import org.springframework.xd.rest.client.HistogramOperations;
 import org.springframework.xd.rest.client.JobOperations;
 import org.springframework.xd.rest.client.ModuleOperations;
 import org.springframework.xd.rest.client.RichGaugeOperations;
@@ -89,6 +91,16 @@ public class SpringXDTemplate extends AbstractTemplate implements SpringXDOperat
 	 */
 	private RichGaugeOperations richGaugeOperations;
 
+	/**
+	 * Holds the Histogram related part of the API
+	 */
+	private HistogramOperations histogramOperations;
+
+	/**
+	 * Holds the Cardinality Counter related part of the API
+	 */
+	private CardinalityCounterOperations cardinalityCounterOperations;
+
 	/**
 	 * Holds the code completion related part of the API.
 	 */
@@ -136,6 +148,8 @@ public class SpringXDTemplate extends AbstractTemplate implements SpringXDOperat
 		resources.put("aggregate-counters", new UriTemplate(xdRuntime.getLink("aggregate-counters").getHref()));
 		resources.put("gauges", new UriTemplate(xdRuntime.getLink("gauges").getHref()));
 		resources.put("rich-gauges", new UriTemplate(xdRuntime.getLink("rich-gauges").getHref()));
+		resources.put("histograms", new UriTemplate(xdRuntime.getLink("histograms").getHref()));
+		resources.put("cardinality-counters", new UriTemplate(xdRuntime.getLink("cardinality-counters").getHref()));
 
 		resources.put("jobs/clean/rabbit", new UriTemplate(xdRuntime.getLink("jobs").getHref() + "/clean/rabbit"));
 		resources.put("streams/clean/rabbit", new UriTemplate(xdRuntime.getLink("streams").getHref() + "/clean/rabbit"));
@@ -149,6 +163,8 @@ public class SpringXDTemplate extends AbstractTemplate implements SpringXDOperat
 		aggrCounterOperations = new AggregateCounterTemplate(this);
 		gaugeOperations = new GaugeTemplate(this);
 		richGaugeOperations = new RichGaugeTemplate(this);
+		histogramOperations = new HistogramTemplate(this);
+		cardinalityCounterOperations = new CardinalityCounterTemplate(this);
 		moduleOperations = new ModuleTemplate(this);
 		runtimeOperations = new RuntimeTemplate(this);
 		completionOperations = new CompletionTemplate(this);
@@ -199,6 +215,16 @@ public class SpringXDTemplate extends AbstractTemplate implements SpringXDOperat
 		return richGaugeOperations;
 	}
 
+	@Override
+	public HistogramOperations histogramOperations() {
+		return histogramOperations;
+	}
+
+	@Override
+	public CardinalityCounterOperations cardinalityCounterOperations() {
+		return cardinalityCounterOperations;
+	}
+
 	@Override
 	public CompletionOperations completionOperations() {
 		return completionOperations;
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.rest.domain.metrics;
+
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * The REST representation of a Histogram, summarized by its percentiles over a sliding window.
+ */
+@XmlRootElement(name = "histogram")
+public class HistogramResource extends MetricResource {
+
+	/**
+	 * The width of the window the values were recorded in, in minutes.
+	 */
+	@XmlAttribute(name = "window")
+	private int window;
+
+	@XmlAttribute(name = "count")
+	private long count;
+
+	@XmlAttribute(name = "min")
+	private long min;
+
+	@XmlAttribute(name = "max")
+	private long max;
+
+	@XmlAttribute(name = "p50")
+	private long p50;
+
+	@XmlAttribute(name = "p90")
+	private long p90;
+
+	@XmlAttribute(name = "p99")
+	private long p99;
+
+	@XmlAttribute(name = "p999")
+	private long p999;
+
+	/**
+	 * No-arg constructor for serialization frameworks.
+	 */
+	protected HistogramResource() {
+	}
+
+	public HistogramResource(String name, int window, long count, long min, long max, long p50, long p90, long p99,
+			long p999) {
+		super(name);
+		this.window = window;
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+	}
+
+	/**
+	 * Return the width of the window the values were recorded in, in minutes.
+	 */
+	public int getWindow() {
+		return window;
+	}
+
+	/**
+	 * Return the number of values recorded in the window.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public long getMin() {
+		return min;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	public long getP50() {
+		return p50;
+	}
+
+	public long getP90() {
+		return p90;
+	}
+
+	public long getP99() {
+		return p99;
+	}
+
+	public long getP999() {
+		return p999;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.xd.shell.command;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.joda.time.DateTimeConstants;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.shell.core.CommandMarker;
+import org.springframework.shell.core.annotation.CliAvailabilityIndicator;
+import org.springframework.shell.core.annotation.CliCommand;
+import org.springframework.shell.core.annotation.CliOption;
+import org.springframework.stereotype.Component;
+import org.springframework.xd.rest.client.AggregateCounterOperations.Resolution;
+import org.springframework.xd.rest.client.CardinalityCounterOperations;
+import org.springframework.xd.rest.domain.metrics.CardinalityCounterResource;
+import org.springframework.xd.rest.domain.metrics.MetricResource;
+import org.springframework.xd.shell.XDShell;
+import org.springframework.xd.shell.converter.NumberFormatConverter;
+import org.springframework.xd.shell.util.Assertions;
+import org.springframework.xd.shell.util.Table;
+import org.springframework.xd.shell.util.TableHeader;
+
+/**
+ * Commands for interacting with cardinality counter analytics.
+ */
+@Component
+public class CardinalityCounterCommands extends AbstractMetricsCommands implements CommandMarker {
+
+	protected CardinalityCounterCommands() {
+		super("CardinalityCounter");
+	}
+
+	private static final String DISPLAY_CARDINALITY_COUNTER = "cardinality-counter display";
+
+	private static final String LIST_CARDINALITY_COUNTERS = "cardinality-counter list";
+
+	private static final String DELETE_CARDINALITY_COUNTER = "cardinality-counter delete";
+
+	@Autowired
+	private XDShell xdShell;
+
+	@CliAvailabilityIndicator({ DISPLAY_CARDINALITY_COUNTER, LIST_CARDINALITY_COUNTERS, DELETE_CARDINALITY_COUNTER })
+	public boolean available() {
+		return xdShell.getSpringXDOperations() != null;
+	}
+
+	@CliCommand(value = DISPLAY_CARDINALITY_COUNTER, help = "Display the estimated number of distinct values seen by a cardinality counter, overall or during an interval")
+	public Table display(
+			@CliOption(key = { "", "name" }, help = "the name of the cardinality counter to display", mandatory = true, optionContext = "existing-cardinality-counter disable-string-converter") String name,
+			@CliOption(key = "from", help = "start-time for the interval. format: 'yyyy-MM-dd HH:mm:ss'", mandatory = false) String from,
+			@CliOption(key = "to", help = "end-time for the interval. format: 'yyyy-MM-dd HH:mm:ss'. defaults to now", mandatory = false) String to,
+			@CliOption(key = "lastMinutes", help = "set the interval to last 'n' minutes", mandatory = false) Integer lastMinutes,
+			@CliOption(key = "lastHours", help = "set the interval to last 'n' hours", mandatory = false) Integer lastHours,
+			@CliOption(key = "lastDays", help = "set the interval to last 'n' days", mandatory = false) Integer lastDays,
+			@CliOption(key = "resolution", help = "the size of the buckets the interval is rounded to (minute, hour, day)", mandatory = false, unspecifiedDefaultValue = "hour") Resolution resolution,
+			@CliOption(key = "pattern", help = "the pattern used to format the count (see DecimalFormat)", mandatory = false, unspecifiedDefaultValue = NumberFormatConverter.DEFAULT) NumberFormat pattern) {
+
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		try {
+			Date fromDate;
+			switch (Assertions.atMostOneOf("from", from, "lastMinutes", lastMinutes, "lastHours", lastHours,
+					"lastDays", lastDays)) {
+				case 0:
+					fromDate = dateFormat.parse(from);
+					break;
+				case 1:
+					fromDate = new Date(System.currentTimeMillis() - ((long) lastMinutes)
+							* DateTimeConstants.MILLIS_PER_MINUTE);
+					break;
+				case 2:
+					fromDate = new Date(System.currentTimeMillis() - ((long) lastHours)
+							* DateTimeConstants.MILLIS_PER_HOUR);
+					break;
+				case 3:
+					fromDate = new Date(System.currentTimeMillis() - ((long) lastDays)
+							* DateTimeConstants.MILLIS_PER_DAY);
+					break;
+				default:
+					fromDate = null;
+					break;
+			}
+
+			Date toDate = (to == null) ? null : dateFormat.parse(to);
+			CardinalityCounterResource resource = (fromDate == null && toDate == null)
+					? cardinalityCounterOperations().retrieve(name)
+					: cardinalityCounterOperations().retrieve(name, fromDate, toDate, resolution);
+			return displayCardinalityCounter(resource, pattern);
+		}
+		catch (ParseException pe) {
+			throw new IllegalArgumentException(
+					"Parse exception ocurred while parsing the 'from/to' options. The accepted date format is "
+							+ dateFormat.toPattern());
+		}
+	}
+
+	@CliCommand(value = LIST_CARDINALITY_COUNTERS, help = "List all available cardinality counter names")
+	public Table list(/* TODO */) {
+		PagedResources<MetricResource> list = cardinalityCounterOperations().list(/* TODO */);
+		return displayMetrics(list);
+	}
+
+	@CliCommand(value = DELETE_CARDINALITY_COUNTER, help = "Delete a cardinality counter")
+	public String delete(
+			@CliOption(key = { "", "name" }, help = "the name of the cardinality counter to delete", mandatory = true, optionContext = "existing-cardinality-counter disable-string-converter") String name) {
+		cardinalityCounterOperations().delete(name);
+		return String.format("Deleted cardinality counter '%s'", name);
+	}
+
+	private CardinalityCounterOperations cardinalityCounterOperations() {
+		return xdShell.getSpringXDOperations().cardinalityCounterOperations();
+	}
+
+	private Table displayCardinalityCounter(CardinalityCounterResource r, NumberFormat pattern) {
+		Table t = new Table();
+		t.addHeader(1, new TableHeader("Name")).addHeader(2, new TableHeader(r.getName()));
+		t.newRow().addValue(1, "distinct values").addValue(2, pattern.format(r.getValue()));
+		return t;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.xd.tuple;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedHashMap;
@@ -44,28 +45,45 @@ import org.springframework.util.ClassUtils;
  */
 public class DefaultTuple implements Tuple {
 
-	private List<String> names;
+	private static final Converter<Tuple, String> defaultTupleToStringConverter = new TupleToJsonStringConverter();
 
-	private List<Object> values;
+	private final TupleSchema schema;
+
+	private final Object[] values;
 
 	private transient ConfigurableConversionService configurableConversionService;
 
-	private transient Converter<Tuple, String> tupleToStringConverter = new TupleToJsonStringConverter();
+	private transient Converter<Tuple, String> tupleToStringConverter = defaultTupleToStringConverter;
 
 	public DefaultTuple(List<String> names, List<Object> values, ConfigurableConversionService 
 			configurableConversionService) {
-		Assert.notNull(names);
+		this(TupleSchema.of(names), toArray(values), configurableConversionService);
+	}
+
+	/**
+	 * Create a tuple that shares the given schema.
+	 * @param schema the field names
+	 * @param values the values, which must not be modified once the tuple is created
+	 * @param configurableConversionService the conversion service used by the typed getters
+	 */
+	DefaultTuple(TupleSchema schema, Object[] values, ConfigurableConversionService configurableConversionService) {
+		Assert.notNull(schema);
 		Assert.notNull(values);
 		Assert.notNull(configurableConversionService);
-		if (values.size() != names.size()) {
-			throw new IllegalArgumentException("Field names must be same length as values: names=" + names
-					+ ", values=" + values);
+		if (values.length != schema.size()) {
+			throw new IllegalArgumentException("Field names must be same length as values: names="
+					+ schema.getFieldNames() + ", values=" + Arrays.asList(values));
 		}
-		this.names = new ArrayList<>(names);
-		this.values = new ArrayList<>(values); // shallow copy
+		this.schema = schema;
+		this.values = values;
 		this.configurableConversionService = configurableConversionService;
 	}
 
+	private static Object[] toArray(List<Object> values) {
+		Assert.notNull(values);
+		return values.toArray(); // shallow copy
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -73,7 +91,7 @@ public class DefaultTuple implements Tuple {
 	 */
 	@Override
 	public int size() {
-		return values.size();
+		return values.length;
 	}
 
 	/**
@@ -82,7 +100,7 @@ public class DefaultTuple implements Tuple {
 	 */
 	@Override
 	public List<String> getFieldNames() {
-		return Collections.unmodifiableList(names);
+		return schema.getFieldNames();
 	}
 
 	/**
@@ -91,12 +109,20 @@ public class DefaultTuple implements Tuple {
 	 */
 	@Override
 	public List<Object> getValues() {
-		return Collections.unmodifiableList(values);
+		return Collections.unmodifiableList(Arrays.asList(values));
+	}
+
+	/**
+	 * Return the (shared) schema of this tuple
+	 * @return the schema
+	 */
+	public TupleSchema getSchema() {
+		return schema;
 	}
 
 	@Override
 	public int getFieldCount() {
-		return this.names.size();
+		return this.schema.size();
 	}
 
 	/*
@@ -106,7 +132,7 @@ public class DefaultTuple implements Tuple {
 	 */
 	@Override
 	public boolean hasFieldName(String name) {
-		return names.contains(name);
+		return schema.hasFieldName(name);
 	}
 
 	/*
@@ -130,13 +156,13 @@ public class DefaultTuple implements Tuple {
 	 */
 	@Override
 	public Object getValue(int index) {
-		return values.get(index);
+		return values[index];
 	}
 
 	@SuppressWarnings("rawtypes")
 	@Override
 	public List<Class> getFieldTypes() {
-		ArrayList<Class> types = new ArrayList<>(values.size());
+		ArrayList<Class> types = new ArrayList<>(values.length);
 		for (Object val : values) {
 			types.add(val.getClass());
 		}
@@ -152,8 +178,8 @@ public class DefaultTuple implements Tuple {
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((names == null) ? 0 : names.hashCode());
-		result = prime * result + ((values == null) ? 0 : values.hashCode());
+		result = prime * result + schema.hashCode();
+		result = prime * result + Arrays.hashCode(values);
 		return result;
 	}
 
@@ -174,23 +200,10 @@ public class DefaultTuple implements Tuple {
 			return false;
 		}
 		DefaultTuple other = (DefaultTuple) obj;
-		if (names == null) {
-			if (other.names != null) {
-				return false;
-			}
-		}
-		else if (!names.equals(other.names)) {
-			return false;
-		}
-		if (values == null) {
-			if (other.values != null) {
-				return false;
-			}
-		}
-		else if (!values.equals(other.values)) {
+		if (!schema.equals(other.schema)) {
 			return false;
 		}
-		return true;
+		return Arrays.equals(values, other.values);
 	}
 
 	@Override
@@ -206,7 +219,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public Tuple getTuple(int index) {
-		return convert(values.get(index), Tuple.class);
+		return convert(values[index], Tuple.class);
 	}
 
 	@Override
@@ -219,7 +232,7 @@ public class DefaultTuple implements Tuple {
 	 * @return the converted raw value, trimmed
 	 */
 	private String readAndTrim(int index) {
-		Object rawValue = values.get(index);
+		Object rawValue = values[index];
 		if (rawValue != null) {
 			String value = convert(rawValue, String.class);
 			if (value != null) {
@@ -242,7 +255,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public String getRawString(int index) {
-		Object rawValue = values.get(index);
+		Object rawValue = values[index];
 		if (rawValue != null) {
 			String value = convert(rawValue, String.class);
 			if (value != null) {
@@ -304,7 +317,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public byte getByte(int index) {
-		Byte b = convert(values.get(index), Byte.class);
+		Byte b = convert(values[index], Byte.class);
 		return (b != null) ? b : 0;
 	}
 
@@ -316,7 +329,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public byte getByte(int index, byte defaultValue) {
-		Byte b = convert(values.get(index), Byte.class);
+		Byte b = convert(values[index], Byte.class);
 		return (b != null) ? b : defaultValue;
 	}
 
@@ -328,7 +341,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public short getShort(int index) {
-		Short s = convert(values.get(index), Short.class);
+		Short s = convert(values[index], Short.class);
 		return (s != null) ? s : 0;
 	}
 
@@ -340,7 +353,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public short getShort(int index, short defaultValue) {
-		Short s = convert(values.get(index), Short.class);
+		Short s = convert(values[index], Short.class);
 		return (s != null) ? s : defaultValue;
 	}
 
@@ -352,7 +365,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public int getInt(int index) {
-		Integer i = convert(values.get(index), Integer.class);
+		Integer i = convert(values[index], Integer.class);
 		return (i != null) ? i : 0;
 	}
 
@@ -364,7 +377,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public int getInt(int index, int defaultValue) {
-		Integer i = convert(values.get(index), Integer.class);
+		Integer i = convert(values[index], Integer.class);
 		return (i != null) ? i : defaultValue;
 	}
 
@@ -376,7 +389,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public long getLong(int index) {
-		Long l = convert(values.get(index), Long.class);
+		Long l = convert(values[index], Long.class);
 		return (l != null) ? l : 0;
 	}
 
@@ -388,7 +401,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public long getLong(int index, long defaultValue) {
-		Long l = convert(values.get(index), Long.class);
+		Long l = convert(values[index], Long.class);
 		return (l != null) ? l : defaultValue;
 	}
 
@@ -400,7 +413,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public float getFloat(int index) {
-		Float f = convert(values.get(index), Float.class);
+		Float f = convert(values[index], Float.class);
 		return (f != null) ? f : 0;
 	}
 
@@ -412,7 +425,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public float getFloat(int index, float defaultValue) {
-		Float f = convert(values.get(index), Float.class);
+		Float f = convert(values[index], Float.class);
 		return (f != null) ? f : defaultValue;
 	}
 
@@ -424,7 +437,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public double getDouble(int index) {
-		Double d = convert(values.get(index), Double.class);
+		Double d = convert(values[index], Double.class);
 		return (d != null) ? d : 0;
 	}
 
@@ -436,7 +449,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public double getDouble(int index, double defaultValue) {
-		Double d = convert(values.get(index), Double.class);
+		Double d = convert(values[index], Double.class);
 		return (d != null) ? d : defaultValue;
 	}
 
@@ -447,7 +460,7 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public BigDecimal getBigDecimal(int index) {
-		return convert(values.get(index), BigDecimal.class);
+		return convert(values[index], BigDecimal.class);
 	}
 
 	@Override
@@ -458,13 +471,13 @@ public class DefaultTuple implements Tuple {
 
 	@Override
 	public BigDecimal getBigDecimal(int index, BigDecimal defaultValue) {
-		BigDecimal bd = convert(values.get(index), BigDecimal.class);
+		BigDecimal bd = convert(values[index], BigDecimal.class);
 		return (bd != null) ? bd : defaultValue;
 	}
 
 	@Override
 	public Date getDate(int index) {
-		return convert(values.get(index), Date.class);
+		return convert(values[index], Date.class);
 	}
 
 	@Override
@@ -529,7 +542,7 @@ public class DefaultTuple implements Tuple {
 	 */
 	@Override
 	public <T> T getValue(String name, Class<T> valueClass) {
-		Object value = values.get(indexOf(name));
+		Object value = values[indexOf(name)];
 		return convert(value, valueClass);
 	}
 
@@ -540,7 +553,7 @@ public class DefaultTuple implements Tuple {
 	 */
 	@Override
 	public <T> T getValue(int index, Class<T> valueClass) {
-		return convert(values.get(index), valueClass);
+		return convert(values[index], valueClass);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -568,9 +581,9 @@ public class DefaultTuple implements Tuple {
 	 * @return names and values as a {@code Map<String, Object>}
 	 */
 	Map<String, Object> toMap() {
-		Map<String, Object> map = new LinkedHashMap<>(values.size());
-		for (int i = 0; i < values.size(); i++) {
-			map.put(names.get(i), values.get(i));
+		Map<String, Object> map = new LinkedHashMap<>(values.length);
+		for (int i = 0; i < values.length; i++) {
+			map.put(schema.getFieldName(i), values[i]);
 		}
 		return map;
 	}
@@ -600,7 +613,7 @@ public class DefaultTuple implements Tuple {
 	 * Returns -1 if not found.
 	 */
 	protected int indexOf(String name) {
-		return names.indexOf(name);
+		return schema.indexOf(name);
 	}
 
 	/**
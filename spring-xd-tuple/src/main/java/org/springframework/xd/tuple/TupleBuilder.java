@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2015 the original author or authors.
+ * Copyright 2013-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -109,6 +109,19 @@ public class TupleBuilder {
 		return build();
 	}
 
+	/**
+	 * Create a tuple that shares the given schema; the values are not copied.
+	 * @param schema the schema
+	 * @param values the values, which must not be modified once the tuple is created
+	 * @return the tuple
+	 */
+	public Tuple ofSchemaAndValues(TupleSchema schema, Object[] values) {
+		DefaultTuple tuple = new DefaultTuple(schema, values,
+				customConversionService != null ? customConversionService : defaultConversionService);
+		tuple.setTupleToStringConverter(tupleToStringConverter);
+		return tuple;
+	}
+
 	public TupleBuilder put(String k1, Object v1) {
 		addEntry(k1, v1);
 		return this;
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.tuple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.Assert;
+
+/**
+ * The ordered field names of a {@link Tuple}, with a constant time name to index lookup.
+ * <p>
+ * Schemas are interned: tuples built with the same field names share a single instance,
+ * so a tuple only needs to hold its values. At most {@link #MAX_INTERNED_SCHEMAS} distinct
+ * schemas are cached; beyond that (e.g. for tuples with generated field names) schemas are
+ * created per tuple.
+ */
+public final class TupleSchema {
+
+	/**
+	 * The maximum number of distinct schemas that are cached.
+	 */
+	public static final int MAX_INTERNED_SCHEMAS = 1024;
+
+	private static final ConcurrentMap<List<String>, TupleSchema> schemas =
+			new ConcurrentHashMap<List<String>, TupleSchema>();
+
+	private static final TupleSchema EMPTY = new TupleSchema(Collections.<String> emptyList());
+
+	private final List<String> names;
+
+	private final Map<String, Integer> indexes;
+
+	private final long fingerprint;
+
+	private TupleSchema(List<String> names) {
+		this.names = Collections.unmodifiableList(new ArrayList<String>(names));
+		this.indexes = new HashMap<String, Integer>(names.size() * 2);
+		for (int i = names.size() - 1; i >= 0; i--) {
+			// the first occurrence of a duplicated name wins
+			this.indexes.put(names.get(i), i);
+		}
+		this.fingerprint = fingerprint(this.names);
+	}
+
+	/**
+	 * Return the schema for the given field names, creating it if necessary.
+	 * @param names the field names, in order
+	 * @return the (shared) schema
+	 */
+	public static TupleSchema of(List<String> names) {
+		Assert.notNull(names, "names cannot be null");
+		if (names.isEmpty()) {
+			return EMPTY;
+		}
+		TupleSchema schema = schemas.get(names);
+		if (schema == null) {
+			schema = new TupleSchema(names);
+			if (schemas.size() < MAX_INTERNED_SCHEMAS) {
+				TupleSchema existing = schemas.putIfAbsent(schema.names, schema);
+				if (existing != null) {
+					schema = existing;
+				}
+			}
+		}
+		return schema;
+	}
+
+	/**
+	 * @return the number of fields
+	 */
+	public int size() {
+		return this.names.size();
+	}
+
+	/**
+	 * @return an unmodifiable list of the field names
+	 */
+	public List<String> getFieldNames() {
+		return this.names;
+	}
+
+	/**
+	 * @param index the field index
+	 * @return the name of the field at the index
+	 */
+	public String getFieldName(int index) {
+		return this.names.get(index);
+	}
+
+	/**
+	 * @param name the field name
+	 * @return the index of the first field with the name, or -1 if there is none
+	 */
+	public int indexOf(String name) {
+		Integer index = this.indexes.get(name);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @param name the field name
+	 * @return true if there is a field with the name
+	 */
+	public boolean hasFieldName(String name) {
+		return this.indexes.containsKey(name);
+	}
+
+	/**
+	 * Return a 64 bit hash of the field names that is stable across JVMs, suitable as an
+	 * identifier for the schema when tuples are serialized.
+	 * @return the fingerprint
+	 */
+	public long getFingerprint() {
+		return this.fingerprint;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.names.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TupleSchema)) {
+			return false;
+		}
+		return this.names.equals(((TupleSchema) obj).names);
+	}
+
+	@Override
+	public String toString() {
+		return "TupleSchema " + this.names;
+	}
+
+	/*
+	 * 64 bit FNV-1a over the characters of the names, each name terminated by the non-character U+FFFF.
+	 */
+	private static long fingerprint(List<String> names) {
+		long hash = 0xcbf29ce484222325L;
+		for (String name : names) {
+			for (int i = 0; i < name.length(); i++) {
+				char c = name.charAt(i);
+				hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+				hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+			}
+			hash = (hash ^ 0xffff) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.tuple.serializer.kryo;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.tuple.TupleSchema;
+
+/**
+ * Base {@link TupleSchemaRegistry} that uses the schema {@link TupleSchema#getFingerprint()
+ * fingerprint} as its identifier and caches the schemas it has seen, so the backing
+ * store is only consulted the first time a schema is written or read.
+ * <p>
+ * At most {@code maxSchemas} schemas are cached, {@link TupleSchema#MAX_INTERNED_SCHEMAS}
+ * by default. Beyond that (e.g.
+ * for tuples with generated field names) new schemas are not registered, so tuples
+ * using them are written with their field names, and schemas registered by other
+ * processes are read from the backing store each time.
+ */
+public abstract class AbstractTupleSchemaRegistry implements TupleSchemaRegistry {
+
+	private final ConcurrentMap<Long, TupleSchema> schemas = new ConcurrentHashMap<Long, TupleSchema>();
+
+	private final int maxSchemas;
+
+	protected AbstractTupleSchemaRegistry() {
+		this(TupleSchema.MAX_INTERNED_SCHEMAS);
+	}
+
+	/**
+	 * @param maxSchemas the maximum number of schemas to register and cache
+	 */
+	protected AbstractTupleSchemaRegistry(int maxSchemas) {
+		Assert.isTrue(maxSchemas > 0, "'maxSchemas' must be greater than 0");
+		this.maxSchemas = maxSchemas;
+	}
+
+	@Override
+	public long register(TupleSchema schema) {
+		long id = schema.getFingerprint();
+		if (id == UNREGISTERED) {
+			return UNREGISTERED;
+		}
+		TupleSchema existing = this.schemas.get(id);
+		if (existing == null) {
+			if (this.schemas.size() >= this.maxSchemas) {
+				return UNREGISTERED;
+			}
+			List<String> stored = doRegister(id, schema.getFieldNames());
+			existing = stored == null ? schema : TupleSchema.of(stored);
+			TupleSchema cached = this.schemas.putIfAbsent(id, existing);
+			existing = cached == null ? existing : cached;
+		}
+		if (existing != schema && !existing.equals(schema)) {
+			throw new IllegalStateException("Schema id " + id + " of " + schema + " is already registered for "
+					+ existing);
+		}
+		return id;
+	}
+
+	@Override
+	public TupleSchema getSchema(long id) {
+		TupleSchema schema = this.schemas.get(id);
+		if (schema == null) {
+			List<String> names = doLookup(id);
+			if (names != null) {
+				schema = TupleSchema.of(names);
+				if (this.schemas.size() < this.maxSchemas) {
+					TupleSchema cached = this.schemas.putIfAbsent(id, schema);
+					schema = cached == null ? schema : cached;
+				}
+			}
+		}
+		return schema;
+	}
+
+	/**
+	 * Store the field names of a schema not yet seen by this registry.
+	 * @param id the schema identifier
+	 * @param names the field names
+	 * @return the field names already stored with the identifier, or null if there were none
+	 */
+	protected abstract List<String> doRegister(long id, List<String> names);
+
+	/**
+	 * Load the field names of a schema not yet seen by this registry.
+	 * @param id the schema identifier
+	 * @return the field names, or null if no schema is stored with the identifier
+	 */
+	protected abstract List<String> doLookup(long id);
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.tuple.serializer.kryo;
+
+import java.util.Arrays;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import org.springframework.util.Assert;
+import org.springframework.xd.tuple.DefaultTuple;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+import org.springframework.xd.tuple.TupleSchema;
+
+/**
+ * Serializes Tuples by writing the identifier of their schema, obtained from a
+ * {@link TupleSchemaRegistry}, instead of the field names. If the registry does not
+ * register the schema, {@link TupleSchemaRegistry#UNREGISTERED} is written followed by the
+ * field names. Each value is preceded by a one byte tag; strings, numbers and booleans are
+ * written directly and other values as class/object pairs.
+ */
+public class SchemaTupleSerializer extends Serializer<Tuple> {
+
+	private static final byte NULL = 0;
+
+	private static final byte STRING = 1;
+
+	private static final byte INTEGER = 2;
+
+	private static final byte LONG = 3;
+
+	private static final byte DOUBLE = 4;
+
+	private static final byte FLOAT = 5;
+
+	private static final byte TRUE = 6;
+
+	private static final byte FALSE = 7;
+
+	private static final byte OBJECT = 8;
+
+	private final TupleSchemaRegistry schemaRegistry;
+
+	public SchemaTupleSerializer(TupleSchemaRegistry schemaRegistry) {
+		Assert.notNull(schemaRegistry, "'schemaRegistry' cannot be null");
+		this.schemaRegistry = schemaRegistry;
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output, Tuple tuple) {
+		TupleSchema schema = tuple instanceof DefaultTuple ? ((DefaultTuple) tuple).getSchema()
+				: TupleSchema.of(tuple.getFieldNames());
+		long id = this.schemaRegistry.register(schema);
+		output.writeLong(id);
+		if (id == TupleSchemaRegistry.UNREGISTERED) {
+			output.writeVarInt(schema.size(), true);
+			for (String name : schema.getFieldNames()) {
+				output.writeString(name);
+			}
+		}
+		for (Object value : tuple.getValues()) {
+			writeValue(kryo, output, value);
+		}
+	}
+
+	@Override
+	public Tuple read(Kryo kryo, Input input, Class<Tuple> type) {
+		long id = input.readLong();
+		TupleSchema schema;
+		if (id == TupleSchemaRegistry.UNREGISTERED) {
+			String[] names = new String[input.readVarInt(true)];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = input.readString();
+			}
+			schema = TupleSchema.of(Arrays.asList(names));
+		}
+		else {
+			schema = this.schemaRegistry.getSchema(id);
+			if (schema == null) {
+				throw new KryoException("No tuple schema is registered with id " + id);
+			}
+		}
+		Object[] values = new Object[schema.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = readValue(kryo, input);
+		}
+		return TupleBuilder.tuple().ofSchemaAndValues(schema, values);
+	}
+
+	private void writeValue(Kryo kryo, Output output, Object value) {
+		if (value == null) {
+			output.writeByte(NULL);
+		}
+		else if (value instanceof String) {
+			output.writeByte(STRING);
+			output.writeString((String) value);
+		}
+		else if (value instanceof Integer) {
+			output.writeByte(INTEGER);
+			output.writeVarInt((Integer) value, false);
+		}
+		else if (value instanceof Long) {
+			output.writeByte(LONG);
+			output.writeVarLong((Long) value, false);
+		}
+		else if (value instanceof Double) {
+			output.writeByte(DOUBLE);
+			output.writeDouble((Double) value);
+		}
+		else if (value instanceof Float) {
+			output.writeByte(FLOAT);
+			output.writeFloat((Float) value);
+		}
+		else if (value instanceof Boolean) {
+			output.writeByte((Boolean) value ? TRUE : FALSE);
+		}
+		else {
+			output.writeByte(OBJECT);
+			kryo.writeClassAndObject(output, value);
+		}
+	}
+
+	private Object readValue(Kryo kryo, Input input) {
+		byte tag = input.readByte();
+		switch (tag) {
+			case NULL:
+				return null;
+			case STRING:
+				return input.readString();
+			case INTEGER:
+				return input.readVarInt(false);
+			case LONG:
+				return input.readVarLong(false);
+			case DOUBLE:
+				return input.readDouble();
+			case FLOAT:
+				return input.readFloat();
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case OBJECT:
+				return kryo.readClassAndObject(input);
+			default:
+				throw new KryoException("Unknown tuple value tag " + tag);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
@@ -22,11 +22,16 @@ import org.springframework.integration.codec.kryo.AbstractKryoRegistrar;
 import org.springframework.xd.tuple.DefaultTuple;
 
 import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.serializers.CollectionSerializer;
 
 /**
  * A {@link org.springframework.xd.dirt.integration.bus.serializer.kryo.KryoRegistrar}
  * used to register a Tuple serializer.
+ * <p>
+ * By default tuples are written with their field names; when a {@link TupleSchemaRegistry}
+ * is provided, a {@link SchemaTupleSerializer} writes only a schema identifier instead.
+ * Producers and consumers of the same data must be configured alike.
  * @author David Turanski
  * @since 1.2
  */
@@ -36,15 +41,27 @@ public class TupleKryoRegistrar extends AbstractKryoRegistrar {
 
 	private final static int ARRAY_LIST_REGISTRATION_ID = 42;
 
-	private final DefaultTupleSerializer defaultTupleSerializer = new DefaultTupleSerializer();
+	private final Serializer<?> tupleSerializer;
 
 	private final CollectionSerializer collectionSerializer = new CollectionSerializer();
 
+	public TupleKryoRegistrar() {
+		this.tupleSerializer = new DefaultTupleSerializer();
+	}
+
+	/**
+	 * Create a registrar that writes schema identifiers in place of field names.
+	 * @param schemaRegistry the registry shared by the producers and consumers of tuples
+	 */
+	public TupleKryoRegistrar(TupleSchemaRegistry schemaRegistry) {
+		this.tupleSerializer = new SchemaTupleSerializer(schemaRegistry);
+	}
+
 
 	@Override
 	public List<Registration> getRegistrations() {
 		List<Registration> registrations = new ArrayList<>(2);
-		registrations.add(new Registration(DefaultTuple.class, defaultTupleSerializer, TUPLE_REGISTRATION_ID));
+		registrations.add(new Registration(DefaultTuple.class, tupleSerializer, TUPLE_REGISTRATION_ID));
 		registrations.add(new Registration(ArrayList.class, collectionSerializer, ARRAY_LIST_REGISTRATION_ID));
 		return registrations;
 	}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.tuple.serializer.kryo;
+
+import org.springframework.xd.tuple.TupleSchema;
+
+/**
+ * Maps {@link TupleSchema}s to the identifiers written by {@link SchemaTupleSerializer} in
+ * place of the field names. A schema registered by a producer must be resolvable by
+ * every consumer of the serialized tuples.
+ */
+public interface TupleSchemaRegistry {
+
+	/**
+	 * The identifier returned for a schema that was not registered; the serializer then
+	 * writes the field names in place of an identifier.
+	 */
+	long UNREGISTERED = 0;
+
+	/**
+	 * Register the schema, if necessary, and return its identifier.
+	 * @param schema the schema
+	 * @return the identifier, or {@link #UNREGISTERED} if the registry does not accept
+	 * any more schemas
+	 */
+	long register(TupleSchema schema);
+
+	/**
+	 * Return the schema with the given identifier.
+	 * @param id the identifier
+	 * @return the schema, or null if no schema is registered with the identifier
+	 */
+	TupleSchema getSchema(long id);
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.tuple;
+
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.xd.tuple.TupleBuilder.tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link TupleSchema}.
+ */
+public class TupleSchemaTests {
+
+	@Test
+	public void testSchemasAreInterned() {
+		List<String> names = new ArrayList<String>(Arrays.asList("foo", "bar"));
+		TupleSchema schema = TupleSchema.of(names);
+		names.add("baz");
+		assertEquals(2, schema.size());
+		assertThat(TupleSchema.of(Arrays.asList("foo", "bar")), sameInstance(schema));
+	}
+
+	@Test
+	public void testTuplesShareSchema() {
+		DefaultTuple tuple1 = (DefaultTuple) tuple().of("foo", 1, "bar", 2);
+		DefaultTuple tuple2 = (DefaultTuple) tuple().of("foo", "x", "bar", "y");
+		assertThat(tuple2.getSchema(), sameInstance(tuple1.getSchema()));
+	}
+
+	@Test
+	public void testIndexOf() {
+		TupleSchema schema = TupleSchema.of(Arrays.asList("foo", "bar", "foo"));
+		assertEquals(0, schema.indexOf("foo"));
+		assertEquals(1, schema.indexOf("bar"));
+		assertEquals(-1, schema.indexOf("baz"));
+		assertTrue(schema.hasFieldName("bar"));
+		assertFalse(schema.hasFieldName("baz"));
+		assertEquals("foo", schema.getFieldName(2));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFieldNamesAreUnmodifiable() {
+		TupleSchema.of(Arrays.asList("foo")).getFieldNames().add("bar");
+	}
+
+}
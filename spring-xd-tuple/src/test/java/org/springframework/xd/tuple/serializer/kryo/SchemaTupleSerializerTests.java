@@ -0,0 +1,127 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.xd.tuple.serializer.kryo;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.integration.codec.Codec;
+import org.springframework.integration.codec.kryo.PojoCodec;
+import org.springframework.xd.tuple.DefaultTuple;
+import org.springframework.xd.tuple.Tuple;
+import org.springframework.xd.tuple.TupleBuilder;
+import org.springframework.xd.tuple.TupleSchema;
+
+import com.esotericsoftware.kryo.KryoException;
+
+/**
+ * Tests for {@link SchemaTupleSerializer}.
+ */
+public class SchemaTupleSerializerTests {
+
+	private TupleSchemaRegistry schemaRegistry;
+
+	private Codec codec;
+
+	@Before
+	public void setup() {
+		schemaRegistry = new InMemoryTupleSchemaRegistry();
+		codec = new PojoCodec(new TupleKryoRegistrar(schemaRegistry));
+	}
+
+	@Test
+	public void testValueTypes() throws IOException {
+		Tuple tuple = TupleBuilder.tuple()
+				.put("string", "foo")
+				.put("int", -123)
+				.put("long", Long.MAX_VALUE)
+				.put("double", 1.5d)
+				.put("float", 2.5f)
+				.put("true", true)
+				.put("false", false)
+				.put("null", null)
+				.put("date", new Date(1234L))
+				.build();
+		Tuple result = roundTrip(tuple);
+		assertEquals(tuple, result);
+		assertThat(((DefaultTuple) result).getSchema(), sameInstance(((DefaultTuple) tuple).getSchema()));
+	}
+
+	@Test
+	public void testNestedTupleSerialization() throws IOException {
+		Tuple t0 = TupleBuilder.tuple().of("one", 1, "two", 2);
+		Tuple t1 = TupleBuilder.tuple().of("three", 3, "four", 4, "t0", t0);
+		Tuple result = roundTrip(TupleBuilder.tuple().of("t1", t1));
+		assertEquals(t0, ((Tuple) result.getValue("t1")).getValue("t0"));
+	}
+
+	@Test
+	public void testFieldNamesAreNotWritten() throws IOException {
+		Tuple tuple = TupleBuilder.tuple().of("aVeryLongFieldName", 1, "anotherVeryLongFieldName", 2);
+		ByteArrayOutputStream schemaBytes = new ByteArrayOutputStream();
+		codec.encode(tuple, schemaBytes);
+		ByteArrayOutputStream namesBytes = new ByteArrayOutputStream();
+		new PojoCodec(new TupleKryoRegistrar()).encode(tuple, namesBytes);
+		assertThat(schemaBytes.size(), lessThan(namesBytes.size()));
+	}
+
+	@Test(expected = KryoException.class)
+	public void testUnknownSchema() throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		codec.encode(TupleBuilder.tuple().of("foo", "bar"), bos);
+		new PojoCodec(new TupleKryoRegistrar(new InMemoryTupleSchemaRegistry())).decode(bos.toByteArray(),
+				DefaultTuple.class);
+	}
+
+	@Test
+	public void testRegistryResolvesRegisteredSchema() {
+		TupleSchema schema = TupleSchema.of(Arrays.asList("foo", "bar"));
+		long id = schemaRegistry.register(schema);
+		assertEquals(schema.getFingerprint(), id);
+		assertThat(schemaRegistry.getSchema(id), sameInstance(schema));
+	}
+
+	@Test
+	public void testSchemaIsWrittenInFullWhenRegistryIsFull() throws IOException {
+		schemaRegistry = new InMemoryTupleSchemaRegistry(1);
+		codec = new PojoCodec(new TupleKryoRegistrar(schemaRegistry));
+		schemaRegistry.register(TupleSchema.of(Arrays.asList("foo")));
+		TupleSchema schema = TupleSchema.of(Arrays.asList("foo", "bar"));
+		assertEquals(TupleSchemaRegistry.UNREGISTERED, schemaRegistry.register(schema));
+		assertNull(schemaRegistry.getSchema(schema.getFingerprint()));
+		Tuple tuple = TupleBuilder.tuple().of("foo", 1, "bar", "baz");
+		assertEquals(tuple, roundTrip(tuple));
+	}
+
+	private Tuple roundTrip(Tuple tuple) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		codec.encode(tuple, bos);
+		return codec.decode(bos.toByteArray(), DefaultTuple.class);
+	}
+
+}